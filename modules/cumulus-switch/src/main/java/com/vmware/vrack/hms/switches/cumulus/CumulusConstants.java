@@ -109,6 +109,9 @@ public class CumulusConstants
         "echo '{password}' | sudo -S touch /etc/network/interfaces.d/hms-port-dummy;\n"
             + "echo '{password}' | sudo -S ifreload -a";
 
+    /** Checksum of the interfaces file command */
+    public static final String INTERFACES_FILE_CHECKSUM_COMMAND = "md5sum /etc/network/interfaces";
+
     /** Change switch IP address command */
     public static final String CHANGE_SWITCH_IP_COMMAND = "if [ -n \"{address}\" ]; then\n"
         + "	echo '{password}' | sudo -S sed -r -i.hms.bak '/^iface\\s+eth0\\b/,/^[^\\s]+/ s/address\\s+[0-9.]+\\b/address {address}/g' /etc/network/interfaces \n"
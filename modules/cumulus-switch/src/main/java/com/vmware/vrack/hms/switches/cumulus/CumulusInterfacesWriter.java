@@ -0,0 +1,610 @@
+/* ********************************************************************************
+ * CumulusInterfacesWriter.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.switches.cumulus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.log4j.Logger;
+
+import com.vmware.vrack.hms.common.exception.HmsException;
+import com.vmware.vrack.hms.common.exception.HmsOobNetworkErrorCode;
+import com.vmware.vrack.hms.common.exception.HmsOobNetworkException;
+import com.vmware.vrack.hms.common.switches.api.SwitchNode;
+import com.vmware.vrack.hms.common.util.SshExecResult;
+import com.vmware.vrack.hms.switches.cumulus.model.Configuration;
+
+/**
+ * Writes the changes to the interfaces file of a switch in transactions. Changes submitted concurrently within the
+ * coalesce window are applied to a single parsed {@link Configuration}, which is then uploaded and reloaded once,
+ * instead of downloading, uploading and reloading the interfaces file for every change.
+ * <p>
+ * A change that fails is undone without affecting the other changes of the transaction. If the upload or the reload
+ * fails, the interfaces file read at the start of the transaction is restored and all its changes fail. The whole
+ * transaction holds the configuration lock of the switch, so that other commands changing the switch configuration
+ * do not interleave with it.
+ * <p>
+ * The last interfaces file read or written is cached along with its checksum. It is downloaded again only when the
+ * checksum of the interfaces file on the switch differs, and it is parsed once for all the readers of
+ * {@link #getConfiguration()}.
+ *
+ * @author VMware, Inc.
+ */
+public class CumulusInterfacesWriter
+{
+    private static Logger logger = Logger.getLogger( CumulusInterfacesWriter.class );
+
+    /** Default time the first change waits for other changes to join its transaction, in milliseconds */
+    private static final long DEFAULT_COALESCE_WINDOW = 100;
+
+    private static final ConcurrentMap<String, CumulusInterfacesWriter> writers =
+        new ConcurrentHashMap<String, CumulusInterfacesWriter>();
+
+    private final InterfacesFile interfacesFile;
+
+    private volatile CachedFile cachedFile;
+
+    /** Results of the changes waiting for a transaction, also guards the commit in progress */
+    private final List<Result> pendingResults = new ArrayList<Result>();
+
+    private boolean committing;
+
+    private volatile long coalesceWindow = DEFAULT_COALESCE_WINDOW;
+
+    /**
+     * Get the interfaces file writer of the switch node, creating it if needed.
+     *
+     * @param switchNode switch node object
+     * @return the interfaces file writer of the switch node
+     */
+    public static CumulusInterfacesWriter getInstance( SwitchNode switchNode )
+    {
+        CumulusInterfacesWriter writer = writers.get( switchNode.getSwitchId() );
+        if ( writer == null )
+        {
+            CumulusInterfacesWriter newWriter = new CumulusInterfacesWriter( new SessionInterfacesFile() );
+            writer = writers.putIfAbsent( switchNode.getSwitchId(), newWriter );
+            if ( writer == null )
+            {
+                writer = newWriter;
+            }
+        }
+        /* Keep the latest node, its credentials may have changed */
+        ( (SessionInterfacesFile) writer.interfacesFile ).switchNode = switchNode;
+        return writer;
+    }
+
+    CumulusInterfacesWriter( InterfacesFile interfacesFile )
+    {
+        this.interfacesFile = interfacesFile;
+    }
+
+    /**
+     * Get the parsed interfaces file of the switch, downloading and parsing it only if it changed since it was last
+     * read or written. The configuration is shared by all the readers and must not be modified, use
+     * {@link #write(Change)} instead.
+     *
+     * @return parsed interfaces file
+     * @throws HmsException if the interfaces file can not be read or parsed
+     */
+    public Configuration getConfiguration()
+        throws HmsException
+    {
+        return getCachedFile().getConfiguration();
+    }
+
+    /**
+     * Get the cached interfaces file, reading it again if the checksum of the interfaces file on the switch differs.
+     *
+     * @return cached interfaces file
+     * @throws HmsException
+     */
+    private CachedFile getCachedFile()
+        throws HmsException
+    {
+        CachedFile cached = cachedFile;
+        if ( cached != null )
+        {
+            String checksum = interfacesFile.getChecksum();
+            if ( cached.checksum.equals( checksum ) )
+            {
+                return cached;
+            }
+        }
+        cached = new CachedFile( interfacesFile.read() );
+        cachedFile = cached;
+        return cached;
+    }
+
+    /**
+     * Applies a change to the interfaces file, waiting until the transaction it joined is committed.
+     *
+     * @param change change to the configuration
+     * @return result of the change
+     */
+    public Result write( Change change )
+    {
+        return write( Collections.singletonList( change ) ).get( 0 );
+    }
+
+    /**
+     * Applies the changes to the interfaces file in order, waiting until the transaction they joined is committed.
+     *
+     * @param changes changes to the configuration
+     * @return results of the changes, in the same order
+     */
+    public List<Result> write( List<Change> changes )
+    {
+        List<Result> results = new ArrayList<Result>();
+        for ( Change change : changes )
+        {
+            results.add( new Result( change ) );
+        }
+
+        synchronized ( pendingResults )
+        {
+            pendingResults.addAll( results );
+        }
+
+        /*
+         * The changes are committed whether the caller is interrupted or not, wait uninterruptibly and restore the
+         * interrupt on return
+         */
+        boolean interrupted = false;
+        try
+        {
+            while ( true )
+            {
+                synchronized ( pendingResults )
+                {
+                    while ( !isDone( results ) && committing )
+                    {
+                        try
+                        {
+                            pendingResults.wait();
+                        }
+                        catch ( InterruptedException e )
+                        {
+                            interrupted = true;
+                        }
+                    }
+                    if ( isDone( results ) )
+                    {
+                        return results;
+                    }
+                    /* No transaction in progress picked the changes up, commit them */
+                    committing = true;
+                }
+
+                List<Result> transaction;
+                try
+                {
+                    if ( coalesceWindow > 0 && !interrupted )
+                    {
+                        Thread.sleep( coalesceWindow );
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    interrupted = true;
+                }
+                finally
+                {
+                    synchronized ( pendingResults )
+                    {
+                        transaction = new ArrayList<Result>( pendingResults );
+                        pendingResults.clear();
+                    }
+                }
+
+                try
+                {
+                    commit( transaction );
+                }
+                finally
+                {
+                    synchronized ( pendingResults )
+                    {
+                        for ( Result result : transaction )
+                        {
+                            result.done = true;
+                        }
+                        committing = false;
+                        pendingResults.notifyAll();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static boolean isDone( List<Result> results )
+    {
+        for ( Result result : results )
+        {
+            if ( !result.done )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies the changes to the current interfaces file and uploads and reloads it once.
+     *
+     * @param transaction results of the changes of the transaction
+     */
+    private void commit( List<Result> transaction )
+    {
+        Lock lock = null;
+        try
+        {
+            lock = interfacesFile.getLock();
+        }
+        catch ( HmsException e )
+        {
+            fail( transaction, e, HmsOobNetworkErrorCode.SWITCH_UNREACHABLE );
+            return;
+        }
+
+        lock.lock();
+        try
+        {
+            byte[] original;
+            Configuration configuration;
+            try
+            {
+                /* Parse a copy for the changes, the cached configuration is shared by the readers */
+                original = getCachedFile().content;
+                configuration = Configuration.parse( new ByteArrayInputStream( original ) );
+            }
+            catch ( Exception e )
+            {
+                logger.error( "Error in reading/parsing interfaces file on switch " + interfacesFile.getSwitchId(), e );
+                fail( transaction, e, HmsOobNetworkErrorCode.DOWNLOAD_FAILED );
+                return;
+            }
+
+            byte[] originalContent = configuration.getBytes();
+            byte[] currentContent = originalContent;
+            List<Result> applied = new ArrayList<Result>();
+            for ( Result result : transaction )
+            {
+                try
+                {
+                    result.change.apply( configuration );
+                    currentContent = configuration.getBytes();
+                    applied.add( result );
+                }
+                catch ( Exception e )
+                {
+                    /* Undo the partial change, the other changes of the transaction are kept */
+                    logger.warn( "Change to interfaces file on switch " + interfacesFile.getSwitchId() + " failed", e );
+                    result.error = toHmsException( e, HmsOobNetworkErrorCode.INTERNAL_ERROR );
+                    configuration = Configuration.parse( new ByteArrayInputStream( currentContent ) );
+                }
+            }
+
+            if ( applied.isEmpty() || Arrays.equals( currentContent, originalContent ) )
+            {
+                return;
+            }
+
+            try
+            {
+                interfacesFile.write( currentContent );
+                interfacesFile.reload();
+                cachedFile = new CachedFile( currentContent );
+                logger.debug( "Committed " + applied.size() + " change(s) to interfaces file on switch "
+                    + interfacesFile.getSwitchId() );
+            }
+            catch ( HmsException e )
+            {
+                logger.error( "Failed to commit " + applied.size() + " change(s) to interfaces file on switch "
+                    + interfacesFile.getSwitchId() + ", rolling back", e );
+                rollback( original );
+                fail( applied, e, HmsOobNetworkErrorCode.UPLOAD_FAILED );
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void rollback( byte[] original )
+    {
+        /* The interfaces file on the switch is not known for sure, read it again next time */
+        cachedFile = null;
+        try
+        {
+            interfacesFile.write( original );
+            interfacesFile.reload();
+        }
+        catch ( HmsException e )
+        {
+            logger.error( "Failed to restore interfaces file on switch " + interfacesFile.getSwitchId(), e );
+        }
+    }
+
+    private static void fail( List<Result> results, Exception e, HmsOobNetworkErrorCode errorCode )
+    {
+        for ( Result result : results )
+        {
+            result.error = toHmsException( e, errorCode );
+        }
+    }
+
+    private static HmsException toHmsException( Exception e, HmsOobNetworkErrorCode errorCode )
+    {
+        if ( e instanceof HmsException )
+        {
+            return (HmsException) e;
+        }
+        return new HmsOobNetworkException( e.getMessage(), e, errorCode );
+    }
+
+    /**
+     * Sets the time the first change waits for other changes to join its transaction.
+     *
+     * @param coalesceWindow time in milliseconds, 0 to commit right away
+     */
+    public void setCoalesceWindow( long coalesceWindow )
+    {
+        this.coalesceWindow = coalesceWindow;
+    }
+
+    /**
+     * Change to the parsed interfaces file of a switch.
+     */
+    public interface Change
+    {
+        /**
+         * Applies the change to the configuration. On exception, the configuration is restored to its state before
+         * the change.
+         *
+         * @param configuration parsed interfaces file
+         * @throws HmsException if the change can not be applied
+         */
+        void apply( Configuration configuration )
+            throws HmsException;
+    }
+
+    /**
+     * Result of a change written to the interfaces file.
+     */
+    public static class Result
+    {
+        private final Change change;
+
+        private volatile HmsException error;
+
+        private boolean done;
+
+        private Result( Change change )
+        {
+            this.change = change;
+        }
+
+        public boolean isSuccess()
+        {
+            return error == null;
+        }
+
+        public HmsException getError()
+        {
+            return error;
+        }
+
+        /**
+         * @throws HmsException the error of the change, if it failed
+         */
+        public void throwIfFailed()
+            throws HmsException
+        {
+            if ( error != null )
+            {
+                throw error;
+            }
+        }
+
+        /**
+         * @param errorCode error code used when the error of the change is not an {@link HmsOobNetworkException}
+         * @throws HmsOobNetworkException the error of the change, if it failed
+         */
+        public void throwIfFailed( HmsOobNetworkErrorCode errorCode )
+            throws HmsOobNetworkException
+        {
+            if ( error instanceof HmsOobNetworkException )
+            {
+                throw (HmsOobNetworkException) error;
+            }
+            else if ( error != null )
+            {
+                throw new HmsOobNetworkException( error.getMessage(), error, errorCode );
+            }
+        }
+    }
+
+    /**
+     * Access to the interfaces file of a switch.
+     */
+    interface InterfacesFile
+    {
+        String getSwitchId();
+
+        Lock getLock()
+            throws HmsException;
+
+        byte[] read()
+            throws HmsException;
+
+        /**
+         * @return MD5 checksum of the interfaces file as a hexadecimal string, null if it can not be computed
+         */
+        String getChecksum()
+            throws HmsException;
+
+        void write( byte[] content )
+            throws HmsException;
+
+        void reload()
+            throws HmsException;
+    }
+
+    /**
+     * Interfaces file of a switch accessed through its SSH session.
+     */
+    private static class SessionInterfacesFile
+        implements InterfacesFile
+    {
+        private volatile SwitchNode switchNode;
+
+        @Override
+        public String getSwitchId()
+        {
+            return switchNode.getSwitchId();
+        }
+
+        @Override
+        public Lock getLock()
+            throws HmsException
+        {
+            return getSession().getConfigurationLock();
+        }
+
+        @Override
+        public byte[] read()
+            throws HmsException
+        {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            getSession().download( baos, CumulusConstants.INTERFACES_FILE );
+            return baos.toByteArray();
+        }
+
+        @Override
+        public String getChecksum()
+            throws HmsException
+        {
+            SshExecResult result = getSession().executeEnhanced( CumulusConstants.INTERFACES_FILE_CHECKSUM_COMMAND );
+            if ( result.getExitCode() != 0 || result.getStdout() == null )
+            {
+                result.logIfError( logger );
+                return null;
+            }
+            String[] fields = result.getStdoutAsString().trim().split( "\\s+" );
+            return fields[0];
+        }
+
+        @Override
+        public void write( byte[] content )
+            throws HmsException
+        {
+            CumulusUtil.validateSourceClause( switchNode );
+            CumulusUtil.uploadAsRoot( switchNode, new ByteArrayInputStream( content ),
+                                      CumulusConstants.INTERFACES_FILE );
+            CumulusUtil.configurePersistenceDirectory( switchNode );
+        }
+
+        @Override
+        public void reload()
+            throws HmsException
+        {
+            String password = CumulusUtil.qr( switchNode.getPassword() );
+            String command = CumulusConstants.RELOAD_INTERFACES.replaceAll( "\\{password\\}", password );
+            SshExecResult result = getSession().executeEnhanced( command );
+            result.logIfError( logger );
+            if ( result.getExitCode() != 0 )
+            {
+                throw new HmsException( "Failed to reload interfaces on switch " + switchNode.getSwitchId() );
+            }
+        }
+
+        private CumulusTorSwitchSession getSession()
+            throws HmsException
+        {
+            CumulusTorSwitchSession session = (CumulusTorSwitchSession) CumulusUtil.getSession( switchNode );
+            if ( session == null )
+            {
+                throw new HmsOobNetworkException( String.format( "Cannot ssh to switch %s (%s)",
+                                                                 switchNode.getIpAddress(), switchNode.getSwitchId() ),
+                                                  HmsOobNetworkErrorCode.SWITCH_UNREACHABLE );
+            }
+            return session;
+        }
+    }
+
+    /**
+     * Interfaces file last read or written, and its checksum. It is parsed lazily, only when a reader needs it.
+     */
+    private static class CachedFile
+    {
+        private final byte[] content;
+
+        private final String checksum;
+
+        private Configuration configuration;
+
+        private CachedFile( byte[] content )
+        {
+            this.content = content;
+            this.checksum = md5( content );
+        }
+
+        private synchronized Configuration getConfiguration()
+        {
+            if ( configuration == null )
+            {
+                configuration = Configuration.parse( new ByteArrayInputStream( content ) );
+            }
+            return configuration;
+        }
+
+        private static String md5( byte[] content )
+        {
+            try
+            {
+                byte[] digest = MessageDigest.getInstance( "MD5" ).digest( content );
+                StringBuilder sb = new StringBuilder();
+                for ( byte b : digest )
+                {
+                    sb.append( String.format( "%02x", b ) );
+                }
+                return sb.toString();
+            }
+            catch ( NoSuchAlgorithmException e )
+            {
+                throw new IllegalStateException( e );
+            }
+        }
+    }
+}
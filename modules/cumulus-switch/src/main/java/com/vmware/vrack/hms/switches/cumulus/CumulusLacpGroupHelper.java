@@ -15,8 +15,6 @@
  * *******************************************************************************/
 package com.vmware.vrack.hms.switches.cumulus;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -200,33 +198,16 @@ public class CumulusLacpGroupHelper
 
         logger.info( "Deleting LACP group " + lacpGroupName + " on switch " + switchNode.getSwitchId() );
 
-        CumulusTorSwitchSession session = (CumulusTorSwitchSession) CumulusUtil.getSession( switchNode );
-        Configuration configuration = null;
-
-        try
-        {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            session.download( baos, CumulusConstants.INTERFACES_FILE );
-            configuration = Configuration.parse( new ByteArrayInputStream( baos.toByteArray() ) );
-        }
-        catch ( Exception e )
+        final SwitchLacpGroup deletedLag = lag;
+        CumulusInterfacesWriter.getInstance( switchNode ).write( new CumulusInterfacesWriter.Change()
         {
-            logger.error( "Exception received while reading or parsing interfaces file", e );
-            throw new HmsException( "Exception received while reading or parsing interfaces file", e );
-        }
-
-        configuration = deleteLacpGroup( lag, configuration );
-
-        /* Upload the file */
-        ByteArrayInputStream bais = new ByteArrayInputStream( configuration.getString().getBytes() );
-        CumulusUtil.uploadAsRoot( switchNode, bais, CumulusConstants.INTERFACES_FILE );
-        CumulusUtil.configurePersistenceDirectory( switchNode );
-
-        /* Reload interfaces */
-        SshExecResult result =
-            session.executeEnhanced( CumulusConstants.RELOAD_INTERFACES.replaceAll( "\\{password\\}",
-                                                                                    CumulusUtil.qr( switchNode.getPassword() ) ) );
-        result.logIfError( logger );
+            @Override
+            public void apply( Configuration configuration )
+                throws HmsException
+            {
+                deleteLacpGroup( deletedLag, configuration );
+            }
+        } ).throwIfFailed();
 
         return true;
     }
@@ -243,7 +224,7 @@ public class CumulusLacpGroupHelper
         return configuration;
     }
 
-    public boolean deleteSwitchPortFromLacpGroup( SwitchNode switchNode, String lacpGroupName, String port )
+    public boolean deleteSwitchPortFromLacpGroup( SwitchNode switchNode, String lacpGroupName, final String port )
         throws HmsOobNetworkException
     {
         SwitchLacpGroup lag = null;
@@ -269,44 +250,17 @@ public class CumulusLacpGroupHelper
 
         logger.info( "Deleting LACP group " + lacpGroupName + " on switch " + switchNode.getSwitchId() );
 
-        CumulusTorSwitchSession session = (CumulusTorSwitchSession) CumulusUtil.getSession( switchNode );
-        Configuration configuration = null;
-
-        try
-        {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            session.download( baos, CumulusConstants.INTERFACES_FILE );
-            configuration = Configuration.parse( new ByteArrayInputStream( baos.toByteArray() ) );
-        }
-        catch ( Exception e )
-        {
-            logger.error( "Exception received while reading or parsing interfaces file", e );
-            throw new HmsOobNetworkException( "Exception received while reading or parsing interfaces file", e,
-                                              HmsOobNetworkErrorCode.DOWNLOAD_FAILED );
-        }
-
-        /* Delete the mentioned port its parent LACP bond. */
-        deleteSwitchPortFromLacpGroup( lag, Arrays.asList( port ), configuration );
-
-        /* Reload interfaces */
-        SshExecResult result;
-        try
+        final SwitchLacpGroup parentLag = lag;
+        CumulusInterfacesWriter.getInstance( switchNode ).write( new CumulusInterfacesWriter.Change()
         {
-            /* Upload the file */
-            ByteArrayInputStream bais = new ByteArrayInputStream( configuration.getString().getBytes() );
-            CumulusUtil.uploadAsRoot( switchNode, bais, CumulusConstants.INTERFACES_FILE );
-            CumulusUtil.configurePersistenceDirectory( switchNode );
-
-            result =
-                session.executeEnhanced( CumulusConstants.RELOAD_INTERFACES.replaceAll( "\\{password\\}",
-                                                                                        CumulusUtil.qr( switchNode.getPassword() ) ) );
-
-            result.logIfError( logger );
-        }
-        catch ( HmsException e )
-        {
-            throw new HmsOobNetworkException( e.getMessage(), e, HmsOobNetworkErrorCode.UPLOAD_FAILED );
-        }
+            @Override
+            public void apply( Configuration configuration )
+                throws HmsException
+            {
+                /* Delete the mentioned port its parent LACP bond. */
+                deleteSwitchPortFromLacpGroup( parentLag, Arrays.asList( port ), configuration );
+            }
+        } ).throwIfFailed( HmsOobNetworkErrorCode.UPLOAD_FAILED );
 
         return true;
     }
@@ -0,0 +1,103 @@
+/* ********************************************************************************
+ * CumulusPortListDelta.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.switches.cumulus;
+
+import java.util.List;
+
+import com.vmware.vrack.hms.common.switches.api.SwitchPort;
+
+/**
+ * Ports of a switch that changed since a given version of its port list, along with the whole port list.
+ *
+ * @author VMware, Inc.
+ */
+public class CumulusPortListDelta
+{
+    /**
+     * Get version of the port list, to be passed as sinceVersion to get the next delta
+     *
+     * @return version of the port list
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public void setVersion( long version )
+    {
+        this.version = version;
+    }
+
+    /**
+     * Check if the delta holds all the ports, as the requested version was unknown
+     *
+     * @return true if all the ports are reported as changed
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    public void setComplete( boolean complete )
+    {
+        this.complete = complete;
+    }
+
+    public List<SwitchPort> getChangedPorts()
+    {
+        return changedPorts;
+    }
+
+    public void setChangedPorts( List<SwitchPort> changedPorts )
+    {
+        this.changedPorts = changedPorts;
+    }
+
+    public List<String> getRemovedPorts()
+    {
+        return removedPorts;
+    }
+
+    public void setRemovedPorts( List<String> removedPorts )
+    {
+        this.removedPorts = removedPorts;
+    }
+
+    /**
+     * Get merged view of all the ports of the switch
+     *
+     * @return list of all switch ports
+     */
+    public List<SwitchPort> getPorts()
+    {
+        return ports;
+    }
+
+    public void setPorts( List<SwitchPort> ports )
+    {
+        this.ports = ports;
+    }
+
+    private long version;
+
+    private boolean complete;
+
+    private List<SwitchPort> changedPorts;
+
+    private List<String> removedPorts;
+
+    private List<SwitchPort> ports;
+}
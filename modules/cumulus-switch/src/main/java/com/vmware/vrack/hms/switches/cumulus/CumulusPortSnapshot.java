@@ -0,0 +1,239 @@
+/* ********************************************************************************
+ * CumulusPortSnapshot.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.switches.cumulus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vmware.vrack.hms.common.switches.api.SwitchLinkedPort;
+import com.vmware.vrack.hms.common.switches.api.SwitchPort;
+import com.vmware.vrack.hms.common.switches.api.SwitchPortStatistics;
+
+/**
+ * Immutable snapshot of the ports of a switch, remembering the version at which each port last changed so that the
+ * ports changed since any earlier snapshot can be reported. Each refresh of the ports yields a new snapshot through
+ * {@link #update(Map, boolean)}.
+ *
+ * @author VMware, Inc.
+ */
+class CumulusPortSnapshot
+{
+    /**
+     * Creates the first snapshot of the ports of a switch. Versions start at the current time, so that versions handed
+     * out before a restart of HMS are older than the ones handed out after.
+     *
+     * @param ports ports keyed by name, as fully refreshed from the switch
+     */
+    CumulusPortSnapshot( Map<String, SwitchPort> ports )
+    {
+        this( ports, System.currentTimeMillis() );
+    }
+
+    private CumulusPortSnapshot( Map<String, SwitchPort> ports, long currentTime )
+    {
+        this( ports, currentTime, currentTime, currentTime, null, null );
+
+        for ( String portName : ports.keySet() )
+        {
+            portVersions.put( portName, version );
+        }
+    }
+
+    private CumulusPortSnapshot( Map<String, SwitchPort> ports, long baseVersion, long version, long fullRefreshTime,
+                                 Map<String, Long> portVersions, Map<String, Long> removedPortVersions )
+    {
+        this.baseVersion = baseVersion;
+        this.ports = Collections.unmodifiableMap( new LinkedHashMap<String, SwitchPort>( ports ) );
+        this.portList = Collections.unmodifiableList( new ArrayList<SwitchPort>( ports.values() ) );
+        this.version = version;
+        this.fullRefreshTime = fullRefreshTime;
+        this.portVersions = ( portVersions != null ) ? portVersions : new HashMap<String, Long>();
+        this.removedPortVersions = ( removedPortVersions != null ) ? removedPortVersions : new HashMap<String, Long>();
+    }
+
+    /**
+     * Creates the snapshot following this one with the given ports. The version is bumped only if any port was
+     * added, removed or changed.
+     *
+     * @param newPorts ports keyed by name, as refreshed from the switch
+     * @param fullRefresh true if the ports were fully refreshed, including their physical, LLDP and fdb details
+     * @return the new snapshot
+     */
+    CumulusPortSnapshot update( Map<String, SwitchPort> newPorts, boolean fullRefresh )
+    {
+        long newVersion = version + 1;
+        Map<String, Long> newPortVersions = new HashMap<String, Long>();
+        Map<String, Long> newRemovedPortVersions = new HashMap<String, Long>( removedPortVersions );
+        boolean changed = false;
+
+        for ( Map.Entry<String, SwitchPort> entry : newPorts.entrySet() )
+        {
+            String portName = entry.getKey();
+            SwitchPort oldPort = ports.get( portName );
+            if ( oldPort == null || isChanged( oldPort, entry.getValue() ) )
+            {
+                newPortVersions.put( portName, newVersion );
+                newRemovedPortVersions.remove( portName );
+                changed = true;
+            }
+            else
+            {
+                newPortVersions.put( portName, portVersions.get( portName ) );
+            }
+        }
+        for ( String portName : ports.keySet() )
+        {
+            if ( !newPorts.containsKey( portName ) )
+            {
+                newRemovedPortVersions.put( portName, newVersion );
+                changed = true;
+            }
+        }
+
+        return new CumulusPortSnapshot( newPorts, baseVersion, changed ? newVersion : version,
+                                        fullRefresh ? System.currentTimeMillis() : fullRefreshTime, newPortVersions,
+                                        newRemovedPortVersions );
+    }
+
+    /**
+     * Gets the ports changed since the given version, along with all the ports. All the ports are reported as changed
+     * if the version was not handed out by the snapshots of this switch.
+     *
+     * @param sinceVersion version of the port list last seen by the caller, 0 if none
+     * @return the delta
+     */
+    CumulusPortListDelta getDelta( long sinceVersion )
+    {
+        boolean complete = ( sinceVersion <= 0 || sinceVersion > version || sinceVersion < baseVersion );
+
+        List<SwitchPort> changedPorts = new ArrayList<SwitchPort>();
+        for ( Map.Entry<String, SwitchPort> entry : ports.entrySet() )
+        {
+            if ( complete || portVersions.get( entry.getKey() ) > sinceVersion )
+            {
+                changedPorts.add( entry.getValue() );
+            }
+        }
+
+        List<String> removedPorts = new ArrayList<String>();
+        if ( !complete )
+        {
+            for ( Map.Entry<String, Long> entry : removedPortVersions.entrySet() )
+            {
+                if ( entry.getValue() > sinceVersion )
+                {
+                    removedPorts.add( entry.getKey() );
+                }
+            }
+        }
+
+        CumulusPortListDelta delta = new CumulusPortListDelta();
+        delta.setVersion( version );
+        delta.setComplete( complete );
+        delta.setChangedPorts( changedPorts );
+        delta.setRemovedPorts( removedPorts );
+        delta.setPorts( portList );
+        return delta;
+    }
+
+    Map<String, SwitchPort> getPorts()
+    {
+        return ports;
+    }
+
+    List<SwitchPort> getPortList()
+    {
+        return portList;
+    }
+
+    long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Checks if the ports are to be fully refreshed, i.e. if they have not been for longer than the given interval.
+     *
+     * @param fullRefreshInterval interval in milliseconds
+     * @return true if a full refresh is due
+     */
+    boolean isFullRefreshDue( long fullRefreshInterval )
+    {
+        return ( System.currentTimeMillis() - fullRefreshTime ) > fullRefreshInterval;
+    }
+
+    private static boolean isChanged( SwitchPort oldPort, SwitchPort newPort )
+    {
+        return !equal( oldPort.getFlags(), newPort.getFlags() ) || oldPort.getMtu() != newPort.getMtu()
+            || !equal( oldPort.getMacAddress(), newPort.getMacAddress() )
+            || !equal( oldPort.getIpAddress(), newPort.getIpAddress() )
+            || !equal( oldPort.getSpeed(), newPort.getSpeed() ) || oldPort.getDuplex() != newPort.getDuplex()
+            || oldPort.getAutoneg() != newPort.getAutoneg() || oldPort.getStatus() != newPort.getStatus()
+            || !equal( oldPort.getLinkedMacAddresses(), newPort.getLinkedMacAddresses() )
+            || isChanged( oldPort.getLinkedPort(), newPort.getLinkedPort() )
+            || isChanged( oldPort.getStatistics(), newPort.getStatistics() );
+    }
+
+    private static boolean isChanged( SwitchLinkedPort oldPort, SwitchLinkedPort newPort )
+    {
+        if ( oldPort == null || newPort == null )
+        {
+            return oldPort != newPort;
+        }
+        return !equal( oldPort.getDeviceName(), newPort.getDeviceName() )
+            || !equal( oldPort.getPortName(), newPort.getPortName() ) || !equal( oldPort.getMac(), newPort.getMac() );
+    }
+
+    private static boolean isChanged( SwitchPortStatistics oldStats, SwitchPortStatistics newStats )
+    {
+        if ( oldStats == null || newStats == null )
+        {
+            return oldStats != newStats;
+        }
+        return oldStats.getRxReceivedPackets() != newStats.getRxReceivedPackets()
+            || oldStats.getRxErrors() != newStats.getRxErrors()
+            || oldStats.getRxDroppedPackets() != newStats.getRxDroppedPackets()
+            || oldStats.getTxSentPackets() != newStats.getTxSentPackets()
+            || oldStats.getTxErrors() != newStats.getTxErrors()
+            || oldStats.getTxDroppedPackets() != newStats.getTxDroppedPackets();
+    }
+
+    private static boolean equal( Object a, Object b )
+    {
+        return ( a == null ) ? b == null : a.equals( b );
+    }
+
+    private final Map<String, SwitchPort> ports;
+
+    private final List<SwitchPort> portList;
+
+    /** Version of the first snapshot of the switch */
+    private final long baseVersion;
+
+    private final long version;
+
+    private final long fullRefreshTime;
+
+    /** Version at which each port was last added or changed */
+    private final Map<String, Long> portVersions;
+
+    /** Version at which each port no longer reported by the switch was removed */
+    private final Map<String, Long> removedPortVersions;
+}
@@ -15,21 +15,17 @@
  * *******************************************************************************/
 package com.vmware.vrack.hms.switches.cumulus;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.util.Arrays;
 import java.util.List;
 
 import org.apache.log4j.Logger;
 
 import com.vmware.vrack.hms.common.exception.HmsException;
-import com.vmware.vrack.hms.common.exception.HmsOobNetworkErrorCode;
 import com.vmware.vrack.hms.common.switches.api.SwitchNode;
 import com.vmware.vrack.hms.common.switches.api.SwitchPort;
 import com.vmware.vrack.hms.common.switches.api.SwitchSession;
 import com.vmware.vrack.hms.common.switches.api.SwitchPort.PortStatus;
 import com.vmware.vrack.hms.common.switches.api.SwitchPort.PortType;
-import com.vmware.vrack.hms.common.util.SshExecResult;
 import com.vmware.vrack.hms.switches.cumulus.model.Configuration;
 
 public class CumulusPortStatusHelper
@@ -79,10 +75,9 @@ public class CumulusPortStatusHelper
         return ( success );
     }
 
-    public boolean createNewPortStanzaIfAbsent( SwitchNode switchNode, String portName )
+    public boolean createNewPortStanzaIfAbsent( SwitchNode switchNode, final String portName )
         throws HmsException
     {
-        com.vmware.vrack.hms.switches.cumulus.model.SwitchPort port = null;
         /*
          * +++rsen: April, 2016, Sprint-55, BUG1630274: Persist port up/down status change
          * =================================================================================== If the port is already
@@ -98,53 +93,29 @@ public class CumulusPortStatusHelper
                                                    switchNode.getSwitchId() ) );
         }
 
-        Configuration configuration = null;
-        try
-        {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            session.download( baos, CumulusConstants.INTERFACES_FILE );
-            configuration = Configuration.parse( new ByteArrayInputStream( baos.toByteArray() ) );
-        }
-        catch ( Exception e )
-        {
-            logger.error( "Error in reading/parsing interfaces file on switch " + switchNode.getSwitchId()
-                + ". Reason: " + e.getMessage(), e );
-            return false;
-        }
-
         /*
-         * now make sure that the non-existent port is also there
+         * now make sure that the non-existent port is also there, the file is not uploaded if it already is
          */
-        if ( configuration.getConfigBlock( portName ) == null )
+        CumulusInterfacesWriter.getInstance( switchNode ).write( new CumulusInterfacesWriter.Change()
         {
-            List<com.vmware.vrack.hms.switches.cumulus.model.SwitchPort> ports =
-                configuration.convertToSwitchPorts( Arrays.asList( portName ) );
-            port = ports.get( 0 ); // always a hit
-            port.vlans = null;
-            configuration.addConfigBlock( port );
-            if ( configuration.bridges != null && !configuration.bridges.isEmpty()
-                && configuration.bridges.get( 0 ).getMemberByName( portName ) == null )
+            @Override
+            public void apply( Configuration configuration )
             {
-                configuration.bridges.get( 0 ).members.add( port );
+                if ( configuration.getConfigBlock( portName ) == null )
+                {
+                    List<com.vmware.vrack.hms.switches.cumulus.model.SwitchPort> ports =
+                        configuration.convertToSwitchPorts( Arrays.asList( portName ) );
+                    com.vmware.vrack.hms.switches.cumulus.model.SwitchPort port = ports.get( 0 ); // always a hit
+                    port.vlans = null;
+                    configuration.addConfigBlock( port );
+                    if ( configuration.bridges != null && !configuration.bridges.isEmpty()
+                        && configuration.bridges.get( 0 ).getMemberByName( portName ) == null )
+                    {
+                        configuration.bridges.get( 0 ).members.add( port );
+                    }
+                }
             }
-
-            /* Upload the file */
-            ByteArrayInputStream bais = new ByteArrayInputStream( configuration.getString().getBytes() );
-            CumulusUtil.validateSourceClause( switchNode );
-            CumulusUtil.uploadAsRoot( switchNode, bais, CumulusConstants.INTERFACES_FILE );
-
-            CumulusUtil.configurePersistenceDirectory( switchNode );
-
-            /* Activate the VLAN in the current session */
-            SshExecResult result =
-                session.executeEnhanced( CumulusConstants.RELOAD_INTERFACES.replaceAll( "\\{password\\}",
-                                                                                        CumulusUtil.qr( switchNode.getPassword() ) ) );
-            result.logIfError( logger );
-        }
-        else
-        {
-            // if the port is already part of persistent config then nothing to do
-        }
+        } ).throwIfFailed();
         // Temporary hack END --------------------------------------------------------------------------->
 
         return true;
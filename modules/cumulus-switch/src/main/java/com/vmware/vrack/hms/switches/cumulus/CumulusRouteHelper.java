@@ -15,9 +15,6 @@
  * *******************************************************************************/
 package com.vmware.vrack.hms.switches.cumulus;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-
 import com.vmware.vrack.hms.common.switches.api.SwitchSession;
 import com.vmware.vrack.hms.common.util.SshUtil;
 import org.apache.log4j.Logger;
@@ -26,7 +23,6 @@ import com.vmware.vrack.hms.common.exception.HmsException;
 import com.vmware.vrack.hms.common.exception.HmsOobNetworkErrorCode;
 import com.vmware.vrack.hms.common.exception.HmsOobNetworkException;
 import com.vmware.vrack.hms.common.switches.api.SwitchNode;
-import com.vmware.vrack.hms.common.util.SshExecResult;
 import com.vmware.vrack.hms.switches.cumulus.model.Configuration;
 import com.vmware.vrack.hms.switches.cumulus.model.Ipv4DefaultRoute;
 import com.vmware.vrack.hms.switches.cumulus.model.SwitchPort;
@@ -36,52 +32,22 @@ public class CumulusRouteHelper
 
     private static Logger logger = Logger.getLogger( CumulusRouteHelper.class );
 
-    public void configureIpv4DefaultRoute( SwitchNode switchNode, String gateway, String portId )
+    public void configureIpv4DefaultRoute( SwitchNode switchNode, final String gateway, final String portId )
         throws HmsOobNetworkException
     {
-        Configuration configuration = null;
-
-        CumulusTorSwitchSession session = (CumulusTorSwitchSession) CumulusUtil.getSession( switchNode );
-
-        try
-        {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            session.download( baos, CumulusConstants.INTERFACES_FILE );
-            configuration = Configuration.parse( new ByteArrayInputStream( baos.toByteArray() ) );
-        }
-        catch ( Exception e )
-        {
-            logger.error( "Error in reading/parsing interfaces file on switch " + switchNode.getSwitchId() );
-            throw new HmsOobNetworkException( "Error in reading/parsing interfaces file on switch "
-                + switchNode.getSwitchId() + ". Reason: " + e.getMessage(), e, HmsOobNetworkErrorCode.INTERNAL_ERROR );
-        }
-
-        /* Set the configuration */
-        updateIpv4DefaultRoute( configuration, gateway, portId );
-        logger.debug( configuration.getString() );
-
-        /* Upload the revised configuration file now */
-        /* Upload the file */
-        ByteArrayInputStream bais = new ByteArrayInputStream( configuration.getString().getBytes() );
-        try
-        {
-            CumulusUtil.validateSourceClause( switchNode );
-            CumulusUtil.uploadAsRoot( switchNode, bais, CumulusConstants.INTERFACES_FILE );
-
-            CumulusUtil.configurePersistenceDirectory( switchNode );
-
-            /* Activate the configuration in the current session */
-            SshExecResult sshExecResult =
-                session.executeEnhanced( CumulusConstants.RELOAD_INTERFACES.replaceAll( "\\{password\\}",
-                                                                                        CumulusUtil.qr( switchNode.getPassword() ) ) );
-            sshExecResult.logIfError( logger );
-        }
-        catch ( HmsException e )
+        /* Set the configuration, the revised configuration file is uploaded and activated with the other changes */
+        CumulusInterfacesWriter.getInstance( switchNode ).write( new CumulusInterfacesWriter.Change()
         {
-            logger.error( "Failed to upload new configuration file to switch " + switchNode.getSwitchId() );
-            throw new HmsOobNetworkException( "Failed to upload new configuration file to switch "
-                + switchNode.getSwitchId() + ". Reason: " + e.getMessage(), e, HmsOobNetworkErrorCode.UPLOAD_FAILED );
-        }
+            @Override
+            public void apply( Configuration configuration )
+            {
+                updateIpv4DefaultRoute( configuration, gateway, portId );
+                if ( logger.isDebugEnabled() )
+                {
+                    logger.debug( configuration.getString() );
+                }
+            }
+        } ).throwIfFailed( HmsOobNetworkErrorCode.UPLOAD_FAILED );
 
         /*
          * Finally, change the default route dynamically using "ip route " command
@@ -100,52 +66,23 @@ public class CumulusRouteHelper
      * @param switchNode
      * @throws HmsOobNetworkException
      */
-    public void deleteIpv4DefaultRoute( SwitchNode switchNode )
+    public void deleteIpv4DefaultRoute( final SwitchNode switchNode )
         throws HmsException
     {
-        Configuration configuration = null;
-
-        CumulusTorSwitchSession session = (CumulusTorSwitchSession) CumulusUtil.getSession( switchNode );
-
-        try
-        {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            session.download( baos, CumulusConstants.INTERFACES_FILE );
-            configuration = Configuration.parse( new ByteArrayInputStream( baos.toByteArray() ) );
-        }
-        catch ( Exception e )
+        /* Delete the route from configuration, the revised configuration file is uploaded with the other changes */
+        CumulusInterfacesWriter.getInstance( switchNode ).write( new CumulusInterfacesWriter.Change()
         {
-            logger.error( "Error in reading/parsing interfaces file on switch " + switchNode.getSwitchId() );
-            throw new HmsOobNetworkException( "Error in reading/parsing interfaces file on switch "
-                + switchNode.getSwitchId() + ". Reason: " + e.getMessage(), e, HmsOobNetworkErrorCode.INTERNAL_ERROR );
-        }
-
-        /* Delete the route from configuration */
-        deleteIpv4DefaultRouteImpl( configuration, switchNode );
-        logger.debug( configuration.getString() );
-
-        /* Upload the revised configuration file now */
-        /* Upload the file */
-        ByteArrayInputStream bais = new ByteArrayInputStream( configuration.getString().getBytes() );
-        try
-        {
-            CumulusUtil.validateSourceClause( switchNode );
-            CumulusUtil.uploadAsRoot( switchNode, bais, CumulusConstants.INTERFACES_FILE );
-
-            CumulusUtil.configurePersistenceDirectory( switchNode );
-
-            /* Activate the configuration in the current session */
-            SshExecResult sshExecResult =
-                session.executeEnhanced( CumulusConstants.RELOAD_INTERFACES.replaceAll( "\\{password\\}",
-                                                                                        CumulusUtil.qr( switchNode.getPassword() ) ) );
-            sshExecResult.logIfError( logger );
-        }
-        catch ( HmsException e )
-        {
-            logger.error( "Failed to upload new configuration file to switch " + switchNode.getSwitchId() );
-            throw new HmsOobNetworkException( "Failed to upload new configuration file to switch "
-                + switchNode.getSwitchId() + ". Reason: " + e.getMessage(), e, HmsOobNetworkErrorCode.UPLOAD_FAILED );
-        }
+            @Override
+            public void apply( Configuration configuration )
+                throws HmsException
+            {
+                deleteIpv4DefaultRouteImpl( configuration, switchNode );
+                if ( logger.isDebugEnabled() )
+                {
+                    logger.debug( configuration.getString() );
+                }
+            }
+        } ).throwIfFailed( HmsOobNetworkErrorCode.UPLOAD_FAILED );
     }
 
     /**
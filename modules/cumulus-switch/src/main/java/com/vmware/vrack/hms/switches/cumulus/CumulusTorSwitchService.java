@@ -58,6 +58,7 @@ import com.vmware.vrack.hms.switches.cumulus.event.helper.CumulusPortEventHelper
 import com.vmware.vrack.hms.switches.cumulus.event.helper.CumulusSwitchUpDownEventHelper;
 import com.vmware.vrack.hms.switches.cumulus.model.Configuration;
 import com.vmware.vrack.hms.switches.cumulus.util.CumulusCache;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
@@ -76,10 +77,13 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -95,6 +99,24 @@ public class CumulusTorSwitchService
     /** Static timeout variable used for api functionality */
     private static final int HMS_SWITCH_CONNECTION_TIMEOUT = 20000;
 
+    /** Interval after which the ports are fully refreshed, instead of incrementally, in milliseconds */
+    private static final long PORTS_BULK_FULL_REFRESH_INTERVAL = 300000;
+
+    /** Patterns used to parse the output of the port commands */
+    private static final Pattern PHY_SETTINGS_PATTERN = Pattern.compile( "(Settings for) (swp.*|eth.*):$" );
+
+    private static final Pattern FDB_MAC_PATTERN = Pattern.compile( "^([0-9A-Fa-f]{2}(:[0-9A-Fa-f]{2}){5})" );
+
+    private static final Pattern LLDP_MGMT_IP_PATTERN = Pattern.compile( "\\s+MgmtIP:.*" );
+
+    private static final Pattern PHYSICAL_PORT_NAME_PATTERN = Pattern.compile( "swp[0-9]+|eth[0-9]+" );
+
+    private static final Pattern PORT_FLAGS_PATTERN = Pattern.compile( "^<([^ ]*)>.*" );
+
+    private static final Pattern PORT_MTU_PATTERN = Pattern.compile( ".* mtu[ ]+([0-9]+) .*" );
+
+    private static final Pattern PORT_MAC_PATTERN = Pattern.compile( ".* ([0-9A-Fa-f]{2}(:[0-9A-Fa-f]{2}){5}) .*" );
+
     /**
      * Gets switch type of this instance from the CumulusConstants as a string.
      * 
@@ -1117,17 +1139,14 @@ public class CumulusTorSwitchService
     @Override
     public List<String> getSwitchLacpGroups( SwitchNode switchNode )
     {
-        List<String> bondList = bondListCache.get( switchNode );
-        if ( bondList != null )
+        return bondListCache.get( switchNode, new CumulusCache.Loader<List<String>>()
         {
-            return bondList;
-        }
-
-        bondList = lacpHelper.getSwitchLacpGroups( switchNode );
-
-        bondListCache.set( switchNode, bondList );
-
-        return bondList;
+            @Override
+            public List<String> load( SwitchNode node )
+            {
+                return lacpHelper.getSwitchLacpGroups( node );
+            }
+        } );
     }
 
     /**
@@ -1469,31 +1488,75 @@ public class CumulusTorSwitchService
     @Override
     public List<SwitchPort> getSwitchPortListBulk( SwitchNode switchNode )
     {
-        final Pattern phySettingsPattern = Pattern.compile( "(Settings for) (swp.*|eth.*):$" );
-        List<SwitchPort> portList = portsBulkCache.get( switchNode );
+        return portsBulkCache.get( switchNode, portsBulkLoader );
+    }
 
-        if ( portList != null )
+    /**
+     * Get the ports of the switch changed since the given version of its port list, along with all the ports.
+     * Consumers polling the ports pass the version of the last delta they got, so as to process only the ports changed
+     * since.
+     *
+     * @param switchNode switch node object
+     * @param sinceVersion version of the last delta seen, 0 if none
+     * @return the delta, or null if the ports could not be retrieved
+     */
+    public CumulusPortListDelta getSwitchPortListDelta( SwitchNode switchNode, long sinceVersion )
+    {
+        getSwitchPortListBulk( switchNode );
+        CumulusPortSnapshot snapshot = portSnapshots.get( switchNode );
+        return ( snapshot != null ) ? snapshot.getDelta( sinceVersion ) : null;
+    }
+
+    /**
+     * Load switch port list (bulk format) from the switch, at most once at a time per switch through
+     * {@link #portsBulkCache}. The ports are refreshed incrementally from the previous snapshot of the switch ports,
+     * and fully every {@link #PORTS_BULK_FULL_REFRESH_INTERVAL} or whenever the set of ports changes.
+     *
+     * @param switchNode switch node object
+     * @return list of switchport objects
+     */
+    private List<SwitchPort> loadSwitchPortListBulk( SwitchNode switchNode )
+    {
+        CumulusPortSnapshot snapshot = portSnapshots.get( switchNode );
+        Map<String, SwitchPort> ports = null;
+        boolean fullRefresh = false;
+
+        if ( snapshot != null && !snapshot.isFullRefreshDue( PORTS_BULK_FULL_REFRESH_INTERVAL ) )
         {
-            return portList;
+            ports = refreshSwitchPorts( switchNode, snapshot );
         }
-        else
+        if ( ports == null )
         {
-            portList = new ArrayList<SwitchPort>();
+            ports = getSwitchPorts( switchNode );
+            fullRefresh = true;
+        }
+        if ( ports == null )
+        {
+            return null;
         }
 
+        snapshot = ( snapshot == null ) ? new CumulusPortSnapshot( ports ) : snapshot.update( ports, fullRefresh );
+        portSnapshots.put( switchNode, snapshot );
+        return snapshot.getPortList();
+    }
+
+    /**
+     * Get all the details of the switch ports. Gather the lldp, fdb, ip address, port and ethtool results. Parse for
+     * MTU, Mac Address, link speed, RX and TX packet counts, add to specific port and return the switch ports.
+     *
+     * @param switchNode switch node object
+     * @return switch ports keyed by name, or null if the switch could not be queried
+     */
+    private Map<String, SwitchPort> getSwitchPorts( SwitchNode switchNode )
+    {
         SwitchSession switchSession = getSession( switchNode );
         String[] portResultArr = null;
         String[] ipAddressResultLines = null;
         String[] fdbResultLines = null;
         String[] lldpResultLines = null;
         String[] portPhysicalPropertiesArr = null;
-        Date runDate = null;
-        SwitchPort port = null;
-        int blockStart = 0, blockEnd = 0;
         Map<String, Set<String>> fdb = new HashMap<String, Set<String>>();
         Map<String, SwitchLinkedPort> lldpDb = new HashMap<String, SwitchLinkedPort>();
-        Map<String, SwitchPort> physicalPortPropertiesDb = new HashMap<String, SwitchPort>();
-        Map<String, String> portIpAddressDb = new HashMap<String, String>();
 
         String[] commandSet = {
             "echo '{password}' | sudo -S lldpcli show neighbors".replaceAll( "\\{password\\}",
@@ -1509,7 +1572,7 @@ public class CumulusTorSwitchService
 
         String[][] combinedOutput = GetMultipleCmdResults( switchSession, commandSet );
 
-        if ( combinedOutput.length < 4 )
+        if ( combinedOutput == null || combinedOutput.length < 4 || combinedOutput[2] == null )
         {
             logger.error( "Failed to retrieve necessary information from switch" );
             return null;
@@ -1522,8 +1585,6 @@ public class CumulusTorSwitchService
         ipAddressResultLines = combinedOutput[3];
         portPhysicalPropertiesArr = combinedOutput[4];
 
-        runDate = new Date( System.currentTimeMillis() );
-
         /*
          * O(N1.log(N1)) loop where N1 = number of lines in forwarding database
          */
@@ -1531,7 +1592,7 @@ public class CumulusTorSwitchService
         {
             for ( String fdbLine : fdbResultLines )
             {
-                Matcher mac2m = Pattern.compile( "^([0-9A-Fa-f]{2}(:[0-9A-Fa-f]{2}){5})" ).matcher( fdbLine.trim() );
+                Matcher mac2m = FDB_MAC_PATTERN.matcher( fdbLine.trim() );
                 if ( mac2m.matches() )
                 {
                     String mac = mac2m.group( 1 ).trim(); /* This is the MAC Address */
@@ -1572,7 +1633,7 @@ public class CumulusTorSwitchService
             SwitchLinkedPort lp = null;
             for ( String lldpLine : lldpResultLines )
             {
-                if ( lldpLine.matches( ".*Interface:.*" ) )
+                if ( lldpLine.contains( "Interface:" ) )
                 {
                     val = lldpLine.split( ":" )[1].trim();
                     portname = val.split( "," )[0];
@@ -1587,12 +1648,12 @@ public class CumulusTorSwitchService
                         lp = lldpDb.get( portname );
                     }
                 }
-                else if ( lldpLine.matches( ".*SysName:.*" ) )
+                else if ( lldpLine.contains( "SysName:" ) )
                 {
                     val = lldpLine.split( ":" )[1].trim();
                     lp.setDeviceName( val );
                 }
-                else if ( lldpLine.matches( "\\s+MgmtIP:.*" ) )
+                else if ( LLDP_MGMT_IP_PATTERN.matcher( lldpLine ).matches() )
                 {
                     String ipAddress = lldpLine.split( ":" )[1].trim();
                     if ( ipAddress != null && ipAddress.length() > 0 && !ipAddress.equals( "0.0.0.0" ) )
@@ -1600,7 +1661,7 @@ public class CumulusTorSwitchService
                         lp.setDeviceName( ipAddress );
                     }
                 }
-                else if ( lldpLine.matches( ".*PortID:.*" ) || lldpLine.matches( ".*ChassisID:.*" ) )
+                else if ( lldpLine.contains( "PortID:" ) || lldpLine.contains( "ChassisID:" ) )
                 {
                     val = lldpLine.split( ":", 2 )[1].trim();
                     /*
@@ -1618,107 +1679,137 @@ public class CumulusTorSwitchService
             }
         }
 
+        Map<String, SwitchPort> physicalPortPropertiesDb = parsePortPhysicalProperties( portPhysicalPropertiesArr );
+        Map<String, String> portIpAddressDb = parsePortIpAddresses( ipAddressResultLines );
+        Map<String, SwitchPort> ports = parsePortLinks( portResultArr, new Date( System.currentTimeMillis() ) );
+
         /*
-         * Parse through physical properties of each port Example: Settings for swp8: Supported ports: [ ] Supported
-         * link modes: Not reported Supported pause frame use: No Supports auto-negotiation: No Advertised link modes:
-         * Not reported Advertised pause frame use: No Advertised auto-negotiation: No Speed: Unknown! Duplex: Half
-         * Port: Twisted Pair PHYAD: 0 Transceiver: internal Auto-negotiation: off MDI-X: Unknown Current message level:
-         * 0x00000000 (0) Link detected: no
+         * O(N3.(log(N1)+log(N2)+log(N4)) loop where N3 = number of ports
          */
-        if ( portPhysicalPropertiesArr != null && portPhysicalPropertiesArr.length > 0 )
+        for ( SwitchPort port : ports.values() )
         {
-            SwitchPort info = null;
-            String portName = null;
-            for ( String aLine : portPhysicalPropertiesArr )
+            String portName = port.getName();
+
+            /*
+             * Conitnue with filling in port with more information
+             */
+            if ( !fdb.isEmpty() )
             {
-                Matcher matcher = phySettingsPattern.matcher( aLine );
-                if ( matcher.matches() )
-                {
-                    int count = matcher.groupCount();
+                port.setLinkedMacAddresses( fdb.get( portName ) );
+            }
 
-                    if ( count < 2 )
-                        continue;/* What is this line anyway? */
+            if ( !lldpDb.isEmpty() )
+            {
+                port.setLinkedPort( lldpDb.get( portName ) );
+            }
 
-                    portName = matcher.group( 2 );
-                    if ( !physicalPortPropertiesDb.containsKey( portName ) )
-                    {
-                        physicalPortPropertiesDb.put( portName, new SwitchPort() );
-                    }
-                    info = physicalPortPropertiesDb.get( portName );
-                }
-                else if ( aLine.matches( ".*Speed:.*" ) )
-                {
-                    String speed = ( aLine.split( ":" )[1] ).trim();
+            /*
+             * Fetch and set physical properties now
+             */
+            if ( physicalPortPropertiesDb.containsKey( portName ) )
+            {
+                copyPortPhysicalProperties( physicalPortPropertiesDb.get( portName ), port );
+            }
 
-                    if ( speed.equals( "40000Mb/s" ) )
-                    {
-                        info.setSpeed( "40G" );
-                    }
-                    else if ( speed.equals( "10000Mb/s" ) )
-                    {
-                        info.setSpeed( "10G" );
-                    }
-                    else if ( speed.equals( "1000Mb/s" ) )
-                    {
-                        info.setSpeed( "1G" );
-                    }
-                    else
-                    {
-                        info.setSpeed( "UNKNOWN" );
-                    }
-                }
-                else if ( aLine.matches( ".*Auto-negotiation:.*" ) )
-                {
-                    String autoneg = ( aLine.split( ":" )[1] ).trim();
+            if ( portIpAddressDb.containsKey( portName ) )
+            {
+                port.setIpAddress( portIpAddressDb.get( portName ) );
+            }
+        }
 
-                    if ( autoneg.equals( "on" ) )
-                        info.setAutoneg( SwitchPort.PortAutoNegMode.ON );
-                    else
-                        info.setAutoneg( SwitchPort.PortAutoNegMode.OFF );
-                }
-                else if ( aLine.matches( ".*Duplex:.*" ) )
-                {
-                    String duplex = ( aLine.split( ":" )[1] ).trim();
+        return ports;
+    }
 
-                    if ( duplex.equals( "half" ) )
-                        info.setDuplex( SwitchPort.PortDuplexMode.HALF );
-                    else
-                        info.setDuplex( SwitchPort.PortDuplexMode.FULL );
-                }
-                else if ( aLine.matches( ".*Link detected:.*" ) )
-                {
-                    String linkDetected = ( aLine.split( ":" )[1] ).trim();
+    /**
+     * Refresh the switch ports from their previous snapshot. Only the port links, counters and ip addresses are read
+     * from the switch, with read only commands. The physical properties of a port are read again only if its link
+     * went up or down, while its LLDP neighbour and forwarding database entries are carried over until the next full
+     * refresh.
+     *
+     * @param switchNode switch node object
+     * @param snapshot previous snapshot of the switch ports
+     * @return switch ports keyed by name, or null if the ports must be fully refreshed
+     */
+    private Map<String, SwitchPort> refreshSwitchPorts( SwitchNode switchNode, CumulusPortSnapshot snapshot )
+    {
+        SwitchSession switchSession = getSession( switchNode );
+        String[] commandSet = { "ip -s link show", "ip -br addr show" };
 
-                    if ( linkDetected.equals( "no" ) )
-                        info.setStatus( PortStatus.DOWN );
-                    else
-                        info.setStatus( PortStatus.UP );
-                }
-            }
+        String[][] combinedOutput = GetMultipleCmdResults( switchSession, commandSet );
+        if ( combinedOutput == null || combinedOutput[0] == null || combinedOutput[1] == null )
+        {
+            logger.warn( "Failed to refresh ports of switch " + switchNode.getSwitchId() + ", refreshing them fully" );
+            return null;
         }
 
-        if ( ipAddressResultLines != null && ipAddressResultLines.length > 0 )
+        Map<String, SwitchPort> ports = parsePortLinks( combinedOutput[0], new Date( System.currentTimeMillis() ) );
+        Map<String, SwitchPort> previousPorts = snapshot.getPorts();
+        if ( !ports.keySet().equals( previousPorts.keySet() ) )
         {
-            for ( String line : ipAddressResultLines )
+            logger.debug( "Ports of switch " + switchNode.getSwitchId() + " changed, refreshing them fully" );
+            return null;
+        }
+
+        List<String> linkChangedPorts = new ArrayList<String>();
+        for ( SwitchPort port : ports.values() )
+        {
+            if ( isLinkUp( port ) != isLinkUp( previousPorts.get( port.getName() ) ) )
             {
-                String tokens[] = line.trim().split( "\\s+" );
+                linkChangedPorts.add( port.getName() );
+            }
+        }
 
-                if ( tokens.length >= 3 )
-                {
-                    portIpAddressDb.put( tokens[0], tokens[2] );
-                }
+        Map<String, SwitchPort> physicalPortPropertiesDb = new HashMap<String, SwitchPort>();
+        if ( !linkChangedPorts.isEmpty() )
+        {
+            String command =
+                ( "for port in " + StringUtils.join( linkChangedPorts, " " )
+                    + "; do echo '{password}' | sudo -S ethtool $port; done" ).replaceAll( "\\{password\\}",
+                                                                                          switchNode.getPassword() );
+            try
+            {
+                String result = switchSession.execute( command );
+                physicalPortPropertiesDb = parsePortPhysicalProperties( result.split( "\n" ) );
+            }
+            catch ( Exception e )
+            {
+                logger.warn( "Failed to get physical properties of ports " + linkChangedPorts + " of switch "
+                    + switchNode.getSwitchId() + ", refreshing them fully", e );
+                return null;
             }
         }
 
-        /*
-         * O(N3.(log(N1)+log(N2)+log(N4)) loop where N3 = number of lines when listing all ports
-         */
-        for ( blockStart = 0, blockEnd = blockStart + 6; blockEnd < portResultArr.length; blockStart += 6, blockEnd +=
-            6 )
+        Map<String, String> portIpAddressDb = parsePortIpAddresses( combinedOutput[1] );
+        for ( SwitchPort port : ports.values() )
         {
+            SwitchPort previousPort = previousPorts.get( port.getName() );
+            port.setLinkedMacAddresses( previousPort.getLinkedMacAddresses() );
+            port.setLinkedPort( previousPort.getLinkedPort() );
+            port.setIpAddress( portIpAddressDb.get( port.getName() ) );
+
+            SwitchPort physicalProperties = physicalPortPropertiesDb.get( port.getName() );
+            copyPortPhysicalProperties( ( physicalProperties != null ) ? physicalProperties : previousPort, port );
+        }
+
+        return ports;
+    }
+
+    /**
+     * Parse the output of 'ip -s link show' into ports, skipping the loopback and logical ports.
+     *
+     * @param portResultArr lines of output
+     * @param runDate timestamp of the port statistics
+     * @return ports keyed by name, in the order listed
+     */
+    private static Map<String, SwitchPort> parsePortLinks( String[] portResultArr, Date runDate )
+    {
+        Map<String, SwitchPort> ports = new LinkedHashMap<String, SwitchPort>();
 
+        for ( int blockStart = 0, blockEnd = blockStart + 6; blockEnd < portResultArr.length; blockStart +=
+            6, blockEnd += 6 )
+        {
             int i = blockStart;
-            port = new SwitchPort(); /* Create new port to start with */
+            SwitchPort port = new SwitchPort(); /* Create new port to start with */
 
             String firstLine = portResultArr[i];
             String secondLine = portResultArr[i + 1];
@@ -1739,7 +1830,7 @@ public class CumulusTorSwitchService
                 continue; /* skip loopback ports */
             }
 
-            if ( !portName.matches( "swp[0-9]+" ) && !portName.matches( "eth[0-9]+" ) )
+            if ( !PHYSICAL_PORT_NAME_PATTERN.matcher( portName ).matches() )
                 continue; /* Skip ports on which are logical */
 
             port.setIfNumber( Integer.parseInt( portArr[0] ) );
@@ -1755,7 +1846,7 @@ public class CumulusTorSwitchService
             }
 
             // Parse flags
-            Matcher m1 = Pattern.compile( "^<([^ ]*)>.*" ).matcher( portArr[2].trim() );
+            Matcher m1 = PORT_FLAGS_PATTERN.matcher( portArr[2].trim() );
 
             if ( m1.matches() )
             {
@@ -1763,14 +1854,14 @@ public class CumulusTorSwitchService
             }
 
             // Parse MTU
-            Matcher m1mtu = Pattern.compile( ".* mtu[ ]+([0-9]+) .*" ).matcher( portArr[2].trim() );
+            Matcher m1mtu = PORT_MTU_PATTERN.matcher( portArr[2].trim() );
             if ( m1mtu.matches() )
             {
                 port.setMtu( Integer.parseInt( m1mtu.group( 1 ) ) );
             }
 
             // Parse MAC address
-            Matcher m2 = Pattern.compile( ".* ([0-9A-Fa-f]{2}(:[0-9A-Fa-f]{2}){5}) .*" ).matcher( secondLine );
+            Matcher m2 = PORT_MAC_PATTERN.matcher( secondLine );
             if ( m2.matches() )
             {
                 port.setMacAddress( m2.group( 1 ).trim() );
@@ -1789,45 +1880,144 @@ public class CumulusTorSwitchService
             port.getStatistics().setTxDroppedPackets( Long.parseLong( txCounts[4] ) );
             port.getStatistics().setTimestamp( runDate );
 
-            /*
-             * Conitnue with filling in port with more information
-             */
-            if ( !fdb.isEmpty() )
-            {
-                port.setLinkedMacAddresses( fdb.get( portName ) );
-            }
+            ports.put( portName, port );
+        }
 
-            if ( !lldpDb.isEmpty() )
-            {
-                port.setLinkedPort( lldpDb.get( portName ) );
-            }
+        return ports;
+    }
 
-            /*
-             * Fetch and set physical properties now
-             */
-            if ( physicalPortPropertiesDb.containsKey( portName ) )
-            {
-                SwitchPort portInfo = physicalPortPropertiesDb.get( portName );
-                port.setAutoneg( portInfo.getAutoneg() );
-                port.setDuplex( portInfo.getDuplex() );
-                port.setSpeed( portInfo.getSpeed() );
-                port.setStatus( portInfo.getStatus() );
-            }
+    /**
+     * Parse through physical properties of each port Example: Settings for swp8: Supported ports: [ ] Supported link
+     * modes: Not reported Supported pause frame use: No Supports auto-negotiation: No Advertised link modes: Not
+     * reported Advertised pause frame use: No Advertised auto-negotiation: No Speed: Unknown! Duplex: Half Port:
+     * Twisted Pair PHYAD: 0 Transceiver: internal Auto-negotiation: off MDI-X: Unknown Current message level:
+     * 0x00000000 (0) Link detected: no
+     *
+     * @param portPhysicalPropertiesArr lines of ethtool output
+     * @return physical properties keyed by port name
+     */
+    private static Map<String, SwitchPort> parsePortPhysicalProperties( String[] portPhysicalPropertiesArr )
+    {
+        Map<String, SwitchPort> physicalPortPropertiesDb = new HashMap<String, SwitchPort>();
 
-            if ( portIpAddressDb.containsKey( portName ) )
+        if ( portPhysicalPropertiesArr != null && portPhysicalPropertiesArr.length > 0 )
+        {
+            SwitchPort info = null;
+            String portName = null;
+            for ( String aLine : portPhysicalPropertiesArr )
             {
-                port.setIpAddress( portIpAddressDb.get( portName ) );
-            }
+                Matcher matcher = PHY_SETTINGS_PATTERN.matcher( aLine );
+                if ( matcher.matches() )
+                {
+                    int count = matcher.groupCount();
+
+                    if ( count < 2 )
+                        continue;/* What is this line anyway? */
+
+                    portName = matcher.group( 2 );
+                    if ( !physicalPortPropertiesDb.containsKey( portName ) )
+                    {
+                        physicalPortPropertiesDb.put( portName, new SwitchPort() );
+                    }
+                    info = physicalPortPropertiesDb.get( portName );
+                }
+                else if ( aLine.contains( "Speed:" ) )
+                {
+                    String speed = ( aLine.split( ":" )[1] ).trim();
+
+                    if ( speed.equals( "40000Mb/s" ) )
+                    {
+                        info.setSpeed( "40G" );
+                    }
+                    else if ( speed.equals( "10000Mb/s" ) )
+                    {
+                        info.setSpeed( "10G" );
+                    }
+                    else if ( speed.equals( "1000Mb/s" ) )
+                    {
+                        info.setSpeed( "1G" );
+                    }
+                    else
+                    {
+                        info.setSpeed( "UNKNOWN" );
+                    }
+                }
+                else if ( aLine.contains( "Auto-negotiation:" ) )
+                {
+                    String autoneg = ( aLine.split( ":" )[1] ).trim();
+
+                    if ( autoneg.equals( "on" ) )
+                        info.setAutoneg( SwitchPort.PortAutoNegMode.ON );
+                    else
+                        info.setAutoneg( SwitchPort.PortAutoNegMode.OFF );
+                }
+                else if ( aLine.contains( "Duplex:" ) )
+                {
+                    String duplex = ( aLine.split( ":" )[1] ).trim();
+
+                    if ( duplex.equals( "half" ) )
+                        info.setDuplex( SwitchPort.PortDuplexMode.HALF );
+                    else
+                        info.setDuplex( SwitchPort.PortDuplexMode.FULL );
+                }
+                else if ( aLine.contains( "Link detected:" ) )
+                {
+                    String linkDetected = ( aLine.split( ":" )[1] ).trim();
 
-            portList.add( port );
+                    if ( linkDetected.equals( "no" ) )
+                        info.setStatus( PortStatus.DOWN );
+                    else
+                        info.setStatus( PortStatus.UP );
+                }
+            }
         }
 
-        if ( portList.size() > 4 )
+        return physicalPortPropertiesDb;
+    }
+
+    /**
+     * Parse the output of 'ip -br addr show'
+     *
+     * @param ipAddressResultLines lines of output
+     * @return ip address keyed by port name
+     */
+    private static Map<String, String> parsePortIpAddresses( String[] ipAddressResultLines )
+    {
+        Map<String, String> portIpAddressDb = new HashMap<String, String>();
+
+        if ( ipAddressResultLines != null && ipAddressResultLines.length > 0 )
         {
-            portsBulkCache.set( switchNode, portList );
+            for ( String line : ipAddressResultLines )
+            {
+                String tokens[] = line.trim().split( "\\s+" );
+
+                if ( tokens.length >= 3 )
+                {
+                    portIpAddressDb.put( tokens[0], tokens[2] );
+                }
+            }
         }
 
-        return ( portList );
+        return portIpAddressDb;
+    }
+
+    private static void copyPortPhysicalProperties( SwitchPort source, SwitchPort port )
+    {
+        port.setAutoneg( source.getAutoneg() );
+        port.setDuplex( source.getDuplex() );
+        port.setSpeed( source.getSpeed() );
+        port.setStatus( source.getStatus() );
+    }
+
+    /**
+     * Check if the port has link, as per its LOWER_UP flag
+     *
+     * @param port switch port
+     * @return true if the link is up
+     */
+    private static boolean isLinkUp( SwitchPort port )
+    {
+        return port.getFlags() != null && Arrays.asList( port.getFlags().split( "," ) ).contains( "LOWER_UP" );
     }
 
     /**
@@ -2131,13 +2321,12 @@ public class CumulusTorSwitchService
     }
 
     @Override
-    public void applySwitchBulkConfigs( SwitchNode switchNode, List<PluginSwitchBulkConfig> switchBulkConfigs )
+    public void applySwitchBulkConfigs( SwitchNode switchNode, final List<PluginSwitchBulkConfig> switchBulkConfigs )
         throws HmsOobNetworkException
     {
-        Configuration configuration = null;
         List<String> allPorts = null;
-        List<String> allSwitchPorts = new ArrayList<String>();
-        List<String> allBonds = null;
+        final List<String> allSwitchPorts = new ArrayList<String>();
+        final List<String> allBonds;
 
         CumulusTorSwitchSession session = (CumulusTorSwitchSession) getSession( switchNode );
 
@@ -2147,18 +2336,6 @@ public class CumulusTorSwitchService
                    HmsOobNetworkErrorCode.SWITCH_UNREACHABLE );
         }
 
-        try
-        {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            session.download( baos, CumulusConstants.INTERFACES_FILE );
-            configuration = Configuration.parse( new ByteArrayInputStream( baos.toByteArray() ) );
-        }
-        catch ( Exception e )
-        {
-            error( "Error in reading/parsing interfaces file on switch " + switchNode.getSwitchId() + ". Reason: "
-                + e.getMessage(), e, HmsOobNetworkErrorCode.INTERNAL_ERROR );
-        }
-
         /*
          * Bulk configs are centered around these
          */
@@ -2175,33 +2352,19 @@ public class CumulusTorSwitchService
             allSwitchPorts.add( port );
         }
 
-        /* Set the configuration */
-        bulkConfigHelper.applySwitchBulkConfig( configuration, switchBulkConfigs, allSwitchPorts, allBonds );
-
-        /* Upload the revised configuration file now */
-        /* Upload the file */
-        ByteArrayInputStream bais = new ByteArrayInputStream( configuration.getString().getBytes() );
-        try
+        /* Set the configuration, the revised configuration file is uploaded and activated with the other changes */
+        CumulusInterfacesWriter.getInstance( switchNode ).write( new CumulusInterfacesWriter.Change()
         {
-            CumulusUtil.validateSourceClause( switchNode );
-            CumulusUtil.uploadAsRoot( switchNode, bais, CumulusConstants.INTERFACES_FILE );
-
-            CumulusUtil.configurePersistenceDirectory( switchNode );
-
-            /* Activate the configuration in the current session */
-            SshExecResult sshExecResult =
-                session.executeEnhanced( CumulusConstants.RELOAD_INTERFACES.replaceAll( "\\{password\\}",
-                                                                                        CumulusUtil.qr( switchNode.getPassword() ) ) );
-            sshExecResult.logIfError( logger );
+            @Override
+            public void apply( Configuration configuration )
+                throws HmsException
+            {
+                bulkConfigHelper.applySwitchBulkConfig( configuration, switchBulkConfigs, allSwitchPorts, allBonds );
+            }
+        } ).throwIfFailed( HmsOobNetworkErrorCode.UPLOAD_FAILED );
 
-            /* Invalidate the cache now */
-            portsBulkCache.setStale( switchNode );
-        }
-        catch ( HmsException e )
-        {
-            throw new HmsOobNetworkException( "Failed to upload new configuration file to switch "
-                + switchNode.getSwitchId() + ". Reason: " + e.getMessage(), e, HmsOobNetworkErrorCode.UPLOAD_FAILED );
-        }
+        /* Invalidate the cache now */
+        portsBulkCache.setStale( switchNode );
     }
 
     @Override
@@ -2888,15 +3051,37 @@ public class CumulusTorSwitchService
     /**
      * Set of variables to gather port list details, os info and hardware information.
      */
-    private static CumulusCache<List<String>> portListCache = new CumulusCache<List<String>>();
+    private static CumulusCache<List<String>> portListCache = new CumulusCache<List<String>>( "portList", 0 );
+
+    private static CumulusCache<List<SwitchPort>> portsBulkCache =
+        new CumulusCache<List<SwitchPort>>( "portsBulk", 30 );
+
+    /** Last snapshot of the ports of each switch, from which the ports are refreshed incrementally */
+    private static ConcurrentMap<SwitchNode, CumulusPortSnapshot> portSnapshots =
+        new ConcurrentHashMap<SwitchNode, CumulusPortSnapshot>();
 
-    private static CumulusCache<List<SwitchPort>> portsBulkCache = new CumulusCache<List<SwitchPort>>( 300 );
+    private static CumulusCache<SwitchOsInfo> osInfoCache = new CumulusCache<SwitchOsInfo>( "osInfo", 0 );
 
-    private static CumulusCache<SwitchOsInfo> osInfoCache = new CumulusCache<SwitchOsInfo>();
+    private static CumulusCache<SwitchHardwareInfo> hwInfoCache =
+        new CumulusCache<SwitchHardwareInfo>( "hwInfo", 0 );
 
-    private static CumulusCache<SwitchHardwareInfo> hwInfoCache = new CumulusCache<SwitchHardwareInfo>();
+    private CumulusCache<List<String>> bondListCache = new CumulusCache<List<String>>( "bondList", 300 );
 
-    private CumulusCache<List<String>> bondListCache = new CumulusCache<List<String>>( 300 );
+    /** Loads the bulk port list, caching it only when the switch reported its ports */
+    private final CumulusCache.Loader<List<SwitchPort>> portsBulkLoader = new CumulusCache.Loader<List<SwitchPort>>()
+    {
+        @Override
+        public List<SwitchPort> load( SwitchNode node )
+        {
+            return loadSwitchPortListBulk( node );
+        }
+
+        @Override
+        public boolean isCacheable( List<SwitchPort> portList )
+        {
+            return portList != null && portList.size() > 4;
+        }
+    };
 
     /**
      * Get Component Event List Get Sensor list (component event list) for a particular sensor component.
@@ -50,6 +50,12 @@ public class CumulusUtil
             return switchSession;
         }
 
+        if ( switchSession != null )
+        {
+            // Stop the background reconnection of the stale session being replaced
+            switchSession.disconnect();
+        }
+
         try
         {
             switchSession = new CumulusTorSwitchSession();
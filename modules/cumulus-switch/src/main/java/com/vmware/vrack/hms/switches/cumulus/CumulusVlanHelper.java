@@ -16,7 +16,6 @@
 package com.vmware.vrack.hms.switches.cumulus;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -124,13 +123,11 @@ public class CumulusVlanHelper
 
         Map<String, SwitchVlan> vlansMap = new HashMap<String, SwitchVlan>();
 
-        CumulusTorSwitchSession session = (CumulusTorSwitchSession) CumulusUtil.getSession( switchNode );
         Configuration configuration = null;
         try
         {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            session.download( baos, CumulusConstants.INTERFACES_FILE );
-            configuration = Configuration.parse( new ByteArrayInputStream( baos.toByteArray() ) );
+            /* Downloaded and parsed only if the interfaces file changed */
+            configuration = CumulusInterfacesWriter.getInstance( switchNode ).getConfiguration();
         }
         catch ( Exception e )
         {
@@ -385,7 +382,7 @@ public class CumulusVlanHelper
      * @throws HmsException Thrown when VLAN has empty/null id or did not have any ports
      */
     /* CL 2.5 and beyond implementation of Create VLAN */
-    private boolean createOrUpdateVlan( SwitchNode switchNode, SwitchVlan vlan )
+    private boolean createOrUpdateVlan( final SwitchNode switchNode, final SwitchVlan vlan )
         throws HmsException
     {
         if ( vlan.getId() == null || vlan.getId().trim().equals( "" ) )
@@ -418,34 +415,16 @@ public class CumulusVlanHelper
             throw new HmsException( "Cannot create/update VLAN without any ports and no IP address." );
         }
 
-        CumulusTorSwitchSession session = (CumulusTorSwitchSession) CumulusUtil.getSession( switchNode );
-        Configuration configuration = null;
-        try
-        {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            session.download( baos, CumulusConstants.INTERFACES_FILE );
-            configuration = Configuration.parse( new ByteArrayInputStream( baos.toByteArray() ) );
-        }
-        catch ( Exception e )
+        /* Coalesced with the other changes to the interfaces file, which is uploaded and reloaded once */
+        CumulusInterfacesWriter.getInstance( switchNode ).write( new CumulusInterfacesWriter.Change()
         {
-            logger.error( "Error in reading/parsing interfaces file on switch " + switchNode.getSwitchId()
-                + ". Reason: " + e.getMessage(), e );
-            return false;
-        }
-
-        configuration = updateVlanConfiguration( vlan, configuration );
-        /* Upload the file */
-        ByteArrayInputStream bais = new ByteArrayInputStream( configuration.getString().getBytes() );
-        CumulusUtil.validateSourceClause( switchNode );
-        CumulusUtil.uploadAsRoot( switchNode, bais, CumulusConstants.INTERFACES_FILE );
-
-        CumulusUtil.configurePersistenceDirectory( switchNode );
-
-        /* Activate the VLAN in the current session */
-        SshExecResult result =
-            session.executeEnhanced( CumulusConstants.RELOAD_INTERFACES.replaceAll( "\\{password\\}",
-                                                                                    CumulusUtil.qr( switchNode.getPassword() ) ) );
-        result.logIfError( logger );
+            @Override
+            public void apply( Configuration configuration )
+                throws HmsException
+            {
+                updateVlanConfiguration( vlan, configuration );
+            }
+        } ).throwIfFailed();
 
         vlansBulkCache.setStale( switchNode );
 
@@ -461,7 +440,7 @@ public class CumulusVlanHelper
      * @return True if update is successful; False if update is unsuccessful
      * @throws HmsException if LACP group name is null or empty
      */
-    public boolean updateLAGOnSwitchPorts( SwitchNode switchNode, SwitchLacpGroup lacpGroup )
+    public boolean updateLAGOnSwitchPorts( final SwitchNode switchNode, final SwitchLacpGroup lacpGroup )
         throws HmsException
     {
         /* Validate the input */
@@ -476,41 +455,24 @@ public class CumulusVlanHelper
             throw new HmsException( "Cannot create LACP group with empty port list." );
         }
 
-        CumulusTorSwitchSession session = (CumulusTorSwitchSession) CumulusUtil.getSession( switchNode );
-        Configuration configuration = null;
-        try
-        {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            session.download( baos, CumulusConstants.INTERFACES_FILE );
-            configuration = Configuration.parse( new ByteArrayInputStream( baos.toByteArray() ) );
-        }
-        catch ( Exception e )
-        {
-            logger.error( "Exception received while parsing interfaces file.", e );
-        }
-
-        try
+        CumulusInterfacesWriter.getInstance( switchNode ).write( new CumulusInterfacesWriter.Change()
         {
-            configuration = updateLAGOnSwitchPorts( lacpGroup, configuration );
-        }
-        catch ( Exception e )
-        {
-            String errMsg = String.format( "Error on Switch %s : %s", switchNode.getSwitchId(), e.getMessage() );
-            throw new HmsOobNetworkException( errMsg, e, HmsOobNetworkErrorCode.ARGUMENT_SYNTAX_ERROR );
-        }
-
-        /* Upload the file */
-        ByteArrayInputStream bais = new ByteArrayInputStream( configuration.getString().getBytes() );
-        CumulusUtil.validateSourceClause( switchNode );
-        CumulusUtil.uploadAsRoot( switchNode, bais, CumulusConstants.INTERFACES_FILE );
-
-        CumulusUtil.configurePersistenceDirectory( switchNode );
-
-        /* Activate the VLAN in the current session */
-        SshExecResult result =
-            session.executeEnhanced( CumulusConstants.RELOAD_INTERFACES.replaceAll( "\\{password\\}",
-                                                                                    CumulusUtil.qr( switchNode.getPassword() ) ) );
-        result.logIfError( logger );
+            @Override
+            public void apply( Configuration configuration )
+                throws HmsException
+            {
+                try
+                {
+                    updateLAGOnSwitchPorts( lacpGroup, configuration );
+                }
+                catch ( Exception e )
+                {
+                    String errMsg =
+                        String.format( "Error on Switch %s : %s", switchNode.getSwitchId(), e.getMessage() );
+                    throw new HmsOobNetworkException( errMsg, e, HmsOobNetworkErrorCode.ARGUMENT_SYNTAX_ERROR );
+                }
+            }
+        } ).throwIfFailed();
 
         return true;
     }
@@ -684,7 +646,7 @@ public class CumulusVlanHelper
         return configuration;
     }
 
-    public boolean deletePortFromVlanConfiguration( SwitchNode switchNode, String vlanId, String port )
+    public boolean deletePortFromVlanConfiguration( SwitchNode switchNode, String vlanId, final String port )
         throws HmsOobNetworkException
     {
         SwitchVlan fromVlan;
@@ -711,50 +673,23 @@ public class CumulusVlanHelper
                                                              switchNode.getSwitchId() ),
                                               HmsOobNetworkErrorCode.ARGUMENT_SYNTAX_ERROR );
 
-        CumulusTorSwitchSession session = (CumulusTorSwitchSession) CumulusUtil.getSession( switchNode );
-        Configuration configuration = null;
-        try
-        {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            session.download( baos, CumulusConstants.INTERFACES_FILE );
-            configuration = Configuration.parse( new ByteArrayInputStream( baos.toByteArray() ) );
-        }
-        catch ( Exception e )
-        {
-            logger.error( "Exception received while parsing interfaces file.", e );
-        }
-
-        // do the real stuff now
-        configuration = deletePortFromVlanConfiguration( fromVlan, configuration, port );
-
-        if ( configuration == null )
-        {
-            throw new HmsOobNetworkException( "Not able to delete port/bond from the mentioned VLAN",
-                                              HmsOobNetworkErrorCode.ARGUMENT_SYNTAX_ERROR );
-        }
-
-        /* Upload the file */
-        ByteArrayInputStream bais = new ByteArrayInputStream( configuration.getString().getBytes() );
-        try
+        final SwitchVlan vlan = fromVlan;
+        CumulusInterfacesWriter.getInstance( switchNode ).write( new CumulusInterfacesWriter.Change()
         {
-            CumulusUtil.validateSourceClause( switchNode );
-            CumulusUtil.uploadAsRoot( switchNode, bais, CumulusConstants.INTERFACES_FILE );
-
-            CumulusUtil.configurePersistenceDirectory( switchNode );
-
-            /* Activate the VLAN in the current session */
-            SshExecResult result =
-                session.executeEnhanced( CumulusConstants.RELOAD_INTERFACES.replaceAll( "\\{password\\}",
-                                                                                        CumulusUtil.qr( switchNode.getPassword() ) ) );
-
-            result.logIfError( logger );
+            @Override
+            public void apply( Configuration configuration )
+                throws HmsException
+            {
+                // do the real stuff now
+                if ( deletePortFromVlanConfiguration( vlan, configuration, port ) == null )
+                {
+                    throw new HmsOobNetworkException( "Not able to delete port/bond from the mentioned VLAN",
+                                                      HmsOobNetworkErrorCode.ARGUMENT_SYNTAX_ERROR );
+                }
+            }
+        } ).throwIfFailed( HmsOobNetworkErrorCode.UPLOAD_FAILED );
 
-            vlansBulkCache.setStale( switchNode );
-        }
-        catch ( HmsException e )
-        {
-            throw new HmsOobNetworkException( e.getMessage(), e, HmsOobNetworkErrorCode.UPLOAD_FAILED );
-        }
+        vlansBulkCache.setStale( switchNode );
 
         return true;
     }
@@ -987,36 +922,21 @@ public class CumulusVlanHelper
 
         logger.debug( "Deleting VLAN " + vlanName + " on switch " + switchNode.getSwitchId() + " ..." );
 
-        CumulusTorSwitchSession session = (CumulusTorSwitchSession) CumulusUtil.getSession( switchNode );
-        Configuration configuration = null;
-        try
-        {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            session.download( baos, CumulusConstants.INTERFACES_FILE );
-            configuration = Configuration.parse( new ByteArrayInputStream( baos.toByteArray() ) );
-        }
-        catch ( Exception e )
-        {
-            logger.error( "Error in reading/parsing interfaces file on switch " + switchNode.getSwitchId()
-                + ". Reason: " + e.getMessage(), e );
-            return false;
-        }
-
-        configuration = deleteVlan( vlan, configuration );
-
-        /* Step 3. Upload the modified configuration */
-        ByteArrayInputStream bais = new ByteArrayInputStream( configuration.getString().getBytes() );
-        CumulusUtil.validateSourceClause( switchNode );
-        CumulusUtil.uploadAsRoot( switchNode, bais, CumulusConstants.INTERFACES_FILE );
-        CumulusUtil.configurePersistenceDirectory( switchNode );
+        /* Remove the VLAN from the configuration, then upload it and de-activate the VLAN in the current session */
+        final SwitchVlan existingVlan = vlan;
+        CumulusInterfacesWriter.Result result =
+            CumulusInterfacesWriter.getInstance( switchNode ).write( new CumulusInterfacesWriter.Change()
+            {
+                @Override
+                public void apply( Configuration configuration )
+                    throws HmsException
+                {
+                    deleteVlan( existingVlan, configuration );
+                }
+            } );
 
         vlansBulkCache.setStale( switchNode );
-
-        /* Step 4. De-activate the VLAN in the current session */
-        SshExecResult result =
-            session.executeEnhanced( CumulusConstants.RELOAD_INTERFACES.replaceAll( "\\{password\\}",
-                                                                                    CumulusUtil.qr( switchNode.getPassword() ) ) );
-        result.logIfError( logger );
+        result.throwIfFailed();
 
         return true;
     }
@@ -1124,6 +1044,6 @@ public class CumulusVlanHelper
 
     private static Logger logger = Logger.getLogger( CumulusVlanHelper.class );
 
-    private CumulusCache<List<SwitchVlan>> vlansBulkCache = new CumulusCache<List<SwitchVlan>>( 300 );
+    private CumulusCache<List<SwitchVlan>> vlansBulkCache = new CumulusCache<List<SwitchVlan>>( "vlansBulk", 300 );
 
 }
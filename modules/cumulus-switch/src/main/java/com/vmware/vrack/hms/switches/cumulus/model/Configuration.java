@@ -18,13 +18,18 @@ package com.vmware.vrack.hms.switches.cumulus.model;
 import org.apache.log4j.Logger;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -39,6 +44,10 @@ public class Configuration
 
     private static Pattern bondPattern = Pattern.compile( "(bond.*|bd-.*|poc.*)" );
 
+    private static Pattern trailingSpacePattern = Pattern.compile( "\\s+$" );
+
+    private static Pattern sviPattern = Pattern.compile( ".*\\.[0-9]+$" );
+
     public List<SwitchPort> switchPorts = new ArrayList<>();
 
     public List<Bridge> bridges = new ArrayList<>();
@@ -56,27 +65,70 @@ public class Configuration
      */
     public String getString()
     {
-        String retString = "# This file generated by EVO-RACK HMS. Please do not edit by hand. \n"
+        StringWriter writer = new StringWriter();
+        try
+        {
+            write( writer );
+        }
+        catch ( IOException e )
+        {
+            // not thrown by StringWriter
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Write the interfaces file, block by block, to the writer, instead of building it as a single string.
+     *
+     * @param writer
+     * @throws IOException
+     */
+    public void write( Writer writer )
+        throws IOException
+    {
+        writer.write( "# This file generated by EVO-RACK HMS. Please do not edit by hand. \n"
             + "# System will not function appropriately if modified by hand\n\n"
-            + "source /etc/network/interfaces.d/hms-port*\n\n";
+            + "source /etc/network/interfaces.d/hms-port*\n\n" );
         for ( ConfigBlock configBlock : switchPorts )
         {
-            retString = retString + configBlock.getString() + "\n\n";
+            writer.write( configBlock.getString() );
+            writer.write( "\n\n" );
         }
 
         for ( ConfigBlock configBlock : svis )
         {
-            retString = retString + configBlock.getString() + "\n\n";
+            writer.write( configBlock.getString() );
+            writer.write( "\n\n" );
         }
 
         for ( ConfigBlock configBlock : bridges )
         {
-            retString = retString + configBlock.getString() + "\n\n";
+            writer.write( configBlock.getString() );
+            writer.write( "\n\n" );
         }
 
         // retString += "# Source all HMS-related artifacts\n" +
         // "source /etc/network/interfaces.d/hms-*\n";
-        return retString;
+        writer.flush();
+    }
+
+    /**
+     * Get the interfaces file as bytes, written directly into the buffer.
+     *
+     * @return bytes of the interfaces file
+     */
+    public byte[] getBytes()
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try
+        {
+            write( new OutputStreamWriter( baos ) );
+        }
+        catch ( IOException e )
+        {
+            // not thrown by ByteArrayOutputStream
+        }
+        return baos.toByteArray();
     }
 
     /**
@@ -166,7 +218,7 @@ public class Configuration
             ConfigBlock previousBlock = null;
             while ( ( aLine = br.readLine() ) != null )
             {
-                aLine = aLine.replaceFirst( "\\s+$", "" );
+                aLine = trailingSpacePattern.matcher( aLine ).replaceFirst( "" );
                 if ( aLine.startsWith( "#" ) || aLine.length() == 0 )
                     continue;
 
@@ -179,7 +231,7 @@ public class Configuration
                     {
                         if ( matcher.group( 1 ).startsWith( "auto" ) )
                         {
-                            if ( matcher.group( 2 ).matches( ".*\\.[0-9]+$" ) )
+                            if ( sviPattern.matcher( matcher.group( 2 ) ).matches() )
                             {
                                 String tokens[] = matcher.group( 2 ).split( "\\." );
                                 Svi svi = new Svi();
@@ -352,43 +404,29 @@ public class Configuration
         if ( bridges != null && bridges.size() > 0 )
             defaultParentBridge = bridges.get( 0 );
 
-        for ( String taggedPort : ports )
+        /*
+         * Index the ports and the slaves of the LAGs by name in a single pass, the first match in the order of the
+         * switch ports wins
+         */
+        Map<String, SwitchPort> switchPortsByName = new HashMap<>();
+        for ( SwitchPort switchPort : switchPorts )
         {
-            SwitchPort taggedSwitchPort = null;
-            for ( SwitchPort switchPort : switchPorts )
-            {
-                if ( switchPort instanceof Bond )
-                {
-                    Bond bond = (Bond) switchPort;
-                    if ( switchPort.name.equals( taggedPort ) )
-                    {
-                        taggedSwitchPort = bond;
-                        break;
-                    }
-                    else
-                    {
-                        for ( SwitchPort slave : bond.slaves )
-                        {
-                            if ( slave.name.equals( taggedPort ) )
-                            {
-                                taggedSwitchPort = bond;
-                                break;
-                            }
-                        }
-                    }
+            if ( !switchPortsByName.containsKey( switchPort.name ) )
+                switchPortsByName.put( switchPort.name, switchPort );
 
-                    if ( taggedSwitchPort != null )
-                        break;
-                }
-                else
+            if ( switchPort instanceof Bond )
+            {
+                for ( SwitchPort slave : ( (Bond) switchPort ).slaves )
                 {
-                    if ( switchPort.name.equals( taggedPort ) )
-                    {
-                        taggedSwitchPort = switchPort;
-                        break;
-                    }
+                    if ( !switchPortsByName.containsKey( slave.name ) )
+                        switchPortsByName.put( slave.name, switchPort );
                 }
             }
+        }
+
+        for ( String taggedPort : ports )
+        {
+            SwitchPort taggedSwitchPort = switchPortsByName.get( taggedPort );
 
             if ( taggedSwitchPort == null )
             {
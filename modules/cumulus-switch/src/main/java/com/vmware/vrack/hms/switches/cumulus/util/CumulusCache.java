@@ -1,6 +1,6 @@
 /* ********************************************************************************
  * CumulusCache.java
- * 
+ *
  * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
 
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
@@ -16,14 +16,25 @@
 package com.vmware.vrack.hms.switches.cumulus.util;
 /**
  * Provides cumulus class the Cumulus Cache object.
- * 
+ *
  * Each cumulus-switch object is created with respect to a cumulus based switch. Using the functionality provided,
- * the cumulus object can be configured to provide interactions with the switch. All the functionality is 
- * displayed in the package of classes. 
+ * the cumulus object can be configured to provide interactions with the switch. All the functionality is
+ * displayed in the package of classes.
  */
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
@@ -31,9 +42,45 @@ import com.vmware.vrack.hms.common.switches.api.SwitchNode;
 
 /**
  * Provides basic implementation for Cumulus's cache.
+ * <p>
+ * The cache is safe for concurrent use. Values looked up through {@link #get(SwitchNode, Loader)} are loaded once per
+ * switch however many callers miss at the same time, and are reloaded in the background shortly before they expire,
+ * so that callers keep being served from the cache. The cache holds at most a bounded number of switches, evicting
+ * the least recently used one, and keeps hit, miss and load statistics per cache name, see {@link #getStatistics()}.
  */
 public class CumulusCache<T>
 {
+    /** Default maximum number of switches held by a cache */
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    /** Fraction of the expiry after which a value is reloaded in the background */
+    private static final double REFRESH_AHEAD_RATIO = 0.8;
+
+    /**
+     * Loads the value of a switch on a cache miss.
+     */
+    public static abstract class Loader<T>
+    {
+        /**
+         * Load value for the provided switch node
+         *
+         * @param node switch node object
+         * @return the value for the switch node
+         */
+        public abstract T load( SwitchNode node );
+
+        /**
+         * Check if a loaded value may be cached. By default, all non null values are cached.
+         *
+         * @param value loaded value
+         * @return true if value is to be cached
+         */
+        public boolean isCacheable( T value )
+        {
+            return value != null;
+        }
+    }
+
     /**
      * CumulusCache constructor - returns itself.
      */
@@ -44,19 +91,85 @@ public class CumulusCache<T>
 
     /**
      * Cumulus Cache constructor - creates cache based on a date of expiry for the cache.
-     * 
+     *
      * @param expiry - set expiry date for object
      */
     public CumulusCache( long expiry )
     {
+        this( null, expiry );
+    }
+
+    /**
+     * Cumulus Cache constructor - creates a named cache, whose statistics are reported under its name.
+     *
+     * @param name name of the cache
+     * @param expiry expiry time in seconds; 0 means never expires
+     */
+    public CumulusCache( String name, long expiry )
+    {
+        this( name, expiry, DEFAULT_MAX_SIZE );
+    }
+
+    /**
+     * Cumulus Cache constructor - creates a named cache holding at most maxSize switches.
+     *
+     * @param name name of the cache
+     * @param expiry expiry time in seconds; 0 means never expires
+     * @param maxSize maximum number of switches held
+     */
+    public CumulusCache( String name, long expiry, int maxSize )
+    {
+        this.name = name;
         this.expiry = expiry;
-        this.cacheMap = new HashMap<SwitchNode, T>();
-        this.cachedTimeMap = new HashMap<SwitchNode, Long>();
+        this.maxSize = Math.max( 1, maxSize );
+        this.cacheMap = new ConcurrentHashMap<SwitchNode, CacheEntry<T>>();
+        this.loadMap = new ConcurrentHashMap<SwitchNode, FutureTask<T>>();
+
+        if ( name == null )
+        {
+            this.stats = new CumulusCacheStats();
+        }
+        else
+        {
+            CumulusCacheStats cacheStats = new CumulusCacheStats();
+            CumulusCacheStats existingStats = statistics.putIfAbsent( name, cacheStats );
+            this.stats = ( existingStats != null ) ? existingStats : cacheStats;
+        }
+    }
+
+    /**
+     * Get statistics of all the named caches
+     *
+     * @return statistics keyed by cache name
+     */
+    public static Map<String, CumulusCacheStats> getStatistics()
+    {
+        return Collections.unmodifiableMap( new HashMap<String, CumulusCacheStats>( statistics ) );
+    }
+
+    /**
+     * Get name of the cache
+     *
+     * @return name of the cache, null if unnamed
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Get statistics of this cache, shared with the caches of the same name
+     *
+     * @return cache statistics
+     */
+    public CumulusCacheStats getStats()
+    {
+        return stats;
     }
 
     /**
      * Get expiry value for cumulus cache object
-     * 
+     *
      * @return long of expiry date
      */
     public long getExpiry()
@@ -66,7 +179,7 @@ public class CumulusCache<T>
 
     /**
      * Set expiry date for a cumulus cache object
-     * 
+     *
      * @param expiry long value for expiry date
      */
     public void setExpiry( long expiry )
@@ -75,73 +188,297 @@ public class CumulusCache<T>
     }
 
     /**
-     * Set(removes) stale date for provided switch node object.
-     * 
+     * Get the maximum number of switches held by the cache
+     *
+     * @return maximum size
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Get the number of switches currently held by the cache
+     *
+     * @return size of the cache
+     */
+    public int size()
+    {
+        return cacheMap.size();
+    }
+
+    /**
+     * Set(removes) stale date for provided switch node object. A load in progress for the node is not cached.
+     *
      * @param node object that contains stale data
      */
-    public void setStale( SwitchNode node )
+    public synchronized void setStale( SwitchNode node )
     {
-        cachedTimeMap.remove( node );
+        loadMap.remove( node );
         cacheMap.remove( node );
     }
 
     /**
      * Check if provided node is stale, or if it is passed expiry of cache.
-     * 
+     *
      * @param node to check if stale
      * @return true/false if Switch node stale
      */
     public boolean isStale( SwitchNode node )
     {
-        long currentTime = System.currentTimeMillis();
-        Long cachedTime = cachedTimeMap.get( node );
-
-        if ( cachedTime == null )
-            return true;
-
-        if ( expiry == 0 ) // never expires
-            return false;
-        else
-            return ( currentTime - cachedTime.longValue() ) > ( expiry * 1000 );
+        return isStale( cacheMap.get( node ) );
     }
 
     /**
      * Get switch node from cache Map
-     * 
+     *
      * @param node object
      * @return Get the value of the node stored in the CacheMap
      */
     public T get( SwitchNode node )
     {
-        if ( isStale( node ) )
+        CacheEntry<T> entry = cacheMap.get( node );
+        if ( isStale( entry ) )
         {
+            stats.recordMiss();
             return null;
         }
         else
         {
-            return cacheMap.get( node );
+            stats.recordHit();
+            entry.lastAccessTime = System.currentTimeMillis();
+            return entry.value;
         }
     }
 
+    /**
+     * Get value of the switch node, loading it on a miss. Concurrent misses for the same node share a single load. A
+     * value close to expiry is returned and reloaded in the background.
+     *
+     * @param node switch node object
+     * @param loader loads the value of the node on a miss
+     * @return the cached or loaded value
+     */
+    public T get( SwitchNode node, Loader<T> loader )
+    {
+        CacheEntry<T> entry = cacheMap.get( node );
+        if ( !isStale( entry ) )
+        {
+            stats.recordHit();
+            entry.lastAccessTime = System.currentTimeMillis();
+            if ( isRefreshDue( entry ) )
+            {
+                refresh( node, loader );
+            }
+            return entry.value;
+        }
+
+        stats.recordMiss();
+        return load( node, loader );
+    }
+
     /**
      * Set(add to) the cacheMap and CacheTimeMap with the provided node
-     * 
+     *
      * @param node to add (switch node)
      * @param data
      */
-    public void set( SwitchNode node, T data )
+    public synchronized void set( SwitchNode node, T data )
+    {
+        // The value set is the latest, so do not let a load in progress overwrite it
+        loadMap.remove( node );
+        put( node, data );
+    }
+
+    private boolean isStale( CacheEntry<T> entry )
+    {
+        if ( entry == null )
+            return true;
+
+        if ( expiry == 0 ) // never expires
+            return false;
+        else
+            return ( System.currentTimeMillis() - entry.cachedTime ) > ( expiry * 1000 );
+    }
+
+    private boolean isRefreshDue( CacheEntry<T> entry )
+    {
+        return expiry > 0
+            && ( System.currentTimeMillis() - entry.cachedTime ) > ( expiry * 1000 * REFRESH_AHEAD_RATIO );
+    }
+
+    /**
+     * Loads the value of the node, or waits for the load already in progress for it.
+     */
+    private T load( final SwitchNode node, final Loader<T> loader )
     {
-        cacheMap.put( node, data );
-        cachedTimeMap.put( node, System.currentTimeMillis() );
+        FutureTask<T> task = new FutureTask<T>( new Callable<T>()
+        {
+            @Override
+            public T call()
+            {
+                return loader.load( node );
+            }
+        } );
+
+        FutureTask<T> inProgress = loadMap.putIfAbsent( node, task );
+        if ( inProgress == null )
+        {
+            inProgress = task;
+            long startTime = System.nanoTime();
+            task.run();
+            T value = null;
+            boolean success = false;
+            try
+            {
+                value = task.get();
+                success = true;
+            }
+            catch ( InterruptedException | ExecutionException e )
+            {
+                // Rethrown to every caller waiting for the load below
+            }
+            stats.recordLoad( System.nanoTime() - startTime, success );
+
+            synchronized ( this )
+            {
+                // Skip caching if the node has been set stale, or set, since the load started
+                if ( loadMap.remove( node, task ) && success && loader.isCacheable( value ) )
+                {
+                    put( node, value );
+                }
+            }
+        }
+
+        try
+        {
+            return inProgress.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException( cause );
+        }
+    }
+
+    private void refresh( final SwitchNode node, final Loader<T> loader )
+    {
+        if ( loadMap.containsKey( node ) )
+        {
+            return;
+        }
+
+        stats.recordRefresh();
+        refreshExecutor.execute( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    load( node, loader );
+                }
+                catch ( RuntimeException e )
+                {
+                    logger.warn( "Error refreshing cache " + name + " for switch " + node.getSwitchId(), e );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Caches the value, evicting expired entries and then the least recently used ones beyond the maximum size.
+     */
+    private void put( SwitchNode node, T data )
+    {
+        cacheMap.put( node, new CacheEntry<T>( data ) );
+
+        if ( cacheMap.size() > maxSize )
+        {
+            SwitchNode lruNode = null;
+            long lruAccessTime = Long.MAX_VALUE;
+            for ( Map.Entry<SwitchNode, CacheEntry<T>> cacheEntry : cacheMap.entrySet() )
+            {
+                if ( isStale( cacheEntry.getValue() ) )
+                {
+                    cacheMap.remove( cacheEntry.getKey() );
+                    stats.recordEviction();
+                }
+                else if ( !cacheEntry.getKey().equals( node )
+                    && cacheEntry.getValue().lastAccessTime < lruAccessTime )
+                {
+                    lruNode = cacheEntry.getKey();
+                    lruAccessTime = cacheEntry.getValue().lastAccessTime;
+                }
+            }
+            if ( cacheMap.size() > maxSize && lruNode != null )
+            {
+                cacheMap.remove( lruNode );
+                stats.recordEviction();
+            }
+        }
+    }
+
+    /**
+     * A cached value along with the time it was cached and last read.
+     */
+    private static class CacheEntry<T>
+    {
+        private final T value;
+
+        private final long cachedTime;
+
+        private volatile long lastAccessTime;
+
+        private CacheEntry( T value )
+        {
+            this.value = value;
+            this.cachedTime = System.currentTimeMillis();
+            this.lastAccessTime = cachedTime;
+        }
     }
 
     /** Variables used to monitor the cumulus cache object that stores the Switch Node data and times */
-    private long expiry; // Expiry time in seconds; 0 means infinity
+    private volatile long expiry; // Expiry time in seconds; 0 means infinity
+
+    private final String name;
+
+    private final int maxSize;
+
+    private final ConcurrentMap<SwitchNode, CacheEntry<T>> cacheMap;
 
-    private volatile Map<SwitchNode, T> cacheMap;
+    private final ConcurrentMap<SwitchNode, FutureTask<T>> loadMap;
 
-    private volatile Map<SwitchNode, Long> cachedTimeMap;
+    private final CumulusCacheStats stats;
+
+    private static final ConcurrentMap<String, CumulusCacheStats> statistics =
+        new ConcurrentHashMap<String, CumulusCacheStats>();
+
+    /** Background reloads; refreshes beyond the queue capacity are dropped, the values then reload on expiry */
+    private static final ExecutorService refreshExecutor =
+        new ThreadPoolExecutor( 2, 2, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>( 64 ), new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "cumulus-cache-refresh" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        }, new ThreadPoolExecutor.DiscardPolicy() );
 
-    @SuppressWarnings( "unused" )
     private static Logger logger = Logger.getLogger( CumulusCache.class );
 }
@@ -0,0 +1,140 @@
+/* ********************************************************************************
+ * CumulusCacheStats.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.switches.cumulus.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit, miss and load statistics of the {@link CumulusCache}s sharing a name.
+ */
+public class CumulusCacheStats
+{
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    public long getLoadCount()
+    {
+        return loadCount.get();
+    }
+
+    public long getLoadFailureCount()
+    {
+        return loadFailureCount.get();
+    }
+
+    public long getRefreshCount()
+    {
+        return refreshCount.get();
+    }
+
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+
+    /**
+     * Get total time spent loading values
+     *
+     * @return total load time in milliseconds
+     */
+    public long getTotalLoadTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( totalLoadTime.get() );
+    }
+
+    /**
+     * Get average time spent loading a value
+     *
+     * @return average load time in milliseconds
+     */
+    public long getAverageLoadTime()
+    {
+        long loads = loadCount.get();
+        return ( loads == 0 ) ? 0 : TimeUnit.NANOSECONDS.toMillis( totalLoadTime.get() / loads );
+    }
+
+    /**
+     * Get ratio of lookups served from the cache
+     *
+     * @return hit ratio between 0 and 1
+     */
+    public double getHitRatio()
+    {
+        long hits = hitCount.get();
+        long lookups = hits + missCount.get();
+        return ( lookups == 0 ) ? 1.0 : ( (double) hits / lookups );
+    }
+
+    void recordHit()
+    {
+        hitCount.incrementAndGet();
+    }
+
+    void recordMiss()
+    {
+        missCount.incrementAndGet();
+    }
+
+    void recordLoad( long loadTimeNanos, boolean success )
+    {
+        loadCount.incrementAndGet();
+        totalLoadTime.addAndGet( loadTimeNanos );
+        if ( !success )
+        {
+            loadFailureCount.incrementAndGet();
+        }
+    }
+
+    void recordRefresh()
+    {
+        refreshCount.incrementAndGet();
+    }
+
+    void recordEviction()
+    {
+        evictionCount.incrementAndGet();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CumulusCacheStats [hits=" + getHitCount() + ", misses=" + getMissCount() + ", loads=" + getLoadCount()
+            + ", loadFailures=" + getLoadFailureCount() + ", refreshes=" + getRefreshCount() + ", evictions="
+            + getEvictionCount() + ", averageLoadTime=" + getAverageLoadTime() + "ms]";
+    }
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong loadCount = new AtomicLong();
+
+    private final AtomicLong loadFailureCount = new AtomicLong();
+
+    private final AtomicLong refreshCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private final AtomicLong totalLoadTime = new AtomicLong();
+}
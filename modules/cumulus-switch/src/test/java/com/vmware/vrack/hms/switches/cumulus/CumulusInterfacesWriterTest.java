@@ -0,0 +1,371 @@
+/* ********************************************************************************
+ * CumulusInterfacesWriterTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.switches.cumulus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.vrack.hms.common.exception.HmsException;
+import com.vmware.vrack.hms.switches.cumulus.model.Configuration;
+import com.vmware.vrack.hms.switches.cumulus.model.SwitchPort;
+
+public class CumulusInterfacesWriterTest
+{
+    private FakeInterfacesFile interfacesFile;
+
+    private CumulusInterfacesWriter writer;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        InputStream is = this.getClass().getClassLoader().getResourceAsStream( "tor-interfaces" );
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ( ( n = is.read( buffer ) ) > 0 )
+        {
+            baos.write( buffer, 0, n );
+        }
+        is.close();
+        interfacesFile = new FakeInterfacesFile( baos.toByteArray() );
+        writer = new CumulusInterfacesWriter( interfacesFile );
+    }
+
+    @Test
+    public void testCoalesce()
+        throws Exception
+    {
+        writer.setCoalesceWindow( 200 );
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final List<CumulusInterfacesWriter.Result> results = new ArrayList<CumulusInterfacesWriter.Result>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for ( final String port : Arrays.asList( "swp10", "swp11", "swp12", "swp13" ) )
+        {
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        return;
+                    }
+                    CumulusInterfacesWriter.Result result = writer.write( addPort( port ) );
+                    synchronized ( results )
+                    {
+                        results.add( result );
+                    }
+                }
+            };
+            thread.start();
+            threads.add( thread );
+        }
+        start.countDown();
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        assertEquals( 4, results.size() );
+        for ( CumulusInterfacesWriter.Result result : results )
+        {
+            assertTrue( result.isSuccess() );
+        }
+        assertEquals( 1, interfacesFile.reads );
+        assertEquals( 1, interfacesFile.writes );
+        assertEquals( 1, interfacesFile.reloads );
+        Configuration configuration = Configuration.parse( new ByteArrayInputStream( interfacesFile.content ) );
+        assertNotNull( configuration.getConfigBlock( "swp10" ) );
+        assertNotNull( configuration.getConfigBlock( "swp13" ) );
+    }
+
+    @Test
+    public void testFailedChangeIsUndone()
+        throws Exception
+    {
+        writer.setCoalesceWindow( 0 );
+        List<CumulusInterfacesWriter.Result> results =
+            writer.write( Arrays.asList( addPort( "swp10" ), new CumulusInterfacesWriter.Change()
+            {
+                @Override
+                public void apply( Configuration configuration )
+                    throws HmsException
+                {
+                    addPort( "swp11" ).apply( configuration );
+                    throw new HmsException( "invalid change" );
+                }
+            }, addPort( "swp12" ) ) );
+
+        assertTrue( results.get( 0 ).isSuccess() );
+        assertFalse( results.get( 1 ).isSuccess() );
+        assertEquals( "invalid change", results.get( 1 ).getError().getMessage() );
+        assertTrue( results.get( 2 ).isSuccess() );
+        assertEquals( 1, interfacesFile.writes );
+        Configuration configuration = Configuration.parse( new ByteArrayInputStream( interfacesFile.content ) );
+        assertNotNull( configuration.getConfigBlock( "swp10" ) );
+        assertNull( configuration.getConfigBlock( "swp11" ) );
+        assertNotNull( configuration.getConfigBlock( "swp12" ) );
+    }
+
+    @Test
+    public void testRollback()
+        throws Exception
+    {
+        writer.setCoalesceWindow( 0 );
+        byte[] original = interfacesFile.content;
+        interfacesFile.failReloads = 1;
+
+        CumulusInterfacesWriter.Result result = writer.write( addPort( "swp10" ) );
+
+        assertFalse( result.isSuccess() );
+        assertEquals( 2, interfacesFile.writes );
+        assertEquals( 2, interfacesFile.reloads );
+        assertArrayEquals( original, interfacesFile.content );
+    }
+
+    @Test
+    public void testNoChange()
+        throws Exception
+    {
+        writer.setCoalesceWindow( 0 );
+        CumulusInterfacesWriter.Result result = writer.write( new CumulusInterfacesWriter.Change()
+        {
+            @Override
+            public void apply( Configuration configuration )
+            {
+            }
+        } );
+
+        assertTrue( result.isSuccess() );
+        assertEquals( 1, interfacesFile.reads );
+        assertEquals( 0, interfacesFile.writes );
+        assertEquals( 0, interfacesFile.reloads );
+    }
+
+    @Test
+    public void testConfigurationCache()
+        throws Exception
+    {
+        writer.setCoalesceWindow( 0 );
+        Configuration configuration = writer.getConfiguration();
+        assertNotNull( configuration.getConfigBlock( "swp1" ) );
+        assertTrue( configuration == writer.getConfiguration() );
+        assertEquals( 1, interfacesFile.reads );
+
+        /* Unchanged on the switch, and then written by the writer, no need to read it again */
+        assertTrue( writer.write( addPort( "swp10" ) ).isSuccess() );
+        assertNotNull( writer.getConfiguration().getConfigBlock( "swp10" ) );
+        assertEquals( 1, interfacesFile.reads );
+
+        /* Changed on the switch */
+        Configuration changed = Configuration.parse( new ByteArrayInputStream( interfacesFile.content ) );
+        changed.addConfigBlock( changed.convertToSwitchPorts( Arrays.asList( "swp11" ) ).get( 0 ) );
+        interfacesFile.content = changed.getBytes();
+        assertNotNull( writer.getConfiguration().getConfigBlock( "swp11" ) );
+        assertEquals( 2, interfacesFile.reads );
+    }
+
+    @Test
+    public void testInterruptedCallerWaitsForCommit()
+        throws Exception
+    {
+        writer.setCoalesceWindow( 0 );
+        final List<CumulusInterfacesWriter.Result> results = new ArrayList<CumulusInterfacesWriter.Result>();
+        final boolean[] interrupted = new boolean[1];
+
+        Thread committer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                writer.write( addPort( "swp10" ) );
+            }
+        };
+        Thread waiter = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                CumulusInterfacesWriter.Result result = writer.write( addPort( "swp11" ) );
+                synchronized ( results )
+                {
+                    results.add( result );
+                    interrupted[0] = Thread.currentThread().isInterrupted();
+                }
+            }
+        };
+
+        /* The first change holds the transaction, blocked on the configuration lock */
+        Thread.State waiterState;
+        interfacesFile.lock.lock();
+        try
+        {
+            committer.start();
+            while ( !interfacesFile.lock.hasQueuedThreads() )
+            {
+                Thread.sleep( 10 );
+            }
+            waiter.start();
+            while ( waiter.getState() != Thread.State.WAITING )
+            {
+                Thread.sleep( 10 );
+            }
+
+            /* Keeps waiting for the commit instead of spinning */
+            waiter.interrupt();
+            Thread.sleep( 100 );
+            waiterState = waiter.getState();
+        }
+        finally
+        {
+            interfacesFile.lock.unlock();
+        }
+        committer.join();
+        waiter.join();
+
+        assertEquals( Thread.State.WAITING, waiterState );
+        synchronized ( results )
+        {
+            assertEquals( 1, results.size() );
+            assertTrue( results.get( 0 ).isSuccess() );
+            assertTrue( interrupted[0] );
+        }
+        Configuration configuration = Configuration.parse( new ByteArrayInputStream( interfacesFile.content ) );
+        assertNotNull( configuration.getConfigBlock( "swp11" ) );
+    }
+
+    @Test
+    public void testWriteMatchesString()
+        throws Exception
+    {
+        Configuration configuration = Configuration.parse( new ByteArrayInputStream( interfacesFile.content ) );
+        assertArrayEquals( configuration.getString().getBytes(), configuration.getBytes() );
+    }
+
+    private static CumulusInterfacesWriter.Change addPort( final String portName )
+    {
+        return new CumulusInterfacesWriter.Change()
+        {
+            @Override
+            public void apply( Configuration configuration )
+            {
+                List<SwitchPort> ports = configuration.convertToSwitchPorts( Arrays.asList( portName ) );
+                configuration.addConfigBlock( ports.get( 0 ) );
+            }
+        };
+    }
+
+    private static class FakeInterfacesFile
+        implements CumulusInterfacesWriter.InterfacesFile
+    {
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private volatile byte[] content;
+
+        private int reads;
+
+        private int writes;
+
+        private int reloads;
+
+        private int failReloads;
+
+        private FakeInterfacesFile( byte[] content )
+        {
+            this.content = content;
+        }
+
+        @Override
+        public String getSwitchId()
+        {
+            return "S1";
+        }
+
+        @Override
+        public Lock getLock()
+        {
+            return lock;
+        }
+
+        @Override
+        public byte[] read()
+        {
+            reads++;
+            return content;
+        }
+
+        @Override
+        public String getChecksum()
+        {
+            try
+            {
+                StringBuilder sb = new StringBuilder();
+                for ( byte b : MessageDigest.getInstance( "MD5" ).digest( content ) )
+                {
+                    sb.append( String.format( "%02x", b ) );
+                }
+                return sb.toString();
+            }
+            catch ( NoSuchAlgorithmException e )
+            {
+                throw new IllegalStateException( e );
+            }
+        }
+
+        @Override
+        public void write( byte[] content )
+        {
+            writes++;
+            this.content = content;
+        }
+
+        @Override
+        public void reload()
+            throws HmsException
+        {
+            reloads++;
+            if ( failReloads > 0 )
+            {
+                failReloads--;
+                throw new HmsException( "ifreload failed" );
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/* ********************************************************************************
+ * CumulusPortSnapshotTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.switches.cumulus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.vmware.vrack.hms.common.switches.api.SwitchPort;
+
+public class CumulusPortSnapshotTest
+{
+    @Test
+    public void testDelta()
+    {
+        CumulusPortSnapshot snapshot = new CumulusPortSnapshot( ports( 100, 200 ) );
+        CumulusPortListDelta delta = snapshot.getDelta( 0 );
+        assertTrue( delta.isComplete() );
+        assertEquals( 2, delta.getChangedPorts().size() );
+
+        long version = delta.getVersion();
+        CumulusPortSnapshot unchanged = snapshot.update( ports( 100, 200 ), false );
+        assertEquals( version, unchanged.getVersion() );
+        assertTrue( unchanged.getDelta( version ).getChangedPorts().isEmpty() );
+
+        CumulusPortSnapshot changed = unchanged.update( ports( 100, 201 ), false );
+        delta = changed.getDelta( version );
+        assertFalse( delta.isComplete() );
+        assertEquals( 1, delta.getChangedPorts().size() );
+        assertEquals( "swp2", delta.getChangedPorts().get( 0 ).getName() );
+        assertEquals( 2, delta.getPorts().size() );
+
+        Map<String, SwitchPort> removed = ports( 100, 201 );
+        removed.remove( "swp2" );
+        delta = changed.update( removed, true ).getDelta( version );
+        assertEquals( 1, delta.getRemovedPorts().size() );
+        assertEquals( "swp2", delta.getRemovedPorts().get( 0 ) );
+    }
+
+    @Test
+    public void testUnknownVersion()
+    {
+        CumulusPortSnapshot snapshot = new CumulusPortSnapshot( ports( 100, 200 ) );
+        CumulusPortListDelta delta = snapshot.getDelta( snapshot.getVersion() + 1 );
+        assertTrue( delta.isComplete() );
+        assertSame( delta.getPorts(), snapshot.getPortList() );
+        assertEquals( 2, delta.getChangedPorts().size() );
+    }
+
+    private Map<String, SwitchPort> ports( long swp1Packets, long swp2Packets )
+    {
+        Map<String, SwitchPort> ports = new LinkedHashMap<String, SwitchPort>();
+        ports.put( "swp1", port( "swp1", swp1Packets ) );
+        ports.put( "swp2", port( "swp2", swp2Packets ) );
+        return ports;
+    }
+
+    private SwitchPort port( String name, long rxPackets )
+    {
+        SwitchPort port = new SwitchPort();
+        port.setName( name );
+        port.setFlags( "BROADCAST,MULTICAST,UP,LOWER_UP" );
+        port.getStatistics().setRxReceivedPackets( rxPackets );
+        return port;
+    }
+}
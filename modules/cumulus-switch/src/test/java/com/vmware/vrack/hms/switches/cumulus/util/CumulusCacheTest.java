@@ -17,6 +17,12 @@ package com.vmware.vrack.hms.switches.cumulus.util;
 
 import static org.junit.Assert.*;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -67,5 +73,70 @@ public class CumulusCacheTest
         }
     }
 
+    @Test
+    public void testCumulusCacheSingleFlight()
+        throws Exception
+    {
+        final CumulusCache<String> stringCache = new CumulusCache<String>( "testSingleFlight", 300 );
+        final AtomicInteger loadCount = new AtomicInteger();
+        final CountDownLatch loadStarted = new CountDownLatch( 1 );
+        final CountDownLatch releaseLoad = new CountDownLatch( 1 );
+        final CumulusCache.Loader<String> loader = new CumulusCache.Loader<String>()
+        {
+            @Override
+            public String load( SwitchNode node )
+            {
+                loadCount.incrementAndGet();
+                loadStarted.countDown();
+                try
+                {
+                    releaseLoad.await( 10, TimeUnit.SECONDS );
+                }
+                catch ( InterruptedException e )
+                {
+                }
+                return "Loaded item";
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        for ( int i = 0; i < 4; i++ )
+        {
+            executor.execute( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    assertEquals( "Loaded item", stringCache.get( s1, loader ) );
+                }
+            } );
+        }
+        assertTrue( loadStarted.await( 10, TimeUnit.SECONDS ) );
+        releaseLoad.countDown();
+        executor.shutdown();
+        assertTrue( executor.awaitTermination( 10, TimeUnit.SECONDS ) );
+
+        assertEquals( "Loaded item", stringCache.get( s1, loader ) );
+        assertEquals( 1, loadCount.get() );
+
+        CumulusCacheStats stats = CumulusCache.getStatistics().get( "testSingleFlight" );
+        assertEquals( 1, stats.getLoadCount() );
+        assertEquals( 5, stats.getHitCount() + stats.getMissCount() );
+    }
+
+    @Test
+    public void testCumulusCacheMaxSize()
+    {
+        CumulusCache<String> stringCache = new CumulusCache<String>( "testMaxSize", 0, 1 );
+
+        stringCache.set( s1, "Cached item" );
+        stringCache.set( s2, "Cached data" );
+
+        assertEquals( 1, stringCache.size() );
+        assertNull( stringCache.get( s1 ) );
+        assertNotNull( stringCache.get( s2 ) );
+        assertEquals( 1, stringCache.getStats().getEvictionCount() );
+    }
+
     private SwitchNode s1, s2;
 }
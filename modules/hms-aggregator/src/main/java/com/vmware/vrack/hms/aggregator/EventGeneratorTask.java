@@ -27,6 +27,7 @@ import com.vmware.vrack.hms.aggregator.switches.ManagementSwitchUpDownEventHelpe
 import com.vmware.vrack.hms.aggregator.util.FruIdEventsHelperUtil;
 import com.vmware.vrack.hms.aggregator.util.HostUpDownEventAggregator;
 import com.vmware.vrack.hms.aggregator.util.MonitoringUtil;
+import com.vmware.vrack.hms.aggregator.util.OobComponentEventsCache;
 import com.vmware.vrack.hms.aggregator.util.SpringContextHelper;
 import com.vmware.vrack.hms.common.boardvendorservice.api.IComponentEventInfoProvider;
 import com.vmware.vrack.hms.common.events.EventMonitoringSubscriptionHolder;
@@ -76,7 +77,16 @@ public class EventGeneratorTask
             {
                 if ( InventoryLoader.getInstance().getOOBSupportedServerComponents( serverNode.getNodeID() ) != null
                     && InventoryLoader.getInstance().getOOBSupportedServerComponents( serverNode.getNodeID() ).contains( component.getComponentSensorAPI() ) )
+                {
+                    List<Event> events =
+                        OobComponentEventsCache.getInstance().getEvents( serverNode.getNodeID(),
+                                                                         component.getEventComponent() );
+                    if ( events != null )
+                    {
+                        return events;
+                    }
                     return MonitoringUtil.getOnDemandEventsOOB( serverNode.getNodeID(), component );
+                }
             }
             else
             {
@@ -254,6 +264,12 @@ public class EventGeneratorTask
     {
         try
         {
+            List<Event> events =
+                OobComponentEventsCache.getInstance().getEvents( switchId, component.getEventComponent() );
+            if ( events != null )
+            {
+                return events;
+            }
             return MonitoringUtil.getOnDemandSwitchEventsOOB( switchId, component );
         }
         catch ( Exception e )
@@ -41,6 +41,7 @@ import com.vmware.vrack.hms.common.servernodes.api.ServerComponent;
 import com.vmware.vrack.hms.common.servernodes.api.ServerNode;
 import com.vmware.vrack.hms.common.servernodes.api.ServerNodePowerStatus;
 import com.vmware.vrack.hms.common.util.Constants;
+import com.vmware.vrack.hms.inventory.HmsDataCache;
 import com.vmware.vrack.hms.inventory.InventoryLoader;
 import com.vmware.vrack.hms.inventory.ServerDataChangeMessage;
 
@@ -55,6 +56,9 @@ public class HostDataAggregator
     @Autowired
     private ApplicationContext context;
 
+    @Autowired
+    private HmsDataCache hmsDataCache;
+
     @Value( "${esxi.ssh.retry.count}" )
     private int sshRetryCount;
 
@@ -129,7 +133,8 @@ public class HostDataAggregator
 
     /**
      * Get Server Node power status and also publish it so that cache holding HMSDataCache can be updated for Node's
-     * Power status
+     * Power status. The given server info, if any, is the cached one: it is updated in place and gets a new cache
+     * version if its power status changed.
      *
      * @param nodeId
      * @param serverInfo
@@ -140,11 +145,15 @@ public class HostDataAggregator
         throws HmsException
     {
 
+        boolean cached = ( serverInfo != null );
         if ( serverInfo == null )
         {
             serverInfo = new ServerInfo();
             serverInfo.setNodeId( nodeId );
         }
+        boolean wasDiscoverable = serverInfo.isDiscoverable();
+        boolean wasPowered = serverInfo.isPowered();
+        FruOperationalStatus previousOperationalStatus = serverInfo.getOperationalStatus();
 
         ServerNodePowerStatus serverNodePowerStatus = new ServerNodePowerStatus();
         try
@@ -184,6 +193,12 @@ public class HostDataAggregator
 
         }
 
+        if ( cached && ( wasDiscoverable != serverInfo.isDiscoverable() || wasPowered != serverInfo.isPowered()
+            || previousOperationalStatus != serverInfo.getOperationalStatus() ) )
+        {
+            hmsDataCache.touchServerInfo( nodeId );
+        }
+
         // Check for SERVER_UP/DOWN events
         // If zero count for the Host's power related events are returned, means
         // there is NO power state change.
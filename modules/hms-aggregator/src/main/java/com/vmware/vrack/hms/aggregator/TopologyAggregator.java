@@ -1,6 +1,6 @@
 /* ********************************************************************************
  * TopologyAggregator.java
- * 
+ *
  * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
 
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
@@ -15,14 +15,16 @@
  * *******************************************************************************/
 package com.vmware.vrack.hms.aggregator;
 
-import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -32,16 +34,17 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.HttpStatusCodeException;
 
 import com.vmware.vrack.hms.aggregator.switches.HmsSwitchManager;
 import com.vmware.vrack.hms.aggregator.topology.HostNameRetreival;
 import com.vmware.vrack.hms.aggregator.topology.TopologySingleNodeBulkPortsProcessor;
 import com.vmware.vrack.hms.aggregator.topology.TopologySingleNodeBulkValnsProcessor;
 import com.vmware.vrack.hms.aggregator.topology.object.CumulativeObject;
+import com.vmware.vrack.hms.aggregator.topology.object.NetworkTopologySnapshot;
 import com.vmware.vrack.hms.common.exception.HMSRestException;
 import com.vmware.vrack.hms.common.servernodes.api.ServerNode;
 import com.vmware.vrack.hms.common.servernodes.api.esxinfo.HostNameInfo;
@@ -50,6 +53,12 @@ import com.vmware.vrack.hms.common.switches.api.SwitchVlan;
 import com.vmware.vrack.hms.common.topology.NetTopElement;
 import com.vmware.vrack.hms.inventory.InventoryLoader;
 
+/**
+ * Keeps the network topology of the rack, i.e. the ports of the switches with their LLDP neighbours and VLANs, in
+ * memory, and serves it from an immutable snapshot. On each request, only the switches which are new, were invalidated
+ * by a switch event or were not refreshed for the refresh interval are read from the HMS OOB agent again, and a new
+ * snapshot is only created when the topology changed.
+ */
 @Component
 public class TopologyAggregator
 {
@@ -63,11 +72,38 @@ public class TopologyAggregator
 
     ExecutorService executor = Executors.newFixedThreadPool( 50 );
 
-    Set<Future<CumulativeObject>> set = new HashSet<Future<CumulativeObject>>();
-
     @Autowired
     HmsSwitchManager switchManager;
 
+    @Value( "${hms.topology.refresh.interval.ms:300000}" )
+    private long refreshInterval;
+
+    /** Makes the entity tags of the snapshots unique across restarts of the aggregator */
+    private final String etagPrefix = Long.toHexString( System.currentTimeMillis() );
+
+    private final Object refreshLock = new Object();
+
+    /** Switches to read again on the next request, as reported by switch events */
+    private final Set<String> dirtySwitches =
+        Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
+    private volatile boolean hostNamesDirty;
+
+    /** Topology of each switch, keyed by switch id. Guarded by refreshLock. */
+    private final Map<String, SwitchTopology> switches = new TreeMap<String, SwitchTopology>();
+
+    /** Host names of the nodes, null for nodes whose host name could not be read. Guarded by refreshLock. */
+    private final Map<String, HostNameInfo> hostNames = new HashMap<String, HostNameInfo>();
+
+    /** Host names and FQDNs of the nodes mapped to their node ids. Guarded by refreshLock. */
+    private Map<String, String> hostName2NodeIdMap = new HashMap<String, String>();
+
+    private long hostNamesRefreshTime;
+
+    private long version;
+
+    private volatile NetworkTopologySnapshot snapshot;
+
     public TopologyAggregator()
     {
     }
@@ -76,89 +112,132 @@ public class TopologyAggregator
                                                    HttpServletResponse response )
         throws HMSRestException
     {
-        URI uri = null;
-        Map<String, NetTopElement> db = new HashMap<String, NetTopElement>();
-        NetTopElement elem = null, connElem = null;
-        List<NetTopElement> netTopList = new ArrayList<NetTopElement>();
-        List<String> torSwitchList = null;
-        Map<String, String> ipAddress2NodeIdMap = new HashMap<String, String>();
+        return getNetworkTopologySnapshot().getElements();
+    }
 
-        logger.debug( "START Network topology creation." );
+    /**
+     * Gets the current network topology, after refreshing the switches and hosts whose data may have changed. Requests
+     * arriving during a refresh wait for it and are served its result.
+     *
+     * @return
+     * @throws HMSRestException
+     */
+    public NetworkTopologySnapshot getNetworkTopologySnapshot()
+        throws HMSRestException
+    {
+        synchronized ( refreshLock )
+        {
+            refresh();
+            return snapshot;
+        }
+    }
+
+    /**
+     * Marks the ports and VLANs of the switch to be read again on the next request.
+     *
+     * @param switchId
+     */
+    public void invalidateSwitch( String switchId )
+    {
+        if ( switchId != null )
+        {
+            dirtySwitches.add( switchId );
+        }
+    }
+
+    /**
+     * Marks the host names of all nodes to be read again on the next request.
+     */
+    public void invalidateHostNames()
+    {
+        hostNamesDirty = true;
+    }
+
+    private void refresh()
+        throws HMSRestException
+    {
+        long startTime = System.currentTimeMillis();
 
         /* Get all switch ids first */
+        List<String> torSwitchList = null;
         try
         {
             torSwitchList = switchManager.getAllSwitchIds();
         }
         catch ( Exception e )
+        {
+            logger.error( "Exception while getting the switch list for the network topology", e );
+        }
+        if ( torSwitchList == null )
         {
             throw new HMSRestException( HttpStatus.INTERNAL_SERVER_ERROR.value(), "Server Error",
-                                        "Exception while connecting to hms."
-                                            + ( ( uri != null ) ? uri.toString() : "" ) );
+                                        "Exception while getting the switch list from hms." );
         }
 
-        logger.debug( "DONE processing switch list." );
-
-        HashMap<String, SwitchPort[]> switchPortBulk = new HashMap<String, SwitchPort[]>();
-        HashMap<String, SwitchVlan[]> switchVlanBulk = new HashMap<String, SwitchVlan[]>();
+        boolean changed = switches.keySet().retainAll( torSwitchList );
+        List<Future<CumulativeObject>> futures = new ArrayList<Future<CumulativeObject>>();
 
         /**
-         * Processing for all hosts for host names
+         * Processing for the new hosts, or all of them once they are stale, for host names
          */
         Map<String, ServerNode> nodeMap = InventoryLoader.getInstance().getNodeMap();
-        if ( nodeMap != null )
+        if ( nodeMap == null )
+        {
+            nodeMap = Collections.emptyMap();
+        }
+        changed |= hostNames.keySet().retainAll( nodeMap.keySet() );
+        boolean refreshAllHostNames = hostNamesDirty || startTime - hostNamesRefreshTime >= refreshInterval;
+        if ( refreshAllHostNames )
+        {
+            hostNamesDirty = false;
+            hostNamesRefreshTime = startTime;
+        }
+        for ( ServerNode node : nodeMap.values() )
         {
-            for ( ServerNode node : nodeMap.values() )
+            if ( refreshAllHostNames || !hostNames.containsKey( node.getNodeID() ) )
             {
-                Callable<CumulativeObject> resultHostName = new HostNameRetreival( node );
-                Future<CumulativeObject> futureBulkPort = executor.submit( resultHostName );
-                set.add( futureBulkPort );
+                futures.add( executor.submit( new HostNameRetreival( node ) ) );
             }
         }
 
-        logger.debug( "DONE processing all host names." );
-
         /**
-         * Processing for all switches for port stats and vlan bulk
+         * Processing for the new, invalidated or stale switches for port stats and vlan bulk
          */
-
+        Set<String> refreshedSwitches = new HashSet<String>();
         for ( String node : torSwitchList )
         {
-            Callable<CumulativeObject> resultBulkPort = new TopologySingleNodeBulkPortsProcessor( node );
-            Callable<CumulativeObject> resultBulkVlans = new TopologySingleNodeBulkValnsProcessor( node );
-            Future<CumulativeObject> futureBulkPort = executor.submit( resultBulkPort );
-            Future<CumulativeObject> futureBulkVlan = executor.submit( resultBulkVlans );
-            set.add( futureBulkPort );
-            set.add( futureBulkVlan );
+            SwitchTopology switchTopology = switches.get( node );
+            if ( dirtySwitches.remove( node ) || switchTopology == null
+                || startTime - switchTopology.refreshTime >= refreshInterval )
+            {
+                refreshedSwitches.add( node );
+                futures.add( executor.submit( new TopologySingleNodeBulkPortsProcessor( node ) ) );
+                futures.add( executor.submit( new TopologySingleNodeBulkValnsProcessor( node ) ) );
+            }
         }
-        for ( Future<CumulativeObject> future : set )
+
+        Map<String, SwitchPort[]> switchPortBulk = new HashMap<String, SwitchPort[]>();
+        Map<String, SwitchVlan[]> switchVlanBulk = new HashMap<String, SwitchVlan[]>();
+        for ( Future<CumulativeObject> future : futures )
         {
-            CumulativeObject output = null;
             try
             {
-                output = future.get();
-                if ( output != null )
+                CumulativeObject output = future.get();
+                if ( output == null )
                 {
-                    if ( output.getQueryType().equals( PORTSBULK ) )
-                    {
-                        switchPortBulk.put( output.getNodeName(), (SwitchPort[]) output.getObject() );
-                    }
-                    else if ( output.getQueryType().equals( HOSTNAME ) )
-                    {
-                        HostNameInfo hostnameInfo = (HostNameInfo) output.getObject();
-                        String nodeId = output.getNodeName();
-                        ipAddress2NodeIdMap.put( hostnameInfo.getHostName(), nodeId );
-                        ipAddress2NodeIdMap.put( hostnameInfo.getFullyQualifiedDomainName(), nodeId );
-                        logger.debug( "Inserting (" + hostnameInfo.getHostName() + ", " + nodeId
-                            + ") into the IP address map." );
-                        logger.debug( "Inserting (" + hostnameInfo.getFullyQualifiedDomainName() + ", " + nodeId
-                            + ") into the IP address map." );
-                    }
-
-                    else
-                    {
-                        switchVlanBulk.put( output.getNodeName(), (SwitchVlan[]) output.getObject() );
-                    }
+                    continue;
+                }
+                if ( output.getQueryType().equals( PORTSBULK ) )
+                {
+                    switchPortBulk.put( output.getNodeName(), (SwitchPort[]) output.getObject() );
+                }
+                else if ( output.getQueryType().equals( HOSTNAME ) )
+                {
+                    hostNames.put( output.getNodeName(), (HostNameInfo) output.getObject() );
+                }
+                else
+                {
+                    switchVlanBulk.put( output.getNodeName(), (SwitchVlan[]) output.getObject() );
                 }
             }
             catch ( Exception e )
@@ -167,135 +246,205 @@ public class TopologyAggregator
             }
         }
 
-        try
+        Map<String, String> newHostName2NodeIdMap = getHostName2NodeIdMap( hostNames );
+        boolean hostNamesChanged = !newHostName2NodeIdMap.equals( hostName2NodeIdMap );
+        hostName2NodeIdMap = newHostName2NodeIdMap;
+
+        for ( String node : torSwitchList )
         {
-            for ( String node : torSwitchList )
+            SwitchTopology switchTopology = switches.get( node );
+            if ( refreshedSwitches.contains( node ) )
             {
+                if ( switchTopology == null )
+                {
+                    switchTopology = new SwitchTopology();
+                    switches.put( node, switchTopology );
+                }
+                if ( switchPortBulk.containsKey( node ) )
+                {
+                    switchTopology.ports = switchPortBulk.get( node );
+                }
+                if ( switchVlanBulk.containsKey( node ) )
+                {
+                    switchTopology.vlans = switchVlanBulk.get( node );
+                }
+                if ( switchPortBulk.containsKey( node ) && switchVlanBulk.containsKey( node ) )
+                {
+                    switchTopology.refreshTime = startTime;
+                }
+                else
+                {
+                    // Keep what is known of the switch, and read it again on the next request
+                    logger.warn( "Unable to refresh the topology of switch " + node );
+                    dirtySwitches.add( node );
+                }
+            }
+            else if ( !hostNamesChanged )
+            {
+                continue;
+            }
+
+            List<NetTopElement> elements =
+                getSwitchElements( node, switchTopology.ports, switchTopology.vlans, hostName2NodeIdMap );
+            String signature = getSignature( elements );
+            if ( !signature.equals( switchTopology.signature ) )
+            {
+                switchTopology.elements = elements;
+                switchTopology.signature = signature;
+                changed = true;
+            }
+        }
 
-                /*
-                 * First get list of all the ports configured on the switch uri = new URI( "http", null, hmsIpAddr,
-                 * hmsPort, "/api/1.0/hms/switches/{nodeName}/portsbulk".replaceAll("\\{nodeName\\}", node), null,
-                 * null); RestTemplate restTemplate = new RestTemplate(); HttpHeaders headers = new HttpHeaders();
-                 * headers.add("Accept","application/json"); HttpEntity<Object> entity = new HttpEntity<Object>(null,
-                 * headers); ParameterizedTypeReference<SwitchPort[]> typeRef = new
-                 * ParameterizedTypeReference<SwitchPort[]>() {}; ResponseEntity<SwitchPort[]> oobResponse =
-                 * restTemplate.exchange(uri, HttpMethod.GET, entity, typeRef);
-                 */
-                SwitchPort[] portArray = switchPortBulk.get( node );
-
-                if ( portArray != null )
+        if ( changed || snapshot == null )
+        {
+            List<NetTopElement> netTopList = new ArrayList<NetTopElement>();
+            for ( SwitchTopology switchTopology : switches.values() )
+            {
+                if ( switchTopology.elements != null )
                 {
-                    for ( SwitchPort switchPort : portArray )
-                    {
-                        String remoteSystemId = null;
-
-                        elem = new NetTopElement();
-                        elem.setDeviceId( node );
-                        elem.setPortName( switchPort.getName() );
-                        elem.setMacAddress( switchPort.getMacAddress() );
-
-                        if ( switchPort.getLinkedPort() != null )
-                        {
-                            connElem = new NetTopElement();
-                            remoteSystemId = switchPort.getLinkedPort().getDeviceName();
-
-                            /* Convert IP addresses to node/switch ids where appropriate */
-                            if ( remoteSystemId != null && ipAddress2NodeIdMap.containsKey( remoteSystemId ) )
-                            {
-                                String oldRemoteSystemId = remoteSystemId;
-                                remoteSystemId = ipAddress2NodeIdMap.get( oldRemoteSystemId );
-                                logger.debug( "Transforming key " + oldRemoteSystemId + " to " + remoteSystemId );
-                            }
-
-                            connElem.setDeviceId( remoteSystemId );
-                            connElem.setPortName( switchPort.getLinkedPort().getPortName() );
-                            elem.setConnectedElement( connElem );
-                        }
-
-                        db.put( node + "." + switchPort.getName(), elem );
-                    } // end of per port iteration
+                    netTopList.addAll( switchTopology.elements );
                 }
+            }
+            version++;
+            snapshot = new NetworkTopologySnapshot( version, "\"" + etagPrefix + "-" + version + "\"", netTopList );
+            logger.debug( "Created network topology version " + version + " with " + netTopList.size()
+                + " elements." );
+        }
+        logger.debug( "Refreshed " + refreshedSwitches.size() + " of " + torSwitchList.size()
+            + " switches for the network topology in " + ( System.currentTimeMillis() - startTime ) + " ms." );
+    }
 
-                /*
-                 * Now get list of all the VLANs configured on the switch
-                 */
-                /*
-                 * uri = new URI( "http", null, hmsIpAddr, hmsPort,
-                 * "/api/1.0/hms/switches/{nodeName}/vlansbulk".replaceAll("\\{nodeName\\}", node), null, null);
-                 * restTemplate = new RestTemplate(); ParameterizedTypeReference<SwitchVlan[]> typeRef2 = new
-                 * ParameterizedTypeReference<SwitchVlan[]>() {}; ResponseEntity<SwitchVlan[]> oobResponse2 =
-                 * restTemplate.exchange(uri, HttpMethod.GET, entity, typeRef2);
-                 */
-                SwitchVlan[] vlanArray = switchVlanBulk.get( node );
-
-                if ( vlanArray != null )
+    /**
+     * Maps the host names and FQDNs of the nodes to their node ids, to resolve the LLDP neighbours of switch ports.
+     *
+     * @param hostNames
+     * @return
+     */
+    static Map<String, String> getHostName2NodeIdMap( Map<String, HostNameInfo> hostNames )
+    {
+        Map<String, String> hostName2NodeIdMap = new HashMap<String, String>();
+        for ( Map.Entry<String, HostNameInfo> entry : hostNames.entrySet() )
+        {
+            HostNameInfo hostnameInfo = entry.getValue();
+            if ( hostnameInfo != null )
+            {
+                hostName2NodeIdMap.put( hostnameInfo.getHostName(), entry.getKey() );
+                hostName2NodeIdMap.put( hostnameInfo.getFullyQualifiedDomainName(), entry.getKey() );
+            }
+        }
+        return hostName2NodeIdMap;
+    }
+
+    /**
+     * Creates the topology elements of the ports of a switch.
+     *
+     * @param node switch id
+     * @param portArray ports of the switch, null if unknown
+     * @param vlanArray VLANs of the switch, null if unknown
+     * @param hostName2NodeIdMap
+     * @return
+     */
+    static List<NetTopElement> getSwitchElements( String node, SwitchPort[] portArray, SwitchVlan[] vlanArray,
+                                                  Map<String, String> hostName2NodeIdMap )
+    {
+        Map<String, NetTopElement> db = new LinkedHashMap<String, NetTopElement>();
+        if ( portArray != null )
+        {
+            for ( SwitchPort switchPort : portArray )
+            {
+                NetTopElement elem = new NetTopElement();
+                elem.setDeviceId( node );
+                elem.setPortName( switchPort.getName() );
+                elem.setMacAddress( switchPort.getMacAddress() );
+
+                if ( switchPort.getLinkedPort() != null )
                 {
-                    for ( SwitchVlan vlan : vlanArray )
-                    {
+                    NetTopElement connElem = new NetTopElement();
+                    String remoteSystemId = switchPort.getLinkedPort().getDeviceName();
 
-                        // Link the ports associated with the VLAN now
-                        for ( String up : vlan.getUntaggedPorts() )
-                        {
-                            NetTopElement e = db.get( node + "." + up );
-
-                            if ( e != null )
-                            {
-                                List<String> vlans = null;
-                                if ( e.getVlans() == null )
-                                {
-                                    vlans = new ArrayList<String>();
-                                    e.setVlans( vlans );
-                                }
-                                else
-                                {
-                                    vlans = e.getVlans();
-                                }
-                                vlans.add( vlan.getName() );
-                            }
-                        }
-                        for ( String up : vlan.getTaggedPorts() )
-                        {
-                            NetTopElement e = db.get( node + "." + up );
-
-                            if ( e != null )
-                            {
-                                List<String> vlans = null;
-                                if ( e.getVlans() == null )
-                                {
-                                    vlans = new ArrayList<String>();
-                                    e.setVlans( vlans );
-                                }
-                                else
-                                {
-                                    vlans = e.getVlans();
-                                }
-                                vlans.add( vlan.getName() );
-                            }
-                        }
+                    /* Convert IP addresses to node/switch ids where appropriate */
+                    if ( remoteSystemId != null && hostName2NodeIdMap.containsKey( remoteSystemId ) )
+                    {
+                        remoteSystemId = hostName2NodeIdMap.get( remoteSystemId );
                     }
+
+                    connElem.setDeviceId( remoteSystemId );
+                    connElem.setPortName( switchPort.getLinkedPort().getPortName() );
+                    elem.setConnectedElement( connElem );
                 }
+
+                db.put( switchPort.getName(), elem );
             }
         }
-        catch ( HttpStatusCodeException e )
+
+        if ( vlanArray != null )
         {
+            for ( SwitchVlan vlan : vlanArray )
+            {
+                // Link the ports associated with the VLAN now
+                addVlan( db, vlan.getUntaggedPorts(), vlan.getName() );
+                addVlan( db, vlan.getTaggedPorts(), vlan.getName() );
+            }
         }
-        catch ( Exception e )
+        return new ArrayList<NetTopElement>( db.values() );
+    }
+
+    private static void addVlan( Map<String, NetTopElement> db, Set<String> portNames, String vlanName )
+    {
+        if ( portNames == null )
         {
-            throw new HMSRestException( HttpStatus.INTERNAL_SERVER_ERROR.value(), "Server Error",
-                                        "Exception while connecting to hms."
-                                            + ( ( uri != null ) ? uri.toString() : "" ) );
+            return;
         }
+        for ( String portName : portNames )
+        {
+            NetTopElement e = db.get( portName );
+            if ( e != null )
+            {
+                if ( e.getVlans() == null )
+                {
+                    e.setVlans( new ArrayList<String>() );
+                }
+                e.getVlans().add( vlanName );
+            }
+        }
+    }
 
-        logger.debug( "END processing ports on all switches." );
-
-        for ( NetTopElement e : db.values() )
+    /**
+     * Gets a string holding all the fields of the elements, to find out if the topology of a switch changed.
+     *
+     * @param elements
+     * @return
+     */
+    static String getSignature( List<NetTopElement> elements )
+    {
+        StringBuilder signature = new StringBuilder();
+        for ( NetTopElement e : elements )
         {
-            netTopList.add( e );
+            signature.append( e.getPortName() ).append( '|' ).append( e.getMacAddress() ).append( '|' );
+            signature.append( e.getVlans() ).append( '|' );
+            if ( e.getConnectedElement() != null )
+            {
+                signature.append( e.getConnectedElement().getDeviceId() ).append( '|' );
+                signature.append( e.getConnectedElement().getPortName() );
+            }
+            signature.append( '\n' );
         }
+        return signature.toString();
+    }
 
-        logger.debug( "END Network topology creation." );
+    /**
+     * Ports and VLANs of a switch as last read, with the topology elements created from them.
+     */
+    private static class SwitchTopology
+    {
+        private SwitchPort[] ports;
 
-        return netTopList;
-    }
+        private SwitchVlan[] vlans;
 
+        private long refreshTime;
+
+        private List<NetTopElement> elements;
+
+        private String signature;
+    }
 }
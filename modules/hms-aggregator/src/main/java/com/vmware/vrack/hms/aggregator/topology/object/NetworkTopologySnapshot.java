@@ -0,0 +1,61 @@
+/* ********************************************************************************
+ * NetworkTopologySnapshot.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.aggregator.topology.object;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.vmware.vrack.hms.common.topology.NetTopElement;
+
+/**
+ * Immutable view of the network topology, as served by the /topology API. A new snapshot with a higher version is
+ * created only when the topology changed.
+ *
+ * @author VMware, Inc.
+ */
+public class NetworkTopologySnapshot
+{
+    private final long version;
+
+    private final String etag;
+
+    private final List<NetTopElement> elements;
+
+    public NetworkTopologySnapshot( long version, String etag, List<NetTopElement> elements )
+    {
+        this.version = version;
+        this.etag = etag;
+        this.elements = Collections.unmodifiableList( elements );
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @return quoted entity tag of the snapshot, unique across restarts of the aggregator
+     */
+    public String getEtag()
+    {
+        return etag;
+    }
+
+    public List<NetTopElement> getElements()
+    {
+        return elements;
+    }
+}
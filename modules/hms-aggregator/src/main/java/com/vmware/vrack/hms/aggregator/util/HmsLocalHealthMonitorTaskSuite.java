@@ -65,75 +65,71 @@ public class HmsLocalHealthMonitorTaskSuite
     }
 
     /**
-     * Execute HMS health Monitoring and the broadcast the events.
+     * Execute one cycle of HMS health Monitoring and the broadcast the events.
      *
-     * @return the monitoring task response
+     * @return false, if monitoring should be stopped. Otherwise, returns true.
      * @throws HmsException the hms exception
      */
     @Override
-    public MonitoringTaskResponse executeTask()
+    public boolean executeMonitoringCycle()
         throws HmsException
     {
 
         MonitorResponseCallback updateSubscriber = new MonitorResponseCallback();
-        while ( ( !Thread.currentThread().isInterrupted() ) && ( !this.isStopMonitoring() ) )
+        try
         {
 
-            try
+            List<Event> events = response.getEvents();
+            if ( events != null )
             {
 
-                Thread.sleep( this.getMonitorFrequency() );
-                List<Event> events = response.getEvents();
-                if ( events != null )
-                {
-
-                    events.clear();
-                }
-                else
-                {
-
-                    events = new ArrayList<Event>();
-                    response.setEvents( events );
-                }
+                events.clear();
+            }
+            else
+            {
 
-                try
-                {
+                events = new ArrayList<Event>();
+                response.setEvents( events );
+            }
 
-                    logger.debug( "Monitoring HMS health: {} TimeStamp: {}.", response.getHms_node_id(), new Date() );
-                    HmsLocalHealthMonitorTask monitor = new HmsLocalHealthMonitorTask( response, ServerComponent.HMS );
-                    monitor.executeTask();
+            try
+            {
 
-                }
-                catch ( Exception e )
-                {
+                logger.debug( "Monitoring HMS health: {} TimeStamp: {}.", response.getHms_node_id(), new Date() );
+                HmsLocalHealthMonitorTask monitor = new HmsLocalHealthMonitorTask( response, ServerComponent.HMS );
+                monitor.executeTask();
 
-                    logger.error( "Error executing HMS Health Monitor Task.", e );
-                }
+            }
+            catch ( Exception e )
+            {
 
-                try
-                {
+                logger.error( "Error executing HMS Health Monitor Task.", e );
+            }
 
-                    if ( response.getEvents() != null )
-                    {
+            try
+            {
 
-                        updateSubscriber.callbackEventSubcribersUsingEvents( response.getNode(), response.getEvents() );
-                    }
-                }
-                catch ( Exception e )
+                if ( response.getEvents() != null )
                 {
 
-                    logger.error( "Error Broadcasting Events from Component Sensor for node id: {}.",
-                                  response.getHms_node_id(), e );
+                    updateSubscriber.callbackEventSubcribersUsingEvents( response.getNode(), response.getEvents(),
+                                                                         true );
                 }
-
             }
             catch ( Exception e )
             {
 
-                logger.error( "Error getting sensor information for node id: {}.", response.getHms_node_id(), e );
-                throw new HmsException( "Error Initiating monitoring for HMS Node: " + response.getHms_node_id(), e );
+                logger.error( "Error Broadcasting Events from Component Sensor for node id: {}.",
+                              response.getHms_node_id(), e );
             }
+
+        }
+        catch ( Exception e )
+        {
+
+            logger.error( "Error getting sensor information for node id: {}.", response.getHms_node_id(), e );
+            throw new HmsException( "Error Initiating monitoring for HMS Node: " + response.getHms_node_id(), e );
         }
-        return response;
+        return true;
     }
 }
\ No newline at end of file
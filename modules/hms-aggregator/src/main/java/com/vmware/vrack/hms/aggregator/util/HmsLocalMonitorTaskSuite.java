@@ -76,249 +76,245 @@ public class HmsLocalMonitorTaskSuite
     }
 
     /**
-     * Retrieves Hms health events from HMS-OOB at regular intervals and broadcasts them to subscribers.
+     * Retrieves Hms health events from HMS-OOB for one monitoring cycle and broadcasts them to subscribers.
      *
-     * @return the monitoring task response
+     * @return false, if monitoring for the node should be stopped. Otherwise, returns true.
      * @throws HmsException the hms exception
      */
     @Override
-    public MonitoringTaskResponse executeTask()
+    public boolean executeMonitoringCycle()
         throws HmsException
     {
 
         MonitorResponseCallback updateSubscriber = new MonitorResponseCallback();
-        while ( ( !Thread.currentThread().isInterrupted() ) && ( !this.isStopMonitoring() ) )
+        /*
+         * Check Server's AdminStatus. If the AdminStatus is DECOMMISSIONED, then stop monitoring for the server
+         */
+        if ( response.getNode().getAdminStatus() == NodeAdminStatus.DECOMISSION )
         {
-
-            /*
-             * Check Server's AdminStatus. If the AdminStatus is DECOMMISSIONED, then stop monitoring for the server
-             */
-            if ( response.getNode().getAdminStatus() == NodeAdminStatus.DECOMISSION )
+            logger.info( "In executeTask, Server '{}' AdminStatus is '{}'. Stopping monitoring for the server.",
+                         response.getNode().getNodeID(), NodeAdminStatus.DECOMISSION.toString() );
+            boolean serverRemoved = MonitoringUtil.getMonitoredNodes().remove( response.getNode().getNodeID() );
+            if ( serverRemoved )
             {
-                logger.info( "In executeTask, Server '{}' AdminStatus is '{}'. Stopping monitoring for the server.",
-                             response.getNode().getNodeID(), NodeAdminStatus.DECOMISSION.toString() );
-                boolean serverRemoved = MonitoringUtil.getMonitoredNodes().remove( response.getNode().getNodeID() );
-                if ( serverRemoved )
-                {
-                    logger.debug( "In executeTask, removed Server '{}' from Monitored Nodes of MonitoringUtil." );
-                }
-                else
-                {
-                    logger.warn( "In executeTask, failed to remove Server '{}' from Monitored Nodes of "
-                        + "MonitoringUtil." );
-                }
-                break;
+                logger.debug( "In executeTask, removed Server '{}' from Monitored Nodes of MonitoringUtil." );
+            }
+            else
+            {
+                logger.warn( "In executeTask, failed to remove Server '{}' from Monitored Nodes of "
+                    + "MonitoringUtil." );
             }
+            return false;
+        }
 
-            try
+        try
+        {
+
+            List<Event> events = response.getEvents();
+            if ( events != null )
             {
 
-                Thread.sleep( getMonitorFrequency() );
-                List<Event> events = response.getEvents();
-                if ( events != null )
-                {
+                events.clear();
 
-                    events.clear();
+            }
+            else
+            {
 
-                }
-                else
-                {
+                events = new ArrayList<Event>();
+                response.setEvents( events );
+            }
 
-                    events = new ArrayList<Event>();
-                    response.setEvents( events );
-                }
+            List<ServerComponent> components = response.getComponentList();
+            List<SwitchComponentEnum> switchComponents = response.getSwitchComponentList();
 
-                List<ServerComponent> components = response.getComponentList();
-                List<SwitchComponentEnum> switchComponents = response.getSwitchComponentList();
+            /*
+             * Get InBandServiceImpl/SensorInforProvider for current node. We are getting this every time from
+             * InBandServiceProvider, because it can change in the runtime.
+             */
+            IComponentEventInfoProvider sensorInfoProvider = null;
+            if ( response.getNode() instanceof ServerNode )
+            {
 
-                /*
-                 * Get InBandServiceImpl/SensorInforProvider for current node. We are getting this every time from
-                 * InBandServiceProvider, because it can change in the runtime.
-                 */
-                IComponentEventInfoProvider sensorInfoProvider = null;
-                if ( response.getNode() instanceof ServerNode )
+                sensorInfoProvider = InBandServiceProvider.getBoardService( response.getNode().getServiceObject() );
+                // can not monitor In-band if node is not operational
+                // OOB can still be monitored
+                if ( sensorInfoProvider != null && response.getNode().isNodeOperational() )
                 {
-
-                    sensorInfoProvider = InBandServiceProvider.getBoardService( response.getNode().getServiceObject() );
-                    // can not monitor In-band if node is not operational
-                    // OOB can still be monitored
-                    if ( sensorInfoProvider != null && response.getNode().isNodeOperational() )
-                    {
-                        response.setSensorInfoProvider( sensorInfoProvider );
-                    }
+                    response.setSensorInfoProvider( sensorInfoProvider );
                 }
+            }
 
-                // Monitor Server Events
-                if ( response.getNode() instanceof ServerNode )
+            // Monitor Server Events
+            if ( response.getNode() instanceof ServerNode )
+            {
+                boolean oobMonitoring = false;
+                boolean ibMonitoring = false;
+                ServerNode serverNode = (ServerNode) response.getNode();
+                ServerNodePowerStatus serverNodePowerStatus = new ServerNodePowerStatus();
+                for ( ServerComponent component : components )
                 {
-                    boolean oobMonitoring = false;
-                    boolean ibMonitoring = false;
-                    ServerNode serverNode = (ServerNode) response.getNode();
-                    ServerNodePowerStatus serverNodePowerStatus = new ServerNodePowerStatus();
-                    for ( ServerComponent component : components )
+                    logger.debug( "Monitoring node: {} TimeStamp: {} Server Component: {}.",
+                                  response.getHms_node_id(), new Date(), component );
+                    switch ( component )
                     {
-                        logger.debug( "Monitoring node: {} TimeStamp: {} Server Component: {}.",
-                                      response.getHms_node_id(), new Date(), component );
-                        switch ( component )
-                        {
-                            case BMC:
-                                // Make sure that Node OOB availability before making the OOB event monitoring
-                                try
+                        case BMC:
+                            // Make sure that Node OOB availability before making the OOB event monitoring
+                            try
+                            {
+                                if ( !this.isStopMonitoring() )
                                 {
-                                    if ( !this.isStopMonitoring() )
-                                    {
 
-                                        HmsLocalMonitorTask monitor =
-                                            new HmsLocalMonitorTask( response, component, true, ibMonitoring );
-                                        monitor.executeTask();
-                                    }
-                                }
-                                catch ( Exception e )
-                                {
-                                    logger.error( "Error getting sensor information for node id: {} and Server "
-                                        + "component: {}.", response.getHms_node_id(), component, e );
-                                }
-                                // If the BMC events size is zero, which means
-                                // No Error in OOB communication, continue to
-                                // monitor the OOB server component events
-                                if ( response.getEvents() != null && response.getEvents().size() == 0 )
-                                {
-                                    oobMonitoring = true;
+                                    HmsLocalMonitorTask monitor =
+                                        new HmsLocalMonitorTask( response, component, true, ibMonitoring );
+                                    monitor.executeTask();
                                 }
-                                // Check if the host or node is power off or on before we start the IB event
-                                // monitoring...
-                                try
+                            }
+                            catch ( Exception e )
+                            {
+                                logger.error( "Error getting sensor information for node id: {} and Server "
+                                    + "component: {}.", response.getHms_node_id(), component, e );
+                            }
+                            // If the BMC events size is zero, which means
+                            // No Error in OOB communication, continue to
+                            // monitor the OOB server component events
+                            if ( response.getEvents() != null && response.getEvents().size() == 0 )
+                            {
+                                oobMonitoring = true;
+                            }
+                            // Check if the host or node is power off or on before we start the IB event
+                            // monitoring...
+                            try
+                            {
+                                if ( oobMonitoring )
                                 {
-                                    if ( oobMonitoring )
-                                    {
-                                        HostDataAggregator aggregator = new HostDataAggregator();
-                                        serverNodePowerStatus =
-                                            aggregator.getServerNodePowerStatus( serverNode.getNodeID() );
-                                    }
+                                    HostDataAggregator aggregator = new HostDataAggregator();
+                                    serverNodePowerStatus =
+                                        aggregator.getServerNodePowerStatus( serverNode.getNodeID() );
                                 }
-                                catch ( Exception e )
+                            }
+                            catch ( Exception e )
+                            {
+                                logger.error( "Error getting Server Node Power Status using OOB for node: {} ",
+                                              serverNode.getNodeID(), e );
+                            }
+                            if ( serverNodePowerStatus.isPowered() && serverNodePowerStatus.isDiscoverable() )
+                            {
+                                ibMonitoring = true;
+                            }
+                            break;
+                        default:
+                            try
+                            {
+                                if ( !this.isStopMonitoring() )
                                 {
-                                    logger.error( "Error getting Server Node Power Status using OOB for node: {} ",
-                                                  serverNode.getNodeID(), e );
+                                    HmsLocalMonitorTask monitor =
+                                        new HmsLocalMonitorTask( response, component, oobMonitoring, ibMonitoring );
+                                    monitor.executeTask();
                                 }
-                                if ( serverNodePowerStatus.isPowered() && serverNodePowerStatus.isDiscoverable() )
-                                {
-                                    ibMonitoring = true;
-                                }
-                                break;
-                            default:
-                                try
-                                {
-                                    if ( !this.isStopMonitoring() )
-                                    {
-                                        HmsLocalMonitorTask monitor =
-                                            new HmsLocalMonitorTask( response, component, oobMonitoring, ibMonitoring );
-                                        monitor.executeTask();
-                                    }
-                                }
-                                catch ( Exception e )
-                                {
-                                    logger.error( "Error getting sensor information for node id: {} and Server "
-                                        + "component: {}.", response.getHms_node_id(), component, e );
-                                }
-                                break;
-                        }
+                            }
+                            catch ( Exception e )
+                            {
+                                logger.error( "Error getting sensor information for node id: {} and Server "
+                                    + "component: {}.", response.getHms_node_id(), component, e );
+                            }
+                            break;
                     }
                 }
+            }
 
-                // Monitor Switch Events
-                if ( response.getNode() instanceof HMSSwitchNode )
+            // Monitor Switch Events
+            if ( response.getNode() instanceof HMSSwitchNode )
+            {
+                boolean switchMonitoring = false;
+                HMSSwitchNode switchNode = (HMSSwitchNode) response.getNode();
+                for ( SwitchComponentEnum component : switchComponents )
                 {
-                    boolean switchMonitoring = false;
-                    HMSSwitchNode switchNode = (HMSSwitchNode) response.getNode();
-                    for ( SwitchComponentEnum component : switchComponents )
+                    // Always SWITCH component case will execute first to enable or disable switchMonitoring flag
+                    switch ( component )
                     {
-                        // Always SWITCH component case will execute first to enable or disable switchMonitoring flag
-                        switch ( component )
-                        {
-                            case SWITCH:
-                                EventGeneratorTask eventGenerator = new EventGeneratorTask();
-                                List<Event> switchEvents =
-                                    eventGenerator.getAggregatedSwitchEvents( switchNode.getNodeID(), component );
-
-                                if ( switchEvents != null && switchEvents.size() > 0 )
+                        case SWITCH:
+                            EventGeneratorTask eventGenerator = new EventGeneratorTask();
+                            List<Event> switchEvents =
+                                eventGenerator.getAggregatedSwitchEvents( switchNode.getNodeID(), component );
+
+                            if ( switchEvents != null && switchEvents.size() > 0 )
+                            {
+                                for ( Event event : switchEvents )
                                 {
-                                    for ( Event event : switchEvents )
+                                    Header header = event.getHeader();
+                                    if ( header.getEventName() == EventCatalog.MANAGEMENT_SWITCH_UP
+                                        || header.getEventName() == EventCatalog.TOR_SWITCH_UP
+                                        || header.getEventName() == EventCatalog.SPINE_SWITCH_UP )
                                     {
-                                        Header header = event.getHeader();
-                                        if ( header.getEventName() == EventCatalog.MANAGEMENT_SWITCH_UP
-                                            || header.getEventName() == EventCatalog.TOR_SWITCH_UP
-                                            || header.getEventName() == EventCatalog.SPINE_SWITCH_UP )
-                                        {
-                                            switchMonitoring = true;
-                                        }
+                                        switchMonitoring = true;
                                     }
                                 }
-                                try
-                                {
-                                    logger.debug( "Monitoring Switch node: " + response.getHms_node_id()
-                                        + " TimeStamp : " + new Date() );
+                            }
+                            try
+                            {
+                                logger.debug( "Monitoring Switch node: " + response.getHms_node_id()
+                                    + " TimeStamp : " + new Date() );
 
-                                    if ( !this.isStopMonitoring() )
-                                    {
-
-                                        HmsLocalSwitchMonitorTask hmsLocalSwitchMonitorTask =
-                                            new HmsLocalSwitchMonitorTask( response, component, true );
-                                        hmsLocalSwitchMonitorTask.executeTask();
-                                    }
-                                }
-                                catch ( Exception e )
+                                if ( !this.isStopMonitoring() )
                                 {
-                                    logger.error( "Error getting sensor information for switch node id: {} and Switch component: {}",
-                                                  response.getHms_node_id(), component, e );
-                                }
-                                break;
-                            default:
-                                try
-                                {
-                                    logger.debug( "Monitoring Switch node: " + response.getHms_node_id()
-                                        + " TimeStamp : " + new Date() );
 
-                                    if ( !this.isStopMonitoring() )
-                                    {
-
-                                        HmsLocalSwitchMonitorTask hmsLocalSwitchMonitorTask =
-                                            new HmsLocalSwitchMonitorTask( response, component, switchMonitoring );
-                                        hmsLocalSwitchMonitorTask.executeTask();
-                                    }
+                                    HmsLocalSwitchMonitorTask hmsLocalSwitchMonitorTask =
+                                        new HmsLocalSwitchMonitorTask( response, component, true );
+                                    hmsLocalSwitchMonitorTask.executeTask();
                                 }
-                                catch ( Exception e )
+                            }
+                            catch ( Exception e )
+                            {
+                                logger.error( "Error getting sensor information for switch node id: {} and Switch component: {}",
+                                              response.getHms_node_id(), component, e );
+                            }
+                            break;
+                        default:
+                            try
+                            {
+                                logger.debug( "Monitoring Switch node: " + response.getHms_node_id()
+                                    + " TimeStamp : " + new Date() );
+
+                                if ( !this.isStopMonitoring() )
                                 {
-                                    logger.error( "Error getting sensor information for switch node id: {}  and Switch component: {}",
-                                                  response.getHms_node_id(), component, e );
+
+                                    HmsLocalSwitchMonitorTask hmsLocalSwitchMonitorTask =
+                                        new HmsLocalSwitchMonitorTask( response, component, switchMonitoring );
+                                    hmsLocalSwitchMonitorTask.executeTask();
                                 }
-                                break;
-                        }
+                            }
+                            catch ( Exception e )
+                            {
+                                logger.error( "Error getting sensor information for switch node id: {}  and Switch component: {}",
+                                              response.getHms_node_id(), component, e );
+                            }
+                            break;
                     }
                 }
+            }
 
-                try
-                {
+            try
+            {
 
-                    if ( response.getEvents() != null )
-                    {
-                        updateSubscriber.callbackEventSubcribersUsingEvents( response.getNode(), response.getEvents() );
-                    }
-                }
-                catch ( Exception e )
+                if ( response.getEvents() != null )
                 {
-
-                    logger.error( "Error Broadcasting Events from Component Sensor for node id: {}.",
-                                  response.getHms_node_id(), e );
+                    updateSubscriber.callbackEventSubcribersUsingEvents( response.getNode(), response.getEvents(),
+                                                                         true );
                 }
             }
             catch ( Exception e )
             {
 
-                logger.error( "Error getting sensor information for node id: {}.", response.getHms_node_id(), e );
-                throw new HmsException( "Error Initiating monitoring for HMS Node: " + response.getHms_node_id(), e );
+                logger.error( "Error Broadcasting Events from Component Sensor for node id: {}.",
+                              response.getHms_node_id(), e );
             }
         }
-        return response;
+        catch ( Exception e )
+        {
+
+            logger.error( "Error getting sensor information for node id: {}.", response.getHms_node_id(), e );
+            throw new HmsException( "Error Initiating monitoring for HMS Node: " + response.getHms_node_id(), e );
+        }
+        return true;
     }
 }
@@ -52,6 +52,8 @@ import com.vmware.vrack.hms.common.boardvendorservice.api.IComponentSwitchEventI
 import com.vmware.vrack.hms.common.events.BaseEventMonitoringSubscription;
 import com.vmware.vrack.hms.common.exception.HMSRestException;
 import com.vmware.vrack.hms.common.exception.HmsException;
+import com.vmware.vrack.hms.common.monitoring.BulkComponentEvents;
+import com.vmware.vrack.hms.common.monitoring.EventStateTable;
 import com.vmware.vrack.hms.common.monitoring.MonitoringTaskRequestHandler;
 import com.vmware.vrack.hms.common.monitoring.MonitoringTaskResponse;
 import com.vmware.vrack.hms.common.notification.BaseResponse;
@@ -90,6 +92,14 @@ public class MonitoringUtil
 
     private static final String HMS_AGENT_STATUS_DESC_SEPARATOR = " -";
 
+    /**
+     * Response type of the event calls to HMS OOB agent, built once as the on demand event calls are frequent.
+     */
+    private static final ParameterizedTypeReference<List<Event>> EVENT_LIST_TYPE =
+        new ParameterizedTypeReference<List<Event>>()
+        {
+        };
+
     /**
      * Contains all the nodes, which are currently being monitored.
      */
@@ -202,6 +212,54 @@ public class MonitoringUtil
         MonitoringUtil.monitoringFrequency = monitoringFrequency;
     }
 
+    @Value( "${hms.oob.events.bulk.enabled:true}" )
+    public void setOobEventsBulkEnabled( boolean oobEventsBulkEnabled )
+    {
+        OobComponentEventsCache.getInstance().setBulkEnabled( oobEventsBulkEnabled );
+    }
+
+    @Value( "${hms.oob.events.bulk.max.age:60000}" )
+    public void setOobEventsBulkMaxAge( long oobEventsBulkMaxAge )
+    {
+        OobComponentEventsCache.getInstance().setBulkMaxAge( oobEventsBulkMaxAge );
+    }
+
+    @Value( "${hms.oob.events.push.enabled:false}" )
+    public void setOobEventsPushEnabled( boolean oobEventsPushEnabled )
+    {
+        OobComponentEventsCache.getInstance().setPushEnabled( oobEventsPushEnabled );
+    }
+
+    @Value( "${hms.oob.events.push.resync.interval:1800000}" )
+    public void setOobEventsPushResyncInterval( long oobEventsPushResyncInterval )
+    {
+        OobComponentEventsCache.getInstance().setPushResyncInterval( oobEventsPushResyncInterval );
+    }
+
+    @Value( "${hms.event.state.filter.enabled:true}" )
+    public void setEventStateFilterEnabled( boolean eventStateFilterEnabled )
+    {
+        EventStateTable.getInstance().setEnabled( eventStateFilterEnabled );
+    }
+
+    @Value( "${hms.event.state.debounce.count:1}" )
+    public void setEventStateDebounceCount( int eventStateDebounceCount )
+    {
+        EventStateTable.getInstance().setDebounceCount( eventStateDebounceCount );
+    }
+
+    @Value( "${hms.event.state.hysteresis:0}" )
+    public void setEventStateHysteresis( float eventStateHysteresis )
+    {
+        EventStateTable.getInstance().setHysteresis( eventStateHysteresis );
+    }
+
+    @Value( "${hms.event.state.resync.interval:1800000}" )
+    public void setEventStateResyncInterval( long eventStateResyncInterval )
+    {
+        EventStateTable.getInstance().setResyncInterval( eventStateResyncInterval );
+    }
+
     /**
      * Start HMS Health Monitoring
      */
@@ -413,6 +471,10 @@ public class MonitoringUtil
             startMonitoring( hmsNode );
         }
 
+        if ( isMonitoringEnabled() )
+        {
+            OobComponentEventsCache.getInstance().startStreaming();
+        }
     }
 
     /**
@@ -480,11 +542,9 @@ public class MonitoringUtil
             {
                 String path =
                     Constants.HMS_ON_DEMAND_EVENTS_FETCH_URI + "/" + nodeId + "/" + serverComponent.getEventComponent();
-                HmsOobAgentRestTemplate<Object> restTemplate = new HmsOobAgentRestTemplate<Object>();
-                ParameterizedTypeReference<List<Event>> typeRef = new ParameterizedTypeReference<List<Event>>()
-                {
-                };
-                ResponseEntity<List<Event>> oobResponse = restTemplate.exchange( HttpMethod.GET, path, typeRef );
+                HmsOobAgentRestTemplate<Object> restTemplate = HmsOobAgentRestTemplate.getDefaultInstance();
+                ResponseEntity<List<Event>> oobResponse =
+                    restTemplate.exchange( HttpMethod.GET, path, EVENT_LIST_TYPE );
 
                 if ( oobResponse.getStatusCode() != HttpStatus.OK )
                 {
@@ -513,6 +573,39 @@ public class MonitoringUtil
         }
     }
 
+    /**
+     * Gets the events of all the components of all the server and switch nodes from OOB Api, in a single request.
+     *
+     * @return BulkComponentEvents
+     * @throws HmsException
+     */
+    public static BulkComponentEvents getBulkEventsOOB()
+        throws HmsException
+    {
+        try
+        {
+            HmsOobAgentRestTemplate<Object> restTemplate = HmsOobAgentRestTemplate.getDefaultInstance();
+            ResponseEntity<BulkComponentEvents> oobResponse =
+                restTemplate.exchange( HttpMethod.GET, Constants.HMS_BULK_EVENTS_FETCH_URI,
+                                       BulkComponentEvents.class );
+
+            if ( oobResponse.getStatusCode() != HttpStatus.OK || oobResponse.getBody() == null )
+            {
+                throw new HmsException( "Error while getting bulk events Response from Hms-core, with Status code: "
+                    + oobResponse.getStatusCode() );
+            }
+            return oobResponse.getBody();
+        }
+        catch ( HmsException e )
+        {
+            throw e;
+        }
+        catch ( Exception e )
+        {
+            throw new HmsException( "Error while getting bulk events Response from Hms-core.", e );
+        }
+    }
+
     /**
      * Gets On Demand Events from OOB for switch
      *
@@ -532,11 +625,9 @@ public class MonitoringUtil
 
                 String path = Constants.HMS_ON_DEMAND_SWITCH_EVENTS_FETCH_URI + "/" + switchId + "/"
                     + switchComponent.getEventComponent();
-                HmsOobAgentRestTemplate<Object> restTemplate = new HmsOobAgentRestTemplate<Object>();
-                ParameterizedTypeReference<List<Event>> typeRef = new ParameterizedTypeReference<List<Event>>()
-                {
-                };
-                ResponseEntity<List<Event>> oobResponse = restTemplate.exchange( HttpMethod.GET, path, typeRef );
+                HmsOobAgentRestTemplate<Object> restTemplate = HmsOobAgentRestTemplate.getDefaultInstance();
+                ResponseEntity<List<Event>> oobResponse =
+                    restTemplate.exchange( HttpMethod.GET, path, EVENT_LIST_TYPE );
 
                 if ( oobResponse.getStatusCode() != HttpStatus.OK )
                 {
@@ -580,11 +671,8 @@ public class MonitoringUtil
         try
         {
             path = Constants.HMS_OOB_HEALTH_MONITOR_ENDPOINT;
-            HmsOobAgentRestTemplate<Object> restTemplate = new HmsOobAgentRestTemplate<Object>();
-            ParameterizedTypeReference<List<Event>> typeRef = new ParameterizedTypeReference<List<Event>>()
-            {
-            };
-            ResponseEntity<List<Event>> oobResponse = restTemplate.exchange( HttpMethod.GET, path, typeRef );
+            HmsOobAgentRestTemplate<Object> restTemplate = HmsOobAgentRestTemplate.getDefaultInstance();
+            ResponseEntity<List<Event>> oobResponse = restTemplate.exchange( HttpMethod.GET, path, EVENT_LIST_TYPE );
 
             if ( oobResponse.getStatusCode() != HttpStatus.OK )
             {
@@ -643,7 +731,7 @@ public class MonitoringUtil
     {
         try
         {
-            HmsOobAgentRestTemplate<Object> restTemplate = new HmsOobAgentRestTemplate<Object>();
+            HmsOobAgentRestTemplate<Object> restTemplate = HmsOobAgentRestTemplate.getDefaultInstance();
             ParameterizedTypeReference<List<T>> typeRef = new ParameterizedTypeReference<List<T>>()
             {
             };
@@ -680,7 +768,7 @@ public class MonitoringUtil
     {
         try
         {
-            HmsOobAgentRestTemplate<Object> restTemplate = new HmsOobAgentRestTemplate<Object>();
+            HmsOobAgentRestTemplate<Object> restTemplate = HmsOobAgentRestTemplate.getDefaultInstance();
             ResponseEntity<ServerNode> oobResponse =
                 restTemplate.exchange( HttpMethod.GET, endpoint, ServerNode.class );
             if ( oobResponse.getStatusCode() != HttpStatus.OK )
@@ -714,7 +802,7 @@ public class MonitoringUtil
 
         try
         {
-            HmsOobAgentRestTemplate<Object> restTemplate = new HmsOobAgentRestTemplate<Object>();
+            HmsOobAgentRestTemplate<Object> restTemplate = HmsOobAgentRestTemplate.getDefaultInstance();
             ResponseEntity<SwitchInfo> oobResponse =
                 restTemplate.exchange( HttpMethod.GET, endpoint, SwitchInfo.class );
             if ( oobResponse.getStatusCode() != HttpStatus.OK )
@@ -748,7 +836,7 @@ public class MonitoringUtil
     {
         try
         {
-            HmsOobAgentRestTemplate<Object> restTemplate = new HmsOobAgentRestTemplate<Object>();
+            HmsOobAgentRestTemplate<Object> restTemplate = HmsOobAgentRestTemplate.getDefaultInstance();
             ResponseEntity<ServerNodePowerStatus> oobResponse =
                 restTemplate.exchange( HttpMethod.GET, endpoint, ServerNodePowerStatus.class );
             if ( oobResponse.getStatusCode() != HttpStatus.OK )
@@ -794,7 +882,7 @@ public class MonitoringUtil
     {
         try
         {
-            HmsOobAgentRestTemplate<Object> restTemplate = new HmsOobAgentRestTemplate<Object>();
+            HmsOobAgentRestTemplate<Object> restTemplate = HmsOobAgentRestTemplate.getDefaultInstance();
             ResponseEntity<AboutResponse> oobResponse =
                 restTemplate.exchange( HttpMethod.GET, endpoint, AboutResponse.class );
             if ( oobResponse.getStatusCode() != HttpStatus.OK )
@@ -818,7 +906,7 @@ public class MonitoringUtil
         try
         {
             String path = Constants.HMS_OOB_ABOUT_ENDPOINT;
-            HmsOobAgentRestTemplate<Object> restTemplate = new HmsOobAgentRestTemplate<Object>();
+            HmsOobAgentRestTemplate<Object> restTemplate = HmsOobAgentRestTemplate.getDefaultInstance();
             ParameterizedTypeReference<AboutResponse> typeRef = new ParameterizedTypeReference<AboutResponse>()
             {
             };
@@ -934,7 +1022,7 @@ public class MonitoringUtil
 
         try
         {
-            HmsOobAgentRestTemplate<Object> restTemplate = new HmsOobAgentRestTemplate<Object>();
+            HmsOobAgentRestTemplate<Object> restTemplate = HmsOobAgentRestTemplate.getDefaultInstance();
             ResponseEntity<BaseResponse> response =
                 restTemplate.exchange( HttpMethod.DELETE, endpoint, BaseResponse.class );
 
@@ -0,0 +1,430 @@
+/* ********************************************************************************
+ * OobComponentEventsCache.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.aggregator.util;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vmware.vrack.common.event.Event;
+import com.vmware.vrack.common.event.enums.EventComponent;
+import com.vmware.vrack.hms.common.exception.HmsException;
+import com.vmware.vrack.hms.common.monitoring.BulkComponentEvents;
+import com.vmware.vrack.hms.common.monitoring.ComponentEventsUpdate;
+import com.vmware.vrack.hms.common.util.Constants;
+import com.vmware.vrack.hms.common.util.HttpClientPool;
+import com.vmware.vrack.hms.rest.factory.URIBuilder;
+
+/**
+ * Cache of the component events of the server and switch nodes fetched from the HMS OOB agent, so that the monitoring
+ * of all the nodes and components gets them with a single bulk request, instead of a request per node and component.
+ * <p>
+ * In pull mode, the events are fetched with a bulk request when the events of a component are older than the bulk
+ * max age. In push mode, a background thread streams the updates of the component events from the HMS OOB agent over
+ * a long-lived connection, applying them in the order of their sequence numbers. If an update is missed, or the
+ * stream was disconnected, or at the resync interval, all the events are fetched again with a bulk request before
+ * streaming from its sequence number. Push mode relies on the monitoring of the HMS OOB agent to publish the updates.
+ * <p>
+ * Components missing from the bulk response are left to the on demand requests of the callers.
+ *
+ * @author VMware, Inc.
+ */
+public class OobComponentEventsCache
+{
+    private static final Logger logger = LoggerFactory.getLogger( OobComponentEventsCache.class );
+
+    private static final OobComponentEventsCache instance = new OobComponentEventsCache();
+
+    /** Socket timeout of the event stream, a few heartbeats of the HMS OOB agent. */
+    private static final int STREAM_SOCKET_TIMEOUT = 100000;
+
+    private static final long MIN_RECONNECT_DELAY = 5000L;
+
+    private static final long MAX_RECONNECT_DELAY = 120000L;
+
+    /** Time the callers wait for the bulk request in flight before falling back to their on demand requests. */
+    private static final long BULK_WAIT_TIMEOUT = 10000L;
+
+    private final ObjectMapper objectMapper =
+        new ObjectMapper().configure( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false );
+
+    private final ConcurrentMap<String, CachedEvents> componentEvents = new ConcurrentHashMap<String, CachedEvents>();
+
+    private final Object bulkLock = new Object();
+
+    /** Bulk request in flight, guarded by the bulk lock. */
+    private FutureTask<Void> bulkRequest;
+
+    private volatile boolean bulkEnabled = true;
+
+    private volatile long bulkMaxAge = 60000L;
+
+    private volatile boolean pushEnabled = false;
+
+    private volatile long pushResyncInterval = 1800000L;
+
+    /** Time of the last bulk request, successful or not. */
+    private volatile long lastBulkRequestTime;
+
+    /** Time of the last successful bulk request. */
+    private volatile long lastBulkTime;
+
+    /** Sequence number of the last update applied, or of the last bulk response. */
+    private volatile long lastSequence;
+
+    private volatile boolean resyncNeeded = true;
+
+    private volatile boolean streaming;
+
+    private Thread streamThread;
+
+    public static OobComponentEventsCache getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Gets the events of the component of the node, fetching the events of all the nodes with a bulk request if they
+     * are not fresh.
+     *
+     * @param nodeId
+     * @param component
+     * @return copy of the events, null if they could not be fetched in bulk
+     */
+    public List<Event> getEvents( String nodeId, EventComponent component )
+    {
+        if ( !bulkEnabled || nodeId == null || component == null )
+        {
+            return null;
+        }
+        String key = getKey( nodeId, component );
+        CachedEvents cachedEvents = componentEvents.get( key );
+        if ( !isFresh( cachedEvents ) && !streaming )
+        {
+            refresh( false );
+            cachedEvents = componentEvents.get( key );
+        }
+        if ( !isFresh( cachedEvents ) )
+        {
+            return null;
+        }
+        return new ArrayList<Event>( cachedEvents.events );
+    }
+
+    private boolean isFresh( CachedEvents cachedEvents )
+    {
+        if ( cachedEvents == null )
+        {
+            return false;
+        }
+        if ( streaming )
+        {
+            // kept up to date by the stream since the last bulk request
+            return cachedEvents.time >= lastBulkTime;
+        }
+        return System.currentTimeMillis() - cachedEvents.time < bulkMaxAge;
+    }
+
+    /**
+     * Fetches the events of all the nodes with a bulk request, unless one was sent within the bulk max age. A single
+     * bulk request is in flight at a time, sent outside the lock by the caller that starts it. The other callers wait
+     * for it at most {@link #BULK_WAIT_TIMEOUT}, after which they fall back to their on demand requests, so that a
+     * slow bulk request does not hold up the monitoring of all the nodes.
+     *
+     * @param force whether to send the bulk request regardless of the previous one, waiting for the one in flight
+     */
+    private void refresh( boolean force )
+    {
+        FutureTask<Void> request;
+        boolean started = false;
+        synchronized ( bulkLock )
+        {
+            request = bulkRequest;
+            if ( request == null )
+            {
+                final long now = System.currentTimeMillis();
+                if ( !force && now - lastBulkRequestTime < bulkMaxAge )
+                {
+                    return;
+                }
+                lastBulkRequestTime = now;
+                request = new FutureTask<Void>( new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        fetchBulkEvents( now );
+                    }
+                }, null );
+                bulkRequest = request;
+                started = true;
+            }
+        }
+        if ( started )
+        {
+            try
+            {
+                request.run();
+            }
+            finally
+            {
+                synchronized ( bulkLock )
+                {
+                    bulkRequest = null;
+                }
+            }
+            return;
+        }
+        try
+        {
+            if ( force )
+            {
+                request.get();
+            }
+            else
+            {
+                request.get( BULK_WAIT_TIMEOUT, TimeUnit.MILLISECONDS );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch ( ExecutionException e )
+        {
+            logger.warn( "Error getting component events in bulk from HMS OOB agent.", e.getCause() );
+        }
+        catch ( TimeoutException e )
+        {
+            logger.debug( "Bulk request to HMS OOB agent still in flight after {} ms.", BULK_WAIT_TIMEOUT );
+        }
+    }
+
+    private void fetchBulkEvents( long now )
+    {
+        try
+        {
+            BulkComponentEvents bulkComponentEvents = MonitoringUtil.getBulkEventsOOB();
+            for ( ComponentEventsUpdate update : bulkComponentEvents.getUpdates() )
+            {
+                apply( update, now );
+            }
+            lastSequence = bulkComponentEvents.getSequence();
+            lastBulkTime = now;
+            resyncNeeded = false;
+            logger.debug( "Got {} component events from HMS OOB agent in {} ms.",
+                          bulkComponentEvents.getUpdates().size(), System.currentTimeMillis() - now );
+        }
+        catch ( Exception e )
+        {
+            logger.warn( "Error getting component events in bulk from HMS OOB agent.", e );
+        }
+    }
+
+    private void apply( ComponentEventsUpdate update, long time )
+    {
+        if ( update.getNodeId() != null && update.getComponent() != null )
+        {
+            List<Event> events = ( update.getEvents() != null ) ? update.getEvents() : new ArrayList<Event>();
+            componentEvents.put( getKey( update.getNodeId(), update.getComponent() ),
+                                 new CachedEvents( events, time ) );
+        }
+    }
+
+    private static String getKey( String nodeId, EventComponent component )
+    {
+        return nodeId + "/" + component;
+    }
+
+    /**
+     * Starts streaming the updates of the component events from the HMS OOB agent in background, if push mode is
+     * enabled and it is not started yet.
+     */
+    public synchronized void startStreaming()
+    {
+        if ( !bulkEnabled || !pushEnabled || streamThread != null )
+        {
+            return;
+        }
+        streamThread = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                long reconnectDelay = MIN_RECONNECT_DELAY;
+                while ( pushEnabled )
+                {
+                    if ( System.currentTimeMillis() - lastBulkTime >= pushResyncInterval )
+                    {
+                        resyncNeeded = true;
+                    }
+                    if ( resyncNeeded )
+                    {
+                        refresh( true );
+                    }
+                    if ( !resyncNeeded )
+                    {
+                        try
+                        {
+                            stream();
+                            reconnectDelay = MIN_RECONNECT_DELAY;
+                            continue;
+                        }
+                        catch ( Exception e )
+                        {
+                            logger.warn( "Error streaming component events from HMS OOB agent.", e );
+                        }
+                    }
+                    try
+                    {
+                        Thread.sleep( reconnectDelay );
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        break;
+                    }
+                    reconnectDelay = Math.min( reconnectDelay * 2, MAX_RECONNECT_DELAY );
+                }
+                synchronized ( OobComponentEventsCache.this )
+                {
+                    streamThread = null;
+                }
+            }
+        }, "oob-events-stream" );
+        streamThread.setDaemon( true );
+        streamThread.start();
+    }
+
+    /**
+     * Streams the updates since the last sequence number until the HMS OOB agent ends the stream, or an update is
+     * missed.
+     *
+     * @throws Exception
+     */
+    private void stream()
+        throws Exception
+    {
+        HttpGet request = new HttpGet( URIBuilder.getURI( Constants.HMS_EVENTS_STREAM_URI,
+                                                          "sinceSequence=" + lastSequence ) );
+        request.setConfig( RequestConfig.copy( HttpClientPool.getRequestConfig() )
+            .setSocketTimeout( STREAM_SOCKET_TIMEOUT ).build() );
+        CloseableHttpResponse response = HttpClientPool.getHttpClient().execute( request );
+        try
+        {
+            int statusCode = response.getStatusLine().getStatusCode();
+            if ( statusCode == HttpStatus.SC_GONE )
+            {
+                logger.info( "Component event updates since {} are not available, resyncing.", lastSequence );
+                resyncNeeded = true;
+                return;
+            }
+            HttpEntity entity = response.getEntity();
+            if ( statusCode != HttpStatus.SC_OK || entity == null )
+            {
+                throw new HmsException( "Error while streaming component events from HMS OOB agent, status code: "
+                    + statusCode );
+            }
+            BufferedReader reader = new BufferedReader( new InputStreamReader( entity.getContent(), "UTF-8" ) );
+            streaming = true;
+            String line;
+            while ( pushEnabled && ( line = reader.readLine() ) != null )
+            {
+                if ( line.isEmpty() )
+                {
+                    continue;
+                }
+                ComponentEventsUpdate update = objectMapper.readValue( line, ComponentEventsUpdate.class );
+                if ( update.getSequence() != lastSequence + 1 )
+                {
+                    logger.info( "Missed component event updates between {} and {}, resyncing.", lastSequence,
+                                 update.getSequence() );
+                    resyncNeeded = true;
+                    return;
+                }
+                apply( update, System.currentTimeMillis() );
+                lastSequence = update.getSequence();
+            }
+        }
+        finally
+        {
+            streaming = false;
+            response.close();
+        }
+    }
+
+    public boolean isStreaming()
+    {
+        return streaming;
+    }
+
+    public long getLastSequence()
+    {
+        return lastSequence;
+    }
+
+    public void setBulkEnabled( boolean bulkEnabled )
+    {
+        this.bulkEnabled = bulkEnabled;
+    }
+
+    public void setBulkMaxAge( long bulkMaxAge )
+    {
+        this.bulkMaxAge = bulkMaxAge;
+    }
+
+    public void setPushEnabled( boolean pushEnabled )
+    {
+        this.pushEnabled = pushEnabled;
+    }
+
+    public void setPushResyncInterval( long pushResyncInterval )
+    {
+        this.pushResyncInterval = pushResyncInterval;
+    }
+
+    /**
+     * Events of a component of a node, and the time they were fetched or updated at.
+     */
+    private static class CachedEvents
+    {
+        private final List<Event> events;
+
+        private final long time;
+
+        private CachedEvents( List<Event> events, long time )
+        {
+            this.events = events;
+            this.time = time;
+        }
+    }
+}
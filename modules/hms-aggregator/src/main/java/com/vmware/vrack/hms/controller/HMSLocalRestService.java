@@ -47,6 +47,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestClientException;
@@ -62,6 +63,7 @@ import com.vmware.vrack.hms.aggregator.HMSAboutResponseAggregator;
 import com.vmware.vrack.hms.aggregator.HmsOutOfBandHandshakeTask;
 import com.vmware.vrack.hms.aggregator.HostDataAggregator;
 import com.vmware.vrack.hms.aggregator.TopologyAggregator;
+import com.vmware.vrack.hms.aggregator.topology.object.NetworkTopologySnapshot;
 import com.vmware.vrack.hms.aggregator.util.InventoryUtil;
 import com.vmware.vrack.hms.aggregator.util.ServerInfoHelperUtil;
 import com.vmware.vrack.hms.boardservice.ib.InbandServiceImpl;
@@ -86,11 +88,14 @@ import com.vmware.vrack.hms.common.topology.NetTopElement;
 import com.vmware.vrack.hms.common.util.Constants;
 import com.vmware.vrack.hms.common.util.HmsGenericUtil;
 import com.vmware.vrack.hms.inventory.HmsCacheValidateEnum;
+import com.vmware.vrack.hms.inventory.HmsCacheWarmUpStatus;
 import com.vmware.vrack.hms.inventory.HmsDataCache;
 import com.vmware.vrack.hms.inventory.InventoryLoader;
 import com.vmware.vrack.hms.inventory.ServerDataChangeMessage;
 import com.vmware.vrack.hms.inventory.SwitchDataChangeMessage;
+import com.vmware.vrack.hms.inventory.VersionedCacheMap;
 import com.vmware.vrack.hms.rest.factory.HmsOobAgentRestTemplate;
+import com.vmware.vrack.hms.rest.factory.HmsOobAgentStreamingProxy;
 
 /**
 * Generic Class to handle requests coming to hms-aggregator.
@@ -109,6 +114,15 @@ public class HMSLocalRestService
     /** The logger. */
     private static Logger logger = LoggerFactory.getLogger( HMSLocalRestService.class );
 
+    /** Response header holding the version of the network topology. */
+    private static final String TOPOLOGY_VERSION_HEADER = "X-Topology-Version";
+
+    /** Response header holding the version of the host or switch cache, to pass as sinceVersion on the next poll. */
+    private static final String CACHE_VERSION_HEADER = "X-Cache-Version";
+
+    /** Response header set when only the cache entries which changed since the requested version are returned. */
+    private static final String CACHE_DELTA_HEADER = "X-Cache-Delta";
+
     /** The inband service impl. */
     InbandServiceImpl inbandServiceImpl = new InbandServiceImpl();
 
@@ -149,6 +163,9 @@ public class HMSLocalRestService
     @Autowired
     private HostDataAggregator hostDataAggregator;
 
+    @Autowired
+    private HmsOobAgentStreamingProxy oobAgentStreamingProxy;
+
     /**
      * Gets the mirror host info.
      *
@@ -168,6 +185,12 @@ public class HMSLocalRestService
                                                      HttpServletRequest request, HttpServletResponse response )
         throws HMSRestException, JsonParseException, JsonMappingException, IOException
     {
+        if ( oobAgentStreamingProxy.isStreamingEnabled() )
+        {
+            oobAgentStreamingProxy.stream( request, body, response );
+            return null;
+        }
+
         ResponseEntity<Object> nodes;
         String path = null;
 
@@ -415,25 +438,33 @@ public class HMSLocalRestService
      * @param method the method
      * @param request the request
      * @param response the response
-     * @return List of Nodes
+     * @param sinceVersion version of the cache the caller has, to get only the hosts which changed since
+     * @return List of Nodes, null with status 304 if the cache did not change since the version of If-None-Match
      * @throws HMSRestException the HMS rest exception
      */
     @RequestMapping( value = "/host/cache", method = RequestMethod.GET )
     @ResponseBody
     public Map<String, ServerInfo> getAllHostCache( @RequestBody( required = false ) String body, HttpMethod method,
-                                                    HttpServletRequest request, HttpServletResponse response )
+                                                    HttpServletRequest request, HttpServletResponse response,
+                                                    @RequestParam( value = "sinceVersion",
+                                                                   required = false ) Long sinceVersion )
         throws HMSRestException
     {
         try
         {
             Collection<ServerNode> hosts = InventoryLoader.getInstance().getNodeMap().values();
+            if ( hmsDataCache.isWarmingUp() )
+            {
+                // wait for the hosts which are not warmed up yet, rather than serving them from the inventory data
+                hmsDataCache.awaitWarmUp();
+            }
 
             logger.debug( "Got the Host list Inventory to validate the HMS In memory Host cache data" );
             HmsCacheValidateEnum validate = hmsDataCache.validateHostCache( hosts );
             if ( validate != null && validate.equals( HmsCacheValidateEnum.VALID ) )
             {
                 logger.debug( "HMS In memory Host cache data validation successful, returing the Host cache" );
-                return hmsDataCache.getServerInfoMap();
+                return getCacheResponse( hmsDataCache.getServerInfoSnapshot(), sinceVersion, request, response );
             }
             else
             {
@@ -450,6 +481,18 @@ public class HMSLocalRestService
         }
     }
 
+    /**
+     * Returns the progress of the warm-up of the HMS host cache at boot up, with its time to ready.
+     *
+     * @return the warm-up status
+     */
+    @RequestMapping( value = "/host/cache/status", method = RequestMethod.GET )
+    @ResponseBody
+    public HmsCacheWarmUpStatus getHostCacheWarmUpStatus()
+    {
+        return hmsDataCache.getWarmUpStatus();
+    }
+
     /**
      * Returns the HMS cache Data (SwitchInfo).
      *
@@ -457,13 +500,16 @@ public class HMSLocalRestService
      * @param method the method
      * @param request the request
      * @param response the response
-     * @return List of Nodes
+     * @param sinceVersion version of the cache the caller has, to get only the switches which changed since
+     * @return List of Nodes, null with status 304 if the cache did not change since the version of If-None-Match
      * @throws HMSRestException the HMS rest exception
      */
     @RequestMapping( value = "/switch/cache", method = RequestMethod.GET )
     @ResponseBody
     public Map<String, NBSwitchInfo> getAllSwitchCache( @RequestBody( required = false ) String body, HttpMethod method,
-                                                        HttpServletRequest request, HttpServletResponse response )
+                                                        HttpServletRequest request, HttpServletResponse response,
+                                                        @RequestParam( value = "sinceVersion",
+                                                                       required = false ) Long sinceVersion )
         throws HMSRestException
     {
         try
@@ -479,7 +525,7 @@ public class HMSLocalRestService
             if ( validate != null && validate.equals( HmsCacheValidateEnum.VALID ) )
             {
                 logger.debug( "HMS In memory Switch cache data validation successful, returing the Switch cache" );
-                return hmsDataCache.getSwitchInfoMap();
+                return getCacheResponse( hmsDataCache.getSwitchInfoSnapshot(), sinceVersion, request, response );
             }
             else
             {
@@ -496,6 +542,37 @@ public class HMSLocalRestService
         }
     }
 
+    /**
+     * Returns the entries of the cache snapshot, with its version as entity tag. Only the entries which changed since
+     * the given version are returned, the removed ones mapped to null, if the version is known to the cache.
+     *
+     * @param snapshot
+     * @param sinceVersion
+     * @param request
+     * @param response
+     * @return entries of the cache, null with status 304 if it did not change since the version of If-None-Match
+     */
+    private <V> Map<String, V> getCacheResponse( VersionedCacheMap.Snapshot<V> snapshot, Long sinceVersion,
+                                                 HttpServletRequest request, HttpServletResponse response )
+    {
+        String etag = "\"" + snapshot.getVersion() + "\"";
+        response.setHeader( HttpHeaders.ETAG, etag );
+        response.setHeader( CACHE_VERSION_HEADER, String.valueOf( snapshot.getVersion() ) );
+
+        String ifNoneMatch = request.getHeader( HttpHeaders.IF_NONE_MATCH );
+        if ( ifNoneMatch != null && ifNoneMatch.contains( etag ) )
+        {
+            response.setStatus( HttpStatus.NOT_MODIFIED.value() );
+            return null;
+        }
+        if ( sinceVersion != null && snapshot.isDeltaAvailable( sinceVersion ) )
+        {
+            response.setHeader( CACHE_DELTA_HEADER, Boolean.TRUE.toString() );
+            return snapshot.getChangesSince( sinceVersion );
+        }
+        return snapshot.getValues();
+    }
+
     /**
      * Gets the discovery status.
      *
@@ -540,7 +617,7 @@ public class HMSLocalRestService
      * @param method the method
      * @param request the request
      * @param response the response
-     * @return the net top
+     * @return the net top, null with status 304 if it did not change since the version of If-None-Match
      * @throws HMSRestException the HMS rest exception
      */
     @RequestMapping( value = "/topology", method = RequestMethod.GET )
@@ -549,8 +626,17 @@ public class HMSLocalRestService
                                           HttpServletRequest request, HttpServletResponse response )
         throws HMSRestException
     {
+        NetworkTopologySnapshot snapshot = topologyAggregator.getNetworkTopologySnapshot();
+        response.setHeader( HttpHeaders.ETAG, snapshot.getEtag() );
+        response.setHeader( TOPOLOGY_VERSION_HEADER, String.valueOf( snapshot.getVersion() ) );
 
-        return topologyAggregator.getNetworkTopology( body, method, request, response );
+        String ifNoneMatch = request.getHeader( HttpHeaders.IF_NONE_MATCH );
+        if ( ifNoneMatch != null && ifNoneMatch.contains( snapshot.getEtag() ) )
+        {
+            response.setStatus( HttpStatus.NOT_MODIFIED.value() );
+            return null;
+        }
+        return snapshot.getElements();
     }
 
     /**
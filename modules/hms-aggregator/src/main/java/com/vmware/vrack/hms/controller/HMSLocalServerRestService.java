@@ -78,6 +78,7 @@ import com.vmware.vrack.hms.inventory.FruDataChangeMessage;
 import com.vmware.vrack.hms.inventory.HmsDataCache;
 import com.vmware.vrack.hms.inventory.InventoryLoader;
 import com.vmware.vrack.hms.rest.factory.HmsOobAgentRestTemplate;
+import com.vmware.vrack.hms.rest.factory.HmsOobAgentStreamingProxy;
 import com.vmware.vrack.hms.service.provider.InBandServiceProvider;
 
 @Controller
@@ -105,14 +106,23 @@ public class HMSLocalServerRestService
     @Value( "${hms.ib.inventory.location}" )
     private String hmsIbInventoryLocation;
 
+    @Autowired
+    private HmsOobAgentStreamingProxy oobAgentStreamingProxy;
+
     @RequestMapping( value = { "/{host_id}/selftest", "/{host_id}/bmcusers", "/{host_id}/acpipowerstate",
         "/{host_id}/bootoptions", "/{host_id}/remoteconsoledetails", "/{host_id}/startremoteconsole" },
                      method = RequestMethod.GET )
     @ResponseBody
     public ResponseEntity<Object> getMirrorHostInfo( @RequestBody( required = false ) String body, HttpMethod method,
                                                      HttpServletRequest request, HttpServletResponse response )
-        throws HMSRestException
+        throws HMSRestException, IOException
     {
+        if ( oobAgentStreamingProxy.isStreamingEnabled() )
+        {
+            oobAgentStreamingProxy.stream( request, body, response );
+            return null;
+        }
+
         ResponseEntity<Object> nodes;
         String path = request.getServletPath() + request.getPathInfo();
         try
@@ -192,6 +202,11 @@ public class HMSLocalServerRestService
             if ( !InventoryLoader.getInstance().getNodeMap().containsKey( host_id ) )
                 throw new HMSRestException( Status.NOT_FOUND.getStatusCode(), "Invalid Request",
                                             "Can't find host with id " + host_id );
+            else if ( hmsDataCache.isWarmingUp() )
+            {
+                // joins the warm-up of the host, or serves it once warm, rather than fetching it again
+                return hmsDataCache.getServerInfo( host_id );
+            }
             else
             {
                 return aggregator.getServerInfo( host_id );
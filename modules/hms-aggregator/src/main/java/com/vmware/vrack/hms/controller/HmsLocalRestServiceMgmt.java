@@ -15,8 +15,11 @@
  * *******************************************************************************/
 package com.vmware.vrack.hms.controller;
 
+import java.util.Map;
+
 import javax.ws.rs.core.Response.Status;
 
+import org.apache.http.pool.PoolStats;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -35,6 +38,7 @@ import com.vmware.vrack.hms.aggregator.util.HMSDebuggerComponent;
 import com.vmware.vrack.hms.common.exception.HMSRestException;
 import com.vmware.vrack.hms.common.exception.HmsException;
 import com.vmware.vrack.hms.common.notification.BaseResponse;
+import com.vmware.vrack.hms.common.util.HttpClientPool;
 import com.vmware.vrack.hms.inventory.InventoryLoader;
 
 @Controller
@@ -255,4 +259,16 @@ public class HmsLocalRestServiceMgmt
         }
 
     }
+
+    /**
+     * Debug endpoint, that will get the statistics of the pooled HTTP connections, per route and in total
+     *
+     * @return leased, pending, available and max connections keyed by route
+     */
+    @RequestMapping( value = "/debug/httpclient/pool", method = RequestMethod.GET )
+    @ResponseBody
+    public Map<String, PoolStats> getHttpClientPoolStats()
+    {
+        return HttpClientPool.getPoolStats();
+    }
 }
@@ -0,0 +1,143 @@
+/* ********************************************************************************
+ * HmsCacheWarmUpStatus.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.inventory;
+
+import java.util.List;
+
+/**
+ * Progress of the warm-up of the HMS host cache at aggregator boot up, as reported by {@link HmsDataCache}.
+ *
+ * @author VMware, Inc.
+ */
+public class HmsCacheWarmUpStatus
+{
+    private boolean enabled;
+
+    private boolean complete;
+
+    private int total;
+
+    private int ready;
+
+    private int failed;
+
+    private long startTime;
+
+    private long timeToReadyInMs;
+
+    private List<String> pendingNodes;
+
+    /**
+     * @return whether the host cache is warmed up at boot up, i.e. hms.cache.flag
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public void setEnabled( boolean enabled )
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return whether the host info of all the nodes was fetched, successfully or not
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    public void setComplete( boolean complete )
+    {
+        this.complete = complete;
+    }
+
+    /**
+     * @return number of nodes to warm up
+     */
+    public int getTotal()
+    {
+        return total;
+    }
+
+    public void setTotal( int total )
+    {
+        this.total = total;
+    }
+
+    /**
+     * @return number of nodes whose host info is in the cache
+     */
+    public int getReady()
+    {
+        return ready;
+    }
+
+    public void setReady( int ready )
+    {
+        this.ready = ready;
+    }
+
+    /**
+     * @return number of nodes whose host info could not be fetched
+     */
+    public int getFailed()
+    {
+        return failed;
+    }
+
+    public void setFailed( int failed )
+    {
+        this.failed = failed;
+    }
+
+    public long getStartTime()
+    {
+        return startTime;
+    }
+
+    public void setStartTime( long startTime )
+    {
+        this.startTime = startTime;
+    }
+
+    /**
+     * @return time from the start of the warm-up until all nodes were fetched, 0 while it is not complete
+     */
+    public long getTimeToReadyInMs()
+    {
+        return timeToReadyInMs;
+    }
+
+    public void setTimeToReadyInMs( long timeToReadyInMs )
+    {
+        this.timeToReadyInMs = timeToReadyInMs;
+    }
+
+    /**
+     * @return nodes whose host info is not fetched yet
+     */
+    public List<String> getPendingNodes()
+    {
+        return pendingNodes;
+    }
+
+    public void setPendingNodes( List<String> pendingNodes )
+    {
+        this.pendingNodes = pendingNodes;
+    }
+}
@@ -16,12 +16,20 @@
 
 package com.vmware.vrack.hms.inventory;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.PostConstruct;
 
@@ -48,7 +56,8 @@ import com.vmware.vrack.hms.common.servernodes.api.ServerNode;
 import com.vmware.vrack.hms.common.servernodes.api.SwitchComponentEnum;
 
 /**
- * HMS Data Cache.
+ * HMS Data Cache. The server and switch caches are copy-on-write maps with versions, so that events can update them
+ * while REST threads read them, and pollers can get the entries which changed since their last poll.
  */
 @Component
 public class HmsDataCache
@@ -62,16 +71,39 @@ public class HmsDataCache
     @Value( "${hms.cache.flag}" )
     private boolean hmsCacheFlag;
 
-    private Map<String, ServerInfo> serverInfoMap = new HashMap<String, ServerInfo>();
+    private final VersionedCacheMap<ServerInfo> serverInfoMap = new VersionedCacheMap<ServerInfo>();
 
-    private Map<String, NBSwitchInfo> switchInfoMap = new HashMap<String, NBSwitchInfo>();
+    private final VersionedCacheMap<NBSwitchInfo> switchInfoMap = new VersionedCacheMap<NBSwitchInfo>();
 
-    private static final ReentrantLock switchCacheUpdateLock = new ReentrantLock();
+    @Value( "${hms.cache.warmup.parallelism:8}" )
+    private int warmUpParallelism = 8;
+
+    /** Fetches of the nodes not warmed up yet, keyed by node id */
+    private final Map<String, FutureTask<ServerInfo>> warmUpTasks =
+        new ConcurrentHashMap<String, FutureTask<ServerInfo>>();
+
+    private final Set<String> warmNodes = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
+    private final AtomicInteger warmUpRemaining = new AtomicInteger();
+
+    private final AtomicInteger warmUpFailed = new AtomicInteger();
+
+    private volatile int warmUpTotal;
+
+    private volatile long warmUpStartTime;
+
+    private volatile long warmUpTimeToReady;
+
+    private volatile boolean warmUpComplete;
 
     /**
      * Create the HMS cache data when HMS Aggregator bootsup. hms.cache.flag by default set to false, meaning HMS will
      * not create the cache on Aggregator bootsup. hms.cache.flag set to true - HMS will create the cache on Aggregator
      * bootsup.
+     * <p>
+     * The host info of the nodes is fetched in background, hms.cache.warmup.parallelism nodes at a time, so that the
+     * boot up does not wait for it. Until a node is warmed up, {@link #getServerInfo(String)} fetches it on the calling
+     * thread instead, or waits for its fetch in progress.
      */
     @PostConstruct
     public void createHMScache()
@@ -80,33 +112,220 @@ public class HmsDataCache
         // hmsCacheFlag set to true
         if ( hmsCacheFlag == true )
         {
-
             Map<String, ServerNode> serverNodeMap = InventoryLoader.getInstance().getNodeMap();
+            List<String> nodeIds = new ArrayList<String>();
+            for ( ServerNode serverNode : serverNodeMap.values() )
+            {
+                nodeIds.add( serverNode.getNodeID() );
+            }
+            startWarmUp( nodeIds );
+        }
+    }
 
-            Iterator<Map.Entry<String, ServerNode>> entries = serverNodeMap.entrySet().iterator();
-            while ( entries.hasNext() )
+    private void startWarmUp( List<String> nodeIds )
+    {
+        warmUpStartTime = System.currentTimeMillis();
+        warmUpTotal = nodeIds.size();
+        warmUpRemaining.set( nodeIds.size() );
+        if ( nodeIds.isEmpty() )
+        {
+            warmUpTimeToReady = 0;
+            warmUpComplete = true;
+            return;
+        }
+        logger.info( "Warming up the HMS host cache for {} nodes in background", nodeIds.size() );
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor =
+            Executors.newFixedThreadPool( Math.max( 1, Math.min( warmUpParallelism, nodeIds.size() ) ),
+                                          new ThreadFactory()
+                                          {
+                                              @Override
+                                              public Thread newThread( Runnable runnable )
+                                              {
+                                                  Thread thread = new Thread( runnable, "hms-cache-warmup-"
+                                                      + threadCount.incrementAndGet() );
+                                                  thread.setDaemon( true );
+                                                  return thread;
+                                              }
+                                          } );
+        for ( final String nodeId : nodeIds )
+        {
+            FutureTask<ServerInfo> task = new FutureTask<ServerInfo>( new Callable<ServerInfo>()
             {
-                Map.Entry<String, ServerNode> entry = entries.next();
-                try
-                {
-                    aggregator.getServerInfo( entry.getValue().getNodeID() );
-                }
-                catch ( HmsException e )
+                @Override
+                public ServerInfo call()
+                    throws Exception
                 {
-                    logger.error( "Error while creating the HMS cache on HMS aggregator boot up", e );
+                    return warmUp( nodeId );
                 }
+            } );
+            warmUpTasks.put( nodeId, task );
+        }
+        for ( FutureTask<ServerInfo> task : warmUpTasks.values() )
+        {
+            executor.execute( task );
+        }
+        // the queued tasks still run, the threads exit once they are done
+        executor.shutdown();
+    }
+
+    private ServerInfo warmUp( String nodeId )
+        throws HmsException
+    {
+        boolean warm = false;
+        try
+        {
+            ServerInfo serverInfo = aggregator.getServerInfo( nodeId );
+            warm = true;
+            return serverInfo;
+        }
+        catch ( HmsException e )
+        {
+            logger.error( "Error while creating the HMS cache for node {} on HMS aggregator boot up", nodeId, e );
+            throw e;
+        }
+        finally
+        {
+            if ( warm )
+            {
+                warmNodes.add( nodeId );
+            }
+            else
+            {
+                warmUpFailed.incrementAndGet();
+            }
+            warmUpTasks.remove( nodeId );
+            if ( warmUpRemaining.decrementAndGet() == 0 )
+            {
+                warmUpTimeToReady = System.currentTimeMillis() - warmUpStartTime;
+                warmUpComplete = true;
+                logger.info( "HMS host cache warmed up in {} ms, {} of {} nodes failed", warmUpTimeToReady,
+                             warmUpFailed.get(), warmUpTotal );
             }
         }
     }
 
+    /**
+     * Gets the host info of the node from the cache. If the cache is being warmed up and the node is not warm yet, the
+     * host info is fetched on this thread, or the fetch in progress is waited for. If the node is not in the cache, its
+     * host info is fetched live.
+     *
+     * @param nodeId
+     * @return
+     * @throws HmsException
+     */
+    public ServerInfo getServerInfo( String nodeId )
+        throws HmsException
+    {
+        FutureTask<ServerInfo> task = warmUpTasks.get( nodeId );
+        if ( task == null )
+        {
+            ServerInfo serverInfo = serverInfoMap.get( nodeId );
+            return ( serverInfo != null ) ? serverInfo : aggregator.getServerInfo( nodeId );
+        }
+        // runs the warm-up of the node here unless it started already, in which case it waits for it
+        task.run();
+        try
+        {
+            return task.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new HmsException( "Interrupted while warming up the HMS cache for node " + nodeId, e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new HmsException( "Error while warming up the HMS cache for node " + nodeId, e.getCause() );
+        }
+    }
+
+    /**
+     * Waits for the warm-up of the nodes not warm yet. They are fetched in background on the warm-up threads, rather
+     * than one at a time on the calling thread. A node whose fetch fails is left out of the cache.
+     *
+     * @throws HmsException if interrupted while waiting
+     */
+    public void awaitWarmUp()
+        throws HmsException
+    {
+        for ( Map.Entry<String, FutureTask<ServerInfo>> entry : warmUpTasks.entrySet() )
+        {
+            try
+            {
+                entry.getValue().get();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new HmsException( "Interrupted while waiting for the HMS cache to warm up", e );
+            }
+            catch ( ExecutionException e )
+            {
+                logger.debug( "Warm-up of the HMS cache failed for node {}", entry.getKey() );
+            }
+        }
+    }
+
+    /**
+     * Checks if the host info of the node was fetched by the cache warm-up.
+     *
+     * @param nodeId
+     * @return false if the node is not warm yet, or its fetch failed
+     */
+    public boolean isServerInfoWarm( String nodeId )
+    {
+        return warmNodes.contains( nodeId );
+    }
+
+    /**
+     * Checks if the cache is being warmed up, i.e. hms.cache.flag is set and some nodes are not fetched yet.
+     *
+     * @return
+     */
+    public boolean isWarmingUp()
+    {
+        return hmsCacheFlag && !warmUpComplete;
+    }
+
+    /**
+     * Gets the progress of the cache warm-up, with the time until all nodes were fetched.
+     *
+     * @return
+     */
+    public HmsCacheWarmUpStatus getWarmUpStatus()
+    {
+        HmsCacheWarmUpStatus status = new HmsCacheWarmUpStatus();
+        status.setEnabled( hmsCacheFlag );
+        status.setComplete( warmUpComplete );
+        status.setTotal( warmUpTotal );
+        status.setReady( warmNodes.size() );
+        status.setFailed( warmUpFailed.get() );
+        status.setStartTime( warmUpStartTime );
+        status.setTimeToReadyInMs( warmUpTimeToReady );
+        status.setPendingNodes( new ArrayList<String>( warmUpTasks.keySet() ) );
+        return status;
+    }
+
     /**
      * Get the HMS server cache.
      *
-     * @return Map<String, ServerInfo>
+     * @return Map<String, ServerInfo>, unmodifiable
      */
     public Map<String, ServerInfo> getServerInfoMap()
     {
-        return serverInfoMap;
+        return serverInfoMap.getValues();
+    }
+
+    /**
+     * Get the current version of the HMS server cache, with the versions of its entries.
+     *
+     * @return
+     */
+    public VersionedCacheMap.Snapshot<ServerInfo> getServerInfoSnapshot()
+    {
+        return serverInfoMap.getSnapshot();
     }
 
     /**
@@ -118,18 +337,28 @@ public class HmsDataCache
     {
         if ( serverInfoMap != null )
         {
-            this.serverInfoMap = serverInfoMap;
+            this.serverInfoMap.replaceAll( serverInfoMap );
         }
     }
 
     /**
      * Get the HMS switch cache.
      *
-     * @return Map<String, NBSwitchInfo>
+     * @return Map<String, NBSwitchInfo>, unmodifiable
      */
     public Map<String, NBSwitchInfo> getSwitchInfoMap()
     {
-        return switchInfoMap;
+        return switchInfoMap.getValues();
+    }
+
+    /**
+     * Get the current version of the HMS switch cache, with the versions of its entries.
+     *
+     * @return
+     */
+    public VersionedCacheMap.Snapshot<NBSwitchInfo> getSwitchInfoSnapshot()
+    {
+        return switchInfoMap.getSnapshot();
     }
 
     /**
@@ -141,7 +370,7 @@ public class HmsDataCache
     {
         if ( switchInfoMap != null )
         {
-            this.switchInfoMap = switchInfoMap;
+            this.switchInfoMap.replaceAll( switchInfoMap );
         }
     }
 
@@ -187,9 +416,6 @@ public class HmsDataCache
     public void updateHmsSwitchDataCache( String switchId, SwitchComponentEnum component, FruComponent fruComponent )
         throws Exception
     {
-        // Acquired the lock to update switch cache
-        switchCacheUpdateLock.lock();
-        logger.info( String.format( "Acquired the lock to update the Switch cache." ) );
         try
         {
             switch ( component )
@@ -206,12 +432,6 @@ public class HmsDataCache
         {
             logger.error( "Error while updating the HMS Switch cache for Switch Node: {}", switchId, e );
         }
-        finally
-        {
-            // release the acquired lock for other thread to update switch cache
-            switchCacheUpdateLock.unlock();
-            logger.info( "Released the lock for other thread to update switch cache." );
-        }
     }
 
     /**
@@ -227,8 +447,12 @@ public class HmsDataCache
 
         try
         {
-            if ( switchInfoMap.get( switchID ) != null )
-                switchInfoMap.get( switchID ).setPorts( portsList );
+            NBSwitchInfo switchInfo = switchInfoMap.get( switchID );
+            if ( switchInfo != null )
+            {
+                switchInfo.setPorts( portsList );
+                switchInfoMap.touch( switchID );
+            }
         }
         catch ( Exception e )
         {
@@ -237,6 +461,17 @@ public class HmsDataCache
         }
     }
 
+    /**
+     * Records that the cached host info of the node was modified in place, giving it a new cache version.
+     *
+     * @param nodeId the node id
+     * @return false if the node is not in the cache
+     */
+    public boolean touchServerInfo( String nodeId )
+    {
+        return serverInfoMap.touch( nodeId );
+    }
+
     /**
      * Update the HMS Server FRU cache.
      *
@@ -252,31 +487,32 @@ public class HmsDataCache
 
         try
         {
+            ServerInfo serverInfo = serverInfoMap.get( node_id );
+            if ( serverInfo == null )
+            {
+                return;
+            }
             switch ( component )
             {
                 case CPU:
-                    if ( serverInfoMap.get( node_id ) != null )
-                        serverInfoMap.get( node_id ).setCpuInfo( (List<CpuInfo>) (List<?>) fruComponent );
+                    serverInfo.setCpuInfo( (List<CpuInfo>) (List<?>) fruComponent );
                     break;
                 case STORAGE:
-                    if ( serverInfoMap.get( node_id ) != null )
-                        serverInfoMap.get( node_id ).setStorageInfo( (List<StorageInfo>) (List<?>) fruComponent );
+                    serverInfo.setStorageInfo( (List<StorageInfo>) (List<?>) fruComponent );
                     break;
                 case MEMORY:
-                    if ( serverInfoMap.get( node_id ) != null )
-                        serverInfoMap.get( node_id ).setMemoryInfo( (List<MemoryInfo>) (List<?>) fruComponent );
+                    serverInfo.setMemoryInfo( (List<MemoryInfo>) (List<?>) fruComponent );
                     break;
                 case NIC:
-                    if ( serverInfoMap.get( node_id ) != null )
-                        serverInfoMap.get( node_id ).setEthernetControllerList( (List<EthernetController>) (List<?>) fruComponent );
+                    serverInfo.setEthernetControllerList( (List<EthernetController>) (List<?>) fruComponent );
                     break;
                 case STORAGE_CONTROLLER:
-                    if ( serverInfoMap.get( node_id ) != null )
-                        serverInfoMap.get( node_id ).setStorageController( (List<StorageController>) (List<?>) fruComponent );
+                    serverInfo.setStorageController( (List<StorageController>) (List<?>) fruComponent );
                     break;
                 default:
-                    break;
+                    return;
             }
+            serverInfoMap.touch( node_id );
         }
         catch ( Exception e )
         {
@@ -400,7 +636,7 @@ public class HmsDataCache
      */
     public ServerInfo removerServer( final String hostId )
     {
-        if ( hostId != null && this.serverInfoMap.containsKey( hostId ) )
+        if ( hostId != null && this.serverInfoMap.getValues().containsKey( hostId ) )
         {
             ServerInfo serverInfo = this.serverInfoMap.remove( hostId );
             if ( serverInfo != null && StringUtils.equals( hostId, serverInfo.getNodeId() ) )
@@ -21,6 +21,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
 
+import com.vmware.vrack.hms.aggregator.TopologyAggregator;
+
 /**
  * HMS Switch FRU cache update listener
  */
@@ -32,6 +34,9 @@ public class SwitchCacheUpdateListener
     @Autowired
     private HmsDataCache hmsDataCache;
 
+    @Autowired
+    private TopologyAggregator topologyAggregator;
+
     private static Logger logger = Logger.getLogger( SwitchCacheUpdateListener.class );
 
     /**
@@ -42,8 +47,13 @@ public class SwitchCacheUpdateListener
     @Override
     public void onApplicationEvent( SwitchDataChangeMessage event )
     {
-        // read event and update the cache.
+        // the ports or VLANs of the switch may have changed, read them again for the next topology request
+        if ( topologyAggregator != null && event.getSwitchInfo() != null )
+        {
+            topologyAggregator.invalidateSwitch( event.getSwitchInfo().getSwitchId() );
+        }
 
+        // read event and update the cache.
         try
         {
             hmsDataCache.updateHmsSwitchDataCache( event.getSwitchInfo().getSwitchId(), event.getComponent(),
@@ -65,4 +75,14 @@ public class SwitchCacheUpdateListener
     {
         this.hmsDataCache = hmsDataCache;
     }
+
+    public TopologyAggregator getTopologyAggregator()
+    {
+        return topologyAggregator;
+    }
+
+    public void setTopologyAggregator( TopologyAggregator topologyAggregator )
+    {
+        this.topologyAggregator = topologyAggregator;
+    }
 }
@@ -21,6 +21,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
 
+import com.vmware.vrack.hms.aggregator.TopologyAggregator;
+
 /**
  * Listener for the Switch config change - Switch port Information
  */
@@ -32,6 +34,9 @@ public class SwitchPortsConfigUpdateListener
     @Autowired
     private HmsDataCache hmsDataCache;
 
+    @Autowired
+    private TopologyAggregator topologyAggregator;
+
     private static Logger logger = Logger.getLogger( SwitchPortsConfigUpdateListener.class );
 
     /**
@@ -42,6 +47,12 @@ public class SwitchPortsConfigUpdateListener
     @Override
     public void onApplicationEvent( SwitchPortsConfigChangeMessage event )
     {
+        // the ports or VLANs of the switch may have changed, read them again for the next topology request
+        if ( topologyAggregator != null )
+        {
+            topologyAggregator.invalidateSwitch( event.getSwitchID() );
+        }
+
         // read event and update the cache.
         try
         {
@@ -64,4 +75,14 @@ public class SwitchPortsConfigUpdateListener
     {
         this.hmsDataCache = hmsDataCache;
     }
+
+    public TopologyAggregator getTopologyAggregator()
+    {
+        return topologyAggregator;
+    }
+
+    public void setTopologyAggregator( TopologyAggregator topologyAggregator )
+    {
+        this.topologyAggregator = topologyAggregator;
+    }
 }
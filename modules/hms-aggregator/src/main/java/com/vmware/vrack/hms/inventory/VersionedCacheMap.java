@@ -0,0 +1,229 @@
+/* ********************************************************************************
+ * VersionedCacheMap.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.inventory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Copy-on-write map of cached values with versions. Each write creates a new immutable {@link Snapshot} with the next
+ * version of the map, and records that version as the version of the written entry, so that readers never lock and
+ * can get the entries which changed since a version they already have.
+ * <p>
+ * Versions start from the creation time of the map in milliseconds, so that they keep increasing across restarts of
+ * the aggregator.
+ *
+ * @author VMware, Inc.
+ */
+public class VersionedCacheMap<V>
+{
+    private volatile Snapshot<V> snapshot;
+
+    public VersionedCacheMap()
+    {
+        long baseVersion = System.currentTimeMillis();
+        snapshot = new Snapshot<V>( baseVersion, baseVersion, new HashMap<String, V>(), new HashMap<String, Long>(),
+                                    new HashMap<String, Long>() );
+    }
+
+    /**
+     * @return current immutable snapshot of the map
+     */
+    public Snapshot<V> getSnapshot()
+    {
+        return snapshot;
+    }
+
+    /**
+     * @return current values of the map, unmodifiable
+     */
+    public Map<String, V> getValues()
+    {
+        return snapshot.values;
+    }
+
+    public V get( String key )
+    {
+        return snapshot.values.get( key );
+    }
+
+    public synchronized void put( String key, V value )
+    {
+        Snapshot<V> current = snapshot;
+        long version = current.version + 1;
+        Map<String, V> values = new HashMap<String, V>( current.values );
+        Map<String, Long> versions = new HashMap<String, Long>( current.versions );
+        Map<String, Long> removed = new HashMap<String, Long>( current.removed );
+        values.put( key, value );
+        versions.put( key, version );
+        removed.remove( key );
+        snapshot = new Snapshot<V>( current.baseVersion, version, values, versions, removed );
+    }
+
+    /**
+     * Records that the value of the entry was modified in place, giving it a new version.
+     *
+     * @param key
+     * @return false if the map has no such entry
+     */
+    public synchronized boolean touch( String key )
+    {
+        Snapshot<V> current = snapshot;
+        if ( !current.values.containsKey( key ) )
+        {
+            return false;
+        }
+        put( key, current.values.get( key ) );
+        return true;
+    }
+
+    /**
+     * @param key
+     * @return removed value, null if the map had no such entry
+     */
+    public synchronized V remove( String key )
+    {
+        Snapshot<V> current = snapshot;
+        if ( !current.values.containsKey( key ) )
+        {
+            return null;
+        }
+        long version = current.version + 1;
+        Map<String, V> values = new HashMap<String, V>( current.values );
+        Map<String, Long> versions = new HashMap<String, Long>( current.versions );
+        Map<String, Long> removed = new HashMap<String, Long>( current.removed );
+        V value = values.remove( key );
+        versions.remove( key );
+        removed.put( key, version );
+        snapshot = new Snapshot<V>( current.baseVersion, version, values, versions, removed );
+        return value;
+    }
+
+    /**
+     * Replaces all the entries of the map with the given ones, as a single version.
+     *
+     * @param newValues
+     */
+    public synchronized void replaceAll( Map<String, V> newValues )
+    {
+        Snapshot<V> current = snapshot;
+        long version = current.version + 1;
+        Map<String, V> values = new HashMap<String, V>( newValues );
+        Map<String, Long> versions = new HashMap<String, Long>();
+        Map<String, Long> removed = new HashMap<String, Long>( current.removed );
+        for ( String key : values.keySet() )
+        {
+            versions.put( key, version );
+            removed.remove( key );
+        }
+        for ( String key : current.values.keySet() )
+        {
+            if ( !values.containsKey( key ) )
+            {
+                removed.put( key, version );
+            }
+        }
+        snapshot = new Snapshot<V>( current.baseVersion, version, values, versions, removed );
+    }
+
+    /**
+     * Immutable state of the map at a version.
+     */
+    public static class Snapshot<V>
+    {
+        private final long baseVersion;
+
+        private final long version;
+
+        private final Map<String, V> values;
+
+        private final Map<String, Long> versions;
+
+        private final Map<String, Long> removed;
+
+        private Snapshot( long baseVersion, long version, Map<String, V> values, Map<String, Long> versions,
+                          Map<String, Long> removed )
+        {
+            this.baseVersion = baseVersion;
+            this.version = version;
+            this.values = Collections.unmodifiableMap( values );
+            this.versions = versions;
+            this.removed = removed;
+        }
+
+        public long getVersion()
+        {
+            return version;
+        }
+
+        /**
+         * @return values of the map at this version, unmodifiable
+         */
+        public Map<String, V> getValues()
+        {
+            return values;
+        }
+
+        /**
+         * @param key
+         * @return version at which the entry was last written, null if the map has no such entry
+         */
+        public Long getVersion( String key )
+        {
+            return versions.get( key );
+        }
+
+        /**
+         * Checks if the changes since the version can be told, i.e. if the version was created by this map and not by
+         * an earlier instance of it, whose removed entries are unknown.
+         *
+         * @param sinceVersion
+         * @return
+         */
+        public boolean isDeltaAvailable( long sinceVersion )
+        {
+            return sinceVersion >= baseVersion && sinceVersion <= version;
+        }
+
+        /**
+         * Gets the entries written since the version, and the entries removed since mapped to null.
+         *
+         * @param sinceVersion
+         * @return
+         */
+        public Map<String, V> getChangesSince( long sinceVersion )
+        {
+            Map<String, V> changes = new LinkedHashMap<String, V>();
+            for ( Map.Entry<String, Long> entry : versions.entrySet() )
+            {
+                if ( entry.getValue() > sinceVersion )
+                {
+                    changes.put( entry.getKey(), values.get( entry.getKey() ) );
+                }
+            }
+            for ( Map.Entry<String, Long> entry : removed.entrySet() )
+            {
+                if ( entry.getValue() > sinceVersion )
+                {
+                    changes.put( entry.getKey(), null );
+                }
+            }
+            return changes;
+        }
+    }
+}
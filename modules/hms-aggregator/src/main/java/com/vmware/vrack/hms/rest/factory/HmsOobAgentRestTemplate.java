@@ -18,6 +18,8 @@ package com.vmware.vrack.hms.rest.factory;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,10 +29,14 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import com.vmware.vrack.hms.common.exception.HmsException;
+import com.vmware.vrack.hms.common.util.HttpClientPool;
 
 /**
  * Customized class of {@link RestTemplate} and is generic based on {@link HttpEntity} type. This class creates the
@@ -38,7 +44,11 @@ import com.vmware.vrack.hms.common.exception.HmsException;
  * creating instance of these object from the clients every time {@link RestTemplate} object is created. <br/>
  * Note: The api's in this class will default to the Http/Https mode of communication as per the property -
  * hms.switch.default.scheme, if its required to have a communication irrespective of this value then use the api's in
- * the super class.
+ * the super class.<br/>
+ * All the instances share a request factory backed by the pooled keep-alive connections of {@link HttpClientPool}, so
+ * that a call to the HMS OOB agent does not pay for a new TCP connection and TLS handshake, and share the message
+ * converters, including the Jackson converter and its ObjectMapper, which are built once. Compressed (gzip/deflate)
+ * responses are accepted and transparently decompressed by the pooled client.
  *
  * @author spolepalli
  * @param <T>
@@ -57,8 +67,16 @@ public class HmsOobAgentRestTemplate<T>
 
     private HttpEntity<T> httpEntity = null;
 
+    private static volatile ClientHttpRequestFactory requestFactory;
+
+    private static volatile List<HttpMessageConverter<?>> messageConverters;
+
+    private static volatile HmsOobAgentRestTemplate<Object> defaultInstance;
+
     public HmsOobAgentRestTemplate()
     {
+        super( getMessageConverters() );
+        setRequestFactory( getRequestFactory() );
         httpHeaders.add( CONTENT_TYPE, this.contentType );
         this.httpEntity = new HttpEntity<T>( httpHeaders );
     }
@@ -66,12 +84,16 @@ public class HmsOobAgentRestTemplate<T>
     public HmsOobAgentRestTemplate( HttpHeaders httpHeaders )
         throws HmsException
     {
+        super( getMessageConverters() );
+        setRequestFactory( getRequestFactory() );
         this.httpEntity = new HttpEntity<T>( httpHeaders );
     }
 
     public HmsOobAgentRestTemplate( T entityBody, HttpHeaders httpHeaders )
         throws HmsException
     {
+        super( getMessageConverters() );
+        setRequestFactory( getRequestFactory() );
         if ( entityBody != null )
         {
             this.httpEntity = new HttpEntity<T>( entityBody, httpHeaders );
@@ -85,6 +107,8 @@ public class HmsOobAgentRestTemplate<T>
     public HmsOobAgentRestTemplate( T entityBody )
         throws HmsException
     {
+        super( getMessageConverters() );
+        setRequestFactory( getRequestFactory() );
         httpHeaders.add( CONTENT_TYPE, this.contentType );
         this.httpEntity = new HttpEntity<T>( entityBody, httpHeaders );
     }
@@ -92,6 +116,8 @@ public class HmsOobAgentRestTemplate<T>
     public HmsOobAgentRestTemplate( T entityBody, String contentType )
         throws HmsException
     {
+        super( getMessageConverters() );
+        setRequestFactory( getRequestFactory() );
         this.contentType = contentType;
         httpHeaders.add( CONTENT_TYPE, this.contentType );
 
@@ -324,6 +350,68 @@ public class HmsOobAgentRestTemplate<T>
                    ( System.currentTimeMillis() - currentTimeInMs ) );
     }
 
+    /**
+     * Returns the shared instance with the default JSON Content-Type header and no request body, for the calls that
+     * need no request specific entity. The instance is thread safe, and its http entity MUST NOT be changed.
+     *
+     * @return
+     */
+    public static HmsOobAgentRestTemplate<Object> getDefaultInstance()
+    {
+        if ( defaultInstance == null )
+        {
+            synchronized ( HmsOobAgentRestTemplate.class )
+            {
+                if ( defaultInstance == null )
+                {
+                    defaultInstance = new HmsOobAgentRestTemplate<Object>();
+                }
+            }
+        }
+        return defaultInstance;
+    }
+
+    /**
+     * Returns the message converters shared by all the instances, building the default converters of
+     * {@link RestTemplate} on first use.
+     *
+     * @return
+     */
+    private static List<HttpMessageConverter<?>> getMessageConverters()
+    {
+        if ( messageConverters == null )
+        {
+            synchronized ( HmsOobAgentRestTemplate.class )
+            {
+                if ( messageConverters == null )
+                {
+                    messageConverters = Collections.unmodifiableList( new RestTemplate().getMessageConverters() );
+                }
+            }
+        }
+        return messageConverters;
+    }
+
+    /**
+     * Returns the request factory shared by all the instances, creating it on first use.
+     *
+     * @return
+     */
+    private static ClientHttpRequestFactory getRequestFactory()
+    {
+        if ( requestFactory == null )
+        {
+            synchronized ( HmsOobAgentRestTemplate.class )
+            {
+                if ( requestFactory == null )
+                {
+                    requestFactory = new HttpComponentsClientHttpRequestFactory( HttpClientPool.getHttpClient() );
+                }
+            }
+        }
+        return requestFactory;
+    }
+
     public HttpEntity<T> getHttpEntity()
     {
         return this.httpEntity;
@@ -0,0 +1,214 @@
+/* ********************************************************************************
+ * HmsOobAgentStreamingProxy.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.rest.factory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.http.Consts;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import com.vmware.vrack.hms.common.exception.HMSRestException;
+import com.vmware.vrack.hms.common.exception.HmsException;
+import com.vmware.vrack.hms.common.util.HttpClientPool;
+
+/**
+ * Proxies a request to the HMS OOB agent, streaming the response status, headers and body as they are to the servlet
+ * response, instead of reading the response body into objects and writing them back. Compressed responses are passed
+ * through compressed, when the client accepts them. The controllers mirroring the HMS OOB agent stream through it when
+ * hms.oob.proxy.streaming.enabled is set.
+ *
+ * @author VMware, Inc.
+ */
+@Component
+public class HmsOobAgentStreamingProxy
+{
+    private static final Logger LOG = LoggerFactory.getLogger( HmsOobAgentStreamingProxy.class );
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Request headers passed through to the HMS OOB agent. */
+    private static final String[] REQUEST_HEADERS =
+        { HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING, HttpHeaders.ACCEPT_LANGUAGE, HttpHeaders.IF_NONE_MATCH,
+            HttpHeaders.IF_MODIFIED_SINCE };
+
+    /** Hop-by-hop response headers, which are not passed through. */
+    private static final Set<String> HOP_BY_HOP_HEADERS =
+        new HashSet<String>( Arrays.asList( "connection", "keep-alive", "proxy-authenticate", "proxy-authorization",
+                                            "te", "trailer", "transfer-encoding", "upgrade" ) );
+
+    /** Whether the responses of the HMS OOB agent are streamed through, instead of being read and written back. */
+    @Value( "${hms.oob.proxy.streaming.enabled:false}" )
+    private boolean streamingEnabled;
+
+    /**
+     * Socket timeout of the requests to the HMS OOB agent, in milliseconds. Default timeout of the pooled client if
+     * not positive.
+     */
+    @Value( "${hms.oob.proxy.timeout:0}" )
+    private int timeout;
+
+    /**
+     * @return whether the responses of the HMS OOB agent are to be streamed through
+     */
+    public boolean isStreamingEnabled()
+    {
+        return streamingEnabled;
+    }
+
+    /**
+     * Streams the response of the HMS OOB agent for the request to the servlet response, see
+     * {@link #proxy(HttpServletRequest, String, HttpServletResponse)}.
+     *
+     * @param request
+     * @param body request body, null if none
+     * @param response
+     * @throws HMSRestException if the HMS OOB agent could not be reached
+     * @throws IOException if the response could not be streamed
+     */
+    public void stream( HttpServletRequest request, String body, HttpServletResponse response )
+        throws HMSRestException, IOException
+    {
+        try
+        {
+            proxy( request, body, response );
+        }
+        catch ( HmsException e )
+        {
+            LOG.error( "Exception while streaming the response of hms.", e );
+            throw new HMSRestException( HttpStatus.INTERNAL_SERVER_ERROR.value(), "Server Error",
+                                        "Exception while connecting to hms." + request.getServletPath()
+                                            + request.getPathInfo() );
+        }
+    }
+
+    /**
+     * Sends the request to the same path on the HMS OOB agent, and streams its response to the servlet response.
+     *
+     * @param request
+     * @param body request body, null if none
+     * @param response
+     * @throws HmsException if the request could not be sent, nothing was written to the response then
+     * @throws IOException if the response could not be streamed
+     */
+    public void proxy( HttpServletRequest request, String body, HttpServletResponse response )
+        throws HmsException, IOException
+    {
+        long startTime = System.currentTimeMillis();
+        String path = request.getServletPath() + request.getPathInfo();
+        URI uri = URIBuilder.getURI( path, request.getQueryString() );
+
+        CloseableHttpResponse oobResponse;
+        try
+        {
+            oobResponse = HttpClientPool.getPassThroughHttpClient().execute( getOobRequest( request, body, uri ) );
+        }
+        catch ( IOException e )
+        {
+            throw new HmsException( "Exception while connecting to hms." + path, e );
+        }
+
+        try
+        {
+            response.setStatus( oobResponse.getStatusLine().getStatusCode() );
+            for ( Header header : oobResponse.getAllHeaders() )
+            {
+                if ( !HOP_BY_HOP_HEADERS.contains( header.getName().toLowerCase() ) )
+                {
+                    response.addHeader( header.getName(), header.getValue() );
+                }
+            }
+
+            HttpEntity entity = oobResponse.getEntity();
+            if ( entity != null )
+            {
+                InputStream in = entity.getContent();
+                try
+                {
+                    OutputStream out = response.getOutputStream();
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int read;
+                    while ( ( read = in.read( buffer ) ) != -1 )
+                    {
+                        out.write( buffer, 0, read );
+                    }
+                    out.flush();
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+        }
+        finally
+        {
+            oobResponse.close();
+        }
+        LOG.debug( "Time consumed for streaming the rest call {} is {} ", uri.getPath(),
+                   ( System.currentTimeMillis() - startTime ) );
+    }
+
+    private HttpUriRequest getOobRequest( HttpServletRequest request, String body, URI uri )
+    {
+        RequestBuilder requestBuilder = RequestBuilder.create( request.getMethod() ).setUri( uri );
+        for ( String headerName : REQUEST_HEADERS )
+        {
+            String value = request.getHeader( headerName );
+            if ( value != null )
+            {
+                requestBuilder.addHeader( headerName, value );
+            }
+        }
+        if ( body != null )
+        {
+            String contentType = request.getContentType();
+            ContentType type =
+                ( contentType != null ) ? ContentType.parse( contentType ) : ContentType.APPLICATION_JSON;
+            if ( type.getCharset() == null )
+            {
+                type = type.withCharset( Consts.UTF_8 );
+            }
+            requestBuilder.setEntity( new StringEntity( body, type ) );
+        }
+        if ( timeout > 0 )
+        {
+            requestBuilder.setConfig( RequestConfig.copy( HttpClientPool.getRequestConfig() )
+                .setSocketTimeout( timeout ).build() );
+        }
+        return requestBuilder.build();
+    }
+}
@@ -42,10 +42,13 @@ import com.vmware.vrack.hms.common.resource.fru.FruOperationalStatus;
 import com.vmware.vrack.hms.common.rest.model.ServerInfo;
 import com.vmware.vrack.hms.common.servernodes.api.ServerComponent;
 import com.vmware.vrack.hms.common.servernodes.api.ServerNode;
+import com.vmware.vrack.hms.common.servernodes.api.ServerNodePowerStatus;
 import com.vmware.vrack.hms.common.servernodes.api.cpu.CPUInfo;
 import com.vmware.vrack.hms.common.servernodes.api.esxinfo.HostNameInfo;
 import com.vmware.vrack.hms.common.util.Constants;
+import com.vmware.vrack.hms.inventory.HmsDataCache;
 import com.vmware.vrack.hms.inventory.InventoryLoader;
+import com.vmware.vrack.hms.inventory.VersionedCacheMap;
 
 @RunWith( PowerMockRunner.class )
 @PrepareForTest( { MonitoringUtil.class, AggregatorUtil.class, ESXIInfoHelper.class } )
@@ -165,6 +168,54 @@ public class HostDataAggregatorTest
         Assert.assertEquals( 0, serverInfo.getCpuInfo().size() );
     }
 
+    @Test
+    public void testPowerStatusChangeUpdatesCacheVersion()
+        throws Exception
+    {
+        HostDataAggregator agg = new HostDataAggregator();
+
+        PowerMockito.mockStatic( MonitoringUtil.class );
+
+        String path = Constants.HMS_OOB_HOST_POWER_STATUS_ENDPOINT;
+        path = path.replace( "{host_id}", nodeId );
+
+        ServerNodePowerStatus powerStatus = new ServerNodePowerStatus();
+        powerStatus.setPowered( true );
+        powerStatus.setDiscoverable( true );
+        powerStatus.setOperationalStatus( FruOperationalStatus.Operational.name() );
+        when( MonitoringUtil.getServerNodePowerStatusOOB( path ) ).thenReturn( powerStatus );
+
+        ServerNode serverNode = new ServerNode();
+        serverNode.setNodeID( nodeId );
+        Map<String, ServerNode> nodeMap = new HashMap<String, ServerNode>();
+        nodeMap.put( nodeId, serverNode );
+        InventoryLoader.getInstance().setNodeMap( nodeMap );
+
+        ServerInfo cachedServerInfo = new ServerInfo();
+        cachedServerInfo.setNodeId( nodeId );
+        cachedServerInfo.setPowered( false );
+        cachedServerInfo.setDiscoverable( false );
+        cachedServerInfo.setOperationalStatus( FruOperationalStatus.NonOperational );
+        HmsDataCache hmsDataCache = new HmsDataCache();
+        hmsDataCache.updateHmsDataCache( nodeId, ServerComponent.SERVER, cachedServerInfo );
+        long version = hmsDataCache.getServerInfoSnapshot().getVersion();
+
+        MemberModifier.field( HostDataAggregator.class, "context" ).set( agg, context );
+        MemberModifier.field( HostDataAggregator.class, "hmsDataCache" ).set( agg, hmsDataCache );
+
+        agg.getAndUpdateServerNodePowerStatus( nodeId, cachedServerInfo );
+        Assert.assertTrue( cachedServerInfo.isPowered() );
+        Assert.assertEquals( FruOperationalStatus.Operational, cachedServerInfo.getOperationalStatus() );
+        VersionedCacheMap.Snapshot<ServerInfo> snapshot = hmsDataCache.getServerInfoSnapshot();
+        Assert.assertTrue( snapshot.getVersion() > version );
+        Assert.assertTrue( snapshot.getChangesSince( version ).containsKey( nodeId ) );
+
+        // no change, same version
+        version = snapshot.getVersion();
+        agg.getAndUpdateServerNodePowerStatus( nodeId, cachedServerInfo );
+        Assert.assertEquals( version, hmsDataCache.getServerInfoSnapshot().getVersion() );
+    }
+
     private void populateResourcesForNode( ServerNode serverNode )
     {
         ArrayList<CPUInfo> arrayList = new ArrayList<CPUInfo>();
@@ -0,0 +1,104 @@
+/* ********************************************************************************
+ * TopologyAggregatorTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.aggregator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.vmware.vrack.hms.common.servernodes.api.esxinfo.HostNameInfo;
+import com.vmware.vrack.hms.common.switches.api.SwitchLinkedPort;
+import com.vmware.vrack.hms.common.switches.api.SwitchPort;
+import com.vmware.vrack.hms.common.switches.api.SwitchVlan;
+import com.vmware.vrack.hms.common.topology.NetTopElement;
+
+public class TopologyAggregatorTest
+{
+    @Test
+    public void testGetSwitchElements()
+    {
+        Map<String, HostNameInfo> hostNames = new HashMap<String, HostNameInfo>();
+        hostNames.put( "N1", getHostNameInfo( "esxi-1", "esxi-1.vrack.local" ) );
+        hostNames.put( "N2", null );
+        Map<String, String> hostName2NodeIdMap = TopologyAggregator.getHostName2NodeIdMap( hostNames );
+        assertEquals( 2, hostName2NodeIdMap.size() );
+        assertEquals( "N1", hostName2NodeIdMap.get( "esxi-1.vrack.local" ) );
+
+        SwitchPort[] ports = new SwitchPort[] { getSwitchPort( "swp1", "esxi-1.vrack.local", "vmnic0" ),
+            getSwitchPort( "swp2", null, null ) };
+        SwitchVlan vlan = new SwitchVlan();
+        vlan.setName( "100" );
+        vlan.setTaggedPorts( new HashSet<String>( Arrays.asList( "swp1", "swp3" ) ) );
+
+        List<NetTopElement> elements =
+            TopologyAggregator.getSwitchElements( "S1", ports, new SwitchVlan[] { vlan }, hostName2NodeIdMap );
+        assertEquals( 2, elements.size() );
+        assertEquals( "S1", elements.get( 0 ).getDeviceId() );
+        assertEquals( "N1", elements.get( 0 ).getConnectedElement().getDeviceId() );
+        assertEquals( "vmnic0", elements.get( 0 ).getConnectedElement().getPortName() );
+        assertEquals( Arrays.asList( "100" ), elements.get( 0 ).getVlans() );
+        assertNull( elements.get( 1 ).getConnectedElement() );
+        assertNull( elements.get( 1 ).getVlans() );
+    }
+
+    @Test
+    public void testGetSignature()
+    {
+        SwitchPort[] ports = new SwitchPort[] { getSwitchPort( "swp1", "esxi-1", "vmnic0" ) };
+        Map<String, String> hostName2NodeIdMap = new HashMap<String, String>();
+        String signature = getSignature( ports, hostName2NodeIdMap );
+        assertEquals( signature, getSignature( ports, hostName2NodeIdMap ) );
+
+        hostName2NodeIdMap.put( "esxi-1", "N1" );
+        assertFalse( signature.equals( getSignature( ports, hostName2NodeIdMap ) ) );
+    }
+
+    private static String getSignature( SwitchPort[] ports, Map<String, String> hostName2NodeIdMap )
+    {
+        return TopologyAggregator.getSignature( TopologyAggregator.getSwitchElements( "S1", ports, null,
+                                                                                      hostName2NodeIdMap ) );
+    }
+
+    private static HostNameInfo getHostNameInfo( String hostName, String fqdn )
+    {
+        HostNameInfo hostNameInfo = new HostNameInfo();
+        hostNameInfo.setHostName( hostName );
+        hostNameInfo.setFullyQualifiedDomainName( fqdn );
+        return hostNameInfo;
+    }
+
+    private static SwitchPort getSwitchPort( String name, String remoteDevice, String remotePort )
+    {
+        SwitchPort port = new SwitchPort();
+        port.setName( name );
+        if ( remoteDevice != null )
+        {
+            SwitchLinkedPort linkedPort = new SwitchLinkedPort();
+            linkedPort.setDeviceName( remoteDevice );
+            linkedPort.setPortName( remotePort );
+            port.setLinkedPort( linkedPort );
+        }
+        return port;
+    }
+}
@@ -28,6 +28,7 @@ import org.junit.runner.RunWith;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
@@ -100,6 +101,27 @@ public class RestTemplateTest
         Assert.assertEquals( "Test1", httpEntity5.getBody().get( 0 ) );
     }
 
+    /**
+     * This test is to ensure that the templates share the pooled request factory and the message converters
+     *
+     * @throws HmsException
+     */
+    @Test
+    public void testHmsRestTemplateSharesPooledClient()
+        throws HmsException
+    {
+        HmsOobAgentRestTemplate<Object> defaultTemplate = HmsOobAgentRestTemplate.getDefaultInstance();
+        Assert.assertSame( defaultTemplate, HmsOobAgentRestTemplate.getDefaultInstance() );
+        Assert.assertEquals( MediaType.APPLICATION_JSON_VALUE,
+                             defaultTemplate.getHttpEntity().getHeaders().get( "Content-Type" ).get( 0 ) );
+        Assert.assertTrue( defaultTemplate.getRequestFactory() instanceof HttpComponentsClientHttpRequestFactory );
+
+        HmsOobAgentRestTemplate<Object> template = new HmsOobAgentRestTemplate<Object>();
+        Assert.assertSame( defaultTemplate.getRequestFactory(), template.getRequestFactory() );
+        Assert.assertEquals( defaultTemplate.getMessageConverters().size(), template.getMessageConverters().size() );
+        Assert.assertSame( defaultTemplate.getMessageConverters().get( 0 ), template.getMessageConverters().get( 0 ) );
+    }
+
     /**
      * This test is to ensure that Uri object returned is consisting of right parameters. <br/>
      * 1. url <br/>
@@ -0,0 +1,82 @@
+/* ********************************************************************************
+ * HmsDataCacheWarmUpTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.inventory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vmware.vrack.hms.aggregator.HostDataAggregator;
+import com.vmware.vrack.hms.common.exception.HmsException;
+import com.vmware.vrack.hms.common.rest.model.ServerInfo;
+import com.vmware.vrack.hms.common.servernodes.api.ServerNode;
+
+public class HmsDataCacheWarmUpTest
+{
+    @Test
+    public void testWarmUp()
+        throws Exception
+    {
+        ServerInfo serverInfo = new ServerInfo();
+        serverInfo.setNodeId( "W1" );
+        HostDataAggregator aggregator = mock( HostDataAggregator.class );
+        when( aggregator.getServerInfo( "W1" ) ).thenReturn( serverInfo );
+        when( aggregator.getServerInfo( "W2" ) ).thenThrow( new HmsException( "unreachable" ) );
+
+        HmsDataCache hmsDataCache = new HmsDataCache();
+        ReflectionTestUtils.setField( hmsDataCache, "aggregator", aggregator );
+        ReflectionTestUtils.setField( hmsDataCache, "hmsCacheFlag", true );
+
+        ServerNode node1 = new ServerNode();
+        node1.setNodeID( "W1" );
+        ServerNode node2 = new ServerNode();
+        node2.setNodeID( "W2" );
+        InventoryLoader.getInstance().getNodeMap().put( "W1", node1 );
+        InventoryLoader.getInstance().getNodeMap().put( "W2", node2 );
+        try
+        {
+            hmsDataCache.createHMScache();
+
+            // waits for the warm-up of the node, or runs it
+            assertSame( serverInfo, hmsDataCache.getServerInfo( "W1" ) );
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while ( !hmsDataCache.getWarmUpStatus().isComplete() && System.currentTimeMillis() < deadline )
+            {
+                Thread.sleep( 10 );
+            }
+            HmsCacheWarmUpStatus status = hmsDataCache.getWarmUpStatus();
+            assertTrue( status.isComplete() );
+            assertFalse( hmsDataCache.isWarmingUp() );
+            assertEquals( status.getTotal() - 1, status.getReady() );
+            assertEquals( 1, status.getFailed() );
+            assertTrue( status.getPendingNodes().isEmpty() );
+            assertTrue( hmsDataCache.isServerInfoWarm( "W1" ) );
+            assertFalse( hmsDataCache.isServerInfoWarm( "W2" ) );
+        }
+        finally
+        {
+            InventoryLoader.getInstance().getNodeMap().remove( "W1" );
+            InventoryLoader.getInstance().getNodeMap().remove( "W2" );
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/* ********************************************************************************
+ * VersionedCacheMapTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.inventory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class VersionedCacheMapTest
+{
+    @Test
+    public void testChangesSince()
+    {
+        VersionedCacheMap<String> cache = new VersionedCacheMap<String>();
+        cache.put( "N1", "a" );
+        cache.put( "N2", "b" );
+        VersionedCacheMap.Snapshot<String> snapshot = cache.getSnapshot();
+        long version = snapshot.getVersion();
+
+        cache.put( "N2", "c" );
+        cache.remove( "N1" );
+        assertEquals( "a", snapshot.getValues().get( "N1" ) );
+        assertEquals( "b", snapshot.getValues().get( "N2" ) );
+
+        VersionedCacheMap.Snapshot<String> current = cache.getSnapshot();
+        assertEquals( version + 2, current.getVersion() );
+        assertTrue( current.isDeltaAvailable( version ) );
+        Map<String, String> changes = current.getChangesSince( version );
+        assertEquals( 2, changes.size() );
+        assertEquals( "c", changes.get( "N2" ) );
+        assertTrue( changes.containsKey( "N1" ) );
+        assertNull( changes.get( "N1" ) );
+        assertTrue( current.getChangesSince( current.getVersion() ).isEmpty() );
+
+        assertFalse( current.isDeltaAvailable( version - 1000000 ) );
+    }
+
+    @Test
+    public void testTouchAndReplaceAll()
+    {
+        VersionedCacheMap<String> cache = new VersionedCacheMap<String>();
+        assertFalse( cache.touch( "N1" ) );
+        cache.put( "N1", "a" );
+        long version = cache.getSnapshot().getVersion();
+        assertTrue( cache.touch( "N1" ) );
+        assertEquals( Long.valueOf( version + 1 ), cache.getSnapshot().getVersion( "N1" ) );
+
+        cache.replaceAll( Collections.singletonMap( "N2", "b" ) );
+        Map<String, String> changes = cache.getSnapshot().getChangesSince( version );
+        assertEquals( 2, changes.size() );
+        assertNull( changes.get( "N1" ) );
+        assertEquals( "b", changes.get( "N2" ) );
+        assertEquals( 1, cache.getValues().size() );
+    }
+}
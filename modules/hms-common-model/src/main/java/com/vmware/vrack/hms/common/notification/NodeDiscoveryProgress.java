@@ -0,0 +1,98 @@
+/* ********************************************************************************
+ * NodeDiscoveryProgress.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.notification;
+
+/**
+ * Progress of the discovery of the nodes, along with the estimated time for the discovery to complete
+ *
+ * @author VMware Inc.
+ */
+public class NodeDiscoveryProgress
+{
+    private int total;
+
+    private int completed;
+
+    private int failed;
+
+    private int inProgress;
+
+    /** Time spent discovering the nodes so far, or overall once the discovery has completed, in milliseconds */
+    private long elapsedTime;
+
+    /** Estimated time for the discovery to complete in milliseconds, -1 if unknown yet */
+    private long estimatedTimeRemaining;
+
+    public int getTotal()
+    {
+        return total;
+    }
+
+    public void setTotal( int total )
+    {
+        this.total = total;
+    }
+
+    public int getCompleted()
+    {
+        return completed;
+    }
+
+    public void setCompleted( int completed )
+    {
+        this.completed = completed;
+    }
+
+    public int getFailed()
+    {
+        return failed;
+    }
+
+    public void setFailed( int failed )
+    {
+        this.failed = failed;
+    }
+
+    public int getInProgress()
+    {
+        return inProgress;
+    }
+
+    public void setInProgress( int inProgress )
+    {
+        this.inProgress = inProgress;
+    }
+
+    public long getElapsedTime()
+    {
+        return elapsedTime;
+    }
+
+    public void setElapsedTime( long elapsedTime )
+    {
+        this.elapsedTime = elapsedTime;
+    }
+
+    public long getEstimatedTimeRemaining()
+    {
+        return estimatedTimeRemaining;
+    }
+
+    public void setEstimatedTimeRemaining( long estimatedTimeRemaining )
+    {
+        this.estimatedTimeRemaining = estimatedTimeRemaining;
+    }
+}
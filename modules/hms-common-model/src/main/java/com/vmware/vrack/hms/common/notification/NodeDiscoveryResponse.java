@@ -26,6 +26,8 @@ public class NodeDiscoveryResponse
 
     private DiscoveryResult result;
 
+    private NodeDiscoveryProgress hostDiscoveryProgress;
+
     public DiscoveryResult getResult()
     {
         return result;
@@ -36,6 +38,16 @@ public class NodeDiscoveryResponse
         this.result = result;
     }
 
+    public NodeDiscoveryProgress getHostDiscoveryProgress()
+    {
+        return hostDiscoveryProgress;
+    }
+
+    public void setHostDiscoveryProgress( NodeDiscoveryProgress hostDiscoveryProgress )
+    {
+        this.hostDiscoveryProgress = hostDiscoveryProgress;
+    }
+
     public NodeActionStatus getDiscoveryStatus()
     {
         return discoveryStatus;
@@ -18,7 +18,9 @@ package com.vmware.vrack.hms.boardservice;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -33,6 +35,7 @@ import com.vmware.vrack.hms.common.exception.HmsException;
 import com.vmware.vrack.hms.common.resource.fru.BoardInfo;
 import com.vmware.vrack.hms.common.servernodes.api.HmsApi;
 import com.vmware.vrack.hms.common.servernodes.api.ServerNode;
+import com.vmware.vrack.hms.utils.NodeDiscoveryExecutor;
 
 /**
  * Factory class to provide Board Service Instance for Service Server Node. Board Service instance can also be cached
@@ -180,69 +183,115 @@ public class BoardServiceProvider
     public static boolean prepareBoardServiceClassesForNodes( List<HmsNode> hmsNodes )
         throws Exception
     {
-        BoardServiceFactory boardServiceFactory = BoardServiceFactory.getBoardServiceFactory();
+        final BoardServiceFactory boardServiceFactory = BoardServiceFactory.getBoardServiceFactory();
 
         if ( hmsNodes == null || hmsNodes.isEmpty() )
         {
             logger.warn( "In prepareBoardServiceClassesForNodes, node list is null." );
             return false;
         }
-        for ( HmsNode hmsNode : hmsNodes )
+
+        // Loading the BoardService of a node reaches out to its BMC, so nodes are prepared concurrently, each within
+        // the node discovery timeout, to keep a slow or dead node from holding up the others.
+        NodeDiscoveryExecutor executor = new NodeDiscoveryExecutor( hmsNodes.size() );
+        try
         {
-            if ( hmsNode != null )
+            for ( final HmsNode hmsNode : hmsNodes )
             {
+                if ( hmsNode != null )
+                {
+                    executor.submit( hmsNode.getNodeID(), new Callable<Void>()
+                    {
+                        @Override
+                        public Void call()
+                        {
+                            prepareBoardServiceClassForNode( hmsNode, boardServiceFactory );
+                            return null;
+                        }
+                    } );
+                }
+            }
 
-                // skip loading BoardService class, if it is already loaded.
-                if ( cachedBoardServiceClasses.containsKey( hmsNode.getNodeID() ) )
+            for ( Map.Entry<String, Exception> entry : executor.awaitAll().entrySet() )
+            {
+                if ( entry.getValue() instanceof TimeoutException )
+                {
+                    logger.error( "In prepareBoardServiceClassesForNodes, timed out preparing BoardService for Node: "
+                        + "'{}'.", entry.getKey() );
+                }
+                else
                 {
-                    logger.warn( "In prepareBoardServiceClassesForNodes, BoardService already prepared for Node '{}'.",
-                                 hmsNode.getNodeID() );
-                    continue;
+                    logger.error( "In prepareBoardServiceClassesForNodes, error preparing BoardService for Node: "
+                        + entry.getKey(), entry.getValue() );
                 }
-                logger.info( "In prepareBoardServiceClassesForNodes, preparing BoardService for Node: '{}'.",
-                             hmsNode.getNodeID() );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return true;
+    }
 
-                ServerNode serverNode = (ServerNode) hmsNode;
-                BoardInfo boardInfo = new BoardInfo();
-                boardInfo.setBoardManufacturer( serverNode.getBoardVendor() );
-                boardInfo.setBoardProductName( serverNode.getBoardProductName() );
+    /**
+     * Loads the BoardService class for the node, unless it is already loaded.
+     *
+     * @param hmsNode
+     * @param boardServiceFactory
+     */
+    private static void prepareBoardServiceClassForNode( HmsNode hmsNode, BoardServiceFactory boardServiceFactory )
+    {
+        // skip loading BoardService class, if it is already loaded.
+        if ( cachedBoardServiceClasses.containsKey( hmsNode.getNodeID() ) )
+        {
+            logger.warn( "In prepareBoardServiceClassesForNodes, BoardService already prepared for Node '{}'.",
+                         hmsNode.getNodeID() );
+            return;
+        }
+        logger.info( "In prepareBoardServiceClassesForNodes, preparing BoardService for Node: '{}'.",
+                     hmsNode.getNodeID() );
 
-                String boardServiceKey = BoardServiceFactory.getBoardServiceKey( boardInfo );
-                Class<?> boardServiceClass = boardServiceFactory.getBoardServiceClass( boardServiceKey );
-                if ( boardServiceClass != null )
-                {
-                    try
-                    {
-                        logger.debug( "In prepareBoardServiceClassesForNodes, BoardService Class for the Node: "
-                            + "'{}' is: '{}'", hmsNode.getNodeID(), boardServiceClass.getName() );
-                        BoardServiceProvider.addBoardServiceClass( serverNode.getServiceObject(), boardServiceClass,
-                                                                   false );
+        ServerNode serverNode = (ServerNode) hmsNode;
+        BoardInfo boardInfo = new BoardInfo();
+        boardInfo.setBoardManufacturer( serverNode.getBoardVendor() );
+        boardInfo.setBoardProductName( serverNode.getBoardProductName() );
 
-                        if ( componentLifecycleManagerClass.isAssignableFrom( boardServiceClass ) )
-                        {
-                            componentLifecycleManagerInstanceMap.put( serverNode.getServiceObject().getNodeID(),
-                                                                      (IComponentLifecycleManager) getBoardService( serverNode.getServiceObject() ) );
-                        }
+        String boardServiceKey = BoardServiceFactory.getBoardServiceKey( boardInfo );
+        Class<?> boardServiceClass = boardServiceFactory.getBoardServiceClass( boardServiceKey );
+        if ( boardServiceClass != null )
+        {
+            try
+            {
+                logger.debug( "In prepareBoardServiceClassesForNodes, BoardService Class for the Node: "
+                    + "'{}' is: '{}'", hmsNode.getNodeID(), boardServiceClass.getName() );
+                BoardServiceProvider.addBoardServiceClass( serverNode.getServiceObject(), boardServiceClass, false );
 
-                        // HmsPluginServiceCallWrapper.addNodeRateLimitModelForNode(serverNode.getNodeID());
-                    }
-                    catch ( InstantiationException e )
-                    {
-                        logger.error( "Exception during creating new Instance of class:" + boardServiceClass, e );
-                    }
-                    catch ( IllegalAccessException e )
-                    {
-                        logger.error( "Exception during creating new Instance of class:" + boardServiceClass, e );
-                    }
-                    catch ( HmsException e )
-                    {
-                        logger.error( "Exception while adding Board Service into BoardServiceProvider:"
-                            + boardServiceClass, e );
-                    }
+                if ( componentLifecycleManagerClass.isAssignableFrom( boardServiceClass ) )
+                {
+                    componentLifecycleManagerInstanceMap.put( serverNode.getServiceObject().getNodeID(),
+                                                              (IComponentLifecycleManager) getBoardService( serverNode.getServiceObject() ) );
                 }
+
+                // HmsPluginServiceCallWrapper.addNodeRateLimitModelForNode(serverNode.getNodeID());
+            }
+            catch ( InstantiationException e )
+            {
+                logger.error( "Exception during creating new Instance of class:" + boardServiceClass, e );
+            }
+            catch ( IllegalAccessException e )
+            {
+                logger.error( "Exception during creating new Instance of class:" + boardServiceClass, e );
+            }
+            catch ( HmsException e )
+            {
+                logger.error( "Exception while adding Board Service into BoardServiceProvider:" + boardServiceClass,
+                              e );
+            }
+            catch ( Exception e )
+            {
+                logger.error( "Exception while preparing Board Service for Node:" + hmsNode.getNodeID(), e );
             }
         }
-        return true;
     }
 
     /**
@@ -22,6 +22,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jetty.server.ConnectorStatistics;
@@ -31,13 +32,14 @@ import org.slf4j.LoggerFactory;
 
 import com.vmware.vrack.hms.HMSMonitorService;
 import com.vmware.vrack.hms.HmsApp;
-import com.vmware.vrack.hms.TaskRequestHandler;
 import com.vmware.vrack.hms.boardservice.BoardServiceProvider;
 import com.vmware.vrack.hms.common.HmsConfigHolder;
 import com.vmware.vrack.hms.common.HmsNode;
 import com.vmware.vrack.hms.common.boardvendorservice.api.IBoardService;
 import com.vmware.vrack.hms.common.configuration.HmsInventoryConfiguration;
 import com.vmware.vrack.hms.common.configuration.ServerItem;
+import com.vmware.vrack.hms.common.monitoring.ComponentMonitorConfig;
+import com.vmware.vrack.hms.common.monitoring.EventStateTable;
 import com.vmware.vrack.hms.common.monitoring.MonitorTaskSuite;
 import com.vmware.vrack.hms.common.monitoring.MonitoringTaskRequestHandler;
 import com.vmware.vrack.hms.common.monitoring.MonitoringTaskResponse;
@@ -49,7 +51,11 @@ import com.vmware.vrack.hms.common.notification.TaskResponse;
 import com.vmware.vrack.hms.common.servernodes.api.ServerComponent;
 import com.vmware.vrack.hms.common.servernodes.api.ServerNode;
 import com.vmware.vrack.hms.common.switchnodes.api.HMSSwitchNode;
+import com.vmware.vrack.hms.task.IHmsTask;
+import com.vmware.vrack.hms.task.TaskFactory;
 import com.vmware.vrack.hms.task.TaskType;
+import com.vmware.vrack.hms.task.oob.ipmi.SelCursorStore;
+import com.vmware.vrack.hms.utils.NodeDiscoveryExecutor;
 import com.vmware.vrack.hms.utils.NodeDiscoveryUtil;
 
 @SuppressWarnings( "deprecation" )
@@ -329,9 +335,7 @@ public class ServerNodeConnector
     private void prepareNodeToBoardServiceMapping()
         throws Exception
     {
-        // For now to keep thing simple, doing discovery of node in single thread, but we can surely put them in
-        // Executor service lateron
-        // ExecutorService executor = Executors.newFixedThreadPool(3);
+        // The BoardService of the nodes are prepared concurrently, see BoardServiceProvider
 
         List<HmsNode> hmsNodes = new ArrayList<HmsNode>( nodeMap.values() );
         /*
@@ -346,23 +350,47 @@ public class ServerNodeConnector
     }
 
     /**
-     * Run Bootup task for each node
+     * Run Bootup task for each node. Nodes are discovered concurrently, up to the configured discovery parallelism,
+     * and a node whose discovery does not complete within the node discovery timeout is marked as "FAILURE".
      */
     private void performBootupTaskForNodes()
         throws Exception
     {
         try
         {
+            // Putting the nodes as "RUNNING", indicating they have been submitted for discovery process.
+            // Discovery task will take care of changing the discovery status to "SUCCESS" or "FAILURE".
+            NodeDiscoveryUtil.startHostDiscovery( nodeMap.keySet() );
+            if ( nodeMap.isEmpty() )
+            {
+                return;
+            }
+
+            final NodeDiscoveryExecutor executor = new NodeDiscoveryExecutor( nodeMap.size() );
             for ( HmsNode node : nodeMap.values() )
             {
                 logger.debug( "Calling Boot Work flow for server id " + node.getNodeID() );
-
-                // Putting the node as "RUNNING", indicating it has been submitted for discovery process.
-                // Discovery task will take care of changing the discovery status to "SUCCESS" or "ERROR".
-                NodeDiscoveryUtil.hostDiscoveryMap.put( node.getNodeID(), NodeActionStatus.RUNNING );
-                initBootWorkflow( (ServerNode) node );
+                IHmsTask task = initBootWorkflow( (ServerNode) node );
+                if ( task != null )
+                {
+                    executor.submit( node.getNodeID(), task );
+                }
+                else
+                {
+                    NodeDiscoveryUtil.setHostDiscoveryStatus( node.getNodeID(), NodeActionStatus.FAILURE );
+                }
             }
 
+            Thread watchdog = new Thread( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    awaitBootupTasks( executor );
+                }
+            }, "hms-host-discovery" );
+            watchdog.setDaemon( true );
+            watchdog.start();
         }
         catch ( Exception e )
         {
@@ -371,6 +399,40 @@ public class ServerNodeConnector
         }
     }
 
+    /**
+     * Waits for the Bootup task of each node, cancelling the ones not completed within the node discovery timeout,
+     * counted from the start of the task of the node.
+     *
+     * @param executor executor the Bootup tasks are submitted to
+     */
+    private static void awaitBootupTasks( NodeDiscoveryExecutor executor )
+    {
+        Map<String, Exception> errors;
+        try
+        {
+            errors = executor.awaitAll();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        for ( Map.Entry<String, Exception> entry : errors.entrySet() )
+        {
+            String nodeId = entry.getKey();
+            if ( entry.getValue() instanceof TimeoutException )
+            {
+                logger.error( "Discovery of node " + nodeId + " did not complete in " + executor.getNodeTimeout()
+                    + " ms." );
+            }
+            else
+            {
+                logger.error( "Error while discovering node " + nodeId, entry.getValue() );
+            }
+            NodeDiscoveryUtil.setHostDiscoveryStatus( nodeId, NodeActionStatus.FAILURE );
+        }
+    }
+
     /**
      * Converts ServerItem to ServerNodeObject
      *
@@ -410,14 +472,12 @@ public class ServerNodeConnector
         return node;
     }
 
-    private void initBootWorkflow( ServerNode node )
-        throws Exception
+    private IHmsTask initBootWorkflow( ServerNode node )
     {
         TaskResponse response = new TaskResponse();
         response.setNode( node );
         response.setTaskType( TaskType.HMSBootUp.toString() );
-        TaskRequestHandler.getInstance().executeServerTask( TaskType.HMSBootUp, response );
-
+        return TaskFactory.getTask( TaskType.HMSBootUp, response );
     }
 
     /*
@@ -457,6 +517,9 @@ public class ServerNodeConnector
 
         MonitoringTaskRequestHandler.init( Integer.parseInt( HmsConfigHolder.getProperty( HmsConfigHolder.HMS_CONFIG_PROPS,
                                                                                           "MONITORING_THREAD_POOL_SIZE" ) ) );
+        MonitoringTaskRequestHandler.loadConfig( HmsConfigHolder.getProperties( HmsConfigHolder.HMS_CONFIG_PROPS ) );
+        ComponentMonitorConfig.loadConfig( HmsConfigHolder.getProperties( HmsConfigHolder.HMS_CONFIG_PROPS ) );
+        EventStateTable.getInstance().loadConfig( HmsConfigHolder.getProperties( HmsConfigHolder.HMS_CONFIG_PROPS ) );
         try
         {
             HMSMonitorService monitor = new HMSMonitorService();
@@ -533,6 +596,7 @@ public class ServerNodeConnector
 
                 // Remove Server from the Discovered Nodes map. Otherwise /discovery endpoint will fail
                 NodeDiscoveryUtil.removeServer( nodeId );
+                SelCursorStore.removeCursor( nodeId );
 
                 return hmsNode;
             }
@@ -0,0 +1,363 @@
+/* ********************************************************************************
+ * SwitchFleetExecutor.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.node.switches;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.vmware.vrack.hms.common.HmsConfigHolder;
+import com.vmware.vrack.hms.common.switches.api.SwitchNode;
+import com.vmware.vrack.hms.common.switches.api.SwitchNode.SwitchRoleType;
+
+/**
+ * Runs an operation on a set of switches concurrently, up to the configured parallelism, so that a rack-wide operation
+ * takes about as long as the slowest switch instead of the sum of all the switches.
+ * <p>
+ * The switches are run in stages, a stage starting once all the switches of the previous stage are done, for the
+ * operations depending on some switches being done first, for example the management switch. An operation on a switch
+ * not done within the switch timeout, counted from its start, is cancelled and its result is marked as timed out.
+ * The results of all the switches are returned, whether the operation succeeded or not on the other switches.
+ *
+ * @author VMware, Inc.
+ */
+public class SwitchFleetExecutor
+{
+    private static Logger logger = Logger.getLogger( SwitchFleetExecutor.class );
+
+    private static final int DEFAULT_PARALLELISM = 8;
+
+    private static final long DEFAULT_SWITCH_TIMEOUT = 300000;
+
+    private final int parallelism;
+
+    private final long switchTimeout;
+
+    /**
+     * Creates an executor with the parallelism and switch timeout of the HMS configuration.
+     */
+    public SwitchFleetExecutor()
+    {
+        this( getConfiguredParallelism(), getConfiguredSwitchTimeout() );
+    }
+
+    /**
+     * @param parallelism maximum number of switches the operation runs on concurrently
+     * @param switchTimeout time to wait for the operation on a switch, in milliseconds
+     */
+    public SwitchFleetExecutor( int parallelism, long switchTimeout )
+    {
+        this.parallelism = Math.max( 1, parallelism );
+        this.switchTimeout = switchTimeout;
+    }
+
+    /**
+     * Runs the operation on all the switches concurrently.
+     *
+     * @param switchNodes switches to run the operation on
+     * @param operation operation to run on each switch
+     * @return results keyed by switch id, in the order of the switches
+     */
+    public <T> Map<String, SwitchOperationResult<T>> execute( Collection<SwitchNode> switchNodes,
+                                                              SwitchOperation<T> operation )
+    {
+        return executeInStages( Collections.singletonList( switchNodes ), operation );
+    }
+
+    /**
+     * Runs the operation on the switches stage by stage, concurrently on the switches of a stage.
+     *
+     * @param stages switches to run the operation on, grouped in the order the groups must run in
+     * @param operation operation to run on each switch
+     * @return results keyed by switch id, in the order of the stages and the switches
+     */
+    public <T> Map<String, SwitchOperationResult<T>> executeInStages( List<? extends Collection<SwitchNode>> stages,
+                                                                      SwitchOperation<T> operation )
+    {
+        Map<String, SwitchOperationResult<T>> results = new LinkedHashMap<String, SwitchOperationResult<T>>();
+        for ( Collection<SwitchNode> stage : stages )
+        {
+            if ( stage != null && !stage.isEmpty() )
+            {
+                executeStage( stage, operation, results );
+            }
+        }
+        return results;
+    }
+
+    private <T> void executeStage( Collection<SwitchNode> switchNodes, SwitchOperation<T> operation,
+                                   Map<String, SwitchOperationResult<T>> results )
+    {
+        int threads = Math.min( parallelism, switchNodes.size() );
+        ExecutorService executor = Executors.newFixedThreadPool( threads, new FleetThreadFactory() );
+        Map<String, SwitchTask<T>> tasks = new LinkedHashMap<String, SwitchTask<T>>();
+        try
+        {
+            for ( SwitchNode switchNode : switchNodes )
+            {
+                SwitchTask<T> task = new SwitchTask<T>( switchNode, operation );
+                task.future = executor.submit( task );
+                tasks.put( switchNode.getSwitchId(), task );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        /*
+         * A switch waiting for a thread is not timed out, unless the whole stage takes longer than the switches would
+         * take one thread after another, which happens only if an operation ignores its cancellation.
+         */
+        long stageDeadline = System.currentTimeMillis()
+            + switchTimeout * ( ( switchNodes.size() + threads - 1 ) / threads );
+        for ( Map.Entry<String, SwitchTask<T>> entry : tasks.entrySet() )
+        {
+            results.put( entry.getKey(), await( entry.getKey(), entry.getValue(), stageDeadline ) );
+        }
+    }
+
+    private <T> SwitchOperationResult<T> await( String switchId, SwitchTask<T> task, long stageDeadline )
+    {
+        while ( true )
+        {
+            long now = System.currentTimeMillis();
+            // a switch not started yet is waited for a switch timeout at most, ending before its own timeout if it
+            // starts meanwhile
+            long taskStart = ( task.startTime > 0 ) ? task.startTime : now;
+            long deadline = Math.min( taskStart + switchTimeout, stageDeadline );
+            try
+            {
+                T value = task.future.get( Math.max( 0, deadline - now ), TimeUnit.MILLISECONDS );
+                return new SwitchOperationResult<T>( switchId, value, null, false );
+            }
+            catch ( TimeoutException e )
+            {
+                now = System.currentTimeMillis();
+                if ( now < stageDeadline && ( task.startTime == 0 || now < task.startTime + switchTimeout ) )
+                {
+                    /* Not started yet, or started while waiting */
+                    continue;
+                }
+                logger.error( "Operation on switch " + switchId + " did not complete in " + switchTimeout + " ms." );
+                task.future.cancel( true );
+                return new SwitchOperationResult<T>( switchId, null, e, true );
+            }
+            catch ( ExecutionException e )
+            {
+                Exception cause = ( e.getCause() instanceof Exception ) ? (Exception) e.getCause() : e;
+                logger.error( "Operation on switch " + switchId + " failed.", cause );
+                return new SwitchOperationResult<T>( switchId, null, cause, false );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                task.future.cancel( true );
+                return new SwitchOperationResult<T>( switchId, null, e, false );
+            }
+        }
+    }
+
+    /**
+     * Groups the switches in the stages of the operations depending on the management switch, the management switches
+     * first and then the other switches.
+     *
+     * @param switchNodes switches
+     * @return management switches, and the other switches
+     */
+    public static List<List<SwitchNode>> managementFirst( Collection<SwitchNode> switchNodes )
+    {
+        List<SwitchNode> managementSwitches = new ArrayList<SwitchNode>();
+        List<SwitchNode> otherSwitches = new ArrayList<SwitchNode>();
+        for ( SwitchNode switchNode : switchNodes )
+        {
+            if ( SwitchRoleType.MANAGEMENT.equals( switchNode.getRole() ) )
+            {
+                managementSwitches.add( switchNode );
+            }
+            else
+            {
+                otherSwitches.add( switchNode );
+            }
+        }
+        List<List<SwitchNode>> stages = new ArrayList<List<SwitchNode>>();
+        stages.add( managementSwitches );
+        stages.add( otherSwitches );
+        return stages;
+    }
+
+    /**
+     * Gets the switches the operation failed on.
+     *
+     * @param results results keyed by switch id
+     * @return ids of the switches the operation failed or timed out on
+     */
+    public static <T> List<String> getFailedSwitches( Map<String, SwitchOperationResult<T>> results )
+    {
+        List<String> failedSwitches = new ArrayList<String>();
+        for ( SwitchOperationResult<T> result : results.values() )
+        {
+            if ( !result.isSuccess() )
+            {
+                failedSwitches.add( result.getSwitchId() );
+            }
+        }
+        return failedSwitches;
+    }
+
+    private static int getConfiguredParallelism()
+    {
+        String parallelism = HmsConfigHolder.getHMSConfigProperty( HmsConfigHolder.HMS_SWITCH_FLEET_PARALLELISM );
+        try
+        {
+            return ( parallelism != null ) ? Math.max( 1, Integer.parseInt( parallelism.trim() ) )
+                            : DEFAULT_PARALLELISM;
+        }
+        catch ( NumberFormatException e )
+        {
+            logger.warn( "Invalid " + HmsConfigHolder.HMS_SWITCH_FLEET_PARALLELISM + ": " + parallelism );
+            return DEFAULT_PARALLELISM;
+        }
+    }
+
+    private static long getConfiguredSwitchTimeout()
+    {
+        String timeout = HmsConfigHolder.getHMSConfigProperty( HmsConfigHolder.HMS_SWITCH_FLEET_TIMEOUT );
+        try
+        {
+            return ( timeout != null ) ? Long.parseLong( timeout.trim() ) : DEFAULT_SWITCH_TIMEOUT;
+        }
+        catch ( NumberFormatException e )
+        {
+            logger.warn( "Invalid " + HmsConfigHolder.HMS_SWITCH_FLEET_TIMEOUT + ": " + timeout );
+            return DEFAULT_SWITCH_TIMEOUT;
+        }
+    }
+
+    /**
+     * Operation run on a switch.
+     */
+    public interface SwitchOperation<T>
+    {
+        T execute( SwitchNode switchNode )
+            throws Exception;
+    }
+
+    /**
+     * Result of an operation on a switch.
+     */
+    public static class SwitchOperationResult<T>
+    {
+        private final String switchId;
+
+        private final T value;
+
+        private final Exception error;
+
+        private final boolean timedOut;
+
+        private SwitchOperationResult( String switchId, T value, Exception error, boolean timedOut )
+        {
+            this.switchId = switchId;
+            this.value = value;
+            this.error = error;
+            this.timedOut = timedOut;
+        }
+
+        public String getSwitchId()
+        {
+            return switchId;
+        }
+
+        public T getValue()
+        {
+            return value;
+        }
+
+        public Exception getError()
+        {
+            return error;
+        }
+
+        public boolean isTimedOut()
+        {
+            return timedOut;
+        }
+
+        public boolean isSuccess()
+        {
+            return error == null;
+        }
+    }
+
+    /**
+     * Operation on a switch, recording when it started so that its timeout does not include the time it waited for a
+     * thread.
+     */
+    private static class SwitchTask<T>
+        implements Callable<T>
+    {
+        private final SwitchNode switchNode;
+
+        private final SwitchOperation<T> operation;
+
+        private volatile long startTime;
+
+        private Future<T> future;
+
+        private SwitchTask( SwitchNode switchNode, SwitchOperation<T> operation )
+        {
+            this.switchNode = switchNode;
+            this.operation = operation;
+        }
+
+        @Override
+        public T call()
+            throws Exception
+        {
+            startTime = System.currentTimeMillis();
+            return operation.execute( switchNode );
+        }
+    }
+
+    private static class FleetThreadFactory
+        implements ThreadFactory
+    {
+        private static final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable runnable )
+        {
+            Thread thread = new Thread( runnable, "hms-switch-fleet-" + threadNumber.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
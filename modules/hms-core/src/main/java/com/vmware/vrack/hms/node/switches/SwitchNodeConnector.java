@@ -18,9 +18,10 @@ package com.vmware.vrack.hms.node.switches;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import org.apache.log4j.Logger;
 
@@ -32,6 +33,8 @@ import com.vmware.vrack.hms.common.configuration.SwitchItem;
 import com.vmware.vrack.hms.common.exception.HmsException;
 import com.vmware.vrack.hms.common.exception.HmsOobNetworkErrorCode;
 import com.vmware.vrack.hms.common.exception.HmsOobNetworkException;
+import com.vmware.vrack.hms.common.monitoring.ComponentMonitorConfig;
+import com.vmware.vrack.hms.common.monitoring.EventStateTable;
 import com.vmware.vrack.hms.common.monitoring.MonitorTaskSuite;
 import com.vmware.vrack.hms.common.monitoring.MonitoringTaskRequestHandler;
 import com.vmware.vrack.hms.common.monitoring.MonitoringTaskResponse;
@@ -62,6 +65,8 @@ import com.vmware.vrack.hms.common.switches.model.bulk.PluginSwitchBulkConfig;
 import com.vmware.vrack.hms.common.switchnodes.api.HMSSwitchNode;
 import com.vmware.vrack.hms.common.util.SwitchInfoHelperUtil;
 import com.vmware.vrack.hms.node.NodeConnector;
+import com.vmware.vrack.hms.node.switches.SwitchFleetExecutor.SwitchOperation;
+import com.vmware.vrack.hms.node.switches.SwitchFleetExecutor.SwitchOperationResult;
 import com.vmware.vrack.hms.utils.NodeDiscoveryUtil;
 
 @SuppressWarnings( "deprecation" )
@@ -73,7 +78,7 @@ public class SwitchNodeConnector
 
     private static volatile SwitchNodeConnector instance;
 
-    public Map<String, SwitchNode> switchNodeMap = new TreeMap<String, SwitchNode>();
+    public Map<String, SwitchNode> switchNodeMap = new ConcurrentSkipListMap<String, SwitchNode>();
 
     private SwitchIpv4RouteManager ipv4RouteManager = new SwitchIpv4RouteManager();
 
@@ -84,7 +89,11 @@ public class SwitchNodeConnector
     // Class>();
     // TODO: Use Switch Service Provider class for above.
 
-    private Map<String, ISwitchService> switchServiceMap = new TreeMap<String, ISwitchService>();
+    /** Updated concurrently by the discovery of the switches */
+    private Map<String, ISwitchService> switchServiceMap = new ConcurrentSkipListMap<String, ISwitchService>();
+
+    /** Runs the rack-wide operations on the switches concurrently */
+    private SwitchFleetExecutor fleetExecutor = new SwitchFleetExecutor();
 
     private boolean enableMonitoring =
         Boolean.parseBoolean( HmsConfigHolder.getProperty( HmsConfigHolder.HMS_CONFIG_PROPS, "enable_monitoring" ) );
@@ -856,31 +865,40 @@ public class SwitchNodeConnector
                                               HmsOobNetworkErrorCode.SET_OPERATION_FAILED );
         }
 
-        /* Now invoke the config API to set server on all switches */
-        for ( Map.Entry<String, SwitchNode> entry : switchNodeMap.entrySet() )
+        /* Now invoke the config API to set server on all switches, the management switch first */
+        final String timeServer = ntpConfig.getTimeServerIpAddress();
+        final String mgmtTimeServer = mgmtSwitchIp;
+        SwitchOperation<Void> configureTimeServer = new SwitchOperation<Void>()
         {
-            String switchId = entry.getKey();
-            SwitchNode switchNode = entry.getValue();
-            SwitchUpdateInfo update = new SwitchUpdateInfo();
-
-            if ( switchNode.getRole().equals( SwitchRoleType.MANAGEMENT ) )
-            {
-                update.setTimeServer( ntpConfig.getTimeServerIpAddress() );
-            }
-            else
+            @Override
+            public Void execute( SwitchNode switchNode )
+                throws HmsException
             {
-                update.setTimeServer( mgmtSwitchIp );
-            }
+                SwitchUpdateInfo update = new SwitchUpdateInfo();
 
-            try
-            {
-                updateSwitchNodeInfo( switchId, update );
-            }
-            catch ( HmsException e )
-            {
-                throw new HmsOobNetworkException( "Could not configure NTP Server on switch " + switchId, e,
-                                                  HmsOobNetworkErrorCode.SET_OPERATION_FAILED );
+                if ( SwitchRoleType.MANAGEMENT.equals( switchNode.getRole() ) )
+                {
+                    update.setTimeServer( timeServer );
+                }
+                else
+                {
+                    update.setTimeServer( mgmtTimeServer );
+                }
+
+                updateSwitchNodeInfo( switchNode.getSwitchId(), update );
+                return null;
             }
+        };
+        Map<String, SwitchOperationResult<Void>> results =
+            fleetExecutor.executeInStages( SwitchFleetExecutor.managementFirst( switchNodeMap.values() ),
+                                           configureTimeServer );
+
+        List<String> failedSwitches = SwitchFleetExecutor.getFailedSwitches( results );
+        if ( !failedSwitches.isEmpty() )
+        {
+            throw new HmsOobNetworkException( "Could not configure NTP Server on switch(es) " + failedSwitches,
+                                              results.get( failedSwitches.get( 0 ) ).getError(),
+                                              HmsOobNetworkErrorCode.SET_OPERATION_FAILED );
         }
     }
 
@@ -899,7 +917,7 @@ public class SwitchNodeConnector
             logger.info( "Reloading Inventory Config" );
             /* Cleanup all entries first */
             switchNodeMap.clear();
-            boolean newSwitchInInventory = false;
+            List<SwitchNode> newSwitchNodes = new ArrayList<SwitchNode>();
 
             if ( ( hic != null ) && ( hic.getSwitches() != null ) )
             {
@@ -913,16 +931,16 @@ public class SwitchNodeConnector
                     if ( !switchServiceMap.containsKey( switchItem.getId() ) )
                     {
                         NodeDiscoveryUtil.switchDiscoveryMap.put( switchNode.getSwitchId(), NodeActionStatus.RUNNING );
-                        discoverSwitch( switchNode );
-                        newSwitchInInventory = true;
+                        newSwitchNodes.add( switchNode );
                     }
 
                     logger.info( "Inserting switch id " + switchItem.getId() + " into switch node map." );
                 }
             }
 
-            if ( newSwitchInInventory )
+            if ( !newSwitchNodes.isEmpty() )
             {
+                discoverSwitches( newSwitchNodes );
 
                 /*
                  * Ideally we need to restart monitoring. As long as Monitoring is disabled in OOB Agent, this is no
@@ -960,9 +978,10 @@ public class SwitchNodeConnector
                     // switch discoveryMap
                     NodeDiscoveryUtil.switchDiscoveryMap.put( switchNode.getSwitchId(), NodeActionStatus.RUNNING );
 
-                    discoverSwitch( switchNode );
                     logger.info( "Inserting switch id " + switchItem.getId() + " into switch node map." );
                 }
+
+                discoverSwitches( switchNodeMap.values() );
             }
         }
         catch ( HmsException e )
@@ -991,10 +1010,10 @@ public class SwitchNodeConnector
                      */
                     NodeDiscoveryUtil.switchDiscoveryMap.put( switchNode.getSwitchId(), NodeActionStatus.RUNNING );
 
-                    discoverSwitch( switchNode );
                     logger.info( "Inserting switch id " + switchNode.getSwitchId() + " into switch node map." );
                 }
 
+                discoverSwitches( switchNodes );
                 initSwitchMonitoring();
             }
 
@@ -1006,6 +1025,31 @@ public class SwitchNodeConnector
         }
     }
 
+    /**
+     * Discovers the switches concurrently. A switch whose discovery fails or does not complete within the switch
+     * timeout of the fleet executor is marked as "FAILURE".
+     *
+     * @param switchNodes switches to discover
+     */
+    private void discoverSwitches( Collection<SwitchNode> switchNodes )
+    {
+        Map<String, SwitchOperationResult<Void>> results =
+            fleetExecutor.execute( new ArrayList<SwitchNode>( switchNodes ), new SwitchOperation<Void>()
+            {
+                @Override
+                public Void execute( SwitchNode switchNode )
+                {
+                    discoverSwitch( switchNode );
+                    return null;
+                }
+            } );
+
+        for ( String switchId : SwitchFleetExecutor.getFailedSwitches( results ) )
+        {
+            NodeDiscoveryUtil.switchDiscoveryMap.put( switchId, NodeActionStatus.FAILURE );
+        }
+    }
+
     private void discoverSwitch( SwitchNode switchNode )
     {
         SwitchServiceFactory ssFactory = SwitchServiceFactory.getSwitchServiceFactory();
@@ -1169,6 +1213,9 @@ public class SwitchNodeConnector
                 + enableMonitoring );
             return;
         }
+        MonitoringTaskRequestHandler.loadConfig( HmsConfigHolder.getProperties( HmsConfigHolder.HMS_CONFIG_PROPS ) );
+        ComponentMonitorConfig.loadConfig( HmsConfigHolder.getProperties( HmsConfigHolder.HMS_CONFIG_PROPS ) );
+        EventStateTable.getInstance().loadConfig( HmsConfigHolder.getProperties( HmsConfigHolder.HMS_CONFIG_PROPS ) );
         for ( String key : switchNodeMap.keySet() )
         {
             SwitchNode tsn = switchNodeMap.get( key );
@@ -15,18 +15,34 @@
  * *******************************************************************************/
 package com.vmware.vrack.hms.rest.services;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import com.vmware.vrack.common.event.Event;
 import com.vmware.vrack.common.event.enums.EventComponent;
 import com.vmware.vrack.hms.boardservice.BoardServiceProvider;
@@ -37,10 +53,15 @@ import com.vmware.vrack.hms.common.events.EventMonitoringSubscriptionHolder;
 import com.vmware.vrack.hms.common.exception.HMSRestException;
 import com.vmware.vrack.hms.common.exception.HmsException;
 import com.vmware.vrack.hms.common.exception.HmsOperationNotSupportedException;
+import com.vmware.vrack.hms.common.monitoring.BulkComponentEvents;
+import com.vmware.vrack.hms.common.monitoring.ComponentEventsJournal;
+import com.vmware.vrack.hms.common.monitoring.ComponentEventsUpdate;
+import com.vmware.vrack.hms.common.monitoring.ComponentMonitorConfig;
 import com.vmware.vrack.hms.common.monitoring.MonitorSwitchTask;
 import com.vmware.vrack.hms.common.monitoring.MonitorTask;
 import com.vmware.vrack.hms.common.monitoring.MonitoringTaskResponse;
 import com.vmware.vrack.hms.common.resource.task.jmx.HMSResourceMonitor;
+import com.vmware.vrack.hms.common.servernodes.api.HmsApi;
 import com.vmware.vrack.hms.common.servernodes.api.ServerComponent;
 import com.vmware.vrack.hms.common.servernodes.api.ServerNode;
 import com.vmware.vrack.hms.common.servernodes.api.SwitchComponentEnum;
@@ -66,6 +87,17 @@ public class ComponentEventRestService
 
     private Logger logger = LoggerFactory.getLogger( ComponentEventRestService.class );
 
+    /** Interval at which an empty line is written to an idle event stream, in milliseconds. */
+    private static final long STREAM_HEARTBEAT_INTERVAL = 30000L;
+
+    /** Duration after which an event stream ends, and is to be reopened from its last sequence number. */
+    private static final long STREAM_DURATION = 600000L;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** Executor service the components are polled on for the bulk requests. */
+    private static volatile ExecutorService bulkExecutorService;
+
     /**
      * @param host_id
      * @param event_source
@@ -136,11 +168,15 @@ public class ComponentEventRestService
             ServerNode node = (ServerNode) serverConnector.getNodeMap().get( host_id );
             try
             {
+                List<ServerComponent> oobComponents = getOobComponents( node );
                 for ( ServerComponent component : ServerComponent.values() )
                 {
                     try
                     {
-                        executeServerMonitorTask( node, component );
+                        if ( oobComponents.contains( component ) )
+                        {
+                            executeServerMonitorTask( node, component );
+                        }
                     }
                     catch ( HmsException e )
                     {
@@ -256,6 +292,253 @@ public class ComponentEventRestService
         }
     }
 
+    /**
+     * Returns the events of the out-of-band components of all the server and switch nodes, polled concurrently, in a
+     * single response, along with the sequence number of the {@link ComponentEventsJournal} from which the updates
+     * since the poll can be streamed. The components of a node which can not be polled are left out.
+     *
+     * @param components event components to poll, all if none
+     * @return BulkComponentEvents
+     * @throws HMSRestException
+     */
+    @GET
+    @Path( "/bulk" )
+    @Produces( "application/json" )
+    public BulkComponentEvents getBulkComponentEvents( @QueryParam( "component" ) List<EventComponent> components )
+        throws HMSRestException
+    {
+        final long sequence = ComponentEventsJournal.getInstance().getSequence();
+        List<Callable<ComponentEventsUpdate>> tasks = new ArrayList<Callable<ComponentEventsUpdate>>();
+        for ( HmsNode hmsNode : new ArrayList<HmsNode>( serverConnector.getNodeMap().values() ) )
+        {
+            final ServerNode node = (ServerNode) hmsNode;
+            for ( final ServerComponent component : getOobComponents( node ) )
+            {
+                if ( !isRequested( components, component.getEventComponent() ) )
+                {
+                    continue;
+                }
+                tasks.add( new Callable<ComponentEventsUpdate>()
+                {
+                    @Override
+                    public ComponentEventsUpdate call()
+                        throws Exception
+                    {
+                        try
+                        {
+                            executeServerMonitorTask( node, component );
+                        }
+                        catch ( HmsOperationNotSupportedException e )
+                        {
+                            return null;
+                        }
+                        List<Event> events = EventMonitoringSubscriptionHolder.getEventList( node, component );
+                        return new ComponentEventsUpdate( sequence, node.getNodeID(), component.getEventComponent(),
+                                                          events );
+                    }
+                } );
+            }
+        }
+        for ( String switchId : new ArrayList<String>( switchConnector.switchNodeMap.keySet() ) )
+        {
+            final SwitchNode switchNode = switchConnector.getSwitchNode( switchId );
+            final HmsNode node = new HMSSwitchNode( switchNode.getSwitchId(), switchNode.getIpAddress(),
+                                                    switchNode.getUsername(), switchNode.getPassword() );
+            for ( final SwitchComponentEnum component : SwitchComponentEnum.values() )
+            {
+                if ( !isRequested( components, component.getEventComponent() ) )
+                {
+                    continue;
+                }
+                tasks.add( new Callable<ComponentEventsUpdate>()
+                {
+                    @Override
+                    public ComponentEventsUpdate call()
+                        throws Exception
+                    {
+                        executeSwitchMonitorTask( node, component, switchNode.getRole() );
+                        List<Event> events = EventMonitoringSubscriptionHolder.getSwitchEventList( node, component );
+                        return new ComponentEventsUpdate( sequence, node.getNodeID(), component.getEventComponent(),
+                                                          events );
+                    }
+                } );
+            }
+        }
+
+        BulkComponentEvents bulkComponentEvents = new BulkComponentEvents();
+        bulkComponentEvents.setSequence( sequence );
+        try
+        {
+            List<Future<ComponentEventsUpdate>> futures =
+                getBulkExecutorService().invokeAll( tasks, ComponentMonitorConfig.getComponentPollTimeout(),
+                                                    TimeUnit.MILLISECONDS );
+            for ( Future<ComponentEventsUpdate> future : futures )
+            {
+                if ( future.isCancelled() )
+                {
+                    continue;
+                }
+                try
+                {
+                    ComponentEventsUpdate update = future.get();
+                    if ( update != null )
+                    {
+                        bulkComponentEvents.getUpdates().add( update );
+                    }
+                }
+                catch ( ExecutionException e )
+                {
+                    logger.warn( "Error getting sensor events for bulk request", e.getCause() );
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new HMSRestException( Status.INTERNAL_SERVER_ERROR.getStatusCode(), "Server Error",
+                                        "Interrupted while getting sensor events" );
+        }
+        logger.debug( "Got {} of {} component events for bulk request", bulkComponentEvents.getUpdates().size(),
+                      tasks.size() );
+        return bulkComponentEvents;
+    }
+
+    /**
+     * Streams the {@link ComponentEventsUpdate}s published by the monitoring sweeps after the sequence number, as one
+     * JSON object per line, and an empty line when idle. The stream ends after a while, or as soon as updates were
+     * missed, and is to be reopened from the sequence number of the last update read.
+     *
+     * @param sinceSequence sequence number of the last update the client has, the current one if none
+     * @return Response
+     * @throws HMSRestException with status GONE if some of the updates since the sequence number are no longer
+     *             available, and all the events are to be fetched with a bulk request
+     */
+    @GET
+    @Path( "/stream" )
+    @Produces( "application/json" )
+    public Response getComponentEventsStream( @QueryParam( "sinceSequence" ) Long sinceSequence )
+        throws HMSRestException
+    {
+        final ComponentEventsJournal journal = ComponentEventsJournal.getInstance();
+        final long startSequence = ( sinceSequence != null ) ? sinceSequence : journal.getSequence();
+        try
+        {
+            if ( journal.getUpdatesSince( startSequence, 0 ) == null )
+            {
+                throw new HMSRestException( Status.GONE.getStatusCode(), "Updates Not Available",
+                                            "Updates since sequence " + startSequence + " are not available" );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new HMSRestException( Status.INTERNAL_SERVER_ERROR.getStatusCode(), "Server Error",
+                                        "Interrupted while getting sensor event updates" );
+        }
+
+        StreamingOutput stream = new StreamingOutput()
+        {
+            @Override
+            public void write( OutputStream output )
+                throws IOException, WebApplicationException
+            {
+                long lastSequence = startSequence;
+                long endTime = System.currentTimeMillis() + STREAM_DURATION;
+                try
+                {
+                    while ( System.currentTimeMillis() < endTime )
+                    {
+                        List<ComponentEventsUpdate> updates =
+                            journal.getUpdatesSince( lastSequence, STREAM_HEARTBEAT_INTERVAL );
+                        if ( updates == null )
+                        {
+                            // updates were missed, the client resyncs when reopening the stream
+                            break;
+                        }
+                        for ( ComponentEventsUpdate update : updates )
+                        {
+                            output.write( objectMapper.writeValueAsBytes( update ) );
+                            output.write( '\n' );
+                            lastSequence = update.getSequence();
+                        }
+                        if ( updates.isEmpty() )
+                        {
+                            output.write( '\n' );
+                        }
+                        output.flush();
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                output.close();
+            }
+        };
+        return Response.ok( stream ).build();
+    }
+
+    private static boolean isRequested( List<EventComponent> components, EventComponent component )
+    {
+        return components == null || components.isEmpty() || components.contains( component );
+    }
+
+    /**
+     * Gets the hardware components of a node whose sensors the board service reads out-of-band, leaving out the HMS,
+     * operating system, BIOS and rack components, which have no sensor API, and the components whose sensor API the
+     * board service of the node does not support.
+     *
+     * @param node server node
+     * @return components to poll out-of-band
+     */
+    private static List<ServerComponent> getOobComponents( ServerNode node )
+    {
+        List<HmsApi> supportedApis = BoardServiceProvider.getOperationSupported().get( node.getNodeID() );
+        List<ServerComponent> oobComponents = new ArrayList<ServerComponent>();
+        for ( ServerComponent component : ServerComponent.values() )
+        {
+            HmsApi sensorApi = component.getComponentSensorAPI();
+            if ( sensorApi != null && ( supportedApis == null || supportedApis.contains( sensorApi ) ) )
+            {
+                oobComponents.add( component );
+            }
+        }
+        return oobComponents;
+    }
+
+    /**
+     * Gets the executor service the components are polled on for the bulk requests.
+     *
+     * @return the bulk executor service
+     */
+    private static ExecutorService getBulkExecutorService()
+    {
+        if ( bulkExecutorService == null )
+        {
+            synchronized ( ComponentEventRestService.class )
+            {
+                if ( bulkExecutorService == null )
+                {
+                    final AtomicInteger threadCount = new AtomicInteger();
+                    bulkExecutorService =
+                        Executors.newFixedThreadPool( ComponentMonitorConfig.getComponentThreadPoolSize(),
+                                                      new ThreadFactory()
+                                                      {
+                                                          @Override
+                                                          public Thread newThread( Runnable runnable )
+                                                          {
+                                                              Thread thread = new Thread( runnable, "bulk-events-"
+                                                                  + threadCount.incrementAndGet() );
+                                                              thread.setDaemon( true );
+                                                              return thread;
+                                                          }
+                                                      } );
+                }
+            }
+        }
+        return bulkExecutorService;
+    }
+
     /**
      * @param node
      * @param component
@@ -95,8 +95,8 @@ public class BootTaskSuite
         }
         finally
         {
-            // Update the nodeDiscoveryMap with the current discovery status of the node
-            NodeDiscoveryUtil.hostDiscoveryMap.put( node.getNodeID(), this.node.isDiscoverable()
+            // Update the nodeDiscoveryMap with the current discovery status of the node, unless it timed out already
+            NodeDiscoveryUtil.completeHostDiscovery( node.getNodeID(), this.node.isDiscoverable()
                             ? NodeActionStatus.SUCCESS : NodeActionStatus.FAILURE );
         }
 
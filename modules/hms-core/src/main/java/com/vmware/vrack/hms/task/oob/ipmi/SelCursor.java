@@ -0,0 +1,336 @@
+/* ********************************************************************************
+ * SelCursor.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.task.oob.ipmi;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.vmware.vrack.hms.common.boardvendorservice.api.IBoardService;
+import com.vmware.vrack.hms.common.boardvendorservice.resource.ServiceHmsNode;
+import com.vmware.vrack.hms.common.exception.HmsException;
+import com.vmware.vrack.hms.common.resource.sel.SelFetchDirection;
+import com.vmware.vrack.hms.common.resource.sel.SelInfo;
+import com.vmware.vrack.hms.common.resource.sel.SelRecord;
+
+/**
+ * Cursor on the System Event Log of a node. It remembers the last SEL record read from the BMC and keeps a bounded ring
+ * of the most recent records, so that each read only fetches the records added since the previous one.
+ * <p>
+ * The BMC is first probed for a few of its most recent records. If the last record read is among them, only the
+ * records following it are new. Otherwise the probe is widened until the last record read, or the ring capacity, is
+ * reached. A SEL clear is detected through the erase timestamp or a shrinking SEL, and restarts the ring.
+ *
+ * @author VMware, Inc.
+ */
+public class SelCursor
+{
+    private static Logger logger = Logger.getLogger( SelCursor.class );
+
+    /**
+     * Orders SEL records by timestamp, and by record id within the same timestamp. Only used when the last record read
+     * is no longer in the SEL, the BMC clock being reset making timestamps unreliable to find the new records.
+     */
+    private static final Comparator<SelRecord> RECORD_ORDER = new Comparator<SelRecord>()
+    {
+        @Override
+        public int compare( SelRecord record1, SelRecord record2 )
+        {
+            long time1 = ( record1.getTimestamp() != null ) ? record1.getTimestamp().getTime() : 0;
+            long time2 = ( record2.getTimestamp() != null ) ? record2.getTimestamp().getTime() : 0;
+            if ( time1 != time2 )
+            {
+                return ( time1 < time2 ) ? -1 : 1;
+            }
+            return ( record1.getRecordId() < record2.getRecordId() ) ? -1
+                            : ( ( record1.getRecordId() == record2.getRecordId() ) ? 0 : 1 );
+        }
+    };
+
+    private final SelRecord[] ring;
+
+    private final int probeSize;
+
+    /** Index of the oldest record in the ring */
+    private int head;
+
+    private int size;
+
+    /** Last record read from the BMC, null if none since the cursor was created or restarted */
+    private SelRecord lastRecord;
+
+    private Integer totalSelCount;
+
+    private Integer selVersion;
+
+    private Date lastAdditionTimeStamp;
+
+    private Date lastEraseTimeStamp;
+
+    /**
+     * @param capacity maximum number of records kept in the ring
+     * @param probeSize number of records first read from the BMC to look for new records
+     */
+    public SelCursor( int capacity, int probeSize )
+    {
+        this.ring = new SelRecord[capacity];
+        this.probeSize = Math.max( 1, Math.min( probeSize, capacity ) );
+    }
+
+    /**
+     * Reads the SEL of the node, fetching from the BMC only the records added since the last read. Requests which can
+     * not be served from the ring, i.e. for more records than the ring holds or for the oldest records of a SEL larger
+     * than the ring, are passed through to the BMC.
+     *
+     * @param boardService
+     * @param serviceHmsNode
+     * @param recordCount number of records to read, all the records in the ring if null
+     * @param direction recent or oldest records, recent if null
+     * @return
+     * @throws HmsException
+     */
+    public synchronized SelInfo read( IBoardService boardService, ServiceHmsNode serviceHmsNode, Integer recordCount,
+                                      SelFetchDirection direction )
+        throws HmsException
+    {
+        if ( recordCount != null && recordCount > ring.length )
+        {
+            return boardService.getSelDetails( serviceHmsNode, recordCount, direction );
+        }
+
+        refresh( boardService, serviceHmsNode, ( recordCount != null ) ? recordCount : ring.length );
+
+        if ( direction == SelFetchDirection.OldestEntries && !isComplete() )
+        {
+            return boardService.getSelDetails( serviceHmsNode, recordCount, direction );
+        }
+        return getSelInfo( ( recordCount != null ) ? recordCount : size, direction );
+    }
+
+    /**
+     * Fetches the records added to the SEL since the last read into the ring, and the most recent records up to the
+     * record count if the ring holds fewer of them.
+     *
+     * @param boardService
+     * @param serviceHmsNode
+     * @param recordCount number of most recent records wanted in the ring
+     * @throws HmsException
+     */
+    void refresh( IBoardService boardService, ServiceHmsNode serviceHmsNode, int recordCount )
+        throws HmsException
+    {
+        int wanted = Math.max( 1, Math.min( recordCount, ring.length ) );
+        if ( lastRecord != null && size < wanted && !isComplete() )
+        {
+            // Older records than the ring holds are wanted, read them again along with the new ones
+            clear();
+        }
+
+        int batch = ( lastRecord == null ) ? Math.max( probeSize, wanted ) : probeSize;
+        while ( true )
+        {
+            SelInfo selInfo = boardService.getSelDetails( serviceHmsNode, batch, SelFetchDirection.RecentEntries );
+            if ( selInfo == null )
+            {
+                throw new HmsException( "No SEL Info returned for Node:" + serviceHmsNode.getNodeID() );
+            }
+            List<SelRecord> records =
+                ( selInfo.getSelRecords() != null ) ? selInfo.getSelRecords() : new ArrayList<SelRecord>();
+
+            if ( lastRecord != null && isCleared( selInfo ) )
+            {
+                logger.info( "SEL of Node " + serviceHmsNode.getNodeID() + " was cleared, restarting SEL cursor." );
+                clear();
+                if ( batch < wanted && records.size() >= batch )
+                {
+                    batch = wanted;
+                    continue;
+                }
+            }
+
+            // Records are read from the most recent ones, so fewer records than asked for means the whole SEL was read
+            boolean exhausted = records.size() < batch;
+            int lastIndex = ( lastRecord != null ) ? indexOf( records, lastRecord ) : -1;
+            boolean caughtUp = exhausted || ( ( lastRecord != null ) ? lastIndex >= 0 : batch >= wanted );
+            if ( !caughtUp && batch < ring.length )
+            {
+                batch = Math.min( ring.length, batch * 4 );
+                continue;
+            }
+            if ( !caughtUp )
+            {
+                logger.warn( "More than " + ring.length + " SEL records were added on Node "
+                    + serviceHmsNode.getNodeID() + " since the last read, restarting SEL cursor." );
+                clear();
+            }
+
+            if ( lastRecord == null )
+            {
+                append( records, 0 );
+            }
+            else if ( lastIndex >= 0 )
+            {
+                append( records, lastIndex + 1 );
+            }
+            else
+            {
+                appendAfterLastRecord( records );
+            }
+            totalSelCount = selInfo.getTotalSelCount();
+            selVersion = selInfo.getSelVersion();
+            lastAdditionTimeStamp = selInfo.getLastAddtionTimeStamp();
+            lastEraseTimeStamp = selInfo.getLastEraseTimeStamp();
+            return;
+        }
+    }
+
+    /**
+     * Appends the records to the ring in the order they were read from the BMC, i.e. the order they were added to the
+     * SEL, whatever their timestamps.
+     *
+     * @param records
+     * @param fromIndex index of the first record to append
+     */
+    private void append( List<SelRecord> records, int fromIndex )
+    {
+        for ( int i = fromIndex; i < records.size(); i++ )
+        {
+            add( records.get( i ) );
+        }
+    }
+
+    /**
+     * Appends the records following the last record read, by timestamp, when the last record read is no longer in the
+     * SEL.
+     *
+     * @param records
+     */
+    private void appendAfterLastRecord( List<SelRecord> records )
+    {
+        SelRecord previousRecord = lastRecord;
+        for ( SelRecord record : records )
+        {
+            if ( RECORD_ORDER.compare( record, previousRecord ) > 0 )
+            {
+                add( record );
+            }
+        }
+    }
+
+    private void add( SelRecord record )
+    {
+        ring[( head + size ) % ring.length] = record;
+        if ( size < ring.length )
+        {
+            size++;
+        }
+        else
+        {
+            head = ( head + 1 ) % ring.length;
+        }
+        lastRecord = record;
+    }
+
+    /**
+     * Checks if the SEL was cleared since the last read, i.e. if it was erased again, or holds fewer records.
+     *
+     * @param selInfo
+     * @return
+     */
+    private boolean isCleared( SelInfo selInfo )
+    {
+        Date eraseTimeStamp = selInfo.getLastEraseTimeStamp();
+        if ( eraseTimeStamp != null && !eraseTimeStamp.equals( lastEraseTimeStamp ) )
+        {
+            return true;
+        }
+        return totalSelCount != null && selInfo.getTotalSelCount() != null
+            && selInfo.getTotalSelCount() < totalSelCount;
+    }
+
+    /**
+     * Checks if the ring holds the whole SEL.
+     *
+     * @return
+     */
+    private boolean isComplete()
+    {
+        return totalSelCount != null && size >= totalSelCount;
+    }
+
+    private void clear()
+    {
+        for ( int i = 0; i < ring.length; i++ )
+        {
+            ring[i] = null;
+        }
+        head = 0;
+        size = 0;
+        lastRecord = null;
+        totalSelCount = null;
+    }
+
+    private SelInfo getSelInfo( int recordCount, SelFetchDirection direction )
+    {
+        int count = Math.max( 0, Math.min( recordCount, size ) );
+        int start = ( direction == SelFetchDirection.OldestEntries ) ? 0 : size - count;
+        List<SelRecord> records = new ArrayList<SelRecord>( count );
+        for ( int i = start; i < start + count; i++ )
+        {
+            records.add( ring[( head + i ) % ring.length] );
+        }
+
+        SelInfo selInfo = new SelInfo();
+        selInfo.setTotalSelCount( totalSelCount );
+        selInfo.setFetchedSelCount( records.size() );
+        selInfo.setSelVersion( selVersion );
+        selInfo.setLastAddtionTimeStamp( lastAdditionTimeStamp );
+        selInfo.setLastEraseTimeStamp( lastEraseTimeStamp );
+        selInfo.setSelRecords( records );
+        return selInfo;
+    }
+
+    /**
+     * Gets the index of the record in the list. Record ids are reused once the SEL is cleared or wraps around, so
+     * records are identified by their id along with their timestamp.
+     *
+     * @param records
+     * @param record
+     * @return
+     */
+    private static int indexOf( List<SelRecord> records, SelRecord record )
+    {
+        for ( int i = 0; i < records.size(); i++ )
+        {
+            SelRecord other = records.get( i );
+            if ( other != null && other.getRecordId() == record.getRecordId()
+                && ( ( other.getTimestamp() == null ) ? record.getTimestamp() == null
+                                : other.getTimestamp().equals( record.getTimestamp() ) ) )
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int size()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,94 @@
+/* ********************************************************************************
+ * SelCursorStore.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.task.oob.ipmi;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+import com.vmware.vrack.hms.common.HmsConfigHolder;
+
+/**
+ * Holds the {@link SelCursor} of each node.
+ *
+ * @author VMware, Inc.
+ */
+public class SelCursorStore
+{
+    private static Logger logger = Logger.getLogger( SelCursorStore.class );
+
+    private static final int DEFAULT_SEL_CACHE_SIZE = 1024;
+
+    private static final int DEFAULT_SEL_PROBE_SIZE = 16;
+
+    private static final ConcurrentMap<String, SelCursor> cursors = new ConcurrentHashMap<String, SelCursor>();
+
+    private SelCursorStore()
+    {
+    }
+
+    /**
+     * Gets the SEL cursor of the node, creating it if the node has none yet.
+     *
+     * @param nodeId
+     * @return
+     */
+    public static SelCursor getCursor( String nodeId )
+    {
+        SelCursor cursor = cursors.get( nodeId );
+        if ( cursor == null )
+        {
+            SelCursor newCursor = new SelCursor( getIntProperty( HmsConfigHolder.HMS_SEL_CACHE_SIZE,
+                                                                 DEFAULT_SEL_CACHE_SIZE ),
+                                                 getIntProperty( HmsConfigHolder.HMS_SEL_PROBE_SIZE,
+                                                                 DEFAULT_SEL_PROBE_SIZE ) );
+            cursor = cursors.putIfAbsent( nodeId, newCursor );
+            if ( cursor == null )
+            {
+                cursor = newCursor;
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Removes the SEL cursor of the node, along with the SEL records it holds.
+     *
+     * @param nodeId
+     */
+    public static void removeCursor( String nodeId )
+    {
+        if ( nodeId != null )
+        {
+            cursors.remove( nodeId );
+        }
+    }
+
+    private static int getIntProperty( String key, int defaultValue )
+    {
+        String value = HmsConfigHolder.getHMSConfigProperty( key );
+        try
+        {
+            return ( value != null ) ? Math.max( 1, Integer.parseInt( value.trim() ) ) : defaultValue;
+        }
+        catch ( NumberFormatException e )
+        {
+            logger.warn( "Invalid value for " + key + ": " + value + ", using " + defaultValue );
+            return defaultValue;
+        }
+    }
+}
@@ -27,6 +27,7 @@ import com.vmware.vrack.hms.common.resource.sel.SelInfo;
 import com.vmware.vrack.hms.common.resource.sel.SelOption;
 import com.vmware.vrack.hms.common.resource.sel.SelTask;
 import com.vmware.vrack.hms.common.servernodes.api.ServerNode;
+import com.vmware.vrack.hms.common.util.SelUtil;
 
 /**
  * Task to Get System Event Logs
@@ -75,8 +76,16 @@ public class SelInfoTask
                         // Object[] paramsArray = new Object[] { serviceServerNode,
                         // preparedParameter.getRecordCount(),
                         // preparedParameter.getDirection() };
-                        selInfo = boardService.getSelDetails( serviceServerNode, preparedParameter.getRecordCount(),
-                                                              preparedParameter.getDirection() );
+                        // Only the SEL records added since the last read are fetched from the BMC
+                        selInfo = SelCursorStore.getCursor( node.getNodeID() ).read( boardService, serviceServerNode,
+                                                                                   preparedParameter.getRecordCount(),
+                                                                                   preparedParameter.getDirection() );
+                        if ( selInfo != null && preparedParameter.getSelFilters() != null )
+                        {
+                            selInfo.setSelRecords( SelUtil.filterSelRecords( selInfo.getSelRecords(),
+                                                                             preparedParameter.getSelFilters() ) );
+                            selInfo.setFetchedSelCount( selInfo.getSelRecords().size() );
+                        }
                         // selInfo =
                         // HmsPluginServiceCallWrapper.invokeHmsPluginService(boardService,
                         // serviceServerNode, "getSelDetails", paramsArray);
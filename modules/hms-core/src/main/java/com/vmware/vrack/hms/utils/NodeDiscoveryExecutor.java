@@ -0,0 +1,193 @@
+/* ********************************************************************************
+ * NodeDiscoveryExecutor.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a task per node concurrently, up to the node discovery parallelism, on daemon threads. A task not done within
+ * the node discovery timeout, counted from its start rather than from its submission, is cancelled, so that the nodes
+ * queued behind the first ones get the same time as them.
+ *
+ * @author VMware, Inc.
+ */
+public class NodeDiscoveryExecutor
+{
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+
+    private final ExecutorService executor;
+
+    private final int parallelism;
+
+    private final long nodeTimeout;
+
+    private final Map<String, NodeTask<?>> tasks = new LinkedHashMap<String, NodeTask<?>>();
+
+    /**
+     * Creates an executor with the parallelism and node timeout of the HMS configuration.
+     *
+     * @param nodeCount number of nodes the tasks are run for
+     */
+    public NodeDiscoveryExecutor( int nodeCount )
+    {
+        this( Math.min( NodeDiscoveryUtil.getDiscoveryParallelism(), nodeCount ),
+              NodeDiscoveryUtil.getNodeDiscoveryTimeout() );
+    }
+
+    /**
+     * @param parallelism maximum number of tasks run concurrently
+     * @param nodeTimeout time to wait for the task of a node once started, in milliseconds
+     */
+    public NodeDiscoveryExecutor( int parallelism, long nodeTimeout )
+    {
+        this.parallelism = Math.max( 1, parallelism );
+        this.nodeTimeout = nodeTimeout;
+        this.executor = Executors.newFixedThreadPool( this.parallelism, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "hms-node-discovery-" + threadNumber.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+    }
+
+    /**
+     * Submits the task of a node.
+     *
+     * @param nodeId
+     * @param task
+     */
+    public synchronized void submit( String nodeId, Callable<?> task )
+    {
+        tasks.put( nodeId, submitTask( task ) );
+    }
+
+    private <T> NodeTask<T> submitTask( Callable<T> task )
+    {
+        NodeTask<T> nodeTask = new NodeTask<T>( task );
+        nodeTask.future = executor.submit( nodeTask );
+        return nodeTask;
+    }
+
+    /**
+     * Waits for the tasks of all the submitted nodes, no more tasks being accepted. A task not done within the node
+     * timeout from its start is cancelled. A task waiting for a thread is not timed out, unless all the tasks take
+     * longer than they would take one thread after another, which happens only if a task ignores its cancellation.
+     *
+     * @return error of each node whose task failed, a {@link TimeoutException} if it timed out, keyed by node id
+     * @throws InterruptedException
+     */
+    public synchronized Map<String, Exception> awaitAll()
+        throws InterruptedException
+    {
+        executor.shutdown();
+        long deadline = System.currentTimeMillis() + nodeTimeout * ( ( tasks.size() + parallelism - 1 ) / parallelism );
+        Map<String, Exception> errors = new LinkedHashMap<String, Exception>();
+        for ( Map.Entry<String, NodeTask<?>> entry : tasks.entrySet() )
+        {
+            Exception error = await( entry.getValue(), deadline );
+            if ( error != null )
+            {
+                errors.put( entry.getKey(), error );
+            }
+        }
+        return errors;
+    }
+
+    private Exception await( NodeTask<?> task, long deadline )
+        throws InterruptedException
+    {
+        while ( true )
+        {
+            long now = System.currentTimeMillis();
+            // a task not started yet is waited for a node timeout at most, ending before its own timeout if it starts
+            long taskStart = ( task.startTime > 0 ) ? task.startTime : now;
+            long taskDeadline = Math.min( taskStart + nodeTimeout, deadline );
+            try
+            {
+                task.future.get( Math.max( 0, taskDeadline - now ), TimeUnit.MILLISECONDS );
+                return null;
+            }
+            catch ( TimeoutException e )
+            {
+                now = System.currentTimeMillis();
+                if ( now < deadline && ( task.startTime == 0 || now < task.startTime + nodeTimeout ) )
+                {
+                    /* Not started yet, or started while waiting */
+                    continue;
+                }
+                task.future.cancel( true );
+                return e;
+            }
+            catch ( ExecutionException e )
+            {
+                return ( e.getCause() instanceof Exception ) ? (Exception) e.getCause() : e;
+            }
+        }
+    }
+
+    /**
+     * Interrupts the tasks still running, if any.
+     */
+    public void shutdownNow()
+    {
+        executor.shutdownNow();
+    }
+
+    public long getNodeTimeout()
+    {
+        return nodeTimeout;
+    }
+
+    /**
+     * Task of a node, recording when it started so that its timeout does not include the time it waited for a thread.
+     */
+    private static class NodeTask<T>
+        implements Callable<T>
+    {
+        private final Callable<T> task;
+
+        private volatile long startTime;
+
+        private Future<T> future;
+
+        private NodeTask( Callable<T> task )
+        {
+            this.task = task;
+        }
+
+        @Override
+        public T call()
+            throws Exception
+        {
+            startTime = System.currentTimeMillis();
+            return task.call();
+        }
+    }
+}
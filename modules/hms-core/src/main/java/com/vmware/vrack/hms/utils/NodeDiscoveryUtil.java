@@ -16,15 +16,18 @@
 package com.vmware.vrack.hms.utils;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.vmware.vrack.hms.common.HmsConfigHolder;
 import com.vmware.vrack.hms.common.notification.DiscoveryResult;
 import com.vmware.vrack.hms.common.notification.NodeActionStatus;
+import com.vmware.vrack.hms.common.notification.NodeDiscoveryProgress;
 import com.vmware.vrack.hms.common.notification.NodeDiscoveryResponse;
 import com.vmware.vrack.hms.common.notification.NodeDiscoveryResult;
 import com.vmware.vrack.hms.common.notification.NodeDiscoveryStatus;
@@ -46,9 +49,175 @@ public class NodeDiscoveryUtil
      * Node level discovery indicator. Just before starting discovery process for that particular node, it will be set
      * to "RUNNING". After the discovery process is completed, the status will be either "SUCCESS" or "ERROR".
      */
-    public static final Map<String, NodeActionStatus> hostDiscoveryMap = new HashMap<String, NodeActionStatus>();
+    public static final Map<String, NodeActionStatus> hostDiscoveryMap =
+        new ConcurrentHashMap<String, NodeActionStatus>();
 
-    public static final Map<String, NodeActionStatus> switchDiscoveryMap = new HashMap<String, NodeActionStatus>();
+    public static final Map<String, NodeActionStatus> switchDiscoveryMap =
+        new ConcurrentHashMap<String, NodeActionStatus>();
+
+    private static final int DEFAULT_DISCOVERY_PARALLELISM = 16;
+
+    private static final long DEFAULT_NODE_DISCOVERY_TIMEOUT = 300000;
+
+    /** Start and end time of the ongoing, or last, discovery of hosts. End time is 0 while the discovery runs. */
+    private static volatile long hostDiscoveryStartTime;
+
+    private static volatile long hostDiscoveryEndTime;
+
+    /**
+     * Marks the given hosts as "RUNNING" discovery, clearing the past discovered hosts, and starts timing the
+     * discovery.
+     *
+     * @param nodeIds
+     */
+    public static synchronized void startHostDiscovery( Collection<String> nodeIds )
+    {
+        hostDiscoveryMap.clear();
+        for ( String nodeId : nodeIds )
+        {
+            hostDiscoveryMap.put( nodeId, NodeActionStatus.RUNNING );
+        }
+        hostDiscoveryStartTime = System.currentTimeMillis();
+        hostDiscoveryEndTime = nodeIds.isEmpty() ? hostDiscoveryStartTime : 0;
+    }
+
+    /**
+     * Updates the discovery status of the host. Once no host is "RUNNING" discovery anymore, the time taken to
+     * discover all the hosts is recorded.
+     *
+     * @param nodeId
+     * @param status
+     */
+    public static synchronized void setHostDiscoveryStatus( String nodeId, NodeActionStatus status )
+    {
+        hostDiscoveryMap.put( nodeId, status );
+
+        if ( status != NodeActionStatus.RUNNING && hostDiscoveryEndTime == 0 && hostDiscoveryStartTime != 0
+            && !hostDiscoveryMap.containsValue( NodeActionStatus.RUNNING ) )
+        {
+            hostDiscoveryEndTime = System.currentTimeMillis();
+            logger.info( "Discovery of {} hosts completed in {} ms.", hostDiscoveryMap.size(),
+                         hostDiscoveryEndTime - hostDiscoveryStartTime );
+        }
+    }
+
+    /**
+     * Updates the discovery status of the host at the end of its discovery, unless it is not "RUNNING" discovery
+     * anymore, e.g. it has been marked as "FAILURE" for timing out while the discovery completed late.
+     *
+     * @param nodeId
+     * @param status
+     * @return true if the status was updated
+     */
+    public static synchronized boolean completeHostDiscovery( String nodeId, NodeActionStatus status )
+    {
+        if ( hostDiscoveryMap.get( nodeId ) != NodeActionStatus.RUNNING )
+        {
+            logger.debug( "Discovery of host {} is already {}, not updating it to {}.", nodeId,
+                          hostDiscoveryMap.get( nodeId ), status );
+            return false;
+        }
+        setHostDiscoveryStatus( nodeId, status );
+        return true;
+    }
+
+    /**
+     * Returns the progress of the ongoing, or last, discovery of hosts. The remaining time is estimated from the rate
+     * at which hosts have been discovered so far.
+     *
+     * @return
+     */
+    public static NodeDiscoveryProgress getHostDiscoveryProgress()
+    {
+        int total = 0;
+        int completed = 0;
+        int failed = 0;
+        for ( NodeActionStatus status : hostDiscoveryMap.values() )
+        {
+            total++;
+            if ( status == NodeActionStatus.SUCCESS )
+            {
+                completed++;
+            }
+            else if ( status == NodeActionStatus.FAILURE )
+            {
+                completed++;
+                failed++;
+            }
+        }
+
+        long endTime = hostDiscoveryEndTime;
+        long elapsedTime = ( hostDiscoveryStartTime == 0 ) ? 0
+                        : ( ( endTime != 0 ) ? endTime : System.currentTimeMillis() ) - hostDiscoveryStartTime;
+        long estimatedTimeRemaining = -1;
+        if ( completed == total )
+        {
+            estimatedTimeRemaining = 0;
+        }
+        else if ( completed > 0 )
+        {
+            estimatedTimeRemaining = elapsedTime * ( total - completed ) / completed;
+        }
+
+        NodeDiscoveryProgress progress = new NodeDiscoveryProgress();
+        progress.setTotal( total );
+        progress.setCompleted( completed );
+        progress.setFailed( failed );
+        progress.setInProgress( total - completed );
+        progress.setElapsedTime( elapsedTime );
+        progress.setEstimatedTimeRemaining( estimatedTimeRemaining );
+        return progress;
+    }
+
+    /**
+     * Returns the time taken by the last discovery of hosts, in milliseconds.
+     *
+     * @return discovery time, or -1 if the discovery is still running or has not started
+     */
+    public static long getHostDiscoveryTime()
+    {
+        long endTime = hostDiscoveryEndTime;
+        return ( endTime == 0 ) ? -1 : endTime - hostDiscoveryStartTime;
+    }
+
+    /**
+     * Returns the number of nodes discovered concurrently.
+     *
+     * @return
+     */
+    public static int getDiscoveryParallelism()
+    {
+        String parallelism = HmsConfigHolder.getHMSConfigProperty( HmsConfigHolder.HMS_NODE_DISCOVERY_PARALLELISM );
+        try
+        {
+            return ( parallelism != null ) ? Math.max( 1, Integer.parseInt( parallelism.trim() ) )
+                            : DEFAULT_DISCOVERY_PARALLELISM;
+        }
+        catch ( NumberFormatException e )
+        {
+            logger.warn( "Invalid {}: {}", HmsConfigHolder.HMS_NODE_DISCOVERY_PARALLELISM, parallelism );
+            return DEFAULT_DISCOVERY_PARALLELISM;
+        }
+    }
+
+    /**
+     * Returns the maximum time to wait for a node to be discovered, in milliseconds.
+     *
+     * @return
+     */
+    public static long getNodeDiscoveryTimeout()
+    {
+        String timeout = HmsConfigHolder.getHMSConfigProperty( HmsConfigHolder.HMS_NODE_DISCOVERY_TIMEOUT );
+        try
+        {
+            return ( timeout != null ) ? Long.parseLong( timeout.trim() ) : DEFAULT_NODE_DISCOVERY_TIMEOUT;
+        }
+        catch ( NumberFormatException e )
+        {
+            logger.warn( "Invalid {}: {}", HmsConfigHolder.HMS_NODE_DISCOVERY_TIMEOUT, timeout );
+            return DEFAULT_NODE_DISCOVERY_TIMEOUT;
+        }
+    }
 
     /**
      * Returns current node discovery status to the caller.
@@ -154,6 +323,7 @@ public class NodeDiscoveryUtil
 
         discoveryStatus.setDiscoveryStatus( overallStatus );
         discoveryStatus.setResult( overallResult );
+        discoveryStatus.setHostDiscoveryProgress( getHostDiscoveryProgress() );
         return discoveryStatus;
     }
 
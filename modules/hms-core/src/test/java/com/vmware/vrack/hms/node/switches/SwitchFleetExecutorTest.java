@@ -0,0 +1,165 @@
+/* ********************************************************************************
+ * SwitchFleetExecutorTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.node.switches;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.vmware.vrack.hms.common.exception.HmsException;
+import com.vmware.vrack.hms.common.switches.api.SwitchNode;
+import com.vmware.vrack.hms.common.switches.api.SwitchNode.SwitchRoleType;
+import com.vmware.vrack.hms.node.switches.SwitchFleetExecutor.SwitchOperation;
+import com.vmware.vrack.hms.node.switches.SwitchFleetExecutor.SwitchOperationResult;
+
+public class SwitchFleetExecutorTest
+{
+    @Test
+    public void testSwitchesRunConcurrently()
+    {
+        SwitchFleetExecutor executor = new SwitchFleetExecutor( 4, 10000 );
+        long start = System.currentTimeMillis();
+
+        Map<String, SwitchOperationResult<String>> results =
+            executor.execute( Arrays.asList( createSwitchNode( "S1", SwitchRoleType.TOR ),
+                                             createSwitchNode( "S2", SwitchRoleType.TOR ),
+                                             createSwitchNode( "S3", SwitchRoleType.SPINE ),
+                                             createSwitchNode( "S4", SwitchRoleType.MANAGEMENT ) ),
+                              new SwitchOperation<String>()
+                              {
+                                  @Override
+                                  public String execute( SwitchNode switchNode )
+                                      throws Exception
+                                  {
+                                      Thread.sleep( 500 );
+                                      return switchNode.getSwitchId();
+                                  }
+                              } );
+
+        assertTrue( System.currentTimeMillis() - start < 1500 );
+        assertEquals( Arrays.asList( "S1", "S2", "S3", "S4" ), new ArrayList<String>( results.keySet() ) );
+        for ( SwitchOperationResult<String> result : results.values() )
+        {
+            assertTrue( result.isSuccess() );
+            assertEquals( result.getSwitchId(), result.getValue() );
+        }
+    }
+
+    @Test
+    public void testManagementSwitchFirst()
+    {
+        SwitchFleetExecutor executor = new SwitchFleetExecutor( 4, 10000 );
+        final List<String> order = Collections.synchronizedList( new ArrayList<String>() );
+
+        List<SwitchNode> switchNodes = Arrays.asList( createSwitchNode( "S1", SwitchRoleType.TOR ),
+                                                      createSwitchNode( "S2", SwitchRoleType.MANAGEMENT ) );
+
+        executor.executeInStages( SwitchFleetExecutor.managementFirst( switchNodes ), new SwitchOperation<Void>()
+        {
+            @Override
+            public Void execute( SwitchNode switchNode )
+                throws Exception
+            {
+                if ( SwitchRoleType.MANAGEMENT.equals( switchNode.getRole() ) )
+                {
+                    Thread.sleep( 200 );
+                }
+                order.add( switchNode.getSwitchId() );
+                return null;
+            }
+        } );
+
+        assertEquals( Arrays.asList( "S2", "S1" ), order );
+    }
+
+    @Test
+    public void testFailuresAndTimeouts()
+    {
+        SwitchFleetExecutor executor = new SwitchFleetExecutor( 1, 300 );
+
+        Map<String, SwitchOperationResult<Void>> results =
+            executor.execute( Arrays.asList( createSwitchNode( "S1", SwitchRoleType.TOR ),
+                                             createSwitchNode( "S2", SwitchRoleType.TOR ),
+                                             createSwitchNode( "S3", SwitchRoleType.TOR ) ),
+                              new SwitchOperation<Void>()
+                              {
+                                  @Override
+                                  public Void execute( SwitchNode switchNode )
+                                      throws Exception
+                                  {
+                                      if ( "S1".equals( switchNode.getSwitchId() ) )
+                                      {
+                                          throw new HmsException( "failed" );
+                                      }
+                                      else if ( "S2".equals( switchNode.getSwitchId() ) )
+                                      {
+                                          Thread.sleep( 5000 );
+                                      }
+                                      return null;
+                                  }
+                              } );
+
+        assertEquals( Arrays.asList( "S1", "S2" ), SwitchFleetExecutor.getFailedSwitches( results ) );
+        assertEquals( "failed", results.get( "S1" ).getError().getMessage() );
+        assertFalse( results.get( "S1" ).isTimedOut() );
+        assertTrue( results.get( "S2" ).isTimedOut() );
+        assertTrue( results.get( "S3" ).isSuccess() );
+    }
+
+    @Test
+    public void testQueuedSwitchTimedOutFromItsStart()
+    {
+        SwitchFleetExecutor executor = new SwitchFleetExecutor( 1, 300 );
+        long start = System.currentTimeMillis();
+
+        Map<String, SwitchOperationResult<Void>> results =
+            executor.execute( Arrays.asList( createSwitchNode( "S1", SwitchRoleType.TOR ),
+                                             createSwitchNode( "S2", SwitchRoleType.TOR ),
+                                             createSwitchNode( "S3", SwitchRoleType.TOR ) ),
+                              new SwitchOperation<Void>()
+                              {
+                                  @Override
+                                  public Void execute( SwitchNode switchNode )
+                                      throws Exception
+                                  {
+                                      if ( "S2".equals( switchNode.getSwitchId() ) )
+                                      {
+                                          Thread.sleep( 5000 );
+                                      }
+                                      return null;
+                                  }
+                              } );
+
+        assertTrue( results.get( "S2" ).isTimedOut() );
+        assertTrue( results.get( "S3" ).isSuccess() );
+        assertTrue( System.currentTimeMillis() - start < 800 );
+    }
+
+    private static SwitchNode createSwitchNode( String switchId, SwitchRoleType role )
+    {
+        SwitchNode switchNode = new SwitchNode( switchId, "SSH", "10.0.0.1", 22, "cumulus", "password" );
+        switchNode.setRole( role );
+        return switchNode;
+    }
+}
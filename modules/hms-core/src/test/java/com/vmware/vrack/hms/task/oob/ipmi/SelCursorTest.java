@@ -0,0 +1,189 @@
+/* ********************************************************************************
+ * SelCursorTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.task.oob.ipmi;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.vmware.vrack.hms.common.boardvendorservice.api.IBoardService;
+import com.vmware.vrack.hms.common.boardvendorservice.resource.ServiceHmsNode;
+import com.vmware.vrack.hms.common.resource.sel.SelFetchDirection;
+import com.vmware.vrack.hms.common.resource.sel.SelInfo;
+import com.vmware.vrack.hms.common.resource.sel.SelRecord;
+import com.vmware.vrack.hms.common.servernodes.api.ServerNode;
+
+/**
+ * Tests {@link SelCursor} against a simulated SEL, checking how many records are read from the BMC.
+ */
+public class SelCursorTest
+{
+    private List<SelRecord> sel;
+
+    private Date eraseTimeStamp;
+
+    private int recordsRead;
+
+    private IBoardService boardService;
+
+    private ServiceHmsNode serviceHmsNode;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        sel = new ArrayList<SelRecord>();
+        eraseTimeStamp = new Date( 1000 );
+        serviceHmsNode = new ServerNode( "N1", "10.0.0.1", "root", "root123" ).getServiceObject();
+        boardService = mock( IBoardService.class );
+        when( boardService.getSelDetails( any( ServiceHmsNode.class ), anyInt(),
+                                          eq( SelFetchDirection.RecentEntries ) ) ).thenAnswer( new Answer<SelInfo>()
+                                          {
+                                              @Override
+                                              public SelInfo answer( InvocationOnMock invocation )
+                                              {
+                                                  int count = (Integer) invocation.getArguments()[1];
+                                                  List<SelRecord> records = new ArrayList<SelRecord>(
+                                                      sel.subList( Math.max( 0, sel.size() - count ), sel.size() ) );
+                                                  recordsRead += records.size();
+                                                  SelInfo selInfo = new SelInfo();
+                                                  selInfo.setTotalSelCount( sel.size() );
+                                                  selInfo.setLastEraseTimeStamp( eraseTimeStamp );
+                                                  selInfo.setSelRecords( records );
+                                                  return selInfo;
+                                              }
+                                          } );
+    }
+
+    @Test
+    public void testReadOnlyNewRecords()
+        throws Exception
+    {
+        addRecords( 100 );
+        SelCursor cursor = new SelCursor( 64, 4 );
+
+        SelInfo selInfo = cursor.read( boardService, serviceHmsNode, 10, SelFetchDirection.RecentEntries );
+        assertEquals( 10, selInfo.getSelRecords().size() );
+        assertEquals( 99, selInfo.getSelRecords().get( 9 ).getRecordId() );
+        assertEquals( 10, cursor.size() );
+        assertEquals( 10, recordsRead );
+
+        recordsRead = 0;
+        addRecords( 2 );
+        selInfo = cursor.read( boardService, serviceHmsNode, 10, SelFetchDirection.RecentEntries );
+        assertEquals( 101, selInfo.getSelRecords().get( 9 ).getRecordId() );
+        assertEquals( 4, recordsRead );
+
+        recordsRead = 0;
+        selInfo = cursor.read( boardService, serviceHmsNode, 10, SelFetchDirection.RecentEntries );
+        assertEquals( 101, selInfo.getSelRecords().get( 9 ).getRecordId() );
+        assertEquals( 4, recordsRead );
+    }
+
+    @Test
+    public void testWidenProbe()
+        throws Exception
+    {
+        addRecords( 10 );
+        SelCursor cursor = new SelCursor( 64, 4 );
+        cursor.read( boardService, serviceHmsNode, 10, SelFetchDirection.RecentEntries );
+
+        addRecords( 20 );
+        SelInfo selInfo = cursor.read( boardService, serviceHmsNode, null, SelFetchDirection.RecentEntries );
+        assertEquals( 30, selInfo.getSelRecords().size() );
+        assertEquals( 0, selInfo.getSelRecords().get( 0 ).getRecordId() );
+        assertEquals( 29, selInfo.getSelRecords().get( 29 ).getRecordId() );
+    }
+
+    @Test
+    public void testSelClear()
+        throws Exception
+    {
+        addRecords( 10 );
+        SelCursor cursor = new SelCursor( 64, 4 );
+        cursor.read( boardService, serviceHmsNode, 10, SelFetchDirection.RecentEntries );
+
+        sel.clear();
+        eraseTimeStamp = new Date( 2000 );
+        addRecords( 3 );
+        SelInfo selInfo = cursor.read( boardService, serviceHmsNode, 10, SelFetchDirection.RecentEntries );
+        assertEquals( 3, selInfo.getSelRecords().size() );
+        assertEquals( 3, cursor.size() );
+    }
+
+    @Test
+    public void testReadMoreRecordsThanCached()
+        throws Exception
+    {
+        addRecords( 100 );
+        SelCursor cursor = new SelCursor( 64, 4 );
+        cursor.read( boardService, serviceHmsNode, 10, SelFetchDirection.RecentEntries );
+
+        SelInfo selInfo = cursor.read( boardService, serviceHmsNode, 30, SelFetchDirection.RecentEntries );
+        assertEquals( 30, selInfo.getSelRecords().size() );
+        assertEquals( 70, selInfo.getSelRecords().get( 0 ).getRecordId() );
+        assertEquals( 99, selInfo.getSelRecords().get( 29 ).getRecordId() );
+    }
+
+    @Test
+    public void testClockReset()
+        throws Exception
+    {
+        addRecords( 10 );
+        SelCursor cursor = new SelCursor( 64, 4 );
+        cursor.read( boardService, serviceHmsNode, 10, SelFetchDirection.RecentEntries );
+
+        // Records added after the BMC clock was set back
+        addRecords( 2, 5000 );
+        SelInfo selInfo = cursor.read( boardService, serviceHmsNode, 10, SelFetchDirection.RecentEntries );
+        assertEquals( 10, selInfo.getSelRecords().get( 8 ).getRecordId() );
+        assertEquals( 11, selInfo.getSelRecords().get( 9 ).getRecordId() );
+        assertEquals( 12, cursor.size() );
+
+        addRecords( 1, 5000 );
+        selInfo = cursor.read( boardService, serviceHmsNode, 10, SelFetchDirection.RecentEntries );
+        assertEquals( 12, selInfo.getSelRecords().get( 9 ).getRecordId() );
+        assertEquals( 13, cursor.size() );
+    }
+
+    private void addRecords( int count )
+    {
+        addRecords( count, 10000 );
+    }
+
+    private void addRecords( int count, long baseTime )
+    {
+        for ( int i = 0; i < count; i++ )
+        {
+            SelRecord record = new SelRecord();
+            record.setRecordId( sel.size() );
+            record.setTimestamp( new Date( baseTime + sel.size() ) );
+            sel.add( record );
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/* ********************************************************************************
+ * NodeDiscoveryExecutorTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import com.vmware.vrack.hms.common.exception.HmsException;
+
+public class NodeDiscoveryExecutorTest
+{
+    @Test
+    public void testQueuedNodesGetTheFullTimeout()
+        throws Exception
+    {
+        NodeDiscoveryExecutor executor = new NodeDiscoveryExecutor( 1, 400 );
+        for ( String nodeId : Arrays.asList( "N1", "N2", "N3" ) )
+        {
+            executor.submit( nodeId, sleep( 250 ) );
+        }
+
+        Map<String, Exception> errors = executor.awaitAll();
+
+        assertTrue( errors.toString(), errors.isEmpty() );
+    }
+
+    @Test
+    public void testFailuresAndTimeouts()
+        throws Exception
+    {
+        NodeDiscoveryExecutor executor = new NodeDiscoveryExecutor( 1, 300 );
+        executor.submit( "N1", new Callable<Void>()
+        {
+            @Override
+            public Void call()
+                throws Exception
+            {
+                throw new HmsException( "failed" );
+            }
+        } );
+        executor.submit( "N2", sleep( 5000 ) );
+        executor.submit( "N3", sleep( 0 ) );
+
+        Map<String, Exception> errors = executor.awaitAll();
+
+        assertEquals( Arrays.asList( "N1", "N2" ), Arrays.asList( errors.keySet().toArray() ) );
+        assertEquals( "failed", errors.get( "N1" ).getMessage() );
+        assertTrue( errors.get( "N2" ) instanceof TimeoutException );
+    }
+
+    private static Callable<Void> sleep( final long millis )
+    {
+        return new Callable<Void>()
+        {
+            @Override
+            public Void call()
+                throws Exception
+            {
+                Thread.sleep( millis );
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,82 @@
+/* ********************************************************************************
+ * NodeDiscoveryUtilTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.vmware.vrack.hms.common.notification.NodeActionStatus;
+import com.vmware.vrack.hms.common.notification.NodeDiscoveryProgress;
+
+public class NodeDiscoveryUtilTest
+{
+    @After
+    public void tearDown()
+    {
+        NodeDiscoveryUtil.removeAllServers();
+    }
+
+    @Test
+    public void testHostDiscoveryProgress()
+    {
+        NodeDiscoveryUtil.startHostDiscovery( Arrays.asList( "N1", "N2", "N3", "N4" ) );
+
+        NodeDiscoveryProgress progress = NodeDiscoveryUtil.getHostDiscoveryProgress();
+        assertEquals( 4, progress.getTotal() );
+        assertEquals( 0, progress.getCompleted() );
+        assertEquals( 4, progress.getInProgress() );
+        assertEquals( -1, progress.getEstimatedTimeRemaining() );
+        assertEquals( -1, NodeDiscoveryUtil.getHostDiscoveryTime() );
+
+        NodeDiscoveryUtil.setHostDiscoveryStatus( "N1", NodeActionStatus.SUCCESS );
+        NodeDiscoveryUtil.setHostDiscoveryStatus( "N2", NodeActionStatus.FAILURE );
+
+        progress = NodeDiscoveryUtil.getHostDiscoveryProgress();
+        assertEquals( 2, progress.getCompleted() );
+        assertEquals( 1, progress.getFailed() );
+        assertEquals( 2, progress.getInProgress() );
+        assertTrue( progress.getEstimatedTimeRemaining() >= 0 );
+        assertEquals( -1, NodeDiscoveryUtil.getHostDiscoveryTime() );
+
+        NodeDiscoveryUtil.setHostDiscoveryStatus( "N3", NodeActionStatus.SUCCESS );
+        NodeDiscoveryUtil.setHostDiscoveryStatus( "N4", NodeActionStatus.SUCCESS );
+
+        progress = NodeDiscoveryUtil.getHostDiscoveryProgress();
+        assertEquals( 4, progress.getCompleted() );
+        assertEquals( 0, progress.getInProgress() );
+        assertEquals( 0, progress.getEstimatedTimeRemaining() );
+        assertTrue( NodeDiscoveryUtil.getHostDiscoveryTime() >= 0 );
+    }
+
+    @Test
+    public void testLateCompletionDoesNotOverwriteTimeout()
+    {
+        NodeDiscoveryUtil.startHostDiscovery( Arrays.asList( "N1", "N2" ) );
+
+        NodeDiscoveryUtil.setHostDiscoveryStatus( "N1", NodeActionStatus.FAILURE );
+        assertFalse( NodeDiscoveryUtil.completeHostDiscovery( "N1", NodeActionStatus.SUCCESS ) );
+        assertTrue( NodeDiscoveryUtil.completeHostDiscovery( "N2", NodeActionStatus.SUCCESS ) );
+
+        assertEquals( NodeActionStatus.FAILURE, NodeDiscoveryUtil.hostDiscoveryMap.get( "N1" ) );
+        assertEquals( NodeActionStatus.SUCCESS, NodeDiscoveryUtil.hostDiscoveryMap.get( "N2" ) );
+    }
+}
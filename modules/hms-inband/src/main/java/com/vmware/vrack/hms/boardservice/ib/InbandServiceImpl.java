@@ -131,10 +131,9 @@ public class InbandServiceImpl
             ServiceServerNode node = (ServiceServerNode) serviceHmsNode;
             try
             {
-                HostSystem hostSystem = hostProxy.getHostSystem();
-                if ( hostSystem != null && hostSystem.getHardware() != null )
+                HardwareInfo hardwareInfo = hostProxy.getHardwareInfo();
+                if ( hardwareInfo != null )
                 {
-                    HardwareInfo hardwareInfo = hostSystem.getHardware();
                     logger.debug( "Got hardware info for node {} for getting CPU Info", serviceHmsNode.getNodeID() );
                     cpuInfoList = CpuInfoHelper.getCpuInfo( hardwareInfo );
                     if ( !CollectionUtils.isEmpty( cpuInfoList ) )
@@ -275,11 +274,9 @@ public class InbandServiceImpl
             ServiceServerNode node = (ServiceServerNode) serviceHmsNode;
             try
             {
-                HostSystem hostSystem = hostProxy.getHostSystem();
-
-                if ( hostSystem != null && hostSystem.getHardware() != null )
+                HardwareInfo hardwareInfo = hostProxy.getHardwareInfo();
+                if ( hardwareInfo != null )
                 {
-                    HardwareInfo hardwareInfo = hostSystem.getHardware();
                     physicalMemories =
                         com.vmware.vrack.hms.boardservice.ib.api.MemoryInfoHelper.getMemoryInfo( hardwareInfo );
                 }
@@ -516,10 +513,9 @@ public class InbandServiceImpl
                 HostProxy hostProxy = getHostProxy( node );
                 // HostManager.getInstance().connect(node.getIbIpAddress(), node.getOsUserName(), node.getOsPassword());
 
-                HostSystem hostSystem = hostProxy.getHostSystem();
-                if ( hostSystem != null && hostSystem.getHardware() != null )
+                HardwareInfo hardwareInfo = hostProxy.getHardwareInfo();
+                if ( hardwareInfo != null )
                 {
-                    HardwareInfo hardwareInfo = hostSystem.getHardware();
                     biosInfo = BiosInfoHelper.getBiosInfo( hardwareInfo );
                 }
             }
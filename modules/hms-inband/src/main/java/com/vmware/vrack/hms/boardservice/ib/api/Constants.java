@@ -28,6 +28,26 @@ public class Constants
     public static final String GET_HDD_SMART_DATA_COMMAND =
         "esxcli --formatter=csv storage core device smart get -d %s";
 
+    /**
+     * Marker preceding the SMART data of each disk in the output of {@link #GET_HDD_SMART_DATA_BATCH_COMMAND}
+     */
+    public static final String HDD_SMART_DATA_DEVICE_MARKER = "#HMS-SMART-DEVICE:";
+
+    /**
+     * Marker following the SMART data of each disk in the output of {@link #GET_HDD_SMART_DATA_BATCH_COMMAND}, with the
+     * exit status of the command reading it
+     */
+    public static final String HDD_SMART_DATA_STATUS_MARKER = "#HMS-SMART-STATUS:";
+
+    /**
+     * CLI Command for the Smart data of several Hdds at once via esxi cli, the disks being given as a space separated
+     * list of single quoted names
+     */
+    public static final String GET_HDD_SMART_DATA_BATCH_COMMAND =
+        "for d in %s; do echo \"" + HDD_SMART_DATA_DEVICE_MARKER
+            + "$d\"; esxcli --formatter=csv storage core device smart get -d \"$d\"; echo \""
+            + HDD_SMART_DATA_STATUS_MARKER + "$?\"; done";
+
     /**
      * CLI Command for NIC packet data drop info
      */
@@ -15,14 +15,9 @@
  * *******************************************************************************/
 package com.vmware.vrack.hms.boardservice.ib.api;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -59,8 +54,6 @@ import com.vmware.vrack.hms.common.servernodes.api.hdd.HddSMARTData;
 import com.vmware.vrack.hms.common.util.EsxiSshUtil;
 import com.vmware.vrack.hms.vsphere.VsphereClient;
 
-import au.com.bytecode.opencsv.CSVReader;
-
 /**
  * @author Yagnesh Chawda
  */
@@ -102,150 +95,143 @@ public class HddInfoHelper
             ManagedObjectReference ssmor = configManager.getStorageSystem();
             try
             {
-                try
-                {
-                    logger.debug( "At HddInfoHelper Trying to logon to ssh termninal for node:"
-                        + ( node != null ? node.getNodeID() : null ) );
-                    session = getSession( node );
-                }
-                catch ( HmsException | JSchException e )
-                {
-                    logger.error( "Cannot create ssh session Object for node : "
-                        + ( node != null ? node.getNodeID() : null ), e );
-                }
-                if ( ssmor != null )
+                logger.debug( "At HddInfoHelper Trying to logon to ssh termninal for node:"
+                    + ( node != null ? node.getNodeID() : null ) );
+                session = getSession( node );
+            }
+            catch ( HmsException | JSchException e )
+            {
+                logger.error( "Cannot create ssh session Object for node : "
+                    + ( node != null ? node.getNodeID() : null ), e );
+            }
+            if ( ssmor != null )
+            {
+                StorageSystem ss = client.createStub( StorageSystem.class, ssmor );
+                if ( ss != null && ss.getStorageDeviceInfo() != null )
                 {
-                    StorageSystem ss = client.createStub( StorageSystem.class, ssmor );
-                    if ( ss != null && ss.getStorageDeviceInfo() != null )
-                    {
 
-                        Map<String, Path> plugStoreTopologyPathMap = new HashMap<>();
-                        PlugStoreTopology plugStoreTopology = ss.getStorageDeviceInfo().getPlugStoreTopology();
-                        if ( plugStoreTopology != null )
+                    Map<String, Path> plugStoreTopologyPathMap = new HashMap<>();
+                    PlugStoreTopology plugStoreTopology = ss.getStorageDeviceInfo().getPlugStoreTopology();
+                    if ( plugStoreTopology != null )
+                    {
+                        for ( Path path : plugStoreTopology.getPath() )
                         {
-                            for ( Path path : plugStoreTopology.getPath() )
+                            String key = path.getDevice();
+                            if ( key != null )
                             {
-                                String key = path.getDevice();
-                                if ( key != null )
-                                {
-                                    plugStoreTopologyPathMap.put( key, path );
-                                }
+                                plugStoreTopologyPathMap.put( key, path );
                             }
                         }
+                    }
 
-                        for ( ScsiLun lun : ss.getStorageDeviceInfo().getScsiLun() )
+                    for ( ScsiLun lun : ss.getStorageDeviceInfo().getScsiLun() )
+                    {
+                        HddInfo hddInfo = new HddInfo();
+                        ComponentIdentifier hddComponentIdentifier = new ComponentIdentifier();
+                        ScsiDisk sd = null;
+
+                        // Because we are getting some data which are NOT truly speaking Drives in this listing
+                        // being it
+                        // can be some caching storage devices. So filtering them out.
+                        if ( "disk".equalsIgnoreCase( lun.getDeviceType() ) )
                         {
-                            HddInfo hddInfo = new HddInfo();
-                            ComponentIdentifier hddComponentIdentifier = new ComponentIdentifier();
-                            ScsiDisk sd = null;
-
-                            // Because we are getting some data which are NOT truly speaking Drives in this listing
-                            // being it
-                            // can be some caching storage devices. So filtering them out.
-                            if ( "disk".equalsIgnoreCase( lun.getDeviceType() ) )
+                            if ( lun instanceof ScsiDisk )
                             {
-                                if ( lun instanceof ScsiDisk )
-                                {
-                                    sd = (ScsiDisk) lun;
+                                sd = (ScsiDisk) lun;
 
-                                    if ( sd.getSsd() )
-                                    {
-                                        hddInfo.setType( "SSD" );
-                                    }
-                                    else
-                                    {
-                                        hddInfo.setType( "HDD" );
-                                    }
+                                if ( sd.getSsd() )
+                                {
+                                    hddInfo.setType( "SSD" );
+                                }
+                                else
+                                {
+                                    hddInfo.setType( "HDD" );
+                                }
 
-                                    if ( sd.getCapacity() != null )
-                                    {
-                                        long size = sd.getCapacity().getBlock() * sd.getCapacity().getBlockSize();
-                                        long sizeInMB = ( size / ( 1024 * 1024 ) );
-                                        hddInfo.setDiskCapacityInMB( sizeInMB );
-                                    }
+                                if ( sd.getCapacity() != null )
+                                {
+                                    long size = sd.getCapacity().getBlock() * sd.getCapacity().getBlockSize();
+                                    long sizeInMB = ( size / ( 1024 * 1024 ) );
+                                    hddInfo.setDiskCapacityInMB( sizeInMB );
+                                }
 
-                                    if ( sd.getOperationalState() != null && sd.getOperationalState().length > 0 )
-                                    {
-                                        hddInfo.setState( StatusEnum.getHddState( sd.getOperationalState()[( sd.getOperationalState().length )
-                                            - 1] ) );
-                                    }
+                                if ( sd.getOperationalState() != null && sd.getOperationalState().length > 0 )
+                                {
+                                    hddInfo.setState( StatusEnum.getHddState( sd.getOperationalState()[( sd.getOperationalState().length )
+                                        - 1] ) );
+                                }
 
-                                    if ( sd.getUuid() != null )
+                                if ( sd.getUuid() != null )
+                                {
+                                    for ( String pathKey : plugStoreTopologyPathMap.keySet() )
                                     {
-                                        for ( String pathKey : plugStoreTopologyPathMap.keySet() )
+                                        if ( pathKey.contains( sd.getUuid() ) )
                                         {
-                                            if ( pathKey.contains( sd.getUuid() ) )
+                                            Path path = plugStoreTopologyPathMap.get( pathKey );
+                                            if ( path != null && path.getTargetNumber() != null
+                                                && path.getChannelNumber() != null && path.getLunNumber() != null
+                                                && path.getAdapter() != null )
                                             {
-                                                Path path = plugStoreTopologyPathMap.get( pathKey );
-                                                if ( path != null && path.getTargetNumber() != null
-                                                    && path.getChannelNumber() != null && path.getLunNumber() != null
-                                                    && path.getAdapter() != null )
-                                                {
-                                                    String deviceLocation = null;
-                                                    String deviceId = null;
-                                                    // For ex: path.getAdapter() returns the value as
-                                                    // "key-vim.host.PlugStoreTopology.Adapter-vmhba1",
-                                                    // we need only the adapter/controller this specific storage device
-                                                    // is connected.
-                                                    // So we are extracting only the vmbha1 using replaceFirst.
-                                                    deviceLocation =
-                                                        path.getAdapter().replaceFirst( "key-vim.host.PlugStoreTopology.Adapter-",
-                                                                                        " " ).trim()
-                                                            + COLON + CHANNEL
-                                                            + String.valueOf( path.getChannelNumber() ) + COLON + TARGET
-                                                            + String.valueOf( path.getTargetNumber() ) + COLON + LUN
-                                                            + String.valueOf( path.getLunNumber() );
-                                                    deviceId =
-                                                        path.getAdapter().replaceFirst( "key-vim.host.PlugStoreTopology.Adapter-",
-                                                                                        " " ).trim()
-                                                            + COLON + DEVICE_CHANNEL
-                                                            + String.valueOf( path.getChannelNumber() ) + COLON
-                                                            + DEVICE_TARGET + String.valueOf( path.getTargetNumber() )
-                                                            + COLON + DEVICE_LUN
-                                                            + String.valueOf( path.getLunNumber() );
-                                                    hddInfo.setLocation( deviceLocation );
-                                                    // TODO: Id can be set it as canonicalName
-                                                    hddInfo.setId( deviceId );
-                                                }
+                                                String deviceLocation = null;
+                                                String deviceId = null;
+                                                // For ex: path.getAdapter() returns the value as
+                                                // "key-vim.host.PlugStoreTopology.Adapter-vmhba1",
+                                                // we need only the adapter/controller this specific storage device
+                                                // is connected.
+                                                // So we are extracting only the vmbha1 using replaceFirst.
+                                                deviceLocation =
+                                                    path.getAdapter().replaceFirst( "key-vim.host.PlugStoreTopology.Adapter-",
+                                                                                    " " ).trim()
+                                                        + COLON + CHANNEL
+                                                        + String.valueOf( path.getChannelNumber() ) + COLON + TARGET
+                                                        + String.valueOf( path.getTargetNumber() ) + COLON + LUN
+                                                        + String.valueOf( path.getLunNumber() );
+                                                deviceId =
+                                                    path.getAdapter().replaceFirst( "key-vim.host.PlugStoreTopology.Adapter-",
+                                                                                    " " ).trim()
+                                                        + COLON + DEVICE_CHANNEL
+                                                        + String.valueOf( path.getChannelNumber() ) + COLON
+                                                        + DEVICE_TARGET + String.valueOf( path.getTargetNumber() )
+                                                        + COLON + DEVICE_LUN
+                                                        + String.valueOf( path.getLunNumber() );
+                                                hddInfo.setLocation( deviceLocation );
+                                                // TODO: Id can be set it as canonicalName
+                                                hddInfo.setId( deviceId );
                                             }
                                         }
                                     }
+                                }
 
-                                    // Set Canonical Name here. Will be required to map Smart Data to particular Hdd
-                                    hddInfo.setName( sd.getCanonicalName() );
+                                // Set Canonical Name here. Will be required to map Smart Data to particular Hdd
+                                hddInfo.setName( sd.getCanonicalName() );
 
-                                    // setting revision from scsiLun as firmware for HDD.
-                                    hddInfo.setFirmwareInfo( sd.getRevision() );
+                                // setting revision from scsiLun as firmware for HDD.
+                                hddInfo.setFirmwareInfo( sd.getRevision() );
 
-                                    // Setting the manufacturer, product model
-                                    hddComponentIdentifier.setManufacturer( sd.getVendor() );
-                                    hddComponentIdentifier.setProduct( sd.getModel() );
-                                    if ( !sd.getSerialNumber().equals( UNAVAILABLE ) && sd.getSerialNumber() != null
-                                        && !sd.getSerialNumber().equals( "" ) )
-                                        hddComponentIdentifier.setSerialNumber( sd.getSerialNumber() );
-                                    hddInfo.setComponentIdentifier( hddComponentIdentifier );
+                                // Setting the manufacturer, product model
+                                hddComponentIdentifier.setManufacturer( sd.getVendor() );
+                                hddComponentIdentifier.setProduct( sd.getModel() );
+                                if ( !sd.getSerialNumber().equals( UNAVAILABLE ) && sd.getSerialNumber() != null
+                                    && !sd.getSerialNumber().equals( "" ) )
+                                    hddComponentIdentifier.setSerialNumber( sd.getSerialNumber() );
+                                hddInfo.setComponentIdentifier( hddComponentIdentifier );
 
-                                    // Get IsCapacityDisk details for the storage device
-                                    boolean isCapacityDisk = findIsCapacityDisk( hddInfo.getName(), session,
-                                                                                 node.getNodeID(), hddInfo.getType() );
-                                    hddInfo.setCapacityDisk( isCapacityDisk );
+                                // Get IsCapacityDisk details for the storage device
+                                boolean isCapacityDisk = findIsCapacityDisk( hddInfo.getName(), session,
+                                                                             node.getNodeID(), hddInfo.getType() );
+                                hddInfo.setCapacityDisk( isCapacityDisk );
 
-                                    hddInfos.add( hddInfo );
-                                }
+                                hddInfos.add( hddInfo );
                             }
                         }
                     }
-                    else
-                    {
-                        throw new HmsException( "No HDD information found." );
-                    }
                 }
-                return hddInfos;
-            }
-            finally
-            {
-                destroySession( session );
+                else
+                {
+                    throw new HmsException( "No HDD information found." );
+                }
             }
+            return hddInfos;
         }
         else
         {
@@ -324,82 +310,7 @@ public class HddInfoHelper
     }
 
     /**
-     * Get HDD Specific SMART Data
-     * 
-     * @param diskName
-     * @param session
-     * @return
-     * @throws Exception
-     */
-    public static List<HddSMARTData> getHddSmartDataInfo( String diskName, Session session )
-        throws Exception
-    {
-        logger.debug( "Trying to get Smart data for disk: " + diskName );
-        List<HddSMARTData> smartData = new ArrayList<HddSMARTData>();
-
-        if ( diskName != null && !"".equals( diskName.trim() ) && session != null )
-        {
-            String command = String.format( Constants.GET_HDD_SMART_DATA_COMMAND, diskName.trim() );
-
-            // Result will be received in csv format after executing following command
-            String result = EsxiSshUtil.executeCommand( session, command );
-
-            // if result String ends with '\n' We need to remove that extra character,
-            // else it will appear as last character in Build Version while parsing
-            if ( result.endsWith( "\n" ) )
-            {
-                result = result.substring( 0, result.length() - 1 );
-            }
-
-            logger.debug( result );
-
-            // convert String into InputStream
-            InputStream is = new ByteArrayInputStream( result.getBytes() );
-
-            // read it with BufferedReader
-            BufferedReader br = new BufferedReader( new InputStreamReader( is ) );
-
-            CSVReader csvReader = new CSVReader( br );
-
-            // read all lines at once
-            List<String[]> records = csvReader.readAll();
-
-            Iterator<String[]> iterator = records.iterator();
-
-            // skip header row
-            iterator.next();
-
-            while ( iterator.hasNext() )
-            {
-                String[] record = iterator.next();
-                HddSMARTData data = new HddSMARTData();
-
-                // Set name of the Hdd Smart parameter
-                data.setParameter( record[0] );
-
-                if ( data.getParameter() != null )
-                {
-                    data.setThreshold( record[1] );
-                    data.setValue( record[2] );
-                    data.setWorst( record[3] );
-                    smartData.add( data );
-                }
-            }
-            csvReader.close();
-
-            logger.debug( smartData.toString() );
-            return smartData;
-        }
-        else
-        {
-            throw new HmsException( "Cannot get HDD SMART Data for Disk: " + diskName + " and Session Object: "
-                + session );
-        }
-
-    }
-
-    /**
-     * Get ssh Session Object once for the node
+     * Get pooled ssh Session Object for the node. The session is shared, and must not be disconnected by the caller.
      * 
      * @param node
      * @return
@@ -414,22 +325,16 @@ public class HddInfoHelper
         {
             Properties sessionConfig = new java.util.Properties();
             sessionConfig.put( InbandConstants.STRICT_HOST_KEY_CHECKING, InbandConstants.STRICT_HOST_KEY_CHECK_YES );
-            Session session = EsxiSshUtil.getSessionObject( node.getOsUserName(), node.getOsPassword(),
-                                                            node.getIbIpAddress(), node.getSshPort(), sessionConfig );
 
             try
             {
-                session.connect( 30000 );
-                return session;
+                // The session is pooled, and reused by the next inventory and monitoring calls for the node
+                return EsxiSshUtil.getPooledSession( node.getOsUserName(), node.getOsPassword(),
+                                                     node.getIbIpAddress(), node.getSshPort(), sessionConfig );
             }
             catch ( JSchException e )
             {
                 logger.error( "Unable to create jsch CLI session: ", e );
-                if ( session != null )
-                {
-                    session.disconnect();
-                    session = null;
-                }
                 throw e;
             }
         }
@@ -520,214 +425,236 @@ public class HddInfoHelper
 
             try
             {
-                try
+                logger.debug( "Trying to logon to ssh termninal for node:"
+                    + ( node != null ? node.getNodeID() : node ) );
+                session = getSession( node );
+            }
+            catch ( HmsException | JSchException e )
+            {
+                logger.error( "Cannot create ssh session Object for node : "
+                    + ( node != null ? node.getNodeID() : node ), e );
+            }
+
+            // SMART data of all the operational disks is read at once
+            List<String> diskNames = new ArrayList<String>();
+            for ( HddInfo hddInfo : hddInfos )
+            {
+                if ( hddInfo != null && opStates.contains( hddInfo.getState() ) )
                 {
-                    logger.debug( "Trying to logon to ssh termninal for node:"
-                        + ( node != null ? node.getNodeID() : node ) );
-                    session = getSession( node );
+                    diskNames.add( hddInfo.getName() );
                 }
-                catch ( HmsException | JSchException e )
+            }
+            Map<String, List<HddSMARTData>> smartDataMap = new HashMap<String, List<HddSMARTData>>();
+            try
+            {
+                smartDataMap = HddSmartDataCollector.getHddSmartData( serviceNode.getNodeID(), diskNames, session );
+            }
+            catch ( Exception e )
+            {
+                logger.error( "Exception while getting Storage Smart Data for node [ " + serviceNode.getNodeID() + " ]",
+                              e );
+                if ( session != null )
                 {
-                    logger.error( "Cannot create ssh session Object for node : "
-                        + ( node != null ? node.getNodeID() : node ), e );
+                    EsxiSshUtil.invalidatePooledSession( node.getOsUserName(), node.getIbIpAddress(),
+                                                         node.getSshPort() );
                 }
+            }
 
-                for ( HddInfo hddInfo : hddInfos )
+            for ( HddInfo hddInfo : hddInfos )
+            {
+                try
                 {
-                    try
+                    if ( hddInfo != null && opStates.contains( hddInfo.getState() ) )
                     {
-                        if ( hddInfo != null && opStates.contains( hddInfo.getState() ) )
+                        List<HddSMARTData> hddSmartDatas = smartDataMap.get( hddInfo.getName() );
+                        if ( hddSmartDatas == null )
                         {
-                            List<HddSMARTData> hddSmartDatas = getHddSmartDataInfo( hddInfo.getName(), session );
+                            throw new HmsException( "No SMART Data found for Disk: " + hddInfo.getName() );
+                        }
 
-                            // if (hddInfo)
-                            for ( HddSMARTData hddSmartData : hddSmartDatas )
+                        // if (hddInfo)
+                        for ( HddSMARTData hddSmartData : hddSmartDatas )
+                        {
+                            try
                             {
-                                try
+                                if ( hddSmartData != null )
                                 {
-                                    if ( hddSmartData != null )
-                                    {
-                                        // For all properties of hddSmartData data in this if condition, generate
-                                        // ServerComponentSensor if values are not in the limits.
+                                    // For all properties of hddSmartData data in this if condition, generate
+                                    // ServerComponentSensor if values are not in the limits.
 
-                                        String parameter = hddSmartData.getParameter();
+                                    String parameter = hddSmartData.getParameter();
 
-                                        ServerComponentEvent componentSensor = null;
-                                        if ( parameter != null && !"".equals( parameter )
-                                            && hddSmartData.getValue() != null )
-                                        {
-                                            componentSensor = new ServerComponentEvent();
-                                            boolean addComponentSensor = false;
+                                    ServerComponentEvent componentSensor = null;
+                                    if ( parameter != null && !"".equals( parameter )
+                                        && hddSmartData.getValue() != null )
+                                    {
+                                        componentSensor = new ServerComponentEvent();
+                                        boolean addComponentSensor = false;
 
-                                            if ( hddInfo.getType().equals( "HDD" ) )
+                                        if ( hddInfo.getType().equals( "HDD" ) )
+                                        {
+                                            switch ( parameter )
                                             {
-                                                switch ( parameter )
-                                                {
-                                                    // Generate ServerComponentSensor if required
-                                                    case Constants.HEALTH_STATUS:
-                                                        if ( !"".equals( hddSmartData.getValue() )
-                                                            && !"N/A".equalsIgnoreCase( hddSmartData.getValue() )
-                                                            && !"OK".equalsIgnoreCase( hddSmartData.getValue() ) )
-                                                        {
-                                                            addComponentSensor = true;
-                                                            componentSensor.setEventName( NodeEvent.HDD_HEALTH_CRITICAL );
-                                                            componentSensor.setDiscreteValue( hddSmartData.getValue() );
-                                                        }
-                                                        break;
-
-                                                    case Constants.MEDIA_WEAROUT_INDICATOR:
-                                                        if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
-                                                        {
-                                                            addComponentSensor = true;
-                                                            componentSensor.setEventName( NodeEvent.HDD_WEAROUT_ABOVE_THRESHOLD );
-                                                            componentSensor.setDiscreteValue( hddSmartData.getValue() );
-                                                        }
-                                                        break;
-
-                                                    case Constants.WRITE_ERROR_COUNT:
-                                                    case Constants.WRITE_SECTORS_TOT_COUNT:
-                                                        if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
-                                                        {
-                                                            addComponentSensor = true;
-                                                            componentSensor.setEventName( NodeEvent.HDD_WRITE_ERROR );
-                                                            componentSensor.setDiscreteValue( hddSmartData.getValue() );
-                                                        }
-                                                        break;
-
-                                                    case Constants.READ_ERROR_COUNT:
-                                                    case Constants.READ_SECTORS_TOT_COUNT:
-                                                    case Constants.RAW_READ_ERROR_RATE:
-                                                        if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
-                                                        {
-                                                            addComponentSensor = true;
-                                                            componentSensor.setEventName( NodeEvent.HDD_READ_ERROR );
-                                                            componentSensor.setDiscreteValue( hddSmartData.getValue() );
-                                                        }
-                                                        break;
-
-                                                    case Constants.DRIVE_TEMPERATURE:
-                                                    case Constants.DRIVER_RATED_MAX_TEMPERATURE:
-                                                        if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
-                                                        {
-                                                            addComponentSensor = true;
-                                                            componentSensor.setEventName( NodeEvent.HDD_TEMP_ABOVE_THRESHOLD );
-                                                            componentSensor.setValue( new Float( hddSmartData.getValue() ) );
-                                                        }
-                                                        break;
-
-                                                    case Constants.REALLOCATED_SECTORS_COUNT:
-                                                    case Constants.INITIAL_BAD_BLOCK_COUNT:
-                                                        if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
-                                                        {
-                                                            addComponentSensor = true;
-                                                            componentSensor.setEventName( NodeEvent.HDD_HEALTH_CRITICAL );
-                                                            componentSensor.setDiscreteValue( hddSmartData.getValue() );
-                                                        }
-                                                        break;
-
-                                                    case Constants.POWER_ON_HOURS:
-                                                    case Constants.POWER_CYCLE_COUNT:
-                                                        break;
-                                                }
+                                                // Generate ServerComponentSensor if required
+                                                case Constants.HEALTH_STATUS:
+                                                    if ( !"".equals( hddSmartData.getValue() )
+                                                        && !"N/A".equalsIgnoreCase( hddSmartData.getValue() )
+                                                        && !"OK".equalsIgnoreCase( hddSmartData.getValue() ) )
+                                                    {
+                                                        addComponentSensor = true;
+                                                        componentSensor.setEventName( NodeEvent.HDD_HEALTH_CRITICAL );
+                                                        componentSensor.setDiscreteValue( hddSmartData.getValue() );
+                                                    }
+                                                    break;
+
+                                                case Constants.MEDIA_WEAROUT_INDICATOR:
+                                                    if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
+                                                    {
+                                                        addComponentSensor = true;
+                                                        componentSensor.setEventName( NodeEvent.HDD_WEAROUT_ABOVE_THRESHOLD );
+                                                        componentSensor.setDiscreteValue( hddSmartData.getValue() );
+                                                    }
+                                                    break;
+
+                                                case Constants.WRITE_ERROR_COUNT:
+                                                case Constants.WRITE_SECTORS_TOT_COUNT:
+                                                    if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
+                                                    {
+                                                        addComponentSensor = true;
+                                                        componentSensor.setEventName( NodeEvent.HDD_WRITE_ERROR );
+                                                        componentSensor.setDiscreteValue( hddSmartData.getValue() );
+                                                    }
+                                                    break;
+
+                                                case Constants.READ_ERROR_COUNT:
+                                                case Constants.READ_SECTORS_TOT_COUNT:
+                                                case Constants.RAW_READ_ERROR_RATE:
+                                                    if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
+                                                    {
+                                                        addComponentSensor = true;
+                                                        componentSensor.setEventName( NodeEvent.HDD_READ_ERROR );
+                                                        componentSensor.setDiscreteValue( hddSmartData.getValue() );
+                                                    }
+                                                    break;
+
+                                                case Constants.DRIVE_TEMPERATURE:
+                                                case Constants.DRIVER_RATED_MAX_TEMPERATURE:
+                                                    if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
+                                                    {
+                                                        addComponentSensor = true;
+                                                        componentSensor.setEventName( NodeEvent.HDD_TEMP_ABOVE_THRESHOLD );
+                                                        componentSensor.setValue( new Float( hddSmartData.getValue() ) );
+                                                    }
+                                                    break;
+
+                                                case Constants.REALLOCATED_SECTORS_COUNT:
+                                                case Constants.INITIAL_BAD_BLOCK_COUNT:
+                                                    if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
+                                                    {
+                                                        addComponentSensor = true;
+                                                        componentSensor.setEventName( NodeEvent.HDD_HEALTH_CRITICAL );
+                                                        componentSensor.setDiscreteValue( hddSmartData.getValue() );
+                                                    }
+                                                    break;
+
+                                                case Constants.POWER_ON_HOURS:
+                                                case Constants.POWER_CYCLE_COUNT:
+                                                    break;
                                             }
-                                            else if ( hddInfo.getType().equals( "SSD" ) )
+                                        }
+                                        else if ( hddInfo.getType().equals( "SSD" ) )
+                                        {
+                                            switch ( parameter )
                                             {
-                                                switch ( parameter )
-                                                {
-
-                                                    case Constants.MEDIA_WEAROUT_INDICATOR:
-                                                        if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
-                                                        {
-                                                            addComponentSensor = true;
-                                                            componentSensor.setEventName( NodeEvent.SSD_WEAROUT_ABOVE_THRESHOLD );
-                                                            componentSensor.setDiscreteValue( hddSmartData.getValue() );
-                                                        }
-                                                        break;
-
-                                                    case Constants.WRITE_ERROR_COUNT:
-                                                    case Constants.WRITE_SECTORS_TOT_COUNT:
-                                                        if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
-                                                        {
-                                                            addComponentSensor = true;
-                                                            componentSensor.setEventName( NodeEvent.SSD_WRITE_ERROR );
-                                                            componentSensor.setDiscreteValue( hddSmartData.getValue() );
-                                                        }
-                                                        break;
-
-                                                    case Constants.READ_ERROR_COUNT:
-                                                    case Constants.READ_SECTORS_TOT_COUNT:
-                                                    case Constants.RAW_READ_ERROR_RATE:
-                                                        if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
-                                                        {
-                                                            addComponentSensor = true;
-                                                            componentSensor.setEventName( NodeEvent.SSD_READ_ERROR );
-                                                            componentSensor.setDiscreteValue( hddSmartData.getValue() );
-                                                        }
-                                                        break;
-
-                                                    case Constants.DRIVE_TEMPERATURE:
-                                                    case Constants.DRIVER_RATED_MAX_TEMPERATURE:
-                                                        if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
-                                                        {
-                                                            addComponentSensor = true;
-                                                            componentSensor.setEventName( NodeEvent.SSD_TEMP_ABOVE_THRESHOLD );
-                                                            componentSensor.setValue( new Float( hddSmartData.getValue() ) );
-                                                        }
-                                                        break;
-                                                    default:
-                                                        break;
-                                                }
-                                            }
 
-                                            if ( addComponentSensor )
-                                            {
-                                                logger.debug( "Adding SMART data event catalog:{} with parameter:{} for host:{}, {}:{} with value:{} and threshold:{}",
-                                                              componentSensor.getEventName().getEventID(), parameter,
-                                                              node.getNodeID(), hddInfo.getType(), hddInfo.getName(),
-                                                              hddSmartData.getValue(), hddSmartData.getThreshold() );
-                                                componentSensor.setEventId( parameter );
-                                                // componentID = hddInfo.getLocation() + " " +
-                                                // hddInfo.getComponentIdentifier().getProduct();
-                                                // componentSensor.setComponentId(componentID);
-                                                componentSensor.setComponentId( hddInfo.getId() );
-                                                componentSensors.add( componentSensor );
+                                                case Constants.MEDIA_WEAROUT_INDICATOR:
+                                                    if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
+                                                    {
+                                                        addComponentSensor = true;
+                                                        componentSensor.setEventName( NodeEvent.SSD_WEAROUT_ABOVE_THRESHOLD );
+                                                        componentSensor.setDiscreteValue( hddSmartData.getValue() );
+                                                    }
+                                                    break;
+
+                                                case Constants.WRITE_ERROR_COUNT:
+                                                case Constants.WRITE_SECTORS_TOT_COUNT:
+                                                    if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
+                                                    {
+                                                        addComponentSensor = true;
+                                                        componentSensor.setEventName( NodeEvent.SSD_WRITE_ERROR );
+                                                        componentSensor.setDiscreteValue( hddSmartData.getValue() );
+                                                    }
+                                                    break;
+
+                                                case Constants.READ_ERROR_COUNT:
+                                                case Constants.READ_SECTORS_TOT_COUNT:
+                                                case Constants.RAW_READ_ERROR_RATE:
+                                                    if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
+                                                    {
+                                                        addComponentSensor = true;
+                                                        componentSensor.setEventName( NodeEvent.SSD_READ_ERROR );
+                                                        componentSensor.setDiscreteValue( hddSmartData.getValue() );
+                                                    }
+                                                    break;
+
+                                                case Constants.DRIVE_TEMPERATURE:
+                                                case Constants.DRIVER_RATED_MAX_TEMPERATURE:
+                                                    if ( isSmartDataBeyondThreshold( hddSmartData, false ) )
+                                                    {
+                                                        addComponentSensor = true;
+                                                        componentSensor.setEventName( NodeEvent.SSD_TEMP_ABOVE_THRESHOLD );
+                                                        componentSensor.setValue( new Float( hddSmartData.getValue() ) );
+                                                    }
+                                                    break;
+                                                default:
+                                                    break;
                                             }
                                         }
-                                        else
+
+                                        if ( addComponentSensor )
                                         {
-                                            logger.warn( "One of the SMART Paramter is NULL for Storage is for node ["
-                                                + serviceNode != null ? serviceNode.getNodeID() : serviceNode + "]" );
+                                            logger.debug( "Adding SMART data event catalog:{} with parameter:{} for host:{}, {}:{} with value:{} and threshold:{}",
+                                                          componentSensor.getEventName().getEventID(), parameter,
+                                                          node.getNodeID(), hddInfo.getType(), hddInfo.getName(),
+                                                          hddSmartData.getValue(), hddSmartData.getThreshold() );
+                                            componentSensor.setEventId( parameter );
+                                            // componentID = hddInfo.getLocation() + " " +
+                                            // hddInfo.getComponentIdentifier().getProduct();
+                                            // componentSensor.setComponentId(componentID);
+                                            componentSensor.setComponentId( hddInfo.getId() );
+                                            componentSensors.add( componentSensor );
                                         }
                                     }
+                                    else
+                                    {
+                                        logger.warn( "One of the SMART Paramter is NULL for Storage is for node ["
+                                            + serviceNode != null ? serviceNode.getNodeID() : serviceNode + "]" );
+                                    }
                                 }
-                                catch ( Exception e )
-                                {
-                                    logger.error( "Exception while getting Storage Smart Data for [ "
-                                        + hddInfo.getName() + " ] for node [ " + serviceNode != null
-                                                        ? serviceNode.getNodeID()
-                                                        : serviceNode + " ] for SMART parameter:"
-                                                            + hddSmartData.getParameter() + e );
-                                }
-
                             }
-                        }
-                        else
-                        {
-                            logger.warn( "One of Storage Info is Null or NonOperational for node ["
-                                + serviceNode != null ? serviceNode.getNodeID() : serviceNode + "]" );
+                            catch ( Exception e )
+                            {
+                                logger.error( "Exception while getting Storage Smart Data for [ "
+                                    + hddInfo.getName() + " ] for node [ " + serviceNode != null
+                                                    ? serviceNode.getNodeID()
+                                                    : serviceNode + " ] for SMART parameter:"
+                                                        + hddSmartData.getParameter() + e );
+                            }
+
                         }
                     }
-                    catch ( Exception e )
+                    else
                     {
-                        logger.error( "Exception while getting Storage Smart Data for [ " + hddInfo.getName()
-                            + " ] for node [ " + serviceNode != null ? serviceNode.getNodeID()
-                                            : serviceNode + " ]" + e );
+                        logger.warn( "One of Storage Info is Null or NonOperational for node ["
+                            + serviceNode != null ? serviceNode.getNodeID() : serviceNode + "]" );
                     }
                 }
-            }
-            finally
-            {
-                destroySession( session );
+                catch ( Exception e )
+                {
+                    logger.error( "Exception while getting Storage Smart Data for [ " + hddInfo.getName()
+                        + " ] for node [ " + serviceNode != null ? serviceNode.getNodeID()
+                                        : serviceNode + " ]" + e );
+                }
             }
         }
         else
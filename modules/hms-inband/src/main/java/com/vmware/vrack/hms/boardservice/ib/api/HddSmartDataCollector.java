@@ -0,0 +1,265 @@
+/* ********************************************************************************
+ * HddSmartDataCollector.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.boardservice.ib.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jcraft.jsch.Session;
+import com.vmware.vrack.hms.common.exception.HmsException;
+import com.vmware.vrack.hms.common.servernodes.api.hdd.HddSMARTData;
+import com.vmware.vrack.hms.common.util.EsxiSshUtil;
+import com.vmware.vrack.hms.common.util.HostProxyListener;
+import com.vmware.vrack.hms.common.util.HostProxyProvider;
+import com.vmware.vrack.hms.common.util.InbandProperties;
+
+import au.com.bytecode.opencsv.CSVParser;
+
+/**
+ * Collects the SMART data of all the disks of a host in a single remote command, instead of one command per disk. The
+ * SMART data of each disk is cached for {@link InbandProperties#getHddSmartDataCacheTtlInMs()}, so that only the disks
+ * whose SMART data expired are read again. The SMART data of a node is dropped when its host is connected again or
+ * removed from {@link HostProxyProvider}, as its disks may have changed.
+ *
+ * @author VMware, Inc.
+ */
+public class HddSmartDataCollector
+{
+    private static Logger logger = LoggerFactory.getLogger( HddSmartDataCollector.class );
+
+    /** Cached SMART data, keyed by node id and disk name */
+    private static final ConcurrentMap<String, CachedSmartData> cache =
+        new ConcurrentHashMap<String, CachedSmartData>();
+
+    private static class CachedSmartData
+    {
+        private final List<HddSMARTData> smartData;
+
+        private final long readTime;
+
+        private CachedSmartData( List<HddSMARTData> smartData, long readTime )
+        {
+            this.smartData = smartData;
+            this.readTime = readTime;
+        }
+    }
+
+    static
+    {
+        HostProxyProvider.getInstance().addHostProxyListener( new HostProxyListener()
+        {
+            @Override
+            public void hostConnected( String nodeId )
+            {
+                invalidate( nodeId );
+            }
+
+            @Override
+            public void hostRemoved( String nodeId )
+            {
+                invalidate( nodeId );
+            }
+        } );
+    }
+
+    private HddSmartDataCollector()
+    {
+    }
+
+    /**
+     * Get SMART Data of the disks of the node. The SMART data of the disks not in cache, or expired, is read from the
+     * host in a single command.
+     *
+     * @param nodeId
+     * @param diskNames
+     * @param session
+     * @return SMART data keyed by disk name, without the disks for which SMART data could not be read
+     * @throws Exception
+     */
+    public static Map<String, List<HddSMARTData>> getHddSmartData( String nodeId, Collection<String> diskNames,
+                                                                   Session session )
+        throws Exception
+    {
+        Map<String, List<HddSMARTData>> smartData = new HashMap<String, List<HddSMARTData>>();
+        List<String> expiredDiskNames = new ArrayList<String>();
+        long now = System.currentTimeMillis();
+        long ttl = InbandProperties.getHddSmartDataCacheTtlInMs();
+
+        for ( String diskName : diskNames )
+        {
+            if ( diskName == null || "".equals( diskName.trim() ) )
+            {
+                continue;
+            }
+            CachedSmartData cachedSmartData = cache.get( getCacheKey( nodeId, diskName.trim() ) );
+            if ( cachedSmartData != null && now - cachedSmartData.readTime < ttl )
+            {
+                smartData.put( diskName.trim(), cachedSmartData.smartData );
+            }
+            else
+            {
+                expiredDiskNames.add( diskName.trim() );
+            }
+        }
+
+        if ( !expiredDiskNames.isEmpty() )
+        {
+            if ( session == null )
+            {
+                throw new HmsException( "Cannot get HDD SMART Data for Disks: " + expiredDiskNames + " of node: "
+                    + nodeId + " and Session Object: " + session );
+            }
+
+            logger.debug( "Reading SMART data of disks {} for node {}", expiredDiskNames, nodeId );
+            SmartDataParser parser = new SmartDataParser();
+            int exitStatus = EsxiSshUtil.executeCommand( session, getBatchCommand( expiredDiskNames ), parser );
+            if ( exitStatus != 0 )
+            {
+                throw new HmsException( "Reading SMART Data of Disks: " + expiredDiskNames + " of node: " + nodeId
+                    + " failed with exit status " + exitStatus );
+            }
+
+            long readTime = System.currentTimeMillis();
+            for ( Map.Entry<String, List<HddSMARTData>> entry : parser.getSmartData().entrySet() )
+            {
+                cache.put( getCacheKey( nodeId, entry.getKey() ), new CachedSmartData( entry.getValue(), readTime ) );
+                smartData.put( entry.getKey(), entry.getValue() );
+            }
+        }
+        return smartData;
+    }
+
+    /**
+     * Removes the cached SMART data of the disks of the node.
+     *
+     * @param nodeId
+     */
+    public static void invalidate( String nodeId )
+    {
+        String prefix = nodeId + ":";
+        for ( Iterator<String> iterator = cache.keySet().iterator(); iterator.hasNext(); )
+        {
+            if ( iterator.next().startsWith( prefix ) )
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    static String getBatchCommand( List<String> diskNames )
+    {
+        StringBuilder disks = new StringBuilder();
+        for ( String diskName : diskNames )
+        {
+            if ( disks.length() > 0 )
+            {
+                disks.append( ' ' );
+            }
+            // Disk names are single quoted, escaping any single quote in them
+            disks.append( '\'' ).append( diskName.replace( "'", "'\\''" ) ).append( '\'' );
+        }
+        return String.format( Constants.GET_HDD_SMART_DATA_BATCH_COMMAND, disks );
+    }
+
+    private static String getCacheKey( String nodeId, String diskName )
+    {
+        return nodeId + ":" + diskName;
+    }
+
+    /**
+     * Parses the output of {@link Constants#GET_HDD_SMART_DATA_BATCH_COMMAND} line by line, as it is read. The output
+     * of each disk starts with a marker line holding the disk name, followed by the SMART data of the disk in csv
+     * format, with a header row, and ends with a marker line holding the exit status of the command. The SMART data of
+     * a disk is kept only if the command succeeded, so that a failed read is not taken for a disk without SMART data.
+     */
+    static class SmartDataParser
+        implements EsxiSshUtil.LineHandler
+    {
+        private final CSVParser csvParser = new CSVParser();
+
+        private final Map<String, List<HddSMARTData>> smartData = new HashMap<String, List<HddSMARTData>>();
+
+        private String diskName;
+
+        private List<HddSMARTData> diskSmartData;
+
+        private boolean headerPending;
+
+        @Override
+        public void handleLine( String line )
+            throws IOException
+        {
+            if ( line.startsWith( Constants.HDD_SMART_DATA_DEVICE_MARKER ) )
+            {
+                diskName = line.substring( Constants.HDD_SMART_DATA_DEVICE_MARKER.length() ).trim();
+                diskSmartData = new ArrayList<HddSMARTData>();
+                headerPending = true;
+                return;
+            }
+            if ( line.startsWith( Constants.HDD_SMART_DATA_STATUS_MARKER ) )
+            {
+                String exitStatus = line.substring( Constants.HDD_SMART_DATA_STATUS_MARKER.length() ).trim();
+                if ( diskSmartData != null && "0".equals( exitStatus ) )
+                {
+                    smartData.put( diskName, diskSmartData );
+                }
+                else if ( diskSmartData != null )
+                {
+                    logger.warn( "Reading SMART data of disk {} failed with exit status {}", diskName, exitStatus );
+                }
+                diskName = null;
+                diskSmartData = null;
+                return;
+            }
+            if ( diskSmartData == null || "".equals( line.trim() ) )
+            {
+                return;
+            }
+            if ( headerPending )
+            {
+                // skip header row
+                headerPending = false;
+                return;
+            }
+
+            String[] record = csvParser.parseLine( line );
+            if ( record.length >= 4 && record[0] != null )
+            {
+                HddSMARTData data = new HddSMARTData();
+                data.setParameter( record[0] );
+                data.setThreshold( record[1] );
+                data.setValue( record[2] );
+                data.setWorst( record[3] );
+                diskSmartData.add( data );
+            }
+        }
+
+        Map<String, List<HddSMARTData>> getSmartData()
+        {
+            return smartData;
+        }
+    }
+}
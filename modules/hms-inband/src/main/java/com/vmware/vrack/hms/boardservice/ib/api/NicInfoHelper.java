@@ -372,7 +372,7 @@ public class NicInfoHelper
             HostSystem hostSystem = hostProxy.getHostSystem();
             if ( hostSystem != null )
             {
-                HardwareInfo hardwareInfo = hostSystem.getHardware();
+                HardwareInfo hardwareInfo = hostProxy.getHardwareInfo();
                 if ( hardwareInfo != null )
                 {
                     for ( PciDevice device : hardwareInfo.getPciDevice() )
@@ -278,7 +278,7 @@ public class StorageControllerInfoHelper
             HostSystem hostSystem = hostProxy.getHostSystem();
             if ( hostSystem != null )
             {
-                HardwareInfo hardwareInfo = hostSystem.getHardware();
+                HardwareInfo hardwareInfo = hostProxy.getHardwareInfo();
                 if ( hardwareInfo != null )
                 {
                     for ( PciDevice device : hardwareInfo.getPciDevice() )
@@ -15,13 +15,22 @@
  * *******************************************************************************/
 package com.vmware.vrack.hms.common.util;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +50,40 @@ public class EsxiSshUtil
 
     private static Logger logger = LoggerFactory.getLogger( EsxiSshUtil.class );
 
+    private static final int SESSION_CONNECT_TIMEOUT = 30000;
+
+    private static final int SERVER_ALIVE_COUNT_MAX = 3;
+
+    /** Pooled SSH sessions, keyed by user, host and port */
+    private static final ConcurrentMap<String, PooledSession> sessionPool =
+        new ConcurrentHashMap<String, PooledSession>();
+
+    private static volatile ScheduledExecutorService sessionReaper;
+
+    /**
+     * Handler of the lines output by a command, as they are read.
+     */
+    public interface LineHandler
+    {
+        void handleLine( String line )
+            throws IOException;
+    }
+
+    /**
+     * SSH session shared by the callers connecting to the same host, with the time it was last used and the number of
+     * commands running on it, so that it is not closed as idle while in use.
+     */
+    private static class PooledSession
+    {
+        private volatile Session session;
+
+        private String password;
+
+        private volatile long lastUsedTime;
+
+        private int activeCommands;
+    }
+
     /**
      * Retunrs Session object for host and other params passed. Caller to open channel to perform actual operation.
      *
@@ -128,6 +171,7 @@ public class EsxiSshUtil
 
             int arrMaxSize = 1024;
 
+            PooledSession pooledSession = beginCommand( sessionObj );
             try
             {
                 channel = sessionObj.openChannel( "exec" );
@@ -178,6 +222,7 @@ public class EsxiSshUtil
                 {
                     channel.disconnect();
                 }
+                endCommand( pooledSession );
                 logger.debug( "End of execution of command [" + command + "]" );
             }
             return builder.toString();
@@ -441,4 +486,268 @@ public class EsxiSshUtil
         }
         return lastOutput;
     }
+
+    /**
+     * Returns a connected SSH session to the host, shared with the other callers connecting to the same host as the same
+     * user. The session is kept alive, reconnected if it dropped, and closed once idle for longer than
+     * {@link InbandProperties#getEsxiSshSessionIdleTimeoutInMs()}. Callers must not disconnect the session, but call
+     * {@link #invalidatePooledSession(String, String, int)} if it proves unusable.
+     *
+     * @param userName
+     * @param password
+     * @param hostName
+     * @param port
+     * @param sessionConfig
+     * @return
+     * @throws JSchException
+     */
+    public static Session getPooledSession( String userName, String password, String hostName, int port,
+                                            Properties sessionConfig )
+        throws JSchException
+    {
+        String key = getSessionKey( userName, hostName, port );
+        PooledSession pooledSession = sessionPool.get( key );
+        if ( pooledSession == null )
+        {
+            PooledSession newPooledSession = new PooledSession();
+            pooledSession = sessionPool.putIfAbsent( key, newPooledSession );
+            if ( pooledSession == null )
+            {
+                pooledSession = newPooledSession;
+            }
+            startSessionReaper();
+        }
+
+        synchronized ( pooledSession )
+        {
+            pooledSession.lastUsedTime = System.currentTimeMillis();
+            Session session = pooledSession.session;
+            if ( session != null && session.isConnected() && password != null
+                && password.equals( pooledSession.password ) )
+            {
+                return session;
+            }
+            if ( session != null )
+            {
+                logger.debug( "Reconnecting SSH session to host {}", hostName );
+                session.disconnect();
+                pooledSession.session = null;
+            }
+
+            session = getSessionObject( userName, password, hostName, port, sessionConfig );
+            if ( session == null )
+            {
+                throw new JSchException( "Unable to create SSH session to host " + hostName );
+            }
+            session.setServerAliveInterval( InbandProperties.getEsxiSshKeepAliveIntervalInMs() );
+            session.setServerAliveCountMax( SERVER_ALIVE_COUNT_MAX );
+            session.connect( SESSION_CONNECT_TIMEOUT );
+
+            pooledSession.session = session;
+            pooledSession.password = password;
+            return session;
+        }
+    }
+
+    /**
+     * Disconnects and removes the pooled SSH session to the host, so that the next caller gets a new session.
+     *
+     * @param userName
+     * @param hostName
+     * @param port
+     */
+    public static void invalidatePooledSession( String userName, String hostName, int port )
+    {
+        PooledSession pooledSession = sessionPool.remove( getSessionKey( userName, hostName, port ) );
+        if ( pooledSession != null )
+        {
+            synchronized ( pooledSession )
+            {
+                if ( pooledSession.session != null )
+                {
+                    pooledSession.session.disconnect();
+                    pooledSession.session = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Disconnects the pooled SSH sessions idle for longer than the idle timeout, and with no command running.
+     */
+    static void closeIdleSessions()
+    {
+        long idleTimeout = InbandProperties.getEsxiSshSessionIdleTimeoutInMs();
+        long now = System.currentTimeMillis();
+        for ( Map.Entry<String, PooledSession> entry : sessionPool.entrySet() )
+        {
+            PooledSession pooledSession = entry.getValue();
+            if ( now - pooledSession.lastUsedTime <= idleTimeout )
+            {
+                continue;
+            }
+            synchronized ( pooledSession )
+            {
+                if ( pooledSession.activeCommands == 0 && now - pooledSession.lastUsedTime > idleTimeout
+                    && sessionPool.remove( entry.getKey(), pooledSession ) && pooledSession.session != null )
+                {
+                    logger.debug( "Closing idle SSH session {}", entry.getKey() );
+                    pooledSession.session.disconnect();
+                    pooledSession.session = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the pooled session running the command, if the session is a pooled one, as in use until
+     * {@link #endCommand(PooledSession)}.
+     *
+     * @param session
+     * @return the pooled session, null if the session is not pooled
+     */
+    private static PooledSession beginCommand( Session session )
+    {
+        for ( PooledSession pooledSession : sessionPool.values() )
+        {
+            if ( pooledSession.session == session )
+            {
+                synchronized ( pooledSession )
+                {
+                    if ( pooledSession.session != session )
+                    {
+                        return null;
+                    }
+                    pooledSession.activeCommands++;
+                    pooledSession.lastUsedTime = System.currentTimeMillis();
+                    return pooledSession;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks the command done on the pooled session, which is idle from now on if no other command runs on it.
+     *
+     * @param pooledSession pooled session returned by {@link #beginCommand(Session)}, may be null
+     */
+    private static void endCommand( PooledSession pooledSession )
+    {
+        if ( pooledSession != null )
+        {
+            synchronized ( pooledSession )
+            {
+                pooledSession.activeCommands--;
+                pooledSession.lastUsedTime = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private static void startSessionReaper()
+    {
+        if ( sessionReaper == null )
+        {
+            synchronized ( EsxiSshUtil.class )
+            {
+                if ( sessionReaper == null )
+                {
+                    ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor( new ThreadFactory()
+                    {
+                        @Override
+                        public Thread newThread( Runnable runnable )
+                        {
+                            Thread thread = new Thread( runnable, "esxi-ssh-session-reaper" );
+                            thread.setDaemon( true );
+                            return thread;
+                        }
+                    } );
+                    long period = Math.max( 1000, InbandProperties.getEsxiSshSessionIdleTimeoutInMs() / 2 );
+                    reaper.scheduleWithFixedDelay( new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            try
+                            {
+                                closeIdleSessions();
+                            }
+                            catch ( Exception e )
+                            {
+                                logger.warn( "Error while closing idle SSH sessions", e );
+                            }
+                        }
+                    }, period, period, TimeUnit.MILLISECONDS );
+                    sessionReaper = reaper;
+                }
+            }
+        }
+    }
+
+    private static String getSessionKey( String userName, String hostName, int port )
+    {
+        return userName + "@" + hostName + ":" + port;
+    }
+
+    /**
+     * Executes the command, handing each line of its output to the handler as it is read, instead of buffering the
+     * whole output.
+     *
+     * @param session
+     * @param command
+     * @param handler
+     * @return exit status of the command
+     * @throws JSchException
+     * @throws IOException
+     */
+    public static int executeCommand( Session session, String command, LineHandler handler )
+        throws JSchException, IOException
+    {
+        logger.debug( "Starting to execute command [" + command + "]" );
+        ChannelExec channel = null;
+        PooledSession pooledSession = beginCommand( session );
+        try
+        {
+            channel = (ChannelExec) session.openChannel( "exec" );
+            channel.setCommand( command );
+            channel.setInputStream( null );
+            channel.setErrStream( System.err );
+            BufferedReader reader = new BufferedReader( new InputStreamReader( channel.getInputStream() ) );
+            channel.connect();
+
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                handler.handleLine( line );
+            }
+
+            // The exit status is only known once the channel is closed, which may follow the end of the output
+            while ( !channel.isClosed() )
+            {
+                try
+                {
+                    Thread.sleep( 20 );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if ( channel.getExitStatus() != 0 )
+            {
+                logger.debug( "Command exited with error code " + channel.getExitStatus() );
+            }
+            return channel.getExitStatus();
+        }
+        finally
+        {
+            if ( channel != null && channel.isConnected() )
+            {
+                channel.disconnect();
+            }
+            endCommand( pooledSession );
+            logger.debug( "End of execution of command [" + command + "]" );
+        }
+    }
 }
@@ -0,0 +1,42 @@
+/* ********************************************************************************
+ * HostProxyListener.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+
+package com.vmware.vrack.hms.common.util;
+
+/**
+ * Listener of the HostProxy objects kept by {@link HostProxyProvider}, registered through
+ * {@link HostProxyProvider#addHostProxyListener(HostProxyListener)}, so as to drop the state kept about a host when
+ * it is reconnected or removed. The listeners are called on the thread connecting or removing the host, and are not
+ * expected to block.
+ *
+ * @author VMware, Inc.
+ */
+public interface HostProxyListener
+{
+    /**
+     * Called once a new HostProxy is created for the node. The host may have changed while it was disconnected.
+     *
+     * @param nodeId
+     */
+    void hostConnected( String nodeId );
+
+    /**
+     * Called once the HostProxy of the node is removed.
+     *
+     * @param nodeId
+     */
+    void hostRemoved( String nodeId );
+}
@@ -16,8 +16,21 @@
 
 package com.vmware.vrack.hms.common.util;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.log4j.Logger;
 
@@ -27,8 +40,14 @@ import com.vmware.vrack.hms.vsphere.HostManager;
 import com.vmware.vrack.hms.vsphere.HostProxy;
 
 /**
- * HostProxy Provider class, that will facilitate the caching and reusing of HostProxy object for each node, and when
- * the hostProxy is requested, but is no longer valid, it will create a new HostProxy object, cache it and return it.
+ * HostProxy Provider class, that will facilitate the caching and reusing of HostProxy object for each node.
+ * <p>
+ * Cached HostProxy objects are served as is, without checking them on the host. They are validated in background,
+ * every {@link InbandProperties#getHostProxyValidationIntervalInMs()}, and the ones no longer valid are replaced by a
+ * new HostProxy, while the last known one keeps being served. Failed connects to a host are retried with exponential
+ * backoff, and no connect is attempted for a node while it is backed off. A HostProxy which is replaced or removed is
+ * closed, once no lock is held. The registered {@link HostProxyListener} objects are told about the hosts connected
+ * and removed.
  * 
  * @author Vmware
  */
@@ -36,29 +55,132 @@ public class HostProxyProvider
 {
     private static Logger logger = Logger.getLogger( HostProxyProvider.class );
 
-    private Map<HostIdentifier, HostProxy> hostProxyMap = new ConcurrentHashMap<HostIdentifier, HostProxy>();
+    /** HostProxy of each node, keyed by node id */
+    private final ConcurrentMap<String, HostEntry> hostEntries = new ConcurrentHashMap<String, HostEntry>();
 
-    private static HostProxyProvider hostProxyProvider = null;
+    private final ExecutorService validationExecutor;
 
-    private Map<String, Object> locksMap = new ConcurrentHashMap<String, Object>();
+    private final List<HostProxyListener> listeners = new CopyOnWriteArrayList<HostProxyListener>();
+
+    private static class HostProxyProviderHolder
+    {
+        private static final HostProxyProvider hostProxyProvider = new HostProxyProvider();
+    }
+
+    /**
+     * HostProxy of a node, along with its connection state and statistics. Connects to the host are synchronized on
+     * the entry, so that they are done once per node, without blocking the other nodes. The HostProxy is swapped
+     * atomically, so that whoever takes it out of the entry, the connect replacing it or the removal of the entry, is
+     * the only one closing it.
+     */
+    private static class HostEntry
+    {
+        private final HostIdentifier identifier;
+
+        private final AtomicBoolean validating = new AtomicBoolean();
+
+        private final AtomicReference<HostProxy> hostProxy = new AtomicReference<HostProxy>();
+
+        private volatile boolean valid;
+
+        private volatile boolean removed;
+
+        private volatile long lastValidationTime;
+
+        private volatile long nextConnectTime;
+
+        private volatile int consecutiveFailures;
+
+        private volatile long connectCount;
+
+        private volatile long connectFailureCount;
+
+        private volatile long lastConnectLatencyInMs;
+
+        private volatile long totalConnectLatencyInMs;
+
+        private HostEntry( HostIdentifier identifier )
+        {
+            this.identifier = identifier;
+        }
+    }
 
     private HostProxyProvider()
     {
+        final AtomicInteger threadCount = new AtomicInteger();
+        validationExecutor =
+            Executors.newFixedThreadPool( Math.max( 1, InbandProperties.getHostProxyValidationParallelism() ),
+                                          new ThreadFactory()
+                                          {
+                                              @Override
+                                              public Thread newThread( Runnable runnable )
+                                              {
+                                                  Thread thread = new Thread( runnable, "host-proxy-validator-"
+                                                      + threadCount.incrementAndGet() );
+                                                  thread.setDaemon( true );
+                                                  return thread;
+                                              }
+                                          } );
 
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor( new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "host-proxy-validation-scheduler" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+        long interval = Math.max( 1000, InbandProperties.getHostProxyValidationIntervalInMs() );
+        scheduler.scheduleWithFixedDelay( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    validateHostProxies();
+                }
+                catch ( Exception e )
+                {
+                    logger.error( "Error while validating HostProxy objects", e );
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS );
     }
 
     public static HostProxyProvider getInstance()
     {
-        if ( hostProxyProvider == null )
+        return HostProxyProviderHolder.hostProxyProvider;
+    }
+
+    /**
+     * Registers a listener of the hosts connected and removed.
+     * 
+     * @param listener
+     */
+    public void addHostProxyListener( HostProxyListener listener )
+    {
+        if ( listener != null )
         {
-            hostProxyProvider = new HostProxyProvider();
+            listeners.add( listener );
         }
-        return hostProxyProvider;
     }
 
     /**
-     * Gets HostProxy object for the node. Will try to look for the already cached hostProxy object. If the cached
-     * version is not valid anymore, creates a new HostProxy object and caches it
+     * Unregisters a listener of the hosts connected and removed.
+     * 
+     * @param listener
+     */
+    public void removeHostProxyListener( HostProxyListener listener )
+    {
+        listeners.remove( listener );
+    }
+
+    /**
+     * Gets HostProxy object for the node. Will return the cached hostProxy object, the last known good one if it was
+     * found no longer valid and is not replaced yet. If there is none, creates a new HostProxy object and caches it.
      * 
      * @param node
      * @return
@@ -67,75 +189,308 @@ public class HostProxyProvider
     public HostProxy getHostProxy( ServiceServerNode node )
         throws HmsException
     {
-        if ( node != null )
+        if ( node != null && node.getNodeID() != null )
         {
-            HostIdentifier hostIdentifier = new HostIdentifier( node.getNodeID(), node.getIbIpAddress(),
-                                                                node.getOsUserName(), node.getOsPassword() );
+            HostEntry entry = getHostEntry( new HostIdentifier( node.getNodeID(), node.getIbIpAddress(),
+                                                                node.getOsUserName(), node.getOsPassword() ) );
+
+            HostProxy hostProxy = entry.hostProxy.get();
+            if ( hostProxy != null )
+            {
+                return hostProxy;
+            }
 
-            synchronized ( this )
+            // Host proxy is NOT there. Create it synchronized only for same node, so that if call comes for another
+            // Host, creating HostProxy for that does NOT get blocked.
+            List<HostProxy> staleHostProxies = new ArrayList<HostProxy>();
+            try
             {
-                // If HostProxy is NOT available, then create Object for that node, so that later in this method, it can
-                // be used as Lock.
-                if ( !hostProxyMap.containsKey( hostIdentifier ) )
+                synchronized ( entry )
                 {
-                    if ( !locksMap.containsKey( node.getNodeID() ) )
+                    hostProxy = entry.hostProxy.get();
+                    if ( hostProxy != null )
                     {
-                        locksMap.put( node.getNodeID(), new Object() );
+                        return hostProxy;
                     }
+                    return connect( entry, staleHostProxies );
                 }
             }
+            finally
+            {
+                closeHostProxies( staleHostProxies );
+            }
+        }
+        else
+        {
+            String err = "Cannot get HostProxy for Null Node: " + node;
+            logger.error( err );
+            throw new HmsException( err );
+        }
+    }
 
-            // Host proxy is NOT there or NOT valid.
-            // Try to create HostProxy in Synchronous way, but will be synchronized only for same node.
-            // If call comes for another Host, it creating HostProxy for that should NOT get blocked.
-            Object lockObj = locksMap.get( node.getNodeID() );
-
-            synchronized ( lockObj )
+    /**
+     * Gets the entry of the host, creating it if there is none. The entry of a node for another host identifier, in
+     * case Ip reconfig happened or credentials changed, is replaced.
+     * 
+     * @param hostIdentifier
+     * @return
+     */
+    private HostEntry getHostEntry( HostIdentifier hostIdentifier )
+    {
+        String nodeId = hostIdentifier.getNodeId();
+        HostEntry entry = hostEntries.get( nodeId );
+        while ( entry == null || !entry.identifier.equals( hostIdentifier ) )
+        {
+            HostEntry newEntry = new HostEntry( hostIdentifier );
+            if ( entry == null )
             {
-                if ( hostProxyMap.containsKey( hostIdentifier ) )
+                if ( hostEntries.putIfAbsent( nodeId, newEntry ) == null )
                 {
-                    HostProxy cachedHostProxy = hostProxyMap.get( hostIdentifier );
+                    return newEntry;
+                }
+            }
+            else if ( hostEntries.replace( nodeId, entry, newEntry ) )
+            {
+                logger.info( "Replacing stale HostProxy of node " + nodeId );
+                removeEntry( entry );
+                return newEntry;
+            }
+            entry = hostEntries.get( nodeId );
+        }
+        return entry;
+    }
 
-                    if ( isHostProxyValid( cachedHostProxy ) )
+    /**
+     * Creates a new HostProxy for the entry, unless connects to the host are backed off. To be called synchronized on
+     * the entry.
+     * 
+     * @param entry
+     * @param staleHostProxies HostProxy objects to close once the entry is no longer locked
+     * @return
+     * @throws HmsException
+     */
+    private HostProxy connect( HostEntry entry, List<HostProxy> staleHostProxies )
+        throws HmsException
+    {
+        HostIdentifier identifier = entry.identifier;
+        long startTime = System.currentTimeMillis();
+        if ( startTime < entry.nextConnectTime )
+        {
+            String err = "Cannot create HostProxy Object for node: " + identifier.getNodeId() + ". Last "
+                + entry.consecutiveFailures + " attempt(s) failed, next attempt in "
+                + ( entry.nextConnectTime - startTime ) + " ms";
+            logger.debug( err );
+            throw new HmsException( err );
+        }
+
+        HostProxy hostProxy;
+        try
+        {
+            hostProxy = createHostProxy( identifier );
+        }
+        catch ( HmsException e )
+        {
+            entry.valid = false;
+            entry.consecutiveFailures++;
+            entry.connectFailureCount++;
+            entry.nextConnectTime = System.currentTimeMillis()
+                + getReconnectDelay( entry.consecutiveFailures, InbandProperties.getHostProxyReconnectMinDelayInMs(),
+                                     InbandProperties.getHostProxyReconnectMaxDelayInMs() );
+            throw e;
+        }
+
+        long latency = System.currentTimeMillis() - startTime;
+        entry.valid = true;
+        entry.consecutiveFailures = 0;
+        entry.nextConnectTime = 0;
+        entry.connectCount++;
+        entry.lastConnectLatencyInMs = latency;
+        entry.totalConnectLatencyInMs += latency;
+        logger.debug( "Created HostProxy for node " + identifier.getNodeId() + " in " + latency + " ms" );
+        notifyListeners( identifier.getNodeId(), false );
+
+        if ( !setHostProxy( entry, hostProxy, staleHostProxies ) )
+        {
+            throw new HmsException( "HostProxy of node " + identifier.getNodeId() + " was removed while connecting" );
+        }
+        return hostProxy;
+    }
+
+    /**
+     * Sets the HostProxy of the entry. The HostProxy it replaces is to be closed, and so is the new one if the entry
+     * was removed meanwhile.
+     * 
+     * @param entry
+     * @param hostProxy
+     * @param staleHostProxies HostProxy objects to close once the entry is no longer locked
+     * @return false if the entry was removed
+     */
+    private static boolean setHostProxy( HostEntry entry, HostProxy hostProxy, List<HostProxy> staleHostProxies )
+    {
+        HostProxy oldHostProxy = entry.hostProxy.getAndSet( hostProxy );
+        if ( oldHostProxy != null && oldHostProxy != hostProxy )
+        {
+            staleHostProxies.add( oldHostProxy );
+        }
+        if ( entry.removed && entry.hostProxy.compareAndSet( hostProxy, null ) )
+        {
+            staleHostProxies.add( hostProxy );
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Closes the HostProxy objects, logging out of their hosts.
+     * 
+     * @param hostProxies
+     */
+    private static void closeHostProxies( List<HostProxy> hostProxies )
+    {
+        for ( HostProxy hostProxy : hostProxies )
+        {
+            try
+            {
+                hostProxy.close();
+            }
+            catch ( Exception e )
+            {
+                logger.warn( "Error while closing HostProxy " + hostProxy, e );
+            }
+        }
+    }
+
+    /**
+     * Gets the delay before the next connect to a host, doubling with each consecutive failure.
+     * 
+     * @param consecutiveFailures
+     * @param minDelay
+     * @param maxDelay
+     * @return
+     */
+    static long getReconnectDelay( int consecutiveFailures, long minDelay, long maxDelay )
+    {
+        long delay = Math.max( 0, minDelay );
+        for ( int i = 1; i < consecutiveFailures && delay < maxDelay; i++ )
+        {
+            delay *= 2;
+        }
+        return Math.min( delay, maxDelay );
+    }
+
+    /**
+     * Validates the cached HostProxy objects in background, at most one validation at a time for each node.
+     */
+    private void validateHostProxies()
+    {
+        for ( final HostEntry entry : hostEntries.values() )
+        {
+            if ( entry.validating.compareAndSet( false, true ) )
+            {
+                try
+                {
+                    validationExecutor.execute( new Runnable()
                     {
-                        return cachedHostProxy;
-                    }
+                        @Override
+                        public void run()
+                        {
+                            try
+                            {
+                                validate( entry );
+                            }
+                            finally
+                            {
+                                entry.validating.set( false );
+                            }
+                        }
+                    } );
                 }
-                else
+                catch ( RejectedExecutionException e )
                 {
-                    removeStaleProxy( hostIdentifier );
+                    entry.validating.set( false );
                 }
+            }
+        }
+    }
 
-                HostProxy hostProxy = createHostProxy( node );
-                hostProxyMap.put( hostIdentifier, hostProxy );
-                return hostProxy;
+    /**
+     * Validates the HostProxy of the entry, and creates a new one if it is no longer valid, or if there is none.
+     * 
+     * @param entry
+     */
+    private void validate( HostEntry entry )
+    {
+        HostProxy hostProxy = entry.hostProxy.get();
+        boolean valid = ( hostProxy != null ) && isHostProxyValid( hostProxy );
+        entry.valid = valid;
+        entry.lastValidationTime = System.currentTimeMillis();
+
+        if ( !valid && !entry.removed && entry.lastValidationTime >= entry.nextConnectTime )
+        {
+            List<HostProxy> staleHostProxies = new ArrayList<HostProxy>();
+            synchronized ( entry )
+            {
+                // HostProxy might have been created meanwhile
+                if ( entry.hostProxy.get() == hostProxy )
+                {
+                    try
+                    {
+                        connect( entry, staleHostProxies );
+                        logger.info( "HostProxy of node " + entry.identifier.getNodeId() + " was recreated" );
+                    }
+                    catch ( HmsException e )
+                    {
+                        logger.warn( "Unable to recreate HostProxy of node " + entry.identifier.getNodeId() );
+                    }
+                }
             }
+            closeHostProxies( staleHostProxies );
         }
-        else
+    }
+
+    /**
+     * Marks the entry, no longer in the map, as removed and closes its HostProxy. A connect in progress for the entry
+     * closes the HostProxy it creates.
+     * 
+     * @param entry
+     */
+    private void removeEntry( HostEntry entry )
+    {
+        entry.removed = true;
+        notifyListeners( entry.identifier.getNodeId(), true );
+        HostProxy hostProxy = entry.hostProxy.getAndSet( null );
+        if ( hostProxy != null )
         {
-            String err = "Cannot get HostProxy for Null Node: " + node;
-            logger.error( err );
-            throw new HmsException( err );
+            closeHostProxies( Collections.singletonList( hostProxy ) );
         }
     }
 
     /**
-     * Remove stale Host Proxy, in case Ip reconfig happened, and old Host Proxy is still in Map
+     * Tells the listeners that the host of the node was connected or removed. A failing listener does not keep the
+     * others from being told.
      * 
-     * @param hostIdentifier
+     * @param nodeId
+     * @param removed
      */
-    private void removeStaleProxy( HostIdentifier hostIdentifier )
+    private void notifyListeners( String nodeId, boolean removed )
     {
-        if ( hostIdentifier != null )
+        for ( HostProxyListener listener : listeners )
         {
-            String nodeId = hostIdentifier.getNodeId();
-            for ( HostIdentifier id : hostProxyMap.keySet() )
+            try
             {
-                if ( nodeId != null && nodeId.equals( id.getNodeId() ) )
+                if ( removed )
                 {
-                    hostProxyMap.remove( id );
+                    listener.hostRemoved( nodeId );
+                }
+                else
+                {
+                    listener.hostConnected( nodeId );
                 }
             }
+            catch ( RuntimeException e )
+            {
+                logger.warn( "Error while notifying HostProxy listener " + listener + " of node " + nodeId, e );
+            }
         }
     }
 
@@ -146,22 +501,57 @@ public class HostProxyProvider
      */
     public void removeHostProxy( HostIdentifier id )
     {
-        hostProxyMap.remove( id );
+        if ( id != null && id.getNodeId() != null )
+        {
+            HostEntry entry = hostEntries.get( id.getNodeId() );
+            if ( entry != null && entry.identifier.equals( id ) && hostEntries.remove( id.getNodeId(), entry ) )
+            {
+                removeEntry( entry );
+            }
+        }
     }
 
     /**
-     * Removes a particular HostProxy object
+     * Removes all HostProxy objects
      */
     public void removeAllHostProxies()
     {
-        for ( HostIdentifier id : hostProxyMap.keySet() )
+        for ( HostEntry entry : hostEntries.values() )
+        {
+            removeHostProxy( entry.identifier );
+        }
+    }
+
+    /**
+     * Gets the connection statistics of the HostProxy of each node.
+     * 
+     * @return
+     */
+    public List<HostProxyStats> getHostProxyStats()
+    {
+        List<HostProxyStats> hostProxyStats = new ArrayList<HostProxyStats>();
+        for ( HostEntry entry : hostEntries.values() )
         {
-            removeHostProxy( id );
+            HostProxyStats stats = new HostProxyStats();
+            stats.setNodeId( entry.identifier.getNodeId() );
+            stats.setIbIpAddress( entry.identifier.getIbIpAddress() );
+            stats.setValid( entry.hostProxy.get() != null && entry.valid );
+            stats.setConnectCount( entry.connectCount );
+            stats.setConnectFailureCount( entry.connectFailureCount );
+            stats.setConsecutiveFailures( entry.consecutiveFailures );
+            stats.setLastConnectLatencyInMs( entry.lastConnectLatencyInMs );
+            stats.setAverageConnectLatencyInMs( ( entry.connectCount > 0 )
+                            ? entry.totalConnectLatencyInMs / entry.connectCount : 0 );
+            stats.setLastValidationTime( entry.lastValidationTime );
+            stats.setNextConnectTime( entry.nextConnectTime );
+            hostProxyStats.add( stats );
         }
+        return hostProxyStats;
     }
 
     /**
-     * Check if the cached HostProxy object is valid anymore.
+     * Check if the cached HostProxy object is valid anymore. A HostProxy whose inventory mirror is in sync is valid
+     * without querying the host, as the mirror is waiting for updates on the same session.
      * 
      * @param hostProxy
      * @return
@@ -172,6 +562,10 @@ public class HostProxyProvider
         {
             try
             {
+                if ( hostProxy.isInventoryMirrorSynced() )
+                {
+                    return true;
+                }
                 if ( hostProxy.getHostSystem() != null && hostProxy.getHostSystem().getHardware() != null )
                 {
                     return true;
@@ -188,34 +582,26 @@ public class HostProxyProvider
     /**
      * Create new HostProxy object from node credentials
      * 
-     * @param node
+     * @param identifier
      * @return
      * @throws HmsException
      */
-    private HostProxy createHostProxy( ServiceServerNode node )
+    private HostProxy createHostProxy( HostIdentifier identifier )
         throws HmsException
     {
-        if ( node != null )
+        try
         {
-            try
-            {
-                HostProxy hostProxy = HostManager.getInstance().connect( node.getIbIpAddress(), node.getOsUserName(),
-                                                                         node.getOsPassword() );
+            HostProxy hostProxy = HostManager.getInstance().connect( identifier.getIbIpAddress(),
+                                                                     identifier.getOsUserName(),
+                                                                     identifier.getOsPassword() );
 
-                return hostProxy;
-            }
-            catch ( Exception e )
-            {
-                String err = "Cannot create HostProxy Object for node: " + node.getNodeID();
-                logger.error( err, e );
-                throw new HmsException( err, e );
-            }
+            return hostProxy;
         }
-        else
+        catch ( Exception e )
         {
-            String err = "Cannot create HostProxy object for node: " + node;
-            logger.error( err );
-            throw new HmsException( err );
+            String err = "Cannot create HostProxy Object for node: " + identifier.getNodeId();
+            logger.error( err, e );
+            throw new HmsException( err, e );
         }
     }
 
@@ -230,7 +616,7 @@ public class HostProxyProvider
     public boolean setHostProxyforNode( ServiceServerNode node, HostProxy hostProxy )
         throws HmsException
     {
-        if ( node != null && hostProxy != null )
+        if ( node != null && node.getNodeID() != null && hostProxy != null )
         {
             HostIdentifier identifier = new HostIdentifier( node.getNodeID(), node.getIbIpAddress(),
                                                             node.getOsUserName(), node.getOsPassword() );
@@ -240,7 +626,23 @@ public class HostProxyProvider
             {
                 logger.debug( "Hostproxy object for node [ " + node.getNodeID()
                     + " ] is valid and can be added to the HostProxyMap." );
-                hostProxyMap.put( identifier, hostProxy );
+                HostEntry entry = getHostEntry( identifier );
+                List<HostProxy> staleHostProxies = new ArrayList<HostProxy>();
+                boolean set;
+                synchronized ( entry )
+                {
+                    set = setHostProxy( entry, hostProxy, staleHostProxies );
+                    entry.valid = true;
+                    entry.consecutiveFailures = 0;
+                    entry.nextConnectTime = 0;
+                }
+                closeHostProxies( staleHostProxies );
+                if ( !set )
+                {
+                    logger.warn( "Hostproxy object for node [ " + node.getNodeID()
+                        + " ] was not added to HostProxyMap, as the node was removed meanwhile." );
+                    return false;
+                }
                 logger.debug( "Hostproxy object for node [ " + node.getNodeID()
                     + " ] was successfully addded to HostProxyMap." );
                 return true;
@@ -0,0 +1,163 @@
+/* ********************************************************************************
+ * HostProxyStats.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+
+package com.vmware.vrack.hms.common.util;
+
+/**
+ * Connection statistics of the HostProxy of a node, as kept by {@link HostProxyProvider}.
+ *
+ * @author VMware, Inc.
+ */
+public class HostProxyStats
+{
+    private String nodeId;
+
+    private String ibIpAddress;
+
+    private boolean valid;
+
+    private long connectCount;
+
+    private long connectFailureCount;
+
+    private int consecutiveFailures;
+
+    private long lastConnectLatencyInMs;
+
+    private long averageConnectLatencyInMs;
+
+    private long lastValidationTime;
+
+    private long nextConnectTime;
+
+    public String getNodeId()
+    {
+        return nodeId;
+    }
+
+    public void setNodeId( String nodeId )
+    {
+        this.nodeId = nodeId;
+    }
+
+    public String getIbIpAddress()
+    {
+        return ibIpAddress;
+    }
+
+    public void setIbIpAddress( String ibIpAddress )
+    {
+        this.ibIpAddress = ibIpAddress;
+    }
+
+    /**
+     * @return whether the HostProxy was found valid by the last connect or validation
+     */
+    public boolean isValid()
+    {
+        return valid;
+    }
+
+    public void setValid( boolean valid )
+    {
+        this.valid = valid;
+    }
+
+    /**
+     * @return number of successful connects to the host
+     */
+    public long getConnectCount()
+    {
+        return connectCount;
+    }
+
+    public void setConnectCount( long connectCount )
+    {
+        this.connectCount = connectCount;
+    }
+
+    /**
+     * @return number of failed connects to the host
+     */
+    public long getConnectFailureCount()
+    {
+        return connectFailureCount;
+    }
+
+    public void setConnectFailureCount( long connectFailureCount )
+    {
+        this.connectFailureCount = connectFailureCount;
+    }
+
+    /**
+     * @return number of failed connects since the last successful one
+     */
+    public int getConsecutiveFailures()
+    {
+        return consecutiveFailures;
+    }
+
+    public void setConsecutiveFailures( int consecutiveFailures )
+    {
+        this.consecutiveFailures = consecutiveFailures;
+    }
+
+    public long getLastConnectLatencyInMs()
+    {
+        return lastConnectLatencyInMs;
+    }
+
+    public void setLastConnectLatencyInMs( long lastConnectLatencyInMs )
+    {
+        this.lastConnectLatencyInMs = lastConnectLatencyInMs;
+    }
+
+    /**
+     * @return average latency of the successful connects to the host
+     */
+    public long getAverageConnectLatencyInMs()
+    {
+        return averageConnectLatencyInMs;
+    }
+
+    public void setAverageConnectLatencyInMs( long averageConnectLatencyInMs )
+    {
+        this.averageConnectLatencyInMs = averageConnectLatencyInMs;
+    }
+
+    public long getLastValidationTime()
+    {
+        return lastValidationTime;
+    }
+
+    public void setLastValidationTime( long lastValidationTime )
+    {
+        this.lastValidationTime = lastValidationTime;
+    }
+
+    /**
+     * @return time before which no connect to the host is attempted, 0 if none is backed off
+     */
+    public long getNextConnectTime()
+    {
+        return nextConnectTime;
+    }
+
+    public void setNextConnectTime( long nextConnectTime )
+    {
+        this.nextConnectTime = nextConnectTime;
+    }
+}
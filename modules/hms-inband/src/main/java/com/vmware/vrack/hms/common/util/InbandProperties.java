@@ -31,6 +31,22 @@ public class InbandProperties
 
     private static String knownHostsLocation;
 
+    private static long esxiSshSessionIdleTimeoutInMs = 300000;
+
+    private static int esxiSshKeepAliveIntervalInMs = 15000;
+
+    private static long hddSmartDataCacheTtlInMs = 300000;
+
+    private static boolean hostInventoryMirrorEnabled = true;
+
+    private static long hostProxyValidationIntervalInMs = 60000;
+
+    private static int hostProxyValidationParallelism = 4;
+
+    private static long hostProxyReconnectMinDelayInMs = 5000;
+
+    private static long hostProxyReconnectMaxDelayInMs = 300000;
+
     public static String getKnownHostsLocation()
     {
         return knownHostsLocation;
@@ -62,4 +78,132 @@ public class InbandProperties
     {
         InbandProperties.vsphereClientTimeoutInMs = vsphereClientTimeoutInMs;
     }
+
+    public static long getEsxiSshSessionIdleTimeoutInMs()
+    {
+        return esxiSshSessionIdleTimeoutInMs;
+    }
+
+    /**
+     * Time after which an unused pooled SSH session to an ESXi host is closed.
+     *
+     * @param esxiSshSessionIdleTimeoutInMs
+     */
+    @Value( "${esxi.ssh.session.idle.timeout.ms:300000}" )
+    public void setEsxiSshSessionIdleTimeoutInMs( long esxiSshSessionIdleTimeoutInMs )
+    {
+        InbandProperties.esxiSshSessionIdleTimeoutInMs = esxiSshSessionIdleTimeoutInMs;
+    }
+
+    public static int getEsxiSshKeepAliveIntervalInMs()
+    {
+        return esxiSshKeepAliveIntervalInMs;
+    }
+
+    /**
+     * Interval of the keepalive messages sent on pooled SSH sessions to ESXi hosts.
+     *
+     * @param esxiSshKeepAliveIntervalInMs
+     */
+    @Value( "${esxi.ssh.keepalive.interval.ms:15000}" )
+    public void setEsxiSshKeepAliveIntervalInMs( int esxiSshKeepAliveIntervalInMs )
+    {
+        InbandProperties.esxiSshKeepAliveIntervalInMs = esxiSshKeepAliveIntervalInMs;
+    }
+
+    public static long getHddSmartDataCacheTtlInMs()
+    {
+        return hddSmartDataCacheTtlInMs;
+    }
+
+    /**
+     * Time for which the SMART data of a disk is reused before being read again from the host.
+     *
+     * @param hddSmartDataCacheTtlInMs
+     */
+    @Value( "${hdd.smart.cache.ttl.ms:300000}" )
+    public void setHddSmartDataCacheTtlInMs( long hddSmartDataCacheTtlInMs )
+    {
+        InbandProperties.hddSmartDataCacheTtlInMs = hddSmartDataCacheTtlInMs;
+    }
+
+    public static boolean isHostInventoryMirrorEnabled()
+    {
+        return hostInventoryMirrorEnabled;
+    }
+
+    /**
+     * Whether the hardware inventory of hosts is mirrored from property updates, instead of being read on each request.
+     *
+     * @param hostInventoryMirrorEnabled
+     */
+    @Value( "${host.inventory.mirror.enabled:true}" )
+    public void setHostInventoryMirrorEnabled( boolean hostInventoryMirrorEnabled )
+    {
+        InbandProperties.hostInventoryMirrorEnabled = hostInventoryMirrorEnabled;
+    }
+
+    public static long getHostProxyValidationIntervalInMs()
+    {
+        return hostProxyValidationIntervalInMs;
+    }
+
+    /**
+     * Interval at which the cached HostProxy objects are validated in background.
+     *
+     * @param hostProxyValidationIntervalInMs
+     */
+    @Value( "${host.proxy.validation.interval.ms:60000}" )
+    public void setHostProxyValidationIntervalInMs( long hostProxyValidationIntervalInMs )
+    {
+        InbandProperties.hostProxyValidationIntervalInMs = hostProxyValidationIntervalInMs;
+    }
+
+    public static int getHostProxyValidationParallelism()
+    {
+        return hostProxyValidationParallelism;
+    }
+
+    /**
+     * Number of HostProxy objects validated, or recreated, at the same time.
+     *
+     * @param hostProxyValidationParallelism
+     */
+    @Value( "${host.proxy.validation.parallelism:4}" )
+    public void setHostProxyValidationParallelism( int hostProxyValidationParallelism )
+    {
+        InbandProperties.hostProxyValidationParallelism = hostProxyValidationParallelism;
+    }
+
+    public static long getHostProxyReconnectMinDelayInMs()
+    {
+        return hostProxyReconnectMinDelayInMs;
+    }
+
+    /**
+     * Delay before connecting again to a host after a failed connect. It doubles with each consecutive failure.
+     *
+     * @param hostProxyReconnectMinDelayInMs
+     */
+    @Value( "${host.proxy.reconnect.min.delay.ms:5000}" )
+    public void setHostProxyReconnectMinDelayInMs( long hostProxyReconnectMinDelayInMs )
+    {
+        InbandProperties.hostProxyReconnectMinDelayInMs = hostProxyReconnectMinDelayInMs;
+    }
+
+    public static long getHostProxyReconnectMaxDelayInMs()
+    {
+        return hostProxyReconnectMaxDelayInMs;
+    }
+
+    /**
+     * Maximum delay before connecting again to a host after consecutive failed connects.
+     *
+     * @param hostProxyReconnectMaxDelayInMs
+     */
+    @Value( "${host.proxy.reconnect.max.delay.ms:300000}" )
+    public void setHostProxyReconnectMaxDelayInMs( long hostProxyReconnectMaxDelayInMs )
+    {
+        InbandProperties.hostProxyReconnectMaxDelayInMs = hostProxyReconnectMaxDelayInMs;
+    }
 }
@@ -0,0 +1,353 @@
+/* ********************************************************************************
+ * HostInventoryMirror.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+
+package com.vmware.vrack.hms.vsphere;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vmware.vim.binding.impl.vmodl.TypeNameImpl;
+import com.vmware.vim.binding.vmodl.ManagedObjectReference;
+import com.vmware.vim.binding.vmodl.query.PropertyCollector;
+import com.vmware.vim.binding.vmodl.query.PropertyCollector.Change;
+import com.vmware.vim.binding.vmodl.query.PropertyCollector.Filter;
+import com.vmware.vim.binding.vmodl.query.PropertyCollector.FilterSpec;
+import com.vmware.vim.binding.vmodl.query.PropertyCollector.FilterUpdate;
+import com.vmware.vim.binding.vmodl.query.PropertyCollector.ObjectSpec;
+import com.vmware.vim.binding.vmodl.query.PropertyCollector.ObjectUpdate;
+import com.vmware.vim.binding.vmodl.query.PropertyCollector.PropertySpec;
+import com.vmware.vim.binding.vmodl.query.PropertyCollector.UpdateSet;
+import com.vmware.vim.binding.vmodl.query.PropertyCollector.WaitOptions;
+import com.vmware.vrack.hms.common.util.InbandProperties;
+
+/**
+ * Local mirror of some properties of a HostSystem. A property filter is created on the host once, in a property
+ * collector of its own, and a background thread waits for updates on it with version tokens. The first wait returns
+ * the full values of the properties, and the following ones only the properties which changed since.
+ * <p>
+ * Values are only served once the mirror is in sync with the host. While it is not, e.g. until the first update was
+ * received or after a connection error, {@link #get(String)} returns null and the caller reads the host directly.
+ *
+ * @author VMware, Inc.
+ */
+public class HostInventoryMirror
+    implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger( HostInventoryMirror.class );
+
+    private static final String HOST_SYSTEM = "HostSystem";
+
+    private static final long MIN_RETRY_DELAY_IN_MS = 1000;
+
+    private static final long MAX_RETRY_DELAY_IN_MS = 60000;
+
+    private static final int MAX_WAIT_SECONDS = 60;
+
+    private final VsphereClient client;
+
+    private final ManagedObjectReference hostRef;
+
+    private final String[] paths;
+
+    private final String name;
+
+    private final Map<String, Object> properties = new ConcurrentHashMap<String, Object>();
+
+    private volatile boolean synced;
+
+    private volatile boolean closed;
+
+    private volatile String version;
+
+    private volatile PropertyCollector propertyCollector;
+
+    private Filter filter;
+
+    private Thread updater;
+
+    /**
+     * @param client
+     * @param hostRef HostSystem to mirror
+     * @param paths property paths of the HostSystem to mirror
+     * @param name name of the mirror, used in logs
+     */
+    public HostInventoryMirror( VsphereClient client, ManagedObjectReference hostRef, String[] paths, String name )
+    {
+        this.client = client;
+        this.hostRef = hostRef;
+        this.paths = paths;
+        this.name = name;
+    }
+
+    /**
+     * Starts waiting for updates of the properties in background.
+     */
+    public synchronized void start()
+    {
+        if ( updater == null && !closed )
+        {
+            updater = new Thread( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    waitForUpdates();
+                }
+            }, "host-inventory-mirror-" + name );
+            updater.setDaemon( true );
+            updater.start();
+        }
+    }
+
+    /**
+     * Gets the mirrored value of the property.
+     *
+     * @param path
+     * @return value of the property, null if the mirror is not in sync with the host or the property is not set
+     */
+    public Object get( String path )
+    {
+        return synced ? properties.get( path ) : null;
+    }
+
+    /**
+     * Checks if the mirror is in sync with the host, i.e. if it received the values of the properties and is waiting
+     * for their updates.
+     *
+     * @return
+     */
+    public boolean isSynced()
+    {
+        return synced;
+    }
+
+    /**
+     * Gets the version of the last update applied, null if none was.
+     *
+     * @return
+     */
+    public String getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Stops waiting for updates, and destroys the property filter on the host.
+     */
+    @Override
+    public void close()
+    {
+        Thread thread;
+        synchronized ( this )
+        {
+            if ( closed )
+            {
+                return;
+            }
+            closed = true;
+            synced = false;
+            thread = updater;
+        }
+        PropertyCollector collector = propertyCollector;
+        if ( collector != null )
+        {
+            try
+            {
+                collector.cancelWaitForUpdates();
+            }
+            catch ( Exception e )
+            {
+                logger.debug( "Unable to cancel wait for updates of {}", name, e );
+            }
+        }
+        if ( thread != null )
+        {
+            thread.interrupt();
+        }
+    }
+
+    private void waitForUpdates()
+    {
+        int failures = 0;
+        while ( !closed )
+        {
+            try
+            {
+                if ( propertyCollector == null )
+                {
+                    createFilter();
+                }
+                UpdateSet updateSet = propertyCollector.waitForUpdatesEx( version, getWaitOptions() );
+                if ( updateSet != null )
+                {
+                    apply( updateSet );
+                }
+                failures = 0;
+            }
+            catch ( Exception e )
+            {
+                if ( closed )
+                {
+                    break;
+                }
+                synced = false;
+                version = null;
+                destroyFilter();
+
+                long delay = Math.min( MAX_RETRY_DELAY_IN_MS, MIN_RETRY_DELAY_IN_MS << Math.min( failures++, 6 ) );
+                logger.warn( "Unable to get inventory updates of {}, retrying in {} ms: {}", name, delay,
+                             e.getMessage() );
+                try
+                {
+                    Thread.sleep( delay );
+                }
+                catch ( InterruptedException ie )
+                {
+                    break;
+                }
+            }
+        }
+        destroyFilter();
+        logger.debug( "Stopped inventory mirror of {}", name );
+    }
+
+    /**
+     * Creates a property collector of its own for the mirror, so that waiting on it or cancelling the wait does not
+     * affect the other users of the session, and a filter on the properties of the host in it.
+     */
+    private void createFilter()
+    {
+        PropertyCollector collector =
+            client.createStub( PropertyCollector.class, client.getPropertyCollector().createPropertyCollector() );
+
+        PropertySpec propertySpec = new PropertySpec();
+        propertySpec.setType( new TypeNameImpl( HOST_SYSTEM ) );
+        propertySpec.setAll( false );
+        propertySpec.setPathSet( paths );
+
+        ObjectSpec objectSpec = new ObjectSpec();
+        objectSpec.setObj( hostRef );
+        objectSpec.setSkip( false );
+
+        FilterSpec filterSpec = new FilterSpec();
+        filterSpec.setObjectSet( new ObjectSpec[] { objectSpec } );
+        filterSpec.setPropSet( new PropertySpec[] { propertySpec } );
+
+        // Without partial updates, a change of a nested property is reported as a change of the whole property path
+        // of the filter, so that the mirror always holds complete values.
+        filter = client.createStub( Filter.class, collector.createFilter( filterSpec, false ) );
+        propertyCollector = collector;
+        logger.debug( "Created inventory property filter on {} for {}", name, Arrays.toString( paths ) );
+    }
+
+    private void destroyFilter()
+    {
+        PropertyCollector collector = propertyCollector;
+        propertyCollector = null;
+        try
+        {
+            if ( filter != null )
+            {
+                filter.destroy();
+            }
+            if ( collector != null )
+            {
+                collector.destroy();
+            }
+        }
+        catch ( Exception e )
+        {
+            logger.debug( "Unable to destroy inventory property filter of {}", name, e );
+        }
+        finally
+        {
+            filter = null;
+        }
+    }
+
+    /**
+     * Waits for updates less than the timeout of the client, so that a pending wait is not taken for a lost connection.
+     *
+     * @return
+     */
+    private WaitOptions getWaitOptions()
+    {
+        WaitOptions waitOptions = new WaitOptions();
+        int timeoutInSeconds = InbandProperties.getVsphereClientTimeoutInMs() / 2000;
+        waitOptions.setMaxWaitSeconds( ( timeoutInSeconds > 0 ) ? Math.min( MAX_WAIT_SECONDS, timeoutInSeconds )
+                        : MAX_WAIT_SECONDS );
+        return waitOptions;
+    }
+
+    /**
+     * Applies the property changes of the update set to the mirror. The mirror is in sync once a complete update set
+     * was applied.
+     *
+     * @param updateSet
+     */
+    void apply( UpdateSet updateSet )
+    {
+        if ( updateSet.getFilterSet() != null )
+        {
+            for ( FilterUpdate filterUpdate : updateSet.getFilterSet() )
+            {
+                if ( filterUpdate.getObjectSet() == null )
+                {
+                    continue;
+                }
+                for ( ObjectUpdate objectUpdate : filterUpdate.getObjectSet() )
+                {
+                    apply( objectUpdate );
+                }
+            }
+        }
+        version = updateSet.getVersion();
+        if ( !Boolean.TRUE.equals( updateSet.getTruncated() ) && !closed )
+        {
+            synced = true;
+        }
+    }
+
+    private void apply( ObjectUpdate objectUpdate )
+    {
+        if ( objectUpdate.getKind() == ObjectUpdate.Kind.leave )
+        {
+            logger.info( "{} left the inventory, clearing its mirror", name );
+            properties.clear();
+            return;
+        }
+        if ( objectUpdate.getChangeSet() == null )
+        {
+            return;
+        }
+        for ( Change change : objectUpdate.getChangeSet() )
+        {
+            if ( change.getOp() == Change.Operation.remove || change.getOp() == Change.Operation.indirectRemove
+                || change.getVal() == null )
+            {
+                properties.remove( change.getName() );
+            }
+            else
+            {
+                properties.put( change.getName(), change.getVal() );
+            }
+        }
+    }
+}
@@ -82,6 +82,7 @@ import com.vmware.vim.binding.vim.host.AutoStartManager.Config;
 import com.vmware.vim.binding.vim.host.AutoStartManager.SystemDefaults;
 import com.vmware.vim.binding.vim.host.ConfigChange;
 import com.vmware.vim.binding.vim.host.ConfigManager;
+import com.vmware.vim.binding.vim.host.HardwareInfo;
 import com.vmware.vim.binding.vim.host.HostProxySwitch;
 import com.vmware.vim.binding.vim.host.IpConfig;
 import com.vmware.vim.binding.vim.host.IpRouteConfig;
@@ -123,6 +124,7 @@ import com.vmware.vim.binding.vmodl.reflect.DynamicTypeManager;
 import com.vmware.vim.binding.vmodl.reflect.ManagedMethodExecuter;
 import com.vmware.vim.vmomi.client.common.impl.ClientFutureImpl;
 import com.vmware.vim.vmomi.core.Future;
+import com.vmware.vrack.hms.common.util.InbandProperties;
 import com.vmware.vrack.hms.vsphere.guest.GuestCredential;
 import com.vmware.vrack.hms.vsphere.guest.GuestProgram;
 import com.vmware.vrack.hms.vsphere.vmkping.VmkPing;
@@ -168,6 +170,8 @@ public class HostProxy
 
     private final static String NAME_STR = "name";
 
+    private final static String HARDWARE = "hardware";
+
     private final static String NO_AVAILABLE_PHYSICAL_NIC_IN_ESXI_HOST = "No available physical NIC in ESXi host %s";
 
     private final static String SWITCH_NOT_FOUND = "No any switch found";
@@ -229,6 +233,10 @@ public class HostProxy
 
     private String license;
 
+    private HostInventoryMirror inventoryMirror;
+
+    private boolean disconnected;
+
     HostProxy( String ipAddress, VsphereClient client, HostSystem hostSystem )
     {
         this.ipAddress = ipAddress;
@@ -336,6 +344,11 @@ public class HostProxy
     public void close()
     {
         logger.info( "Disconnecting host {}", this.ipAddress );
+        synchronized ( this )
+        {
+            disconnected = true;
+        }
+        closeInventoryMirror();
         if ( null != client )
         {
             client.shutdown();
@@ -2084,6 +2097,7 @@ public class HostProxy
         public void close()
         {
             // do nothing here to avoid the client being closed
+            closeInventoryMirror();
         }
     }
 
@@ -2102,4 +2116,72 @@ public class HostProxy
     {
         return this.netSys;
     }
+
+    /**
+     * Gets the hardware info of the host from its inventory mirror, falling back to the host while the mirror is not
+     * in sync.
+     *
+     * @return
+     */
+    public HardwareInfo getHardwareInfo()
+    {
+        HostInventoryMirror mirror = getInventoryMirror();
+        if ( mirror != null )
+        {
+            Object hardwareInfo = mirror.get( HARDWARE );
+            if ( hardwareInfo instanceof HardwareInfo )
+            {
+                return (HardwareInfo) hardwareInfo;
+            }
+        }
+        return hostSystem.getHardware();
+    }
+
+    /**
+     * Checks if the inventory mirror of the host is in sync, which also means that the session to the host is alive.
+     *
+     * @return
+     */
+    public boolean isInventoryMirrorSynced()
+    {
+        HostInventoryMirror mirror;
+        synchronized ( this )
+        {
+            mirror = inventoryMirror;
+        }
+        return mirror != null && mirror.isSynced();
+    }
+
+    /**
+     * Gets the inventory mirror of the host, starting it on first use.
+     *
+     * @return the mirror, null if disabled
+     */
+    private synchronized HostInventoryMirror getInventoryMirror()
+    {
+        if ( inventoryMirror == null && !disconnected && InbandProperties.isHostInventoryMirrorEnabled() )
+        {
+            inventoryMirror =
+                new HostInventoryMirror( client, hostSystem._getRef(), new String[] { HARDWARE }, ipAddress );
+            inventoryMirror.start();
+        }
+        return inventoryMirror;
+    }
+
+    /**
+     * Stops the inventory mirror of the host, if started. It is started again on next use.
+     */
+    public void closeInventoryMirror()
+    {
+        HostInventoryMirror mirror;
+        synchronized ( this )
+        {
+            mirror = inventoryMirror;
+            inventoryMirror = null;
+        }
+        if ( mirror != null )
+        {
+            mirror.close();
+        }
+    }
 }
@@ -0,0 +1,81 @@
+/* ********************************************************************************
+ * HddSmartDataCollectorTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.boardservice.ib.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.vmware.vrack.hms.common.servernodes.api.hdd.HddSMARTData;
+
+public class HddSmartDataCollectorTest
+{
+    @Test
+    public void testParseBatchOutput()
+        throws Exception
+    {
+        HddSmartDataCollector.SmartDataParser parser = new HddSmartDataCollector.SmartDataParser();
+        String[] lines = { Constants.HDD_SMART_DATA_DEVICE_MARKER + "naa.5000c500a1b2c3d4",
+            "Parameter,Threshold,Value,Worst,", "Health Status,N/A,OK,N/A,", "Drive Temperature,0,35,N/A,", "",
+            Constants.HDD_SMART_DATA_STATUS_MARKER + "0", Constants.HDD_SMART_DATA_DEVICE_MARKER + "t10.ATA_____SSD_1",
+            "Parameter,Threshold,Value,Worst,", "\"Media Wearout Indicator\",0,99,99,",
+            Constants.HDD_SMART_DATA_STATUS_MARKER + "0",
+            Constants.HDD_SMART_DATA_DEVICE_MARKER + "mpx.vmhba32:C0:T0:L0",
+            Constants.HDD_SMART_DATA_STATUS_MARKER + "0", Constants.HDD_SMART_DATA_DEVICE_MARKER + "naa.failed",
+            "Error: Unknown device naa.failed", Constants.HDD_SMART_DATA_STATUS_MARKER + "1",
+            Constants.HDD_SMART_DATA_DEVICE_MARKER + "naa.truncated", "Parameter,Threshold,Value,Worst," };
+        for ( String line : lines )
+        {
+            parser.handleLine( line );
+        }
+
+        Map<String, List<HddSMARTData>> smartData = parser.getSmartData();
+        assertEquals( 3, smartData.size() );
+
+        List<HddSMARTData> hddSmartData = smartData.get( "naa.5000c500a1b2c3d4" );
+        assertEquals( 2, hddSmartData.size() );
+        assertEquals( "Health Status", hddSmartData.get( 0 ).getParameter() );
+        assertEquals( "OK", hddSmartData.get( 0 ).getValue() );
+        assertEquals( "0", hddSmartData.get( 1 ).getThreshold() );
+        assertEquals( "35", hddSmartData.get( 1 ).getValue() );
+
+        List<HddSMARTData> ssdSmartData = smartData.get( "t10.ATA_____SSD_1" );
+        assertEquals( 1, ssdSmartData.size() );
+        assertEquals( "Media Wearout Indicator", ssdSmartData.get( 0 ).getParameter() );
+        assertEquals( "99", ssdSmartData.get( 0 ).getWorst() );
+
+        assertTrue( smartData.get( "mpx.vmhba32:C0:T0:L0" ).isEmpty() );
+
+        /* Failed or incomplete reads are not taken for disks without SMART data */
+        assertFalse( smartData.containsKey( "naa.failed" ) );
+        assertFalse( smartData.containsKey( "naa.truncated" ) );
+    }
+
+    @Test
+    public void testBatchCommand()
+    {
+        String command = HddSmartDataCollector.getBatchCommand( Arrays.asList( "naa.1", "naa.2" ) );
+        assertTrue( command.startsWith( "for d in 'naa.1' 'naa.2'; do" ) );
+        assertTrue( command.contains( "esxcli --formatter=csv storage core device smart get -d \"$d\"" ) );
+        assertTrue( command.contains( Constants.HDD_SMART_DATA_STATUS_MARKER + "$?" ) );
+    }
+}
@@ -0,0 +1,34 @@
+/* ********************************************************************************
+ * HostProxyProviderBackoffTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+
+package com.vmware.vrack.hms.common.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class HostProxyProviderBackoffTest
+{
+    @Test
+    public void testReconnectDelay()
+    {
+        assertEquals( 5000, HostProxyProvider.getReconnectDelay( 1, 5000, 300000 ) );
+        assertEquals( 10000, HostProxyProvider.getReconnectDelay( 2, 5000, 300000 ) );
+        assertEquals( 40000, HostProxyProvider.getReconnectDelay( 4, 5000, 300000 ) );
+        assertEquals( 300000, HostProxyProvider.getReconnectDelay( 7, 5000, 300000 ) );
+        assertEquals( 300000, HostProxyProvider.getReconnectDelay( Integer.MAX_VALUE, 5000, 300000 ) );
+    }
+}
@@ -0,0 +1,130 @@
+/* ********************************************************************************
+ * HostProxyProviderLifecycleTest.java
+ * 
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.util;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.vmware.vrack.hms.common.boardvendorservice.resource.ServiceServerNode;
+import com.vmware.vrack.hms.vsphere.HostProxy;
+
+/**
+ * Tests that {@link HostProxyProvider} closes the HostProxy objects it replaces or removes, and tells its listeners.
+ */
+public class HostProxyProviderLifecycleTest
+{
+    private static final String NODE_ID = "N-lifecycle";
+
+    @After
+    public void tearDown()
+    {
+        HostProxyProvider.getInstance().removeAllHostProxies();
+    }
+
+    @Test
+    public void testReplacedHostProxyIsClosed()
+        throws Exception
+    {
+        ServiceServerNode node = createNode( "10.0.0.1" );
+        HostProxy hostProxy = createHostProxy();
+        HostProxy newHostProxy = createHostProxy();
+
+        assertTrue( HostProxyProvider.getInstance().setHostProxyforNode( node, hostProxy ) );
+        assertTrue( HostProxyProvider.getInstance().setHostProxyforNode( node, newHostProxy ) );
+
+        verify( hostProxy, times( 1 ) ).close();
+        verify( newHostProxy, never() ).close();
+        assertSame( newHostProxy, HostProxyProvider.getInstance().getHostProxy( node ) );
+
+        // setting the same HostProxy again does not close it
+        assertTrue( HostProxyProvider.getInstance().setHostProxyforNode( node, newHostProxy ) );
+        verify( newHostProxy, never() ).close();
+    }
+
+    @Test
+    public void testHostProxyOfReconfiguredNodeIsClosed()
+        throws Exception
+    {
+        HostProxy hostProxy = createHostProxy();
+        HostProxy newHostProxy = createHostProxy();
+
+        HostProxyProvider.getInstance().setHostProxyforNode( createNode( "10.0.0.1" ), hostProxy );
+        HostProxyProvider.getInstance().setHostProxyforNode( createNode( "10.0.0.2" ), newHostProxy );
+
+        verify( hostProxy, times( 1 ) ).close();
+        verify( newHostProxy, never() ).close();
+    }
+
+    @Test
+    public void testRemovedHostProxyIsClosed()
+        throws Exception
+    {
+        ServiceServerNode node = createNode( "10.0.0.1" );
+        HostProxy hostProxy = createHostProxy();
+        HostProxyProvider.getInstance().setHostProxyforNode( node, hostProxy );
+
+        HostProxyProvider.getInstance().removeHostProxy( new HostIdentifier( NODE_ID, "10.0.0.1", "root",
+                                                                             "password" ) );
+        verify( hostProxy, times( 1 ) ).close();
+
+        // removing it again does nothing
+        HostProxyProvider.getInstance().removeAllHostProxies();
+        verify( hostProxy, times( 1 ) ).close();
+    }
+
+    @Test
+    public void testListenerIsToldOfRemovedHost()
+        throws Exception
+    {
+        HostProxyListener listener = mock( HostProxyListener.class );
+        HostProxyProvider.getInstance().addHostProxyListener( listener );
+        try
+        {
+            HostProxyProvider.getInstance().setHostProxyforNode( createNode( "10.0.0.1" ), createHostProxy() );
+            HostProxyProvider.getInstance().removeAllHostProxies();
+            verify( listener, times( 1 ) ).hostRemoved( NODE_ID );
+        }
+        finally
+        {
+            HostProxyProvider.getInstance().removeHostProxyListener( listener );
+        }
+    }
+
+    private static HostProxy createHostProxy()
+    {
+        HostProxy hostProxy = mock( HostProxy.class );
+        when( hostProxy.isInventoryMirrorSynced() ).thenReturn( true );
+        return hostProxy;
+    }
+
+    private static ServiceServerNode createNode( String ibIpAddress )
+    {
+        ServiceServerNode node = new ServiceServerNode();
+        node.setNodeID( NODE_ID );
+        node.setIbIpAddress( ibIpAddress );
+        node.setOsUserName( "root" );
+        node.setOsPassword( "password" );
+        return node;
+    }
+}
@@ -0,0 +1,104 @@
+/* ********************************************************************************
+ * HostInventoryMirrorTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+
+package com.vmware.vrack.hms.vsphere;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+
+import com.vmware.vim.binding.vmodl.query.PropertyCollector.Change;
+import com.vmware.vim.binding.vmodl.query.PropertyCollector.FilterUpdate;
+import com.vmware.vim.binding.vmodl.query.PropertyCollector.ObjectUpdate;
+import com.vmware.vim.binding.vmodl.query.PropertyCollector.UpdateSet;
+
+/**
+ * Tests how {@link HostInventoryMirror} applies property updates.
+ */
+public class HostInventoryMirrorTest
+{
+    @Test
+    public void testApplyUpdates()
+    {
+        HostInventoryMirror mirror = new HostInventoryMirror( null, null, new String[] { "hardware", "name" }, "h1" );
+        assertNull( mirror.get( "hardware" ) );
+
+        mirror.apply( getUpdateSet( "1", true, ObjectUpdate.Kind.enter,
+                                    getChange( "hardware", Change.Operation.assign, "hw1" ) ) );
+        assertFalse( mirror.isSynced() );
+        assertNull( mirror.get( "hardware" ) );
+
+        mirror.apply( getUpdateSet( "2", false, ObjectUpdate.Kind.enter,
+                                    getChange( "name", Change.Operation.assign, "host1" ) ) );
+        assertTrue( mirror.isSynced() );
+        assertEquals( "2", mirror.getVersion() );
+        assertEquals( "hw1", mirror.get( "hardware" ) );
+        assertEquals( "host1", mirror.get( "name" ) );
+
+        mirror.apply( getUpdateSet( "3", false, ObjectUpdate.Kind.modify,
+                                    getChange( "hardware", Change.Operation.assign, "hw2" ),
+                                    getChange( "name", Change.Operation.remove, null ) ) );
+        assertEquals( "hw2", mirror.get( "hardware" ) );
+        assertNull( mirror.get( "name" ) );
+
+        mirror.apply( getUpdateSet( "4", false, ObjectUpdate.Kind.leave ) );
+        assertNull( mirror.get( "hardware" ) );
+    }
+
+    @Test
+    public void testClose()
+    {
+        HostInventoryMirror mirror = new HostInventoryMirror( null, null, new String[] { "hardware" }, "h1" );
+        mirror.apply( getUpdateSet( "1", false, ObjectUpdate.Kind.enter,
+                                    getChange( "hardware", Change.Operation.assign, "hw1" ) ) );
+        assertTrue( mirror.isSynced() );
+
+        mirror.close();
+        assertFalse( mirror.isSynced() );
+        assertNull( mirror.get( "hardware" ) );
+    }
+
+    private static UpdateSet getUpdateSet( String version, boolean truncated, ObjectUpdate.Kind kind,
+                                           Change... changes )
+    {
+        ObjectUpdate objectUpdate = mock( ObjectUpdate.class );
+        when( objectUpdate.getKind() ).thenReturn( kind );
+        when( objectUpdate.getChangeSet() ).thenReturn( changes );
+
+        FilterUpdate filterUpdate = mock( FilterUpdate.class );
+        when( filterUpdate.getObjectSet() ).thenReturn( new ObjectUpdate[] { objectUpdate } );
+
+        UpdateSet updateSet = mock( UpdateSet.class );
+        when( updateSet.getVersion() ).thenReturn( version );
+        when( updateSet.getTruncated() ).thenReturn( truncated );
+        when( updateSet.getFilterSet() ).thenReturn( new FilterUpdate[] { filterUpdate } );
+        return updateSet;
+    }
+
+    private static Change getChange( String name, Change.Operation op, Object val )
+    {
+        Change change = mock( Change.class );
+        when( change.getName() ).thenReturn( name );
+        when( change.getOp() ).thenReturn( op );
+        when( change.getVal() ).thenReturn( val );
+        return change;
+    }
+}
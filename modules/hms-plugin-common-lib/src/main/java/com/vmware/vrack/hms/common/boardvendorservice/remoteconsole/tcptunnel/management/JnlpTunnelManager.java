@@ -30,6 +30,7 @@ import com.vmware.vrack.hms.common.boardvendorservice.remoteconsole.kvm.jnlpcons
 import com.vmware.vrack.hms.common.boardvendorservice.remoteconsole.kvm.jnlpconsole.JnlpPortType;
 import com.vmware.vrack.hms.common.tcptunnel.SocketTunnel;
 import com.vmware.vrack.hms.common.tcptunnel.TCPTunnel;
+import com.vmware.vrack.hms.common.tcptunnel.TunnelRelay;
 
 /**
  * Manages the TCPTunnel for boards which use jnlp file for enabling remote console display For jnlpDisplays , the
@@ -68,7 +69,7 @@ public class JnlpTunnelManager
     private Set<UUID> videoSocketTunnelIds;
 
     /**
-     * Manager all threads created by the Tunnel
+     * Manages all the tunnels, which run on the shared {@link TunnelRelay}
      */
     private TunnelThreadPool threadPool;
 
@@ -145,11 +146,11 @@ public class JnlpTunnelManager
                         for ( JnlpBoardPortInfo portInfo : ports )
                         {
                             JnlpBoardPortInfo localPortInfo = new JnlpBoardPortInfo();
-                            TCPTunnel tunnel = new TCPTunnel( host, portInfo.getPortOpened(), this, threadPool,
+                            TCPTunnel tunnel = new TCPTunnel( host, portInfo.getPortOpened(), this,
                                                               portInfo.getPortType(), tunnelServiceTimeout );
                             localPortInfo.setPortOpened( tunnel.getLocalPort() );
                             localPortInfo.setPortType( portInfo.getPortType() );
-                            this.threadPool.execute( tunnel );
+                            this.threadPool.start( tunnel );
                             // this.jnlpTunnelServiceStarted = true;
                             listOfLocalPortsOpened.add( localPortInfo );
                         }
@@ -19,11 +19,12 @@ package com.vmware.vrack.hms.common.boardvendorservice.remoteconsole.tcptunnel.m
 import java.util.ArrayList;
 import java.util.List;
 
-import com.vmware.vrack.hms.common.tcptunnel.SocketTunnel;
 import com.vmware.vrack.hms.common.tcptunnel.TCPTunnel;
+import com.vmware.vrack.hms.common.tcptunnel.TunnelRelay;
 
 /**
- * Manages threads created by a JnlpTunnelManager,TCPTunnel,SocketTunnel
+ * Manages the TCPTunnels created by a JnlpTunnelManager, which run on the {@link TunnelRelay} along with their
+ * SocketTunnels, and threads of any other tasks
  * 
  * @author VMware, Inc.
  */
@@ -32,13 +33,17 @@ public class TunnelThreadPool
     // Threads
     private List<Thread> tunnelThreads;
 
-    // Runnable tasks (type TCPTunnel,SocketTunnel,StreamConnector)
+    // Runnable tasks
     private List<Runnable> tunnelTasks;
 
+    // Tunnels running on the tunnel relay
+    private List<TCPTunnel> tunnels;
+
     public TunnelThreadPool()
     {
         tunnelThreads = new ArrayList<Thread>();
         tunnelTasks = new ArrayList<Runnable>();
+        tunnels = new ArrayList<TCPTunnel>();
     }
 
     /**
@@ -58,26 +63,30 @@ public class TunnelThreadPool
     }
 
     /**
-     * Close all the tasks
+     * Start the tunnel on the tunnel relay and store it for shutting it down
+     * 
+     * @param tunnel
      */
-    public void shutDown()
+    public void start( TCPTunnel tunnel )
     {
-        // System.out.println("Thread Pool is shutting down");
-        for ( Runnable task : tunnelTasks )
+        if ( tunnel != null )
         {
-            // Asks the TCPTunnel to stop listening for more connections
-            if ( task instanceof TCPTunnel )
-            {
-                ( (TCPTunnel) task ).stopTunnel();
-                // Asks the SocketTunnel to close the streamConnectors
-                // and close itself
-            }
-            else if ( task instanceof SocketTunnel )
-            {
-                ( (SocketTunnel) task ).stopSocketTunnel();
-            }
+            tunnels.add( tunnel );
+            tunnel.start();
         }
+    }
 
+    /**
+     * Close all the tunnels
+     */
+    public void shutDown()
+    {
+        // Asks the TCPTunnels to stop listening for more connections
+        // and to close their SocketTunnels
+        for ( TCPTunnel tunnel : tunnels )
+        {
+            tunnel.stopTunnel();
+        }
     }
 
     public List<Runnable> getTunnelTasks()
@@ -89,4 +98,9 @@ public class TunnelThreadPool
     {
         return tunnelThreads;
     }
+
+    public List<TCPTunnel> getTunnels()
+    {
+        return tunnels;
+    }
 }
@@ -16,211 +16,313 @@
 package com.vmware.vrack.hms.common.tcptunnel;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.Socket;
-import java.net.SocketException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 
 import com.vmware.vrack.hms.common.boardvendorservice.remoteconsole.kvm.jnlpconsole.JnlpPortType;
 import com.vmware.vrack.hms.common.boardvendorservice.remoteconsole.tcptunnel.management.JnlpTunnelManager;
-import com.vmware.vrack.hms.common.boardvendorservice.remoteconsole.tcptunnel.management.TunnelThreadPool;
 
 /**
- * Connects to service at (bounceHost,bouncePort) and starts stream connectors which connects remoteSocket's inputStream
- * to bounceSocket's outputStream and bounceSocket's inputStream to RemoteSocket's outputStream.
+ * Connects a connection accepted by a {@link TCPTunnel} to the service at (bounceHost,bouncePort) and relays the data
+ * from remoteChannel to bounceChannel and from bounceChannel to remoteChannel. The relaying is done by the
+ * {@link TunnelRelay} thread; each direction has a buffer which is only read into while it has room, so that a slow
+ * receiver slows down the sender instead of the data being buffered without bound.
  * 
  * @author VMware, Inc.
  */
 public class SocketTunnel
-    implements Runnable
 {
     private static Logger logger = Logger.getLogger( SocketTunnel.class );
 
-    private UUID socketTunnelId;
+    private static final int BUFFER_SIZE = 65536;
 
-    private Socket remoteSocket;
+    private final UUID socketTunnelId;
 
-    private String bounceHost;
+    private final TCPTunnel tcpTunnel;
 
-    private int bouncePort;
+    private final JnlpTunnelManager tunnelManager;
 
-    private Object terminationHandler;
+    private final SocketChannel remoteChannel;
 
-    private StreamConnector inConnect, outConnect;
+    private SocketChannel bounceChannel;
 
-    private TunnelThreadPool threadPool;
+    private SelectionKey remoteKey;
 
-    private JnlpTunnelManager tunnelManager;
+    private SelectionKey bounceKey;
 
-    public SocketTunnel( Socket remoteSocket, String bounceHost, int bouncePort, TunnelThreadPool threadPool,
-                         JnlpTunnelManager tunnelManager, JnlpPortType tunnelType )
+    /**
+     * Data read from remoteChannel to be written to bounceChannel, and vice versa. Both are kept ready to be read into.
+     */
+    private final ByteBuffer remoteToBounce = ByteBuffer.allocateDirect( BUFFER_SIZE );
+
+    private final ByteBuffer bounceToRemote = ByteBuffer.allocateDirect( BUFFER_SIZE );
+
+    private boolean connected;
+
+    private boolean remoteEndOfStream;
+
+    private boolean bounceEndOfStream;
+
+    private boolean closed;
+
+    private final long createTime;
+
+    private long lastActivityTime;
+
+    private final AtomicLong bytesFromRemote = new AtomicLong();
+
+    private final AtomicLong bytesToRemote = new AtomicLong();
+
+    SocketTunnel( SocketChannel remoteChannel, TCPTunnel tcpTunnel )
     {
-        this.remoteSocket = remoteSocket;
-        this.bounceHost = bounceHost;
-        this.bouncePort = bouncePort;
-        this.terminationHandler = new Object();
-        this.threadPool = threadPool;
-        this.tunnelManager = tunnelManager;
+        this.remoteChannel = remoteChannel;
+        this.tcpTunnel = tcpTunnel;
+        this.tunnelManager = tcpTunnel.getTunnelManager();
+        this.createTime = System.currentTimeMillis();
+        this.lastActivityTime = createTime;
         socketTunnelId = UUID.randomUUID();
         if ( tunnelManager != null )
-            this.tunnelManager.newSocketTunnelCreated( socketTunnelId, tunnelType );
+        {
+            final JnlpPortType tunnelType = tcpTunnel.getTunnelType();
+            tcpTunnel.getRelay().executeCallback( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    tunnelManager.newSocketTunnelCreated( socketTunnelId, tunnelType );
+                }
+            } );
+        }
     }
 
-    public void run()
+    /**
+     * Registers the remote channel with the selector and starts connecting to the bounce host
+     * 
+     * @param selector
+     * @param bounceAddress
+     * @throws IOException
+     */
+    void open( Selector selector, InetSocketAddress bounceAddress )
+        throws IOException
     {
-        logger.debug( "Starting a socket tunnel for remote host " + remoteSocket.getInetAddress()
-            + " and connecting to bounce host at " + bounceHost + " at port" + bouncePort );
+        logger.debug( "Starting a socket tunnel for remote host " + remoteChannel.socket().getInetAddress()
+            + " and connecting to bounce host at " + bounceAddress );
 
-        try (Socket bounceSocket = new Socket( bounceHost, bouncePort );)
-        {
-            remoteSocket.setTcpNoDelay( true );
-            bounceSocket.setTcpNoDelay( true );
-            // start Stream connectors to deal with forwarding data
-            inConnect = new StreamConnector( remoteSocket.getInputStream(), bounceSocket.getOutputStream(),
-                                             terminationHandler );
-            outConnect = new StreamConnector( bounceSocket.getInputStream(), remoteSocket.getOutputStream(),
-                                              terminationHandler );
+        remoteChannel.configureBlocking( false );
+        remoteChannel.socket().setTcpNoDelay( true );
+        remoteKey = remoteChannel.register( selector, 0, this );
+
+        bounceChannel = SocketChannel.open();
+        bounceChannel.configureBlocking( false );
+        bounceChannel.socket().setTcpNoDelay( true );
+        bounceKey = bounceChannel.register( selector, 0, this );
 
-            threadPool.execute( inConnect );
-            threadPool.execute( outConnect );
+        connected = bounceChannel.connect( bounceAddress );
+        updateInterestOps();
+    }
 
-            // wait till streamConnector notifies
-            synchronized ( terminationHandler )
+    /**
+     * Relays the data that can be read or written without blocking, after one of the channels got ready
+     * 
+     * @param key selection key of the channel that got ready
+     * @return false if the socket tunnel is to be closed
+     * @throws IOException
+     */
+    boolean relay( SelectionKey key )
+        throws IOException
+    {
+        if ( !connected )
+        {
+            if ( key != bounceKey || !key.isConnectable() || !bounceChannel.finishConnect() )
             {
-                this.terminationHandler.wait();
+                return true;
             }
-            remoteSocket.close();
-            logger.debug( "Terminating socket tunnel for SocketTunnelId " + socketTunnelId );
+            connected = true;
+        }
 
+        long bytesRead = read( remoteChannel, remoteToBounce, remoteEndOfStream );
+        if ( bytesRead < 0 )
+        {
+            remoteEndOfStream = true;
         }
-        catch ( Exception e )
+        else
         {
+            bytesFromRemote.addAndGet( bytesRead );
+            tcpTunnel.addBytesFromRemote( bytesRead );
+        }
+        long bytesWritten = write( remoteToBounce, bounceChannel );
 
+        long bytesReadFromBounce = read( bounceChannel, bounceToRemote, bounceEndOfStream );
+        if ( bytesReadFromBounce < 0 )
+        {
+            bounceEndOfStream = true;
         }
-        finally
+        long bytesWrittenToRemote = write( bounceToRemote, remoteChannel );
+        bytesToRemote.addAndGet( bytesWrittenToRemote );
+        tcpTunnel.addBytesToRemote( bytesWrittenToRemote );
+
+        if ( bytesRead > 0 || bytesWritten > 0 || bytesReadFromBounce > 0 || bytesWrittenToRemote > 0 )
+        {
+            lastActivityTime = System.currentTimeMillis();
+        }
+
+        // like the blocking stream connectors, the tunnel ends when either side ends its stream, once the data read
+        // from that side is written to the other
+        if ( ( remoteEndOfStream && remoteToBounce.position() == 0 )
+            || ( bounceEndOfStream && bounceToRemote.position() == 0 ) )
         {
-            if ( tunnelManager != null )
-                tunnelManager.socketTunnelClosed( socketTunnelId );
+            logger.debug( "End of file detected by socket tunnel " + socketTunnelId );
+            return false;
         }
+        updateInterestOps();
+        return true;
     }
 
-    public void stopSocketTunnel()
+    /**
+     * Reads from the channel while the buffer has room
+     * 
+     * @return number of bytes read, -1 at the end of the stream
+     */
+    private static long read( SocketChannel channel, ByteBuffer buffer, boolean endOfStream )
+        throws IOException
     {
-
-        if ( inConnect != null )
-            inConnect.terminateStreamConnector();
-
-        if ( outConnect != null )
-            outConnect.terminateStreamConnector();
-
+        if ( endOfStream || !buffer.hasRemaining() )
+        {
+            return 0;
+        }
+        return channel.read( buffer );
     }
 
     /**
-     * Forwards all the content on the inputStream to the outputStream
+     * Writes the data in the buffer to the channel, as much as it takes without blocking
      * 
-     * @author tpanse
+     * @return number of bytes written
      */
-    private static class StreamConnector
-        implements Runnable
+    private static long write( ByteBuffer buffer, SocketChannel channel )
+        throws IOException
     {
-        private InputStream inStream;
-
-        private OutputStream outStream;
-
-        private Object socketTunnelTerminationHandler;
-
-        final static int bufferSize = 65536;
-
-        private boolean serviceStatus;
+        if ( buffer.position() == 0 )
+        {
+            return 0;
+        }
+        buffer.flip();
+        try
+        {
+            return channel.write( buffer );
+        }
+        finally
+        {
+            buffer.compact();
+        }
+    }
 
-        public StreamConnector( InputStream in, OutputStream out, Object socketTunnelTerminationHandler )
+    /**
+     * A channel is read while the buffer it fills has room, and written while the buffer it drains has data
+     */
+    private void updateInterestOps()
+    {
+        if ( !connected )
         {
-            this.inStream = in;
-            this.outStream = out;
-            this.socketTunnelTerminationHandler = socketTunnelTerminationHandler;
-            this.serviceStatus = true;
+            remoteKey.interestOps( 0 );
+            bounceKey.interestOps( SelectionKey.OP_CONNECT );
+            return;
         }
+        remoteKey.interestOps( getInterestOps( remoteToBounce, remoteEndOfStream, bounceToRemote ) );
+        bounceKey.interestOps( getInterestOps( bounceToRemote, bounceEndOfStream, remoteToBounce ) );
+    }
 
-        public void terminateStreamConnector()
+    private static int getInterestOps( ByteBuffer readBuffer, boolean endOfStream, ByteBuffer writeBuffer )
+    {
+        int interestOps = 0;
+        if ( !endOfStream && readBuffer.hasRemaining() )
+        {
+            interestOps |= SelectionKey.OP_READ;
+        }
+        if ( writeBuffer.position() > 0 )
         {
+            interestOps |= SelectionKey.OP_WRITE;
+        }
+        return interestOps;
+    }
 
-            try
-            {
-                inStream.close();
-            }
-            catch ( IOException e )
-            {
-                logger.debug( "exception caught which closing inputStream ", e );
-            }
-            try
-            {
-                outStream.close();
-            }
-            catch ( IOException e )
-            {
-                logger.debug( "exception caught which closing outputStream ", e );
-            }
+    /**
+     * @param now
+     * @param idleTimeout
+     * @param connectTimeout
+     * @return whether the socket tunnel did not connect to the bounce host in time, or did not relay any data for the
+     *         idle timeout
+     */
+    boolean isTimedOut( long now, long idleTimeout, long connectTimeout )
+    {
+        if ( !connected )
+        {
+            return now - createTime > connectTimeout;
         }
+        return idleTimeout > 0 && now - lastActivityTime > idleTimeout;
+    }
 
-        public void run()
+    /**
+     * Closes both channels, called by the tunnel relay only
+     */
+    void close()
+    {
+        if ( closed )
+        {
+            return;
+        }
+        closed = true;
+        TunnelRelay.closeQuietly( remoteChannel );
+        TunnelRelay.closeQuietly( bounceChannel );
+        logger.debug( "Terminating socket tunnel for SocketTunnelId " + socketTunnelId + " after relaying "
+            + bytesFromRemote.get() + " bytes from and " + bytesToRemote.get() + " bytes to the remote host" );
+        if ( tunnelManager != null )
         {
-            logger.debug( "starting a stream connector" );
-            byte[] buffer = new byte[bufferSize];
-            try
+            tcpTunnel.getRelay().executeCallback( new Runnable()
             {
-                while ( serviceStatus )
+                @Override
+                public void run()
                 {
-                    int size = Math.max( 1, Math.min( inStream.available(), buffer.length ) );
-                    size = inStream.read( buffer, 0, size );
-                    if ( size != -1 )
-                    {
-                        try
-                        {
-                            outStream.write( buffer, 0, size );
-                            outStream.flush();
-                        }
-                        catch ( SocketException se )
-                        {
-                            logger.debug( "bounce host has closed the socket. Closing stream connector" );
-                            break;
-                        }
-
-                    }
-                    else
-                    {
-                        logger.debug( "End of file detected by stream connector" );
-                        break;
-                    }
-
+                    tunnelManager.socketTunnelClosed( socketTunnelId );
                 }
-            }
-            catch ( IOException e )
-            {
-                logger.debug( "thread is blocked on IO operation and socket is closed", e );
-            }
-            finally
-            {
-                serviceStatus = false;
-                terminateSocketTunnel();
-                logger.debug( "Exiting stream connector" );
-            }
-
+            } );
         }
+    }
 
-        /**
-         * Responsible for releasing socketTunnel if it is waiting
-         */
-        public void terminateSocketTunnel()
-        {
-            synchronized ( socketTunnelTerminationHandler )
-            {
-                socketTunnelTerminationHandler.notify();
-            }
-        }
+    public void stopSocketTunnel()
+    {
+        tcpTunnel.getRelay().close( this );
+    }
+
+    public UUID getSocketTunnelId()
+    {
+        return socketTunnelId;
+    }
+
+    public TCPTunnel getTcpTunnel()
+    {
+        return tcpTunnel;
+    }
 
+    /**
+     * @return number of bytes read from the remote host
+     */
+    public long getBytesFromRemote()
+    {
+        return bytesFromRemote.get();
     }
 
+    /**
+     * @return number of bytes written to the remote host
+     */
+    public long getBytesToRemote()
+    {
+        return bytesToRemote.get();
+    }
 }
@@ -16,26 +16,26 @@
 package com.vmware.vrack.hms.common.tcptunnel;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.net.SocketException;
-import java.net.SocketTimeoutException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 
 import com.vmware.vrack.hms.common.boardvendorservice.remoteconsole.kvm.jnlpconsole.JnlpPortType;
 import com.vmware.vrack.hms.common.boardvendorservice.remoteconsole.tcptunnel.management.JnlpTunnelManager;
-import com.vmware.vrack.hms.common.boardvendorservice.remoteconsole.tcptunnel.management.TunnelThreadPool;
 
 /**
- * This is the TCPTunnel thread. Responsible for starting a local service which listens on a local port. When a
- * connection is made to this service, it connects to the a service on the given host,port and is concerned with
- * forwarding data from the remote host to the bounce host and vice versa
+ * This is the TCPTunnel. Responsible for starting a local service which listens on a local port. When a connection is
+ * made to this service, a {@link SocketTunnel} connects it to the service on the given host,port and forwards data
+ * from the remote host to the bounce host and vice versa. Connections are accepted and relayed by the
+ * {@link TunnelRelay}, shared by all the tunnels.
  * 
  * @author VMware, Inc.
  */
 public class TCPTunnel
-    implements Runnable
 {
     private static Logger logger = Logger.getLogger( TCPTunnel.class );
 
@@ -45,82 +45,100 @@ public class TCPTunnel
 
     private Integer port;
 
-    private ServerSocket listener;
+    private final InetSocketAddress bounceAddress;
+
+    private final ServerSocketChannel listener;
 
     private final Running running = new Running();
 
     private JnlpTunnelManager tunnelManager;
 
-    private TunnelThreadPool threadPool;
-
     private JnlpPortType tunnelType;
 
-    public TCPTunnel( String host, Integer port, JnlpTunnelManager manager, TunnelThreadPool threadPool,
-                      JnlpPortType tunnelType, Integer tunnelServiceWaitTimeInMilliSec )
+    private final TunnelRelay relay;
+
+    /**
+     * Time to wait for a connection before alerting the {@link JnlpTunnelManager}, 0 to wait forever
+     */
+    private volatile int tunnelServiceTimeout;
+
+    /**
+     * Accessed by the tunnel relay thread only
+     */
+    private long nextTimeOutAlertTime;
+
+    /**
+     * Socket tunnels of the connections accepted by this tunnel, accessed by the tunnel relay thread only
+     */
+    private final Set<SocketTunnel> socketTunnels = new HashSet<SocketTunnel>();
+
+    private final AtomicLong bytesFromRemote = new AtomicLong();
+
+    private final AtomicLong bytesToRemote = new AtomicLong();
+
+    public TCPTunnel( String host, Integer port, JnlpTunnelManager manager, JnlpPortType tunnelType,
+                      Integer tunnelServiceWaitTimeInMilliSec )
         throws IOException
     {
         this.running.setRunning( false );
         this.host = host;
         this.port = port;
-        listener = new ServerSocket( 0 );
+        this.bounceAddress = new InetSocketAddress( host, port );
+        this.relay = TunnelRelay.getInstance();
+        listener = ServerSocketChannel.open();
+        listener.socket().bind( new InetSocketAddress( 0 ) );
+        listener.configureBlocking( false );
         // localport where the service is listening
-        this.localPort = listener.getLocalPort();
+        this.localPort = listener.socket().getLocalPort();
         // by default, we make the service to wait for connections for 30 sec.
         // if a connection is not made till this time, the video tunnel will
         // close down, and will close all the secondary tunnels
-        this.listener.setSoTimeout( tunnelServiceWaitTimeInMilliSec );
+        this.tunnelServiceTimeout = tunnelServiceWaitTimeInMilliSec;
         this.tunnelManager = manager;
         this.tunnelType = tunnelType;
-        this.threadPool = threadPool;
     }
 
-    public void run()
+    /**
+     * Starts accepting connections on the tunnel relay
+     */
+    public void start()
     {
-        try
-        {
-            this.running.setRunning( true );
-            // System.out.println("TCP tunnel is starting on port "+localPort+" and will connect to "+host+" at port
-            // "+port);
-            logger.debug( "TCP tunnel is starting on port " + localPort + " and will connect to " + host + " at port "
-                + port );
-            while ( this.running.isRunning() )
-            {
-                Socket listenerSocket;
-                try
-                {
-                    listenerSocket = listener.accept();
-                }
-                catch ( SocketTimeoutException e )
-                {
-                    if ( tunnelManager != null )
-                        tunnelManager.tunnelConnectionTimeOutAlert( tunnelType );
-                    continue;
-                }
-                threadPool.execute( new SocketTunnel( listenerSocket, host, port, threadPool, tunnelManager,
-                                                      tunnelType ) );
-            }
+        this.running.setRunning( true );
+        logger.debug( "TCP tunnel is starting on port " + localPort + " and will connect to " + host + " at port "
+            + port );
+        relay.register( this );
+    }
 
-        }
-        catch ( SocketException e )
-        {
-            logger.debug( "TCPTunnel Listener asked to close down when blocked on listening at port " + localPort, e );
-        }
-        catch ( Exception e )
-        {
-            logger.warn( "Exception in TCP tunnel listening at local port" + localPort, e );
+    public void setTunnelServiceTimeOut( int timeOut )
+    {
+        this.tunnelServiceTimeout = timeOut;
+    }
 
-        }
+    void resetTimeOutAlert( long now )
+    {
+        nextTimeOutAlertTime = now + tunnelServiceTimeout;
     }
 
-    public void setTunnelServiceTimeOut( int timeOut )
+    boolean isTimeOutAlertDue( long now )
     {
-        try
-        {
-            this.listener.setSoTimeout( timeOut );
-        }
-        catch ( SocketException e )
+        return tunnelServiceTimeout > 0 && now >= nextTimeOutAlertTime;
+    }
+
+    /**
+     * Called by the tunnel relay when no connection was accepted within the tunnel service timeout
+     */
+    void timeOutAlert()
+    {
+        if ( tunnelManager != null )
         {
-            logger.warn( "Could not set Service timeout for the TCPtunnel listening at " + localPort, e );
+            relay.executeCallback( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    tunnelManager.tunnelConnectionTimeOutAlert( tunnelType );
+                }
+            } );
         }
     }
 
@@ -147,18 +165,70 @@ public class TCPTunnel
         this.localPort = localPort;
     }
 
+    public JnlpPortType getTunnelType()
+    {
+        return tunnelType;
+    }
+
+    /**
+     * @return number of bytes read from the remote hosts by all the socket tunnels of this tunnel
+     */
+    public long getBytesFromRemote()
+    {
+        return bytesFromRemote.get();
+    }
+
+    /**
+     * @return number of bytes written to the remote hosts by all the socket tunnels of this tunnel
+     */
+    public long getBytesToRemote()
+    {
+        return bytesToRemote.get();
+    }
+
+    void addBytesFromRemote( long bytes )
+    {
+        bytesFromRemote.addAndGet( bytes );
+    }
+
+    void addBytesToRemote( long bytes )
+    {
+        bytesToRemote.addAndGet( bytes );
+    }
+
+    ServerSocketChannel getListener()
+    {
+        return listener;
+    }
+
+    InetSocketAddress getBounceAddress()
+    {
+        return bounceAddress;
+    }
+
+    JnlpTunnelManager getTunnelManager()
+    {
+        return tunnelManager;
+    }
+
+    TunnelRelay getRelay()
+    {
+        return relay;
+    }
+
+    Set<SocketTunnel> getSocketTunnels()
+    {
+        return socketTunnels;
+    }
+
+    /**
+     * Stops listening and closes the socket tunnels of the connections accepted by this tunnel
+     */
     public void stopTunnel()
     {
         setRunning( false );
-        try
-        {
-            listener.close();
-        }
-        catch ( IOException e )
-        {
-            logger.debug( "Thread was blocked, listening on " + localPort, e );
-        }
+        relay.close( this );
         logger.debug( "Shutting down TCPTunnel of type " + tunnelType );
     }
 
-}
\ No newline at end of file
+}
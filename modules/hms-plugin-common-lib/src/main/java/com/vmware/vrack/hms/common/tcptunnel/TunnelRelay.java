@@ -0,0 +1,362 @@
+/* ********************************************************************************
+ * TunnelRelay.java
+ * 
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.tcptunnel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+
+import com.vmware.vrack.hms.common.boardvendorservice.remoteconsole.tcptunnel.management.JnlpTunnelManager;
+
+/**
+ * Accepts the connections of all the {@link TCPTunnel}'s and relays the data of all their {@link SocketTunnel}'s on a
+ * single thread, using non-blocking channels registered with one selector. Remote console sessions thus do not cost a
+ * thread each. The channels and the tunnels are only accessed by the relay thread, other threads queue their requests
+ * to it. The callbacks to the {@link JnlpTunnelManager}'s, which are synchronized, are run on a separate thread, so
+ * that waiting for the lock of one manager does not hold up the consoles of all the nodes.
+ * 
+ * @author VMware, Inc.
+ */
+public class TunnelRelay
+    implements Runnable
+{
+    private static Logger logger = Logger.getLogger( TunnelRelay.class );
+
+    /**
+     * Interval at which the timeouts of the tunnels are checked
+     */
+    private static final long TIMEOUT_CHECK_INTERVAL = 1000;
+
+    private static TunnelRelay instance;
+
+    private final Selector selector;
+
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<Runnable>();
+
+    private final Set<TCPTunnel> tunnels = new HashSet<TCPTunnel>();
+
+    private final Set<SocketTunnel> socketTunnels = new HashSet<SocketTunnel>();
+
+    /**
+     * Runs the callbacks to the tunnel managers, one at a time in the order they were made
+     */
+    private final ExecutorService callbackExecutor = Executors.newSingleThreadExecutor( new ThreadFactory()
+    {
+        @Override
+        public Thread newThread( Runnable runnable )
+        {
+            Thread thread = new Thread( runnable, "tunnel-relay-callbacks" );
+            thread.setDaemon( true );
+            return thread;
+        }
+    } );
+
+    /**
+     * A socket tunnel which has not relayed any data for this long is closed, 0 to never close idle socket tunnels
+     */
+    private volatile long idleTimeout = 30 * 60 * 1000;
+
+    /**
+     * A socket tunnel which could not connect to the bounce host within this time is closed
+     */
+    private volatile long connectTimeout = 30 * 1000;
+
+    private long nextTimeoutCheckTime;
+
+    private TunnelRelay()
+        throws IOException
+    {
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Gets the tunnel relay, starting its thread on first use
+     * 
+     * @return the tunnel relay
+     * @throws IOException if the selector could not be opened
+     */
+    public static synchronized TunnelRelay getInstance()
+        throws IOException
+    {
+        if ( instance == null )
+        {
+            TunnelRelay relay = new TunnelRelay();
+            Thread relayThread = new Thread( relay, "tunnel-relay" );
+            relayThread.setDaemon( true );
+            relayThread.start();
+            instance = relay;
+        }
+        return instance;
+    }
+
+    public long getIdleTimeout()
+    {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout( long idleTimeout )
+    {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public void setConnectTimeout( long connectTimeout )
+    {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Starts accepting the connections of the tunnel
+     * 
+     * @param tunnel
+     */
+    void register( final TCPTunnel tunnel )
+    {
+        execute( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    tunnel.getListener().register( selector, SelectionKey.OP_ACCEPT, tunnel );
+                    tunnel.resetTimeOutAlert( System.currentTimeMillis() );
+                    tunnels.add( tunnel );
+                }
+                catch ( ClosedChannelException e )
+                {
+                    logger.debug( "TCPTunnel listening at " + tunnel.getLocalPort() + " was closed before it started" );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Stops accepting the connections of the tunnel and closes all its socket tunnels
+     * 
+     * @param tunnel
+     */
+    void close( final TCPTunnel tunnel )
+    {
+        execute( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                tunnels.remove( tunnel );
+                closeQuietly( tunnel.getListener() );
+                for ( SocketTunnel socketTunnel : new ArrayList<SocketTunnel>( tunnel.getSocketTunnels() ) )
+                {
+                    closeSocketTunnel( socketTunnel );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Closes the socket tunnel
+     * 
+     * @param socketTunnel
+     */
+    void close( final SocketTunnel socketTunnel )
+    {
+        execute( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                closeSocketTunnel( socketTunnel );
+            }
+        } );
+    }
+
+    private void execute( Runnable task )
+    {
+        pendingTasks.add( task );
+        selector.wakeup();
+    }
+
+    /**
+     * Runs a callback to a tunnel manager off the relay thread
+     * 
+     * @param callback
+     */
+    void executeCallback( Runnable callback )
+    {
+        callbackExecutor.execute( callback );
+    }
+
+    @Override
+    public void run()
+    {
+        logger.debug( "Tunnel relay started" );
+        while ( true )
+        {
+            try
+            {
+                selector.select( TIMEOUT_CHECK_INTERVAL );
+                runPendingTasks();
+
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while ( selectedKeys.hasNext() )
+                {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    if ( !key.isValid() )
+                    {
+                        continue;
+                    }
+                    if ( key.attachment() instanceof TCPTunnel )
+                    {
+                        accept( (TCPTunnel) key.attachment() );
+                    }
+                    else
+                    {
+                        relay( key, (SocketTunnel) key.attachment() );
+                    }
+                }
+
+                checkTimeouts();
+            }
+            catch ( Exception e )
+            {
+                logger.error( "Unexpected error in the tunnel relay", e );
+            }
+        }
+    }
+
+    private void runPendingTasks()
+    {
+        Runnable task;
+        while ( ( task = pendingTasks.poll() ) != null )
+        {
+            task.run();
+        }
+    }
+
+    private void accept( TCPTunnel tunnel )
+    {
+        SocketChannel remoteChannel;
+        try
+        {
+            remoteChannel = tunnel.getListener().accept();
+        }
+        catch ( IOException e )
+        {
+            logger.warn( "Exception in TCP tunnel listening at local port " + tunnel.getLocalPort(), e );
+            return;
+        }
+        if ( remoteChannel == null )
+        {
+            return;
+        }
+        tunnel.resetTimeOutAlert( System.currentTimeMillis() );
+
+        SocketTunnel socketTunnel = new SocketTunnel( remoteChannel, tunnel );
+        socketTunnels.add( socketTunnel );
+        tunnel.getSocketTunnels().add( socketTunnel );
+        try
+        {
+            socketTunnel.open( selector, tunnel.getBounceAddress() );
+        }
+        catch ( IOException e )
+        {
+            logger.debug( "Could not connect to bounce host at " + tunnel.getBounceAddress(), e );
+            closeSocketTunnel( socketTunnel );
+        }
+    }
+
+    private void relay( SelectionKey key, SocketTunnel socketTunnel )
+    {
+        try
+        {
+            if ( !socketTunnel.relay( key ) )
+            {
+                closeSocketTunnel( socketTunnel );
+            }
+        }
+        catch ( IOException | CancelledKeyException e )
+        {
+            logger.debug( "Closing socket tunnel " + socketTunnel.getSocketTunnelId() + " on error", e );
+            closeSocketTunnel( socketTunnel );
+        }
+    }
+
+    private void checkTimeouts()
+    {
+        long now = System.currentTimeMillis();
+        if ( now < nextTimeoutCheckTime )
+        {
+            return;
+        }
+        nextTimeoutCheckTime = now + TIMEOUT_CHECK_INTERVAL;
+
+        for ( TCPTunnel tunnel : new ArrayList<TCPTunnel>( tunnels ) )
+        {
+            if ( tunnel.isTimeOutAlertDue( now ) )
+            {
+                tunnel.resetTimeOutAlert( now );
+                tunnel.timeOutAlert();
+            }
+        }
+        for ( SocketTunnel socketTunnel : new ArrayList<SocketTunnel>( socketTunnels ) )
+        {
+            if ( socketTunnel.isTimedOut( now, idleTimeout, connectTimeout ) )
+            {
+                logger.debug( "Closing socket tunnel " + socketTunnel.getSocketTunnelId() + " on timeout" );
+                closeSocketTunnel( socketTunnel );
+            }
+        }
+    }
+
+    private void closeSocketTunnel( SocketTunnel socketTunnel )
+    {
+        if ( socketTunnels.remove( socketTunnel ) )
+        {
+            socketTunnel.getTcpTunnel().getSocketTunnels().remove( socketTunnel );
+            socketTunnel.close();
+        }
+    }
+
+    static void closeQuietly( Closeable channel )
+    {
+        if ( channel != null )
+        {
+            try
+            {
+                channel.close();
+            }
+            catch ( IOException e )
+            {
+                logger.debug( "Exception while closing channel", e );
+            }
+        }
+    }
+}
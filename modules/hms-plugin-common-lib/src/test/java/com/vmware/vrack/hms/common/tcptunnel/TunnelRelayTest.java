@@ -0,0 +1,352 @@
+/* ********************************************************************************
+ * TunnelRelayTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.tcptunnel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.vrack.hms.common.boardvendorservice.remoteconsole.kvm.jnlpconsole.JnlpBoardPortInfo;
+import com.vmware.vrack.hms.common.boardvendorservice.remoteconsole.kvm.jnlpconsole.JnlpPortType;
+import com.vmware.vrack.hms.common.boardvendorservice.remoteconsole.tcptunnel.management.JnlpTunnelManager;
+
+/**
+ * Relays data over loopback connections, between a client connecting to a {@link TCPTunnel} and a bounce server the
+ * tunnel connects to.
+ */
+public class TunnelRelayTest
+{
+    private static final String LOOPBACK = "127.0.0.1";
+
+    private static final int READ_TIMEOUT = 5000;
+
+    private ServerSocket bounceServer;
+
+    private final List<TCPTunnel> tunnels = new ArrayList<TCPTunnel>();
+
+    private final List<Socket> sockets = new ArrayList<Socket>();
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        bounceServer = new ServerSocket();
+        // small buffers on the peers, so that a peer not reading is soon felt by the relay
+        bounceServer.setReceiveBufferSize( 65536 );
+        bounceServer.bind( new InetSocketAddress( LOOPBACK, 0 ) );
+        bounceServer.setSoTimeout( READ_TIMEOUT );
+    }
+
+    @After
+    public void tearDown()
+        throws Exception
+    {
+        for ( Socket socket : sockets )
+        {
+            socket.close();
+        }
+        for ( TCPTunnel tunnel : tunnels )
+        {
+            tunnel.stopTunnel();
+        }
+        bounceServer.close();
+    }
+
+    @Test
+    public void testRelayBothDirections()
+        throws Exception
+    {
+        TCPTunnel tunnel = startTunnel( 60000 );
+        Socket client = connect( tunnel.getLocalPort() );
+        Socket bounce = accept();
+
+        write( client, "from the client" );
+        assertEquals( "from the client", read( bounce, 15 ) );
+        write( bounce, "from the bounce host" );
+        assertEquals( "from the bounce host", read( client, 20 ) );
+
+        // the counters are updated by the relay thread once the data is written
+        waitFor( tunnel, 15, 20 );
+        assertEquals( 15, tunnel.getBytesFromRemote() );
+        assertEquals( 20, tunnel.getBytesToRemote() );
+    }
+
+    @Test
+    public void testBackPressure()
+        throws Exception
+    {
+        TCPTunnel tunnel = startTunnel( 60000 );
+        final Socket client = connect( tunnel.getLocalPort() );
+        Socket bounce = accept();
+
+        final byte[] chunk = new byte[65536];
+        for ( int i = 0; i < chunk.length; i++ )
+        {
+            chunk[i] = (byte) i;
+        }
+        final int chunks = 512;
+        final List<IOException> errors = Collections.synchronizedList( new ArrayList<IOException>() );
+        Thread writer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    OutputStream out = client.getOutputStream();
+                    for ( int i = 0; i < chunks; i++ )
+                    {
+                        out.write( chunk );
+                    }
+                    out.flush();
+                }
+                catch ( IOException e )
+                {
+                    errors.add( e );
+                }
+            }
+        };
+        writer.setDaemon( true );
+        writer.start();
+
+        // the bounce host does not read, the relay stops reading from the client which blocks writing
+        writer.join( 1000 );
+        assertTrue( writer.isAlive() );
+        long relayed = tunnel.getBytesFromRemote();
+        assertTrue( relayed < (long) chunks * chunk.length );
+        Thread.sleep( 200 );
+        assertEquals( relayed, tunnel.getBytesFromRemote() );
+
+        // all the data makes it through once the bounce host reads
+        DataInputStream in = new DataInputStream( bounce.getInputStream() );
+        byte[] received = new byte[chunk.length];
+        for ( int i = 0; i < chunks; i++ )
+        {
+            in.readFully( received );
+            assertArrayEquals( chunk, received );
+        }
+        writer.join( READ_TIMEOUT );
+        assertFalse( writer.isAlive() );
+        assertTrue( errors.isEmpty() );
+        assertEquals( (long) chunks * chunk.length, tunnel.getBytesFromRemote() );
+    }
+
+    @Test
+    public void testEndOfStreamFromClient()
+        throws Exception
+    {
+        TCPTunnel tunnel = startTunnel( 60000 );
+        Socket client = connect( tunnel.getLocalPort() );
+        Socket bounce = accept();
+
+        write( client, "last words" );
+        client.shutdownOutput();
+
+        // the data sent before the end of stream is flushed before the tunnel closes
+        assertEquals( "last words", read( bounce, 10 ) );
+        assertEquals( -1, bounce.getInputStream().read() );
+        assertEquals( -1, client.getInputStream().read() );
+    }
+
+    @Test
+    public void testEndOfStreamFromBounceHost()
+        throws Exception
+    {
+        TCPTunnel tunnel = startTunnel( 60000 );
+        Socket client = connect( tunnel.getLocalPort() );
+        Socket bounce = accept();
+
+        write( bounce, "last words" );
+        bounce.shutdownOutput();
+
+        assertEquals( "last words", read( client, 10 ) );
+        assertEquals( -1, client.getInputStream().read() );
+        assertEquals( -1, bounce.getInputStream().read() );
+    }
+
+    @Test
+    public void testIdleTimeout()
+        throws Exception
+    {
+        TunnelRelay relay = TunnelRelay.getInstance();
+        long idleTimeout = relay.getIdleTimeout();
+        relay.setIdleTimeout( 1000 );
+        try
+        {
+            TCPTunnel tunnel = startTunnel( 60000 );
+            Socket client = connect( tunnel.getLocalPort() );
+            Socket bounce = accept();
+            write( client, "ping" );
+            assertEquals( "ping", read( bounce, 4 ) );
+
+            long start = System.currentTimeMillis();
+            assertEquals( -1, client.getInputStream().read() );
+            assertTrue( System.currentTimeMillis() - start >= 900 );
+            assertEquals( -1, bounce.getInputStream().read() );
+        }
+        finally
+        {
+            relay.setIdleTimeout( idleTimeout );
+        }
+    }
+
+    @Test
+    public void testTunnelServiceTimeout()
+        throws Exception
+    {
+        TCPTunnel tunnel = new TCPTunnel( LOOPBACK, bounceServer.getLocalPort(), null, JnlpPortType.VIDEOPORT, 1000 );
+        tunnels.add( tunnel );
+        tunnel.resetTimeOutAlert( 0 );
+        assertFalse( tunnel.isTimeOutAlertDue( 999 ) );
+        assertTrue( tunnel.isTimeOutAlertDue( 1000 ) );
+
+        // 0 waits for a connection forever
+        tunnel.setTunnelServiceTimeOut( 0 );
+        tunnel.resetTimeOutAlert( 0 );
+        assertFalse( tunnel.isTimeOutAlertDue( Long.MAX_VALUE ) );
+    }
+
+    @Test
+    public void testTimeOutAlertShutsDownTunnelService()
+        throws Exception
+    {
+        String nodeId = "tunnel-relay-test-timeout";
+        JnlpTunnelManager.startTunnelService( nodeId, LOOPBACK, getBouncePorts(), 500 );
+
+        long deadline = System.currentTimeMillis() + READ_TIMEOUT;
+        while ( JnlpTunnelManager.getJnlpTunnelManagerInstance( nodeId ) != null
+            && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 50 );
+        }
+        assertNull( JnlpTunnelManager.getJnlpTunnelManagerInstance( nodeId ) );
+    }
+
+    @Test
+    public void testRelayNotHeldUpByTunnelManager()
+        throws Exception
+    {
+        String nodeId = "tunnel-relay-test-callbacks";
+        List<JnlpBoardPortInfo> localPorts =
+            JnlpTunnelManager.startTunnelService( nodeId, LOOPBACK, getBouncePorts(), 60000 );
+        JnlpTunnelManager manager = JnlpTunnelManager.getJnlpTunnelManagerInstance( nodeId );
+        try
+        {
+            // the relay keeps running while the manager is locked, its callbacks wait
+            synchronized ( manager )
+            {
+                Socket client = connect( localPorts.get( 0 ).getPortOpened() );
+                Socket bounce = accept();
+                write( client, "locked" );
+                assertEquals( "locked", read( bounce, 6 ) );
+            }
+
+            long deadline = System.currentTimeMillis() + READ_TIMEOUT;
+            while ( manager.getVideoSocketTunnelIds().isEmpty() && System.currentTimeMillis() < deadline )
+            {
+                Thread.sleep( 50 );
+            }
+            assertEquals( 1, manager.getVideoSocketTunnelIds().size() );
+        }
+        finally
+        {
+            manager.getThreadPool().shutDown();
+        }
+    }
+
+    private TCPTunnel startTunnel( int tunnelServiceTimeout )
+        throws IOException
+    {
+        TCPTunnel tunnel = new TCPTunnel( LOOPBACK, bounceServer.getLocalPort(), null, JnlpPortType.VIDEOPORT,
+                                          tunnelServiceTimeout );
+        tunnels.add( tunnel );
+        tunnel.start();
+        return tunnel;
+    }
+
+    private List<JnlpBoardPortInfo> getBouncePorts()
+    {
+        JnlpBoardPortInfo portInfo = new JnlpBoardPortInfo();
+        portInfo.setPortType( JnlpPortType.VIDEOPORT );
+        portInfo.setPortOpened( bounceServer.getLocalPort() );
+        return Collections.singletonList( portInfo );
+    }
+
+    private Socket connect( int port )
+        throws IOException
+    {
+        Socket socket = new Socket();
+        sockets.add( socket );
+        socket.setSendBufferSize( 65536 );
+        socket.setSoTimeout( READ_TIMEOUT );
+        socket.connect( new InetSocketAddress( LOOPBACK, port ), READ_TIMEOUT );
+        return socket;
+    }
+
+    private Socket accept()
+        throws IOException
+    {
+        Socket socket = bounceServer.accept();
+        sockets.add( socket );
+        socket.setSoTimeout( READ_TIMEOUT );
+        return socket;
+    }
+
+    private static void write( Socket socket, String data )
+        throws IOException
+    {
+        OutputStream out = socket.getOutputStream();
+        out.write( data.getBytes( "UTF-8" ) );
+        out.flush();
+    }
+
+    private static String read( Socket socket, int length )
+        throws IOException
+    {
+        InputStream in = socket.getInputStream();
+        byte[] data = new byte[length];
+        new DataInputStream( in ).readFully( data );
+        return new String( data, "UTF-8" );
+    }
+
+    private static void waitFor( TCPTunnel tunnel, long bytesFromRemote, long bytesToRemote )
+        throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + READ_TIMEOUT;
+        while ( ( tunnel.getBytesFromRemote() < bytesFromRemote || tunnel.getBytesToRemote() < bytesToRemote )
+            && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 10 );
+        }
+    }
+}
@@ -1,6 +1,6 @@
 /* ********************************************************************************
  * SshTorSwitchSession.java
- * 
+ *
  * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
 
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
@@ -19,7 +19,21 @@ package com.vmware.vrack.hms.common.switches;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
 
@@ -32,12 +46,68 @@ import com.vmware.vrack.hms.common.switches.api.SwitchSession;
 import com.vmware.vrack.hms.common.util.SshExecResult;
 import com.vmware.vrack.hms.common.util.SshUtil;
 
+/**
+ * SSH session to a switch, backed by a small pool of SSH sessions on which several exec channels are opened
+ * concurrently, so that commands from different callers do not queue behind each other.
+ * <p>
+ * Read-only commands run in parallel, including the ones reading the hardware with sudo. Commands that change the
+ * switch configuration, i.e. the ones running anything else with sudo, interactive commands and uploads, hold the
+ * write lock of the switch, see {@link #getConfigurationLock()}, so they run one at a time and never alongside a read.
+ * Sessions are kept alive by SSH keep-alives, dropped sessions are reconnected in the background, and every command is
+ * bounded by the command timeout.
+ *
+ * @author VMware, Inc.
+ */
 public class SshTorSwitchSession
     implements SwitchSession
 {
 
     private static final int DEFAULT_CONNECTION_TIMEOUT = 20000;
 
+    private static final int DEFAULT_MAX_SESSIONS = 2;
+
+    private static final int DEFAULT_CHANNELS_PER_SESSION = 4;
+
+    private static final long DEFAULT_COMMAND_TIMEOUT = 300000;
+
+    private static final int SERVER_ALIVE_INTERVAL = 15000;
+
+    private static final int SERVER_ALIVE_COUNT_MAX = 3;
+
+    private static final long HEALTH_CHECK_INTERVAL = 30000;
+
+    /** Separators of the simple commands of a shell command line. */
+    private static final Pattern COMMAND_SEPARATOR = Pattern.compile( "[;|&\\n]+" );
+
+    /** Command run by sudo, after the sudo options, e.g. -S or -u root. */
+    private static final Pattern SUDO_COMMAND =
+        Pattern.compile( "\\bsudo(?:\\s+-[A-Za-z]*[ugpCDrtU]\\s+\\S+|\\s+-[A-Za-z]+)*\\s+(.*)" );
+
+    /** Commands run with sudo that only read the switch hardware or settings. */
+    private static final Pattern READ_ONLY_SUDO_COMMAND =
+        Pattern.compile( "(?:\\S*/)?(?:decode-syseeprom(?!.*\\s(?:-s|--set)\\b)|fw_printenv|smonctl|cat|ls|grep|egrep"
+            + "|md5sum)(?:\\s.*)?|(?:\\S*/)?ethtool(?:\\s+-[acgikmPST])?\\s+[\\w.-]+\\s*" );
+
+    public SshTorSwitchSession()
+    {
+        this( DEFAULT_MAX_SESSIONS, DEFAULT_CHANNELS_PER_SESSION );
+    }
+
+    /**
+     * @param maxSessions maximum number of SSH sessions opened to the switch
+     * @param channelsPerSession maximum number of concurrent exec/sftp channels per SSH session
+     */
+    public SshTorSwitchSession( int maxSessions, int channelsPerSession )
+    {
+        this.sessions = new PooledSession[Math.max( 1, maxSessions )];
+        for ( int i = 0; i < sessions.length; i++ )
+        {
+            sessions[i] = new PooledSession();
+        }
+        this.channelsPerSession = Math.max( 1, channelsPerSession );
+        this.channelPermits = new Semaphore( sessions.length * this.channelsPerSession, true );
+    }
+
     @Override
     public void setSwitchNode( SwitchNode switchNode )
     {
@@ -51,72 +121,55 @@ public class SshTorSwitchSession
     }
 
     @Override
-    public synchronized void connect()
+    public void connect()
         throws HmsException
     {
         connect( DEFAULT_CONNECTION_TIMEOUT );
     }
 
+    /**
+     * Opens the first SSH session of the pool, further sessions are opened on demand when commands run concurrently.
+     */
     @Override
     public synchronized void connect( int timeout )
         throws HmsException
     {
-        // Clean up existing stale session, if any
-        if ( sshSession != null )
-        {
-            if ( sshSession.isConnected() )
-            {
-                return;
-            }
-            else
-            {
-                sshSession.disconnect();
-            }
-        }
+        connectionTimeout = timeout;
+        closed = false;
 
-        Properties config = new Properties();
-        config.put( "StrictHostKeyChecking", "no" );
-
-        String protocol = switchNode.getProtocol();
-        String username = switchNode.getUsername();
-        String password = switchNode.getPassword();
-        String ipAddress = switchNode.getIpAddress();
-        int port = ( switchNode.getPort() != null ) ? switchNode.getPort().intValue() : 22;
-
-        try
+        if ( !isConnected() )
         {
-            sshSession = SshUtil.getSessionObject( username, password, ipAddress, port, config );
-            sshSession.setDaemonThread( true );
-            sshSession.setTimeout( timeout );
-
-            logger.debug( "Connecting with timeout set to " + timeout + " milliseconds." );
-            sshSession.connect();
-        }
-        catch ( JSchException je )
-        {
-            logger.error( "Received exception connecting to switch " + switchNode.getSwitchId() + " at " + protocol
-                + "://" + ipAddress + ":" + port, je );
-            disconnect();
-            throw new HmsException( String.format( "Unable to connect to %s:%d over %s. Reason: %s", ipAddress, port,
-                                                   protocol, je.getMessage() ) );
+            openSession( sessions[0] );
         }
+        scheduleHealthCheck();
     }
 
     @Override
-    public synchronized boolean isConnected()
+    public boolean isConnected()
     {
-        return ( sshSession != null && sshSession.isConnected() );
+        for ( PooledSession pooledSession : sessions )
+        {
+            if ( pooledSession.isConnected() )
+            {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
-    public synchronized String execute( String command )
+    public String execute( String command )
         throws HmsException
     {
         String trimmedResult = null;
 
+        Lock lock = getCommandLock( command );
+        lock.lock();
+        PooledSession pooledSession = null;
         try
         {
-            String result = SshUtil.executeCommand( sshSession, command );
+            pooledSession = leaseSession();
+            String result = SshUtil.executeCommand( pooledSession.session, command, commandTimeout );
             if ( result != null )
             {
                 trimmedResult = result.trim();
@@ -124,35 +177,55 @@ public class SshTorSwitchSession
         }
         catch ( IOException | JSchException e )
         {
-            throw new HmsException( "Received exception while executing SSH command " + command, e );
+            throw new HmsException( "Received exception while executing SSH command "
+                + SshUtil.maskedPasswordString( command ), e );
+        }
+        finally
+        {
+            releaseSession( pooledSession );
+            lock.unlock();
         }
 
         return trimmedResult;
     }
 
     // No response expected.
-    public synchronized void executeNoResponse( String command )
+    public void executeNoResponse( String command )
         throws HmsException
     {
+        Lock lock = getConfigurationLock();
+        lock.lock();
+        PooledSession pooledSession = null;
         try
         {
-            SshUtil.executeCommandNoResponse( sshSession, command );
+            pooledSession = leaseSession();
+            SshUtil.executeCommandNoResponse( pooledSession.session, command );
         }
         catch ( IOException | JSchException e )
         {
-            throw new HmsException( "Received exception while executing SSH command " + command, e );
+            throw new HmsException( "Received exception while executing SSH command "
+                + SshUtil.maskedPasswordString( command ), e );
+        }
+        finally
+        {
+            releaseSession( pooledSession );
+            lock.unlock();
         }
     }
 
     // this method definition does not come from TorSwitchSession since it is specific for SSH
-    public synchronized String execute( String[] commands )
+    public String execute( String[] commands )
         throws HmsException
     {
         String trimmedResult = null;
 
+        Lock lock = getConfigurationLock();
+        lock.lock();
+        PooledSession pooledSession = null;
         try
         {
-            String result = SshUtil.executeCommand( sshSession, commands );
+            pooledSession = leaseSession();
+            String result = SshUtil.executeCommand( pooledSession.session, commands );
             if ( result != null )
             {
                 trimmedResult = result.trim();
@@ -160,53 +233,88 @@ public class SshTorSwitchSession
         }
         catch ( IOException | JSchException e )
         {
-            throw new HmsException( "Received exception while executing SSH commands " + commands, e );
+            throw new HmsException( "Received exception while executing SSH commands " + Arrays.toString( commands ),
+                                    e );
+        }
+        finally
+        {
+            releaseSession( pooledSession );
+            lock.unlock();
         }
 
         return trimmedResult;
     }
 
-    public synchronized SshExecResult executeEnhanced( String command )
+    public SshExecResult executeEnhanced( String command )
         throws HmsException
     {
-        SshExecResult result = SshUtil.executeCommandEnhanced( sshSession, command );
-        return result;
+        Lock lock = getCommandLock( command );
+        lock.lock();
+        PooledSession pooledSession = null;
+        try
+        {
+            pooledSession = leaseSession();
+            return SshUtil.executeCommandEnhanced( pooledSession.session, command, commandTimeout );
+        }
+        finally
+        {
+            releaseSession( pooledSession );
+            lock.unlock();
+        }
     }
 
     @Override
-    public synchronized boolean upload( InputStream localInputStream, String remoteFilename )
+    public boolean upload( InputStream localInputStream, String remoteFilename )
         throws HmsException
     {
         boolean success = false;
 
+        Lock lock = getConfigurationLock();
+        lock.lock();
+        PooledSession pooledSession = null;
         try
         {
-            SshUtil.upload( sshSession, localInputStream, remoteFilename );
+            pooledSession = leaseSession();
+            SshUtil.upload( pooledSession.session, localInputStream, remoteFilename );
             success = true;
         }
         catch ( JSchException | SftpException e )
         {
             throw new HmsException( "Received exception while uploading file " + remoteFilename, e );
         }
+        finally
+        {
+            releaseSession( pooledSession );
+            lock.unlock();
+        }
 
         return success;
     }
 
     @Override
-    public synchronized boolean download( OutputStream localOutputStream, String remoteFilename )
+    public boolean download( OutputStream localOutputStream, String remoteFilename )
         throws HmsException
     {
         boolean success = false;
 
+        Lock lock = commandLock.readLock();
+        lock.lock();
+        PooledSession pooledSession = null;
         try
         {
-            SshUtil.download( sshSession, localOutputStream, remoteFilename );
+            pooledSession = leaseSession();
+            SshUtil.download( pooledSession.session, localOutputStream, remoteFilename );
             success = true;
         }
         catch ( JSchException | SftpException e )
         {
             throw new HmsException( "Received exception while downloading file " + remoteFilename, e );
         }
+        finally
+        {
+            releaseSession( pooledSession );
+            lock.unlock();
+        }
 
         return success;
     }
@@ -214,13 +322,393 @@ public class SshTorSwitchSession
     @Override
     public synchronized void disconnect()
     {
-        if ( sshSession != null )
-            sshSession.disconnect();
+        closed = true;
+        if ( healthCheckTask != null )
+        {
+            healthCheckTask.cancel( false );
+            healthCheckTask = null;
+        }
+        for ( PooledSession pooledSession : sessions )
+        {
+            pooledSession.disconnect();
+        }
+    }
+
+    /**
+     * Returns the per switch lock held by commands that change the switch configuration. Callers applying a set of
+     * changes that must not interleave with other commands may hold it across the whole set, it is reentrant.
+     *
+     * @return the write lock of the switch
+     */
+    public Lock getConfigurationLock()
+    {
+        return commandLock.writeLock();
+    }
+
+    /**
+     * Sets the time after which a running command is abandoned.
+     *
+     * @param commandTimeout timeout in milliseconds, 0 for no timeout
+     */
+    public void setCommandTimeout( long commandTimeout )
+    {
+        this.commandTimeout = commandTimeout;
+    }
+
+    public long getCommandTimeout()
+    {
+        return commandTimeout;
+    }
+
+    /**
+     * Returns the number of commands currently running on the switch.
+     *
+     * @return number of open channels
+     */
+    public int getActiveChannelCount()
+    {
+        int activeChannels = 0;
+        for ( PooledSession pooledSession : sessions )
+        {
+            activeChannels += pooledSession.activeChannels.get();
+        }
+        return activeChannels;
+    }
+
+    /**
+     * Checks whether the command changes the switch configuration. As all configuration changes on the switch are run
+     * with sudo, a command is treated as such if any of its simple commands runs with sudo something other than a
+     * command known to only read the switch, e.g. decode-syseeprom, fw_printenv or ethtool without settings.
+     *
+     * @param command
+     * @return true if the command must hold the configuration lock
+     */
+    protected static boolean isConfigurationCommand( String command )
+    {
+        if ( command == null )
+        {
+            return true;
+        }
+        for ( String simpleCommand : COMMAND_SEPARATOR.split( command ) )
+        {
+            Matcher matcher = SUDO_COMMAND.matcher( simpleCommand );
+            if ( matcher.find() && !READ_ONLY_SUDO_COMMAND.matcher( matcher.group( 1 ).trim() ).matches() )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Lock getCommandLock( String command )
+    {
+        return isConfigurationCommand( command ) ? commandLock.writeLock() : commandLock.readLock();
+    }
+
+    /**
+     * Leases a connected SSH session with a free channel, preferring the least busy session and opening another one
+     * of the pool only when all the connected sessions are busy.
+     *
+     * @return the leased session, to be released through {@link #releaseSession(PooledSession)}
+     * @throws HmsException if no channel becomes free within the command timeout or no session could be opened
+     */
+    private PooledSession leaseSession()
+        throws HmsException
+    {
+        try
+        {
+            long timeout = ( commandTimeout > 0 ) ? commandTimeout : Long.MAX_VALUE;
+            if ( !channelPermits.tryAcquire( timeout, TimeUnit.MILLISECONDS ) )
+            {
+                throw new HmsException( "Timed out waiting for a free SSH channel to switch " + getSwitchId() );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new HmsException( "Interrupted waiting for a free SSH channel to switch " + getSwitchId(), e );
+        }
+
+        try
+        {
+            return selectSession();
+        }
+        catch ( HmsException | RuntimeException e )
+        {
+            channelPermits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Selects a session and counts a channel on it. A session of the pool is opened outside the monitor, so that the
+     * other callers keep using the connected sessions meanwhile, and waits for the sessions being connected if there
+     * are no other ones.
+     */
+    private PooledSession selectSession()
+        throws HmsException
+    {
+        PooledSession leastBusy;
+        PooledSession unopened;
+        synchronized ( this )
+        {
+            long deadline = System.currentTimeMillis() + connectionTimeout;
+            while ( true )
+            {
+                leastBusy = null;
+                unopened = null;
+                boolean connecting = false;
+                for ( PooledSession pooledSession : sessions )
+                {
+                    if ( pooledSession.connecting )
+                    {
+                        connecting = true;
+                    }
+                    else if ( !pooledSession.isConnected() )
+                    {
+                        if ( unopened == null )
+                        {
+                            unopened = pooledSession;
+                        }
+                    }
+                    else if ( pooledSession.activeChannels.get() < channelsPerSession && ( leastBusy == null
+                        || pooledSession.activeChannels.get() < leastBusy.activeChannels.get() ) )
+                    {
+                        leastBusy = pooledSession;
+                    }
+                }
+
+                if ( leastBusy != null && ( leastBusy.activeChannels.get() == 0 || unopened == null ) )
+                {
+                    leastBusy.activeChannels.incrementAndGet();
+                    return leastBusy;
+                }
+                if ( unopened != null )
+                {
+                    unopened.connecting = true;
+                    break;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if ( !connecting || remaining <= 0 )
+                {
+                    throw new HmsException( "No SSH session available to switch " + getSwitchId() );
+                }
+                try
+                {
+                    wait( remaining );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new HmsException( "Interrupted waiting for an SSH session to switch " + getSwitchId(), e );
+                }
+            }
+        }
+
+        HmsException connectException = null;
+        try
+        {
+            openSession( unopened );
+        }
+        catch ( HmsException e )
+        {
+            connectException = e;
+        }
+        synchronized ( this )
+        {
+            unopened.connecting = false;
+            notifyAll();
+            PooledSession selected = ( connectException == null ) ? unopened : leastBusy;
+            if ( selected == null )
+            {
+                throw connectException;
+            }
+            selected.activeChannels.incrementAndGet();
+            return selected;
+        }
+    }
+
+    private void releaseSession( PooledSession pooledSession )
+    {
+        if ( pooledSession != null )
+        {
+            pooledSession.activeChannels.decrementAndGet();
+            channelPermits.release();
+        }
+    }
+
+    private void openSession( PooledSession pooledSession )
+        throws HmsException
+    {
+        // Clean up existing stale session, if any
+        pooledSession.disconnect();
+
+        Properties config = new Properties();
+        config.put( "StrictHostKeyChecking", "no" );
+
+        String protocol = switchNode.getProtocol();
+        String username = switchNode.getUsername();
+        String password = switchNode.getPassword();
+        String ipAddress = switchNode.getIpAddress();
+        int port = ( switchNode.getPort() != null ) ? switchNode.getPort().intValue() : 22;
+
+        try
+        {
+            Session sshSession = SshUtil.getSessionObject( username, password, ipAddress, port, config );
+            if ( sshSession == null )
+            {
+                throw new JSchException( "Invalid credentials or address of switch" );
+            }
+            sshSession.setDaemonThread( true );
+            sshSession.setTimeout( connectionTimeout );
+            sshSession.setServerAliveInterval( SERVER_ALIVE_INTERVAL );
+            sshSession.setServerAliveCountMax( SERVER_ALIVE_COUNT_MAX );
+
+            logger.debug( "Connecting with timeout set to " + connectionTimeout + " milliseconds." );
+            sshSession.connect();
+            pooledSession.session = sshSession;
+        }
+        catch ( JSchException je )
+        {
+            logger.error( "Received exception connecting to switch " + switchNode.getSwitchId() + " at " + protocol
+                + "://" + ipAddress + ":" + port, je );
+            throw new HmsException( String.format( "Unable to connect to %s:%d over %s. Reason: %s", ipAddress, port,
+                                                   protocol, je.getMessage() ) );
+        }
+    }
+
+    private void scheduleHealthCheck()
+    {
+        if ( healthCheckTask == null )
+        {
+            healthCheckTask = healthCheckExecutor.scheduleWithFixedDelay( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    checkSessions();
+                }
+            }, HEALTH_CHECK_INTERVAL, HEALTH_CHECK_INTERVAL, TimeUnit.MILLISECONDS );
+        }
+    }
+
+    /**
+     * Reconnects, in the background, the sessions of the pool that have been dropped, so that commands do not pay for
+     * the reconnection. The sessions are reconnected outside the monitor, so that commands keep using the connected
+     * sessions meanwhile.
+     */
+    private void checkSessions()
+    {
+        List<PooledSession> droppedSessions = new ArrayList<PooledSession>();
+        synchronized ( this )
+        {
+            if ( closed )
+            {
+                return;
+            }
+            for ( PooledSession pooledSession : sessions )
+            {
+                if ( !pooledSession.connecting && pooledSession.session != null && !pooledSession.isConnected() )
+                {
+                    pooledSession.connecting = true;
+                    droppedSessions.add( pooledSession );
+                }
+            }
+        }
+
+        boolean failed = false;
+        for ( PooledSession pooledSession : droppedSessions )
+        {
+            try
+            {
+                if ( !failed && !closed )
+                {
+                    logger.info( "SSH session to switch " + getSwitchId() + " has been dropped, reconnecting." );
+                    openSession( pooledSession );
+                }
+            }
+            catch ( HmsException e )
+            {
+                logger.warn( "Unable to reconnect to switch " + getSwitchId() + ": " + e.getMessage() );
+                failed = true;
+            }
+            finally
+            {
+                synchronized ( this )
+                {
+                    pooledSession.connecting = false;
+                    if ( closed )
+                    {
+                        pooledSession.disconnect();
+                    }
+                    notifyAll();
+                }
+            }
+        }
     }
 
+    private String getSwitchId()
+    {
+        return ( switchNode != null ) ? switchNode.getSwitchId() : null;
+    }
+
+    /**
+     * An SSH session of the pool along with the number of channels currently open on it.
+     */
+    private static class PooledSession
+    {
+        private volatile Session session;
+
+        private final AtomicInteger activeChannels = new AtomicInteger();
+
+        /** Whether the session is being opened outside the monitor, guarded by the monitor of the switch session. */
+        private boolean connecting;
+
+        private boolean isConnected()
+        {
+            Session sshSession = session;
+            return ( sshSession != null && sshSession.isConnected() );
+        }
+
+        private void disconnect()
+        {
+            Session sshSession = session;
+            if ( sshSession != null )
+            {
+                sshSession.disconnect();
+            }
+        }
+    }
+
+    private static final ScheduledExecutorService healthCheckExecutor =
+        Executors.newSingleThreadScheduledExecutor( new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "switch-ssh-health-check" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+
     private SwitchNode switchNode;
 
-    private volatile Session sshSession;
+    private final PooledSession[] sessions;
+
+    private final int channelsPerSession;
+
+    private final Semaphore channelPermits;
+
+    private final ReentrantReadWriteLock commandLock = new ReentrantReadWriteLock();
+
+    private volatile int connectionTimeout = DEFAULT_CONNECTION_TIMEOUT;
+
+    private volatile long commandTimeout = DEFAULT_COMMAND_TIMEOUT;
+
+    private volatile boolean closed;
+
+    private ScheduledFuture<?> healthCheckTask;
 
     private Logger logger = Logger.getLogger( SshTorSwitchSession.class );
 }
@@ -43,6 +43,11 @@ public class SshUtil
 
     private static Logger logger = LoggerFactory.getLogger( SshUtil.class );
 
+    /**
+     * Interval, in milliseconds, at which a running exec channel is polled for output and completion.
+     */
+    private static final long CHANNEL_POLL_INTERVAL = 20;
+
     /**
      * @param command
      * @return maskedString
@@ -119,8 +124,26 @@ public class SshUtil
      */
     public static String executeCommand( Session sessionObj, String command )
         throws JSchException, IOException
+    {
+        return executeCommand( sessionObj, command, 0 );
+    }
+
+    /**
+     * It executes the command and returns the response back to the calling function. The channel is closed, and an
+     * IOException thrown, if the command does not complete within the given timeout.
+     *
+     * @param sessionObj
+     * @param command
+     * @param timeout timeout in milliseconds, 0 for no timeout
+     * @return
+     * @throws JSchException
+     * @throws IOException if the command timed out
+     */
+    public static String executeCommand( Session sessionObj, String command, long timeout )
+        throws JSchException, IOException
     {
         StringBuilder builder = null;
+        boolean timedOut = false;
         logger.debug( "Starting to execute command [" + maskedPasswordString( command ) + "]" );
 
         if ( sessionObj != null && command != null && !"".equals( command ) )
@@ -140,6 +163,7 @@ public class SshUtil
                 channel.connect();
 
                 byte[] tmp = new byte[arrMaxSize];
+                long deadline = System.currentTimeMillis() + timeout;
 
                 while ( true )
                 {
@@ -155,9 +179,14 @@ public class SshUtil
                     {
                         break;
                     }
+                    if ( timeout > 0 && System.currentTimeMillis() > deadline )
+                    {
+                        timedOut = true;
+                        break;
+                    }
                     try
                     {
-                        Thread.sleep( 500 );
+                        Thread.sleep( CHANNEL_POLL_INTERVAL );
                     }
                     catch ( Exception ee )
                     {
@@ -182,12 +211,31 @@ public class SshUtil
                 }
                 logger.debug( "End of execution of command [" + maskedPasswordString( command ) + "]" );
             }
+            if ( timedOut )
+            {
+                throw new IOException( String.format( "Command [%s] did not complete within %d milliseconds",
+                                                      maskedPasswordString( command ), timeout ) );
+            }
             return builder.toString();
         }
         return null;
     }
 
     public static SshExecResult executeCommandEnhanced( Session session, String command )
+    {
+        return executeCommandEnhanced( session, command, 0 );
+    }
+
+    /**
+     * Executes the command, collecting its stdout, stderr and exit code. Returns null if the command could not be
+     * executed or did not complete within the given timeout, in which case the channel is closed.
+     *
+     * @param session
+     * @param command
+     * @param timeout timeout in milliseconds, 0 for no timeout
+     * @return
+     */
+    public static SshExecResult executeCommandEnhanced( Session session, String command, long timeout )
     {
         SshExecResult result = null;
         ByteArrayOutputStream stdout = new ByteArrayOutputStream();
@@ -219,10 +267,27 @@ public class SshUtil
             startTime = System.currentTimeMillis();
 
             channel.connect();
+            long deadline = startTime + timeout;
             while ( !channel.isClosed() )
             {
-                endTime = System.currentTimeMillis();
+                if ( timeout > 0 && System.currentTimeMillis() > deadline )
+                {
+                    logger.warn( "Command [" + maskedPasswordString( command ) + "] did not complete within "
+                        + timeout + " milliseconds" );
+                    return null;
+                }
+                try
+                {
+                    Thread.sleep( CHANNEL_POLL_INTERVAL );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    logger.warn( "Interrupted executing command [" + maskedPasswordString( command ) + "]" );
+                    return null;
+                }
             }
+            endTime = System.currentTimeMillis();
 
             result = new SshExecResult();
             result.setCommand( command );
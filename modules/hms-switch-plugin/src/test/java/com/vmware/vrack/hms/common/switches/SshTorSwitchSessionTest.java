@@ -0,0 +1,75 @@
+/* ********************************************************************************
+ * SshTorSwitchSessionTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.switches;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.vmware.vrack.hms.common.exception.HmsException;
+import com.vmware.vrack.hms.common.switches.api.SwitchNode;
+
+public class SshTorSwitchSessionTest
+{
+
+    @Test
+    public void testIsConfigurationCommand()
+    {
+        assertFalse( SshTorSwitchSession.isConfigurationCommand( "ip -o link show" ) );
+        assertFalse( SshTorSwitchSession.isConfigurationCommand( "cat /etc/os-release" ) );
+        assertTrue( SshTorSwitchSession.isConfigurationCommand( "echo 'password' | sudo -S ifreload -a" ) );
+        assertTrue( SshTorSwitchSession.isConfigurationCommand( "sudo reboot" ) );
+        assertFalse( SshTorSwitchSession.isConfigurationCommand( "echo 'password' | sudo -S /sbin/ethtool swp1" ) );
+        assertFalse( SshTorSwitchSession.isConfigurationCommand( "echo 'password' | sudo -S "
+            + "/usr/cumulus/bin/decode-syseeprom | egrep ^Part | awk '{print $5}'" ) );
+        assertFalse( SshTorSwitchSession.isConfigurationCommand( "echo 'password' | sudo -S /usr/sbin/fw_printenv "
+            + "onie_version | cut -d= -f2" ) );
+        assertTrue( SshTorSwitchSession.isConfigurationCommand( "echo 'password' | sudo -S ethtool -s swp1 "
+            + "speed 10000" ) );
+        assertTrue( SshTorSwitchSession.isConfigurationCommand( "echo 'password' | sudo -S ip link set dev swp1 up" ) );
+        assertTrue( SshTorSwitchSession.isConfigurationCommand( "echo 'password' | sudo -S /sbin/ifdown bond1;\n"
+            + "echo 'password' | sudo -S rm -f /etc/network/interfaces.d/hms-bond1;" ) );
+        assertTrue( SshTorSwitchSession.isConfigurationCommand( "echo 'password' | sudo -S /bin/bash -c "
+            + "'cat /etc/hosts'" ) );
+    }
+
+    @Test
+    public void testExecuteReleasesChannelOnConnectFailure()
+        throws Exception
+    {
+        SwitchNode switchNode = new SwitchNode( "S1", "SSH", "127.0.0.1", 1, "username", "password" );
+        SshTorSwitchSession session = new SshTorSwitchSession( 1, 1 );
+        session.setSwitchNode( switchNode );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            try
+            {
+                session.execute( "ip -o link show" );
+                fail( "Expected command to fail as the switch is unreachable" );
+            }
+            catch ( HmsException e )
+            {
+                assertEquals( 0, session.getActiveChannelCount() );
+            }
+        }
+        assertFalse( session.isConnected() );
+        session.disconnect();
+    }
+}
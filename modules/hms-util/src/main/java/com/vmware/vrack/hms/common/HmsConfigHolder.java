@@ -65,6 +65,18 @@ public class HmsConfigHolder
 
     public static final String HMS_NODE_DISCOVERY_REATTEMPT_WAIT = "hms.discovery.reattempt.wait";
 
+    public static final String HMS_NODE_DISCOVERY_PARALLELISM = "hms.discovery.parallelism";
+
+    public static final String HMS_NODE_DISCOVERY_TIMEOUT = "hms.discovery.node.timeout";
+
+    public static final String HMS_SWITCH_FLEET_PARALLELISM = "hms.switch.fleet.parallelism";
+
+    public static final String HMS_SWITCH_FLEET_TIMEOUT = "hms.switch.fleet.timeout";
+
+    public static final String HMS_SEL_CACHE_SIZE = "hms.sel.cache.size";
+
+    public static final String HMS_SEL_PROBE_SIZE = "hms.sel.probe.size";
+
     public static final String IPMI_CONFIG = "ipmi.config.file";
 
     public static final String HMS_SERVICE_MAINTENANCE_MAX_WAIT_TIME = "hms.service.maintenance.max-wait-time";
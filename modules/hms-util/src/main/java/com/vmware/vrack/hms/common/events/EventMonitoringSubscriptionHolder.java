@@ -16,9 +16,8 @@
 package com.vmware.vrack.hms.common.events;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -67,11 +66,19 @@ public class EventMonitoringSubscriptionHolder
 
     static EventMonitoringSubscriptionHolder eventMonitoringSubscriptionHolder = null;
 
+    /*
+     * The subscription maps and the routing index are copy-on-write snapshots: they are replaced, under
+     * subscriptionLock, whenever a subscription is added or removed, and are never modified once published.
+     */
+    private static final Object subscriptionLock = new Object();
+
     private static volatile Map<String, EventMonitoringSubscription> eventMonitoringSubscriptionMap =
-        new HashMap<String, EventMonitoringSubscription>();
+        Collections.emptyMap();
+
+    private static volatile EventSubscriptionRoutingIndex routingIndex = EventSubscriptionRoutingIndex.EMPTY;
 
     private static volatile Map<String, BaseEventMonitoringSubscription> nmeMonitoringSubscriptionMap =
-        new HashMap<String, BaseEventMonitoringSubscription>();
+        Collections.emptyMap();
 
     /**
      * Returns Singleton EventMonitoringSubscriptionHolder instance
@@ -88,7 +95,7 @@ public class EventMonitoringSubscriptionHolder
     }
 
     /**
-     * Return EventRegistrationMap that contains all the subscribed Events
+     * Return EventRegistrationMap that contains all the subscribed Events. The returned map is a read-only snapshot.
      * 
      * @return
      */
@@ -98,7 +105,8 @@ public class EventMonitoringSubscriptionHolder
     }
 
     /**
-     * Return EventRegistrationMap that contains all the Non Maskable Events, which will be subscribed for all apps
+     * Return EventRegistrationMap that contains all the Non Maskable Events, which will be subscribed for all apps. The
+     * returned map is a read-only snapshot.
      * 
      * @return
      */
@@ -132,7 +140,13 @@ public class EventMonitoringSubscriptionHolder
 
         if ( key != null )
         {
-            eventMonitoringSubscriptionMap.put( key, eventMonitoringSubscription );
+            synchronized ( subscriptionLock )
+            {
+                Map<String, EventMonitoringSubscription> subscriptionMap =
+                    new HashMap<String, EventMonitoringSubscription>( eventMonitoringSubscriptionMap );
+                subscriptionMap.put( key, eventMonitoringSubscription );
+                publishEventMonitoringSubscriptions( subscriptionMap );
+            }
         }
     }
 
@@ -153,10 +167,31 @@ public class EventMonitoringSubscriptionHolder
 
         if ( key != null )
         {
-            eventMonitoringSubscriptionMap.remove( key );
+            synchronized ( subscriptionLock )
+            {
+                if ( eventMonitoringSubscriptionMap.containsKey( key ) )
+                {
+                    Map<String, EventMonitoringSubscription> subscriptionMap =
+                        new HashMap<String, EventMonitoringSubscription>( eventMonitoringSubscriptionMap );
+                    subscriptionMap.remove( key );
+                    publishEventMonitoringSubscriptions( subscriptionMap );
+                }
+            }
         }
     }
 
+    /**
+     * Publishes the given subscriptions as the new snapshot of eventMonitoringSubscriptionMap, along with their routing
+     * index. Must be called holding subscriptionLock.
+     *
+     * @param subscriptionMap the subscription map
+     */
+    private static void publishEventMonitoringSubscriptions( Map<String, EventMonitoringSubscription> subscriptionMap )
+    {
+        routingIndex = new EventSubscriptionRoutingIndex( subscriptionMap.values() );
+        eventMonitoringSubscriptionMap = Collections.unmodifiableMap( subscriptionMap );
+    }
+
     /**
      * Adds Entry in NmeMap, for Non Maskable Events, with key as [highestKey in the Map + 1]
      * 
@@ -164,27 +199,20 @@ public class EventMonitoringSubscriptionHolder
      */
     public void addNmeMonitoringSubscription( BaseEventMonitoringSubscription baseEventMonitoringSubscription )
     {
-        String key = null;
-        boolean alreadyAdded = false;
-        if ( baseEventMonitoringSubscription != null )
+        if ( baseEventMonitoringSubscription == null )
         {
-            for ( BaseEventMonitoringSubscription subscription : nmeMonitoringSubscriptionMap.values() )
-            {
-                if ( baseEventMonitoringSubscription.equals( subscription ) )
-                {
-                    alreadyAdded = true;
-                    break;
-                }
-            }
-            if ( !alreadyAdded )
-            {
-                key = getNmeEventKey();
-            }
+            return;
         }
 
-        if ( key != null )
+        synchronized ( subscriptionLock )
         {
-            nmeMonitoringSubscriptionMap.put( key, baseEventMonitoringSubscription );
+            if ( !nmeMonitoringSubscriptionMap.containsValue( baseEventMonitoringSubscription ) )
+            {
+                Map<String, BaseEventMonitoringSubscription> subscriptionMap =
+                    new HashMap<String, BaseEventMonitoringSubscription>( nmeMonitoringSubscriptionMap );
+                subscriptionMap.put( getNmeEventKey(), baseEventMonitoringSubscription );
+                nmeMonitoringSubscriptionMap = Collections.unmodifiableMap( subscriptionMap );
+            }
         }
     }
 
@@ -282,16 +310,7 @@ public class EventMonitoringSubscriptionHolder
      */
     public static List<EventMonitoringSubscription> getEventSubscriberList( String nodeId, EventComponent source )
     {
-        List<EventMonitoringSubscription> subscribers = new ArrayList<EventMonitoringSubscription>();
-        Collection<EventMonitoringSubscription> allSubscribers = eventMonitoringSubscriptionMap.values();
-        Iterator<EventMonitoringSubscription> iterSubscriber = allSubscribers.iterator();
-        while ( iterSubscriber.hasNext() )
-        {
-            EventMonitoringSubscription subscriber = iterSubscriber.next();
-            if ( subscriber.getComponent() == source && subscriber.getNodeId().equalsIgnoreCase( nodeId ) )
-                subscribers.add( subscriber );
-        }
-        return subscribers;
+        return routingIndex.getSubscriptionsIgnoreCase( nodeId, source );
     }
 
     /**
@@ -586,112 +605,14 @@ public class EventMonitoringSubscriptionHolder
     public static List<EventMonitoringSubscription> getSubscribers( String nodeId, EventComponent source,
                                                                     String componentTarget )
     {
-        List<EventMonitoringSubscription> subscribedEvents = new ArrayList<EventMonitoringSubscription>();
-
-        for ( EventMonitoringSubscription eventSub : eventMonitoringSubscriptionMap.values() )
-        {
-            // Check if nodeID is not empty, if it is empty it means caller wants Events for all Nodes with the
-            // specified source and target
-            String subsNodeId = eventSub.getNodeId();
-            if ( nodeId == null || ( nodeId != null && nodeId.equals( subsNodeId ) ) )
-            {
-                // Here will again check if the Component is not empty.
-                // If it is empty, this again implies the same thing,
-                // as caller want Subscribers for all components with the specified target Id
-                EventComponent subsComponent = eventSub.getComponent();
-                if ( source == null || ( source != null && source.equals( subsComponent ) ) )
-                {
-                    subscribedEvents.add( eventSub );
-                }
-            }
-        }
-
-        return subscribedEvents;
-    }
-
-    /**
-     * Returns the list of filtered events for each Event Subscription
-     * 
-     * @param subscription
-     * @param totalEvents
-     * @return
-     */
-    private static List<Event> getFilteredEvents( EventMonitoringSubscription subscription, List<Event> totalEvents )
-    {
-        // Event List that will be the filtered list of events from totalevents
-        List<Event> filteredEvents = new ArrayList<Event>();
-
-        if ( subscription != null && totalEvents != null )
-        {
-            String subsNodeId = subscription.getNodeId();
-            EventComponent subsComponent = subscription.getComponent();
-
-            // Iterate through the list of the events
-            for ( Event event : totalEvents )
-            {
-                Header eventHeader = event.getHeader();
-                if ( eventHeader != null && eventHeader.getComponentIdentifier() != null )
-                {
-                    String eventNodeId = null;
-                    EventComponent eventComponent = null;
-
-                    // Required to get the nodeId , Component and the Component Target Id
-                    for ( EventComponent key : eventHeader.getComponentIdentifier().keySet() )
-                    {
-                        // For example for Event Component CPU Events: componentIdentifiers are {SERVER and CPU}.
-                        // So eventNodeId is value against the SERVER. The eventComponent is CPU.
-                        // For Example for Event Component SERVER Events: componentIdentifier is {SERVER}.
-                        // So eventNodeId is value against the SERVER. The eventComponent is SERVER.
-                        // For Example for Event Component SWITCH Events: componentIdentifier is {SWITCH}.
-                        // So eventNodeId is value against the SWITCH.The eventComponent is SWITCH.
-                        if ( EventComponent.SERVER.equals( key ) || EventComponent.SWITCH.equals( key ) )
-                        {
-                            eventNodeId = eventHeader.getComponentIdentifier().get( key );
-                            if ( eventComponent == null )
-                            {
-                                eventComponent = key;
-                            }
-                        }
-                        else
-                        {
-                            eventComponent = key;
-                            eventHeader.getComponentIdentifier().get( key );
-                        }
-                    }
-
-                    EventCatalog eventName = eventHeader.getEventName();
-
-                    // Now we have event's required info to map it with Events Registration
-                    // Check if the subscription node Id matches with the one in the events.
-                    logger.debug( "subNodeId:" + subsNodeId + "::subsComponent: " + subsComponent + "::eventComponent:"
-                        + eventComponent + "::eventName:" + eventName );
-                    if ( subsNodeId == null || ( subsNodeId != null && subsNodeId.equals( eventNodeId ) ) )
-                    {
-                        if ( subsComponent == null
-                            || ( subsComponent != null && subsComponent.equals( eventComponent ) )
-                            || EventsUtil.isHmsSupportedEvent( eventName ) )
-                        {
-                            filteredEvents.add( event );
-                        }
-                    }
-                }
-                else
-                {
-                    logger.error( "Event Header and event source Should not be null" );
-                }
-
-            }
-        }
-        else
-        {
-            logger.error( "Either EventMonitoringSubscription object or events List is empty." );
-        }
-
-        return filteredEvents;
+        // A null nodeId or source implies that the caller wants subscribers for all nodes or components respectively
+        return routingIndex.getSubscriptions( nodeId, source );
     }
 
     /**
      * Filters the given list of events, and group all events that to be sent at same endpoint with same request method.
+     * Each event is routed through the subscription routing index to the subscriptions matching its node and component,
+     * so the cost is proportional to the number of events times their matching subscriptions.
      * 
      * @param totalEvents
      * @return
@@ -709,35 +630,67 @@ public class EventMonitoringSubscriptionHolder
         Map<BaseEventMonitoringSubscription, List<Event>> filteredMap =
             new HashMap<BaseEventMonitoringSubscription, List<Event>>();
 
-        for ( EventMonitoringSubscription eventSubscription : eventMonitoringSubscriptionMap.values() )
+        EventSubscriptionRoutingIndex index = routingIndex;
+        if ( index.getSubscriptions().isEmpty() )
         {
-            // Null checks will be done in the following functions
-            List<Event> filteredEvent = getFilteredEvents( eventSubscription, totalEvents );
+            return filteredMap;
+        }
 
-            // If filtered events list is empty there is no point going forward
-            if ( !filteredEvent.isEmpty() )
+        for ( Event event : totalEvents )
+        {
+            Header eventHeader = event.getHeader();
+            if ( eventHeader == null || eventHeader.getComponentIdentifier() == null )
             {
-                // Create a new BaseEventMonitoringSubscription object that will be used as key
-                // Equals() and hashcode() are already overloaded , so there won't be any problem
-                BaseEventMonitoringSubscription subscriberEndpointDetails = new BaseEventMonitoringSubscription();
-                subscriberEndpointDetails.setRequestMethod( eventSubscription.getRequestMethod() );
-                subscriberEndpointDetails.setNotificationEndpoint( eventSubscription.getNotificationEndpoint() );
+                logger.error( "Event Header and event source Should not be null" );
+                continue;
+            }
+
+            String eventNodeId = null;
+            EventComponent eventComponent = null;
 
-                // If the subscriber endpoint is already present in the Hashmap,
-                // it will just add the list received just now to the already in the hashmap
-                if ( filteredMap.containsKey( subscriberEndpointDetails ) )
+            // Required to get the nodeId and the Component
+            for ( Map.Entry<EventComponent, String> identifier : eventHeader.getComponentIdentifier().entrySet() )
+            {
+                // For example for Event Component CPU Events: componentIdentifiers are {SERVER and CPU}.
+                // So eventNodeId is value against the SERVER. The eventComponent is CPU.
+                // For Example for Event Component SERVER Events: componentIdentifier is {SERVER}.
+                // So eventNodeId is value against the SERVER. The eventComponent is SERVER.
+                // For Example for Event Component SWITCH Events: componentIdentifier is {SWITCH}.
+                // So eventNodeId is value against the SWITCH.The eventComponent is SWITCH.
+                EventComponent key = identifier.getKey();
+                if ( EventComponent.SERVER.equals( key ) || EventComponent.SWITCH.equals( key ) )
                 {
-                    List<Event> subEventList = filteredMap.get( subscriberEndpointDetails );
-                    if ( subEventList == null )
+                    eventNodeId = identifier.getValue();
+                    if ( eventComponent == null )
                     {
-                        subEventList = new ArrayList<Event>();
+                        eventComponent = key;
                     }
-                    subEventList.addAll( filteredEvent );
                 }
                 else
                 {
-                    filteredMap.put( subscriberEndpointDetails, filteredEvent );
+                    eventComponent = key;
+                }
+            }
+
+            EventCatalog eventName = eventHeader.getEventName();
+            List<EventMonitoringSubscription> subscriptions =
+                index.getRoutes( eventNodeId, eventComponent, EventsUtil.isHmsSupportedEvent( eventName ) );
+
+            for ( EventMonitoringSubscription eventSubscription : subscriptions )
+            {
+                // Create a new BaseEventMonitoringSubscription object that will be used as key
+                // Equals() and hashcode() are already overloaded , so there won't be any problem
+                BaseEventMonitoringSubscription subscriberEndpointDetails = new BaseEventMonitoringSubscription();
+                subscriberEndpointDetails.setRequestMethod( eventSubscription.getRequestMethod() );
+                subscriberEndpointDetails.setNotificationEndpoint( eventSubscription.getNotificationEndpoint() );
+
+                List<Event> subEventList = filteredMap.get( subscriberEndpointDetails );
+                if ( subEventList == null )
+                {
+                    subEventList = new ArrayList<Event>();
+                    filteredMap.put( subscriberEndpointDetails, subEventList );
                 }
+                subEventList.add( event );
             }
         }
         return filteredMap;
@@ -816,15 +769,12 @@ public class EventMonitoringSubscriptionHolder
     public void removeAllMonitoringSubscriptions()
     {
         logger.debug( "forcefully clearing all the subscritiptions" );
-        if ( eventMonitoringSubscriptionMap != null )
+        synchronized ( subscriptionLock )
         {
-            eventMonitoringSubscriptionMap.clear();
+            publishEventMonitoringSubscriptions( new HashMap<String, EventMonitoringSubscription>() );
             logger.debug( "cleared eventMonitoringSubscriptionMap" );
-        }
 
-        if ( nmeMonitoringSubscriptionMap != null )
-        {
-            nmeMonitoringSubscriptionMap.clear();
+            nmeMonitoringSubscriptionMap = Collections.emptyMap();
             logger.debug( "cleared nmeMonitoringSubscriptionMap" );
         }
     }
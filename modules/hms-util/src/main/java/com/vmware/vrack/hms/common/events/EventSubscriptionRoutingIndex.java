@@ -0,0 +1,263 @@
+/* ********************************************************************************
+ * EventSubscriptionRoutingIndex.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.events;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.vmware.vrack.common.event.enums.EventComponent;
+
+/**
+ * Immutable routing index of {@link EventMonitoringSubscription}s keyed by (nodeId, EventComponent). A null nodeId or
+ * component in a subscription acts as a wildcard, and such subscriptions are kept in their own buckets, so that the
+ * subscriptions matching an event are found with a few map lookups instead of a scan of all the subscriptions.
+ * <p>
+ * {@link EventMonitoringSubscriptionHolder} rebuilds the index whenever a subscription is added or removed and
+ * publishes it as a snapshot, so readers never need to lock.
+ *
+ * @author VMware, Inc.
+ */
+public class EventSubscriptionRoutingIndex
+{
+
+    /** The empty index. */
+    public static final EventSubscriptionRoutingIndex EMPTY =
+        new EventSubscriptionRoutingIndex( Collections.<EventMonitoringSubscription> emptyList() );
+
+    /** All the subscriptions. */
+    private final List<EventMonitoringSubscription> subscriptions;
+
+    /** The subscriptions by (nodeId, component), either of which may be null for wildcard subscriptions. */
+    private final Map<RouteKey, List<EventMonitoringSubscription>> routes =
+        new HashMap<RouteKey, List<EventMonitoringSubscription>>();
+
+    /** The subscriptions by nodeId, which may be null for wildcard subscriptions. */
+    private final Map<String, List<EventMonitoringSubscription>> nodeRoutes =
+        new HashMap<String, List<EventMonitoringSubscription>>();
+
+    /** The subscriptions by component, which may be null for wildcard subscriptions. */
+    private final Map<EventComponent, List<EventMonitoringSubscription>> componentRoutes =
+        new HashMap<EventComponent, List<EventMonitoringSubscription>>();
+
+    /** The subscriptions by (lower case nodeId, component). */
+    private final Map<RouteKey, List<EventMonitoringSubscription>> caseInsensitiveRoutes =
+        new HashMap<RouteKey, List<EventMonitoringSubscription>>();
+
+    /**
+     * Builds the index of the given subscriptions.
+     *
+     * @param subscriptions the subscriptions
+     */
+    public EventSubscriptionRoutingIndex( Collection<EventMonitoringSubscription> subscriptions )
+    {
+
+        this.subscriptions = Collections.unmodifiableList( new ArrayList<EventMonitoringSubscription>( subscriptions ) );
+        for ( EventMonitoringSubscription subscription : this.subscriptions )
+        {
+            String nodeId = subscription.getNodeId();
+            EventComponent component = subscription.getComponent();
+            addRoute( routes, new RouteKey( nodeId, component ), subscription );
+            addRoute( nodeRoutes, nodeId, subscription );
+            addRoute( componentRoutes, component, subscription );
+            if ( nodeId != null )
+            {
+                addRoute( caseInsensitiveRoutes, new RouteKey( nodeId.toLowerCase( Locale.ENGLISH ), component ),
+                          subscription );
+            }
+        }
+    }
+
+    /**
+     * Gets all the subscriptions.
+     *
+     * @return the subscriptions
+     */
+    public List<EventMonitoringSubscription> getSubscriptions()
+    {
+
+        return subscriptions;
+    }
+
+    /**
+     * Gets the subscriptions an event of the given node and component has to be routed to. A subscription matches if
+     * its nodeId is null or equal to the event's node id, and its component is null or equal to the event's component.
+     * If the component does not have to match, as for HMS supported events, any subscription of the node matches.
+     *
+     * @param eventNodeId the event node id
+     * @param eventComponent the event component
+     * @param anyComponent whether subscriptions of any component match
+     * @return the matching subscriptions
+     */
+    public List<EventMonitoringSubscription> getRoutes( String eventNodeId, EventComponent eventComponent,
+                                                        boolean anyComponent )
+    {
+
+        List<EventMonitoringSubscription> matches = new ArrayList<EventMonitoringSubscription>();
+        if ( anyComponent )
+        {
+            addAll( matches, nodeRoutes.get( null ) );
+            if ( eventNodeId != null )
+            {
+                addAll( matches, nodeRoutes.get( eventNodeId ) );
+            }
+            return matches;
+        }
+
+        addAll( matches, routes.get( new RouteKey( null, null ) ) );
+        if ( eventComponent != null )
+        {
+            addAll( matches, routes.get( new RouteKey( null, eventComponent ) ) );
+        }
+        if ( eventNodeId != null )
+        {
+            addAll( matches, routes.get( new RouteKey( eventNodeId, null ) ) );
+            if ( eventComponent != null )
+            {
+                addAll( matches, routes.get( new RouteKey( eventNodeId, eventComponent ) ) );
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Gets the subscriptions with the given nodeId and component. A null nodeId or component matches subscriptions of
+     * any node or component respectively.
+     *
+     * @param nodeId the node id
+     * @param component the component
+     * @return the subscriptions
+     */
+    public List<EventMonitoringSubscription> getSubscriptions( String nodeId, EventComponent component )
+    {
+
+        List<EventMonitoringSubscription> matches = new ArrayList<EventMonitoringSubscription>();
+        if ( nodeId == null && component == null )
+        {
+            matches.addAll( subscriptions );
+        }
+        else if ( nodeId == null )
+        {
+            addAll( matches, componentRoutes.get( component ) );
+        }
+        else if ( component == null )
+        {
+            addAll( matches, nodeRoutes.get( nodeId ) );
+        }
+        else
+        {
+            addAll( matches, routes.get( new RouteKey( nodeId, component ) ) );
+        }
+        return matches;
+    }
+
+    /**
+     * Gets the subscriptions of the given component whose nodeId equals the given one, ignoring case.
+     *
+     * @param nodeId the node id
+     * @param component the component
+     * @return the subscriptions
+     */
+    public List<EventMonitoringSubscription> getSubscriptionsIgnoreCase( String nodeId, EventComponent component )
+    {
+
+        List<EventMonitoringSubscription> matches = new ArrayList<EventMonitoringSubscription>();
+        if ( nodeId != null )
+        {
+            addAll( matches, caseInsensitiveRoutes.get( new RouteKey( nodeId.toLowerCase( Locale.ENGLISH ),
+                                                                      component ) ) );
+        }
+        return matches;
+    }
+
+    /**
+     * Adds the subscription to the bucket of the given key.
+     *
+     * @param index the index
+     * @param key the key
+     * @param subscription the subscription
+     */
+    private static <K> void addRoute( Map<K, List<EventMonitoringSubscription>> index, K key,
+                                      EventMonitoringSubscription subscription )
+    {
+
+        List<EventMonitoringSubscription> bucket = index.get( key );
+        if ( bucket == null )
+        {
+            bucket = new ArrayList<EventMonitoringSubscription>();
+            index.put( key, bucket );
+        }
+        bucket.add( subscription );
+    }
+
+    /**
+     * Adds all the subscriptions of the bucket, if any.
+     *
+     * @param matches the matches
+     * @param bucket the bucket
+     */
+    private static void addAll( List<EventMonitoringSubscription> matches, List<EventMonitoringSubscription> bucket )
+    {
+
+        if ( bucket != null )
+        {
+            matches.addAll( bucket );
+        }
+    }
+
+    /**
+     * Route key of (nodeId, component), either of which may be null.
+     */
+    private static final class RouteKey
+    {
+
+        private final String nodeId;
+
+        private final EventComponent component;
+
+        RouteKey( String nodeId, EventComponent component )
+        {
+            this.nodeId = nodeId;
+            this.component = component;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * ( nodeId == null ? 0 : nodeId.hashCode() ) + ( component == null ? 0 : component.hashCode() );
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if ( this == obj )
+            {
+                return true;
+            }
+            if ( !( obj instanceof RouteKey ) )
+            {
+                return false;
+            }
+            RouteKey other = (RouteKey) obj;
+            return ( nodeId == null ? other.nodeId == null : nodeId.equals( other.nodeId ) )
+                && component == other.component;
+        }
+    }
+}
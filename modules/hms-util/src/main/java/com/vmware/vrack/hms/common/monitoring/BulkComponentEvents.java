@@ -0,0 +1,53 @@
+/* ********************************************************************************
+ * BulkComponentEvents.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.monitoring;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Events of all the components of all the server and switch nodes, polled for a single bulk request, along with the
+ * sequence number of {@link ComponentEventsJournal} when the poll started, from which the updates since the poll can
+ * be streamed.
+ *
+ * @author VMware, Inc.
+ */
+public class BulkComponentEvents
+{
+    private long sequence;
+
+    private List<ComponentEventsUpdate> updates = new ArrayList<ComponentEventsUpdate>();
+
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    public void setSequence( long sequence )
+    {
+        this.sequence = sequence;
+    }
+
+    public List<ComponentEventsUpdate> getUpdates()
+    {
+        return updates;
+    }
+
+    public void setUpdates( List<ComponentEventsUpdate> updates )
+    {
+        this.updates = updates;
+    }
+}
@@ -0,0 +1,137 @@
+/* ********************************************************************************
+ * ComponentEventsJournal.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.monitoring;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import com.vmware.vrack.common.event.Event;
+import com.vmware.vrack.common.event.enums.EventComponent;
+
+/**
+ * <code>ComponentEventsJournal</code><br>
+ * Bounded journal of the {@link ComponentEventsUpdate}s published by the monitoring sweeps, numbered by consecutive
+ * sequence numbers, so that a reader streaming the updates since the last sequence number it has can detect the
+ * updates it missed, and get all the events again with a bulk request instead.
+ * <p>
+ * Sequence numbers start from the creation time of the journal in milliseconds, so that the sequence numbers of an
+ * earlier instance of the journal, before a restart, are detected as missing updates too.
+ *
+ * @author VMware, Inc.
+ */
+public class ComponentEventsJournal
+{
+
+    /** The default number of updates kept in the journal. */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final ComponentEventsJournal instance = new ComponentEventsJournal( DEFAULT_CAPACITY );
+
+    private final int capacity;
+
+    private final Deque<ComponentEventsUpdate> updates = new ArrayDeque<ComponentEventsUpdate>();
+
+    private long sequence;
+
+    public ComponentEventsJournal( int capacity )
+    {
+        this.capacity = capacity;
+        this.sequence = System.currentTimeMillis();
+    }
+
+    public static ComponentEventsJournal getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * @return sequence number of the last update published to the journal
+     */
+    public synchronized long getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Publishes the events of the component of the node, replacing its previous events, with the next sequence number.
+     *
+     * @param nodeId the node id
+     * @param component the component
+     * @param events all the events of the component
+     * @return the published update
+     */
+    public synchronized ComponentEventsUpdate publish( String nodeId, EventComponent component, List<Event> events )
+    {
+        ComponentEventsUpdate update =
+            new ComponentEventsUpdate( ++sequence, nodeId, component, new ArrayList<Event>( events ) );
+        updates.addLast( update );
+        if ( updates.size() > capacity )
+        {
+            updates.removeFirst();
+        }
+        notifyAll();
+        return update;
+    }
+
+    /**
+     * Gets the updates published after the sequence number, waiting for one if there is none yet.
+     *
+     * @param sinceSequence sequence number of the last update the reader has
+     * @param timeout maximum time to wait for an update, in milliseconds
+     * @return the updates in the order of their sequence numbers, empty if none was published in time, null if some
+     *         of the updates since the sequence number are no longer, or were never, in the journal
+     * @throws InterruptedException
+     */
+    public synchronized List<ComponentEventsUpdate> getUpdatesSince( long sinceSequence, long timeout )
+        throws InterruptedException
+    {
+        if ( sinceSequence > sequence )
+        {
+            return null;
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+        while ( sinceSequence == sequence )
+        {
+            long remaining = deadline - System.currentTimeMillis();
+            if ( remaining <= 0 )
+            {
+                return Collections.emptyList();
+            }
+            wait( remaining );
+        }
+        long oldestSequence = updates.isEmpty() ? sequence + 1 : updates.getFirst().getSequence();
+        if ( sinceSequence + 1 < oldestSequence )
+        {
+            return null;
+        }
+        List<ComponentEventsUpdate> updatesSince = new ArrayList<ComponentEventsUpdate>();
+        for ( Iterator<ComponentEventsUpdate> it = updates.descendingIterator(); it.hasNext(); )
+        {
+            ComponentEventsUpdate update = it.next();
+            if ( update.getSequence() <= sinceSequence )
+            {
+                break;
+            }
+            updatesSince.add( update );
+        }
+        Collections.reverse( updatesSince );
+        return updatesSince;
+    }
+}
@@ -0,0 +1,95 @@
+/* ********************************************************************************
+ * ComponentEventsUpdate.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.monitoring;
+
+import java.util.List;
+
+import com.vmware.vrack.common.event.Event;
+import com.vmware.vrack.common.event.enums.EventComponent;
+
+/**
+ * Events of a component of a server or switch node, as published by {@link ComponentEventsJournal} after a monitoring
+ * sweep of the component changed them, or as polled for a bulk request. The events replace all the previous events of
+ * the component of the node.
+ *
+ * @author VMware, Inc.
+ */
+public class ComponentEventsUpdate
+{
+    private long sequence;
+
+    private String nodeId;
+
+    private EventComponent component;
+
+    private List<Event> events;
+
+    public ComponentEventsUpdate()
+    {
+    }
+
+    public ComponentEventsUpdate( long sequence, String nodeId, EventComponent component, List<Event> events )
+    {
+        this.sequence = sequence;
+        this.nodeId = nodeId;
+        this.component = component;
+        this.events = events;
+    }
+
+    /**
+     * @return sequence number of the update in the journal, or sequence number of the journal when the bulk poll
+     *         started
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    public void setSequence( long sequence )
+    {
+        this.sequence = sequence;
+    }
+
+    public String getNodeId()
+    {
+        return nodeId;
+    }
+
+    public void setNodeId( String nodeId )
+    {
+        this.nodeId = nodeId;
+    }
+
+    public EventComponent getComponent()
+    {
+        return component;
+    }
+
+    public void setComponent( EventComponent component )
+    {
+        this.component = component;
+    }
+
+    public List<Event> getEvents()
+    {
+        return events;
+    }
+
+    public void setEvents( List<Event> events )
+    {
+        this.events = events;
+    }
+}
@@ -0,0 +1,252 @@
+/* ********************************************************************************
+ * ComponentMonitorConfig.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.monitoring;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.vmware.vrack.hms.common.servernodes.api.ServerComponent;
+import com.vmware.vrack.hms.common.servernodes.api.SwitchComponentEnum;
+
+/**
+ * <code>ComponentMonitorConfig</code><br>
+ * Per component monitoring configuration used by {@link MonitorTaskSuite}: the polling frequency of each server and
+ * switch component, the timeout of a single component poll and the size of the thread pool the components of a node
+ * are polled on. A component without a configured frequency is polled at the monitor frequency of its task suite.
+ *
+ * @author VMware, Inc.
+ */
+public class ComponentMonitorConfig
+{
+
+    /** Prefix of the server component monitor frequency property, e.g. HOST_COMPONENT_MONITOR_FREQUENCY_FAN. */
+    public static final String SERVER_COMPONENT_FREQUENCY_PROPERTY_PREFIX = "HOST_COMPONENT_MONITOR_FREQUENCY_";
+
+    /** Prefix of the switch component monitor frequency property, e.g. SWITCH_COMPONENT_MONITOR_FREQUENCY_SWITCH. */
+    public static final String SWITCH_COMPONENT_FREQUENCY_PROPERTY_PREFIX = "SWITCH_COMPONENT_MONITOR_FREQUENCY_";
+
+    /** The component poll timeout property. */
+    public static final String COMPONENT_POLL_TIMEOUT_PROPERTY = "COMPONENT_MONITOR_TIMEOUT";
+
+    /** The component monitoring thread pool size property. */
+    public static final String COMPONENT_THREAD_POOL_SIZE_PROPERTY = "COMPONENT_MONITOR_THREAD_POOL_SIZE";
+
+    /** The default component poll timeout in milliseconds. */
+    public static final long DEFAULT_COMPONENT_POLL_TIMEOUT = 120000L;
+
+    /** The default component monitoring thread pool size. */
+    public static final int DEFAULT_COMPONENT_THREAD_POOL_SIZE = 40;
+
+    /** The server component frequencies. */
+    private static Map<ServerComponent, Long> serverComponentFrequencies =
+        new ConcurrentHashMap<ServerComponent, Long>();
+
+    /** The switch component frequencies. */
+    private static Map<SwitchComponentEnum, Long> switchComponentFrequencies =
+        new ConcurrentHashMap<SwitchComponentEnum, Long>();
+
+    /** The component poll timeout. */
+    private static volatile long componentPollTimeout = DEFAULT_COMPONENT_POLL_TIMEOUT;
+
+    /** The component thread pool size. */
+    private static volatile int componentThreadPoolSize = DEFAULT_COMPONENT_THREAD_POOL_SIZE;
+
+    /**
+     * Instantiates a new component monitor config.
+     */
+    private ComponentMonitorConfig()
+    {
+    }
+
+    /**
+     * Gets the frequency of the server component.
+     *
+     * @param component the component
+     * @param defaultFrequency the frequency to return if none is configured for the component
+     * @return the frequency in milliseconds
+     */
+    public static Long getFrequency( ServerComponent component, Long defaultFrequency )
+    {
+
+        Long frequency = component != null ? serverComponentFrequencies.get( component ) : null;
+        return frequency != null ? frequency : defaultFrequency;
+    }
+
+    /**
+     * Gets the frequency of the switch component.
+     *
+     * @param component the component
+     * @param defaultFrequency the frequency to return if none is configured for the component
+     * @return the frequency in milliseconds
+     */
+    public static Long getFrequency( SwitchComponentEnum component, Long defaultFrequency )
+    {
+
+        Long frequency = component != null ? switchComponentFrequencies.get( component ) : null;
+        return frequency != null ? frequency : defaultFrequency;
+    }
+
+    /**
+     * Sets the frequency of the server component. A null or non positive frequency removes the configured frequency.
+     *
+     * @param component the component
+     * @param frequency the frequency in milliseconds
+     */
+    public static void setFrequency( ServerComponent component, Long frequency )
+    {
+
+        if ( frequency == null || frequency <= 0 )
+        {
+            serverComponentFrequencies.remove( component );
+        }
+        else
+        {
+            serverComponentFrequencies.put( component, frequency );
+        }
+    }
+
+    /**
+     * Sets the frequency of the switch component. A null or non positive frequency removes the configured frequency.
+     *
+     * @param component the component
+     * @param frequency the frequency in milliseconds
+     */
+    public static void setFrequency( SwitchComponentEnum component, Long frequency )
+    {
+
+        if ( frequency == null || frequency <= 0 )
+        {
+            switchComponentFrequencies.remove( component );
+        }
+        else
+        {
+            switchComponentFrequencies.put( component, frequency );
+        }
+    }
+
+    /**
+     * Loads the configuration from the given properties. The component frequencies are looked up as
+     * {@link #SERVER_COMPONENT_FREQUENCY_PROPERTY_PREFIX} and {@link #SWITCH_COMPONENT_FREQUENCY_PROPERTY_PREFIX}
+     * followed by the component name. Invalid values are ignored.
+     *
+     * @param properties the properties
+     */
+    public static void loadConfig( Properties properties )
+    {
+
+        if ( properties == null )
+        {
+            return;
+        }
+        Long timeout = parseLong( properties.getProperty( COMPONENT_POLL_TIMEOUT_PROPERTY ) );
+        if ( timeout != null && timeout > 0 )
+        {
+            componentPollTimeout = timeout;
+        }
+        Long threadPoolSize = parseLong( properties.getProperty( COMPONENT_THREAD_POOL_SIZE_PROPERTY ) );
+        if ( threadPoolSize != null && threadPoolSize > 0 )
+        {
+            componentThreadPoolSize = threadPoolSize.intValue();
+        }
+        for ( ServerComponent component : ServerComponent.values() )
+        {
+            String property = SERVER_COMPONENT_FREQUENCY_PROPERTY_PREFIX + component.name();
+            Long frequency = parseLong( properties.getProperty( property ) );
+            if ( frequency != null )
+            {
+                setFrequency( component, frequency );
+            }
+        }
+        for ( SwitchComponentEnum component : SwitchComponentEnum.values() )
+        {
+            String property = SWITCH_COMPONENT_FREQUENCY_PROPERTY_PREFIX + component.name();
+            Long frequency = parseLong( properties.getProperty( property ) );
+            if ( frequency != null )
+            {
+                setFrequency( component, frequency );
+            }
+        }
+    }
+
+    /**
+     * Gets the component poll timeout.
+     *
+     * @return the component poll timeout in milliseconds
+     */
+    public static long getComponentPollTimeout()
+    {
+
+        return componentPollTimeout;
+    }
+
+    /**
+     * Sets the component poll timeout.
+     *
+     * @param componentPollTimeout the component poll timeout in milliseconds
+     */
+    public static void setComponentPollTimeout( long componentPollTimeout )
+    {
+
+        ComponentMonitorConfig.componentPollTimeout = componentPollTimeout;
+    }
+
+    /**
+     * Gets the component thread pool size.
+     *
+     * @return the component thread pool size
+     */
+    public static int getComponentThreadPoolSize()
+    {
+
+        return componentThreadPoolSize;
+    }
+
+    /**
+     * Sets the component thread pool size. Takes effect when the component pool is next created, i.e. on
+     * its first use or after a monitoring restart.
+     *
+     * @param componentThreadPoolSize the component thread pool size
+     */
+    public static void setComponentThreadPoolSize( int componentThreadPoolSize )
+    {
+
+        ComponentMonitorConfig.componentThreadPoolSize = componentThreadPoolSize;
+    }
+
+    /**
+     * Parses the long value.
+     *
+     * @param value the value
+     * @return the long value, or null if the value is not a valid number
+     */
+    private static Long parseLong( String value )
+    {
+
+        if ( value == null || value.trim().isEmpty() )
+        {
+            return null;
+        }
+        try
+        {
+            return Long.parseLong( value.trim() );
+        }
+        catch ( NumberFormatException e )
+        {
+            return null;
+        }
+    }
+}
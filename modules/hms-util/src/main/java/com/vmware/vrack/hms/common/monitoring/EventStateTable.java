@@ -0,0 +1,559 @@
+/* ********************************************************************************
+ * EventStateTable.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.monitoring;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+import com.vmware.vrack.common.event.Event;
+import com.vmware.vrack.common.event.Header;
+import com.vmware.vrack.common.event.enums.EventCatalog;
+import com.vmware.vrack.common.event.enums.EventComponent;
+import com.vmware.vrack.common.event.enums.EventSeverity;
+
+/**
+ * <code>EventStateTable</code><br>
+ * Last emitted state of each sensor, keyed by node, component and sensor, used by {@link MonitorResponseCallback} to
+ * broadcast only the events of a monitoring sweep whose state changed since the last broadcast, instead of every event
+ * of every sweep.
+ * <p>
+ * The component of an event is its resource hierarchy, e.g. SERVER and CPU, and the sensor is the identifiers of its
+ * resources along with the event id of its data. The state of a sensor is the event name, the severity and the value
+ * of its event, so that a sensor going from e.g. HDD_UP to HDD_DOWN changes state. A changed state is emitted once it
+ * was seen in {@link #DEBOUNCE_COUNT_PROPERTY} consecutive sweeps, and a reading which moved by less than its
+ * hysteresis from the emitted value is not a change. A sensor which appears, or reappears after a sweep of its
+ * component without it, is emitted right away. Every {@link #RESYNC_INTERVAL_PROPERTY} milliseconds all the events of
+ * a component are emitted, so that the subscribers which missed a transition catch up.
+ *
+ * @author VMware, Inc.
+ */
+public class EventStateTable
+{
+
+    private static Logger logger = Logger.getLogger( EventStateTable.class );
+
+    /** The property enabling the state change only emission of the monitored events. */
+    public static final String FILTER_ENABLED_PROPERTY = "EVENT_STATE_FILTER_ENABLED";
+
+    /** The property of the number of consecutive sweeps a changed state must be seen in before it is emitted. */
+    public static final String DEBOUNCE_COUNT_PROPERTY = "EVENT_STATE_DEBOUNCE_COUNT";
+
+    /** The property of the hysteresis of the readings. */
+    public static final String HYSTERESIS_PROPERTY = "EVENT_STATE_HYSTERESIS";
+
+    /** Prefix of the hysteresis property of the readings of an event, followed by the event name. */
+    public static final String HYSTERESIS_PROPERTY_PREFIX = "EVENT_STATE_HYSTERESIS_";
+
+    /** The property of the interval of the full resync of the events of a component. */
+    public static final String RESYNC_INTERVAL_PROPERTY = "EVENT_STATE_RESYNC_INTERVAL";
+
+    /** The default debounce count, emitting a changed state in the first sweep it is seen in. */
+    public static final int DEFAULT_DEBOUNCE_COUNT = 1;
+
+    /** The default full resync interval in milliseconds. */
+    public static final long DEFAULT_RESYNC_INTERVAL = 1800000L;
+
+    /** Unit of the events whose value is not a reading. */
+    private static final String DISCRETE_UNIT = "DISCRETE";
+
+    private static final EventStateTable instance = new EventStateTable();
+
+    private volatile boolean enabled = true;
+
+    private volatile int debounceCount = DEFAULT_DEBOUNCE_COUNT;
+
+    private volatile float hysteresis = 0;
+
+    private Map<EventCatalog, Float> eventHysteresis = new ConcurrentHashMap<EventCatalog, Float>();
+
+    private volatile long resyncInterval = DEFAULT_RESYNC_INTERVAL;
+
+    /** Component states of each node, keyed by node id and then by component. */
+    private ConcurrentMap<String, ConcurrentMap<String, ComponentState>> nodeStates =
+        new ConcurrentHashMap<String, ConcurrentMap<String, ComponentState>>();
+
+    public EventStateTable()
+    {
+    }
+
+    public static EventStateTable getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Gets the events whose sensor state changed since it was last emitted for the node, or which are due for the
+     * periodic resync of their component, and records the new states. The events of a component are expected to be
+     * all the events of a sweep of the component, the sensors of the component missing from them being marked as
+     * absent. Returns the given events if the table is disabled.
+     *
+     * @param nodeId the node id
+     * @param events the events of the sweep
+     * @return the events to emit
+     */
+    public List<Event> getChangedEvents( String nodeId, List<Event> events )
+    {
+        if ( !enabled || nodeId == null || events == null || events.isEmpty() )
+        {
+            return events;
+        }
+        ConcurrentMap<String, ComponentState> componentStates = nodeStates.get( nodeId );
+        if ( componentStates == null )
+        {
+            componentStates = new ConcurrentHashMap<String, ComponentState>();
+            ConcurrentMap<String, ComponentState> existing = nodeStates.putIfAbsent( nodeId, componentStates );
+            if ( existing != null )
+            {
+                componentStates = existing;
+            }
+        }
+
+        Map<String, List<Event>> componentEvents = new LinkedHashMap<String, List<Event>>();
+        for ( Event event : events )
+        {
+            String component = getComponentKey( event );
+            List<Event> sweep = componentEvents.get( component );
+            if ( sweep == null )
+            {
+                sweep = new ArrayList<Event>();
+                componentEvents.put( component, sweep );
+            }
+            sweep.add( event );
+        }
+
+        long now = System.currentTimeMillis();
+        List<Event> changedEvents = new ArrayList<Event>();
+        for ( Map.Entry<String, List<Event>> entry : componentEvents.entrySet() )
+        {
+            ComponentState componentState = componentStates.get( entry.getKey() );
+            if ( componentState == null )
+            {
+                componentState = new ComponentState( now );
+                ComponentState existing = componentStates.putIfAbsent( entry.getKey(), componentState );
+                if ( existing != null )
+                {
+                    componentState = existing;
+                }
+            }
+            int changed = changedEvents.size();
+            componentState.update( entry.getValue(), now, changedEvents );
+            if ( logger.isDebugEnabled() )
+            {
+                logger.debug( "Node: " + nodeId + ", component: " + entry.getKey() + ", "
+                    + ( changedEvents.size() - changed ) + " of " + entry.getValue().size() + " events to emit." );
+            }
+        }
+        return changedEvents;
+    }
+
+    /**
+     * Gets the key of the sensor of the event, made of the identifiers of its resources and the event id of its data.
+     * The event name is not part of it, as the events of a sensor are named after its state.
+     *
+     * @param event the event
+     * @return the sensor key
+     */
+    public static String getSensorKey( Event event )
+    {
+        StringBuilder key = new StringBuilder();
+        Header header = event.getHeader();
+        if ( header != null && header.getComponentIdentifier() != null )
+        {
+            for ( Map.Entry<EventComponent, String> entry : new TreeMap<EventComponent, String>(
+                header.getComponentIdentifier() ).entrySet() )
+            {
+                key.append( entry.getValue() ).append( '|' );
+            }
+        }
+        key.append( getData( event, "eventId" ) );
+        return key.toString();
+    }
+
+    /**
+     * Gets the component of the event, i.e. its resource hierarchy.
+     *
+     * @param event the event
+     * @return the component key
+     */
+    static String getComponentKey( Event event )
+    {
+        Header header = event.getHeader();
+        if ( header == null || header.getComponentIdentifier() == null )
+        {
+            return "";
+        }
+        return new TreeMap<EventComponent, String>( header.getComponentIdentifier() ).keySet().toString();
+    }
+
+    private static String getData( Event event, String name )
+    {
+        if ( event.getBody() == null || event.getBody().getData() == null )
+        {
+            return null;
+        }
+        return event.getBody().getData().get( name );
+    }
+
+    private static EventCatalog getEventName( Event event )
+    {
+        return event.getHeader() != null ? event.getHeader().getEventName() : null;
+    }
+
+    private static EventSeverity getSeverity( Event event )
+    {
+        return event.getHeader() != null ? event.getHeader().getSeverity() : null;
+    }
+
+    /**
+     * Gets the hysteresis of the readings of the event.
+     *
+     * @param event the event
+     * @return the hysteresis, 0 if the event value is not a reading
+     */
+    private float getHysteresis( Event event )
+    {
+        if ( DISCRETE_UNIT.equals( getData( event, "unit" ) ) )
+        {
+            return 0;
+        }
+        Float eventHysteresis = null;
+        if ( event.getHeader() != null && event.getHeader().getEventName() != null )
+        {
+            eventHysteresis = this.eventHysteresis.get( event.getHeader().getEventName() );
+        }
+        return eventHysteresis != null ? eventHysteresis : hysteresis;
+    }
+
+    /**
+     * Checks if the value is the same as the given one, allowing the readings to differ by less than the hysteresis.
+     *
+     * @param value the value
+     * @param otherValue the other value
+     * @param hysteresis the hysteresis
+     * @return true if the values are the same
+     */
+    static boolean isSameValue( String value, String otherValue, float hysteresis )
+    {
+        if ( value == null ? otherValue == null : value.equals( otherValue ) )
+        {
+            return true;
+        }
+        if ( hysteresis <= 0 || value == null || otherValue == null )
+        {
+            return false;
+        }
+        try
+        {
+            return Math.abs( Float.parseFloat( value ) - Float.parseFloat( otherValue ) ) < hysteresis;
+        }
+        catch ( NumberFormatException e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Loads the configuration from the given properties. Invalid values are ignored.
+     *
+     * @param properties the properties
+     */
+    public void loadConfig( Properties properties )
+    {
+        if ( properties == null )
+        {
+            return;
+        }
+        String filterEnabled = properties.getProperty( FILTER_ENABLED_PROPERTY );
+        if ( filterEnabled != null && !filterEnabled.trim().isEmpty() )
+        {
+            setEnabled( Boolean.parseBoolean( filterEnabled.trim() ) );
+        }
+        Float value = parseFloat( properties.getProperty( DEBOUNCE_COUNT_PROPERTY ) );
+        if ( value != null && value >= 1 )
+        {
+            setDebounceCount( value.intValue() );
+        }
+        value = parseFloat( properties.getProperty( HYSTERESIS_PROPERTY ) );
+        if ( value != null && value >= 0 )
+        {
+            setHysteresis( value );
+        }
+        value = parseFloat( properties.getProperty( RESYNC_INTERVAL_PROPERTY ) );
+        if ( value != null )
+        {
+            setResyncInterval( value.longValue() );
+        }
+        for ( EventCatalog eventName : EventCatalog.values() )
+        {
+            value = parseFloat( properties.getProperty( HYSTERESIS_PROPERTY_PREFIX + eventName.name() ) );
+            if ( value != null )
+            {
+                setHysteresis( eventName, value );
+            }
+        }
+    }
+
+    private static Float parseFloat( String value )
+    {
+        if ( value == null || value.trim().isEmpty() )
+        {
+            return null;
+        }
+        try
+        {
+            return Float.parseFloat( value.trim() );
+        }
+        catch ( NumberFormatException e )
+        {
+            return null;
+        }
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the table. A disabled table emits all the events, and forgets the sensor states.
+     *
+     * @param enabled
+     */
+    public void setEnabled( boolean enabled )
+    {
+        this.enabled = enabled;
+        if ( !enabled )
+        {
+            nodeStates.clear();
+        }
+    }
+
+    public int getDebounceCount()
+    {
+        return debounceCount;
+    }
+
+    public void setDebounceCount( int debounceCount )
+    {
+        this.debounceCount = Math.max( debounceCount, 1 );
+    }
+
+    public float getHysteresis()
+    {
+        return hysteresis;
+    }
+
+    public void setHysteresis( float hysteresis )
+    {
+        this.hysteresis = hysteresis;
+    }
+
+    /**
+     * Sets the hysteresis of the readings of the event, overriding the default one. A negative hysteresis removes it.
+     *
+     * @param eventName the event name
+     * @param hysteresis the hysteresis
+     */
+    public void setHysteresis( EventCatalog eventName, float hysteresis )
+    {
+        if ( hysteresis < 0 )
+        {
+            eventHysteresis.remove( eventName );
+        }
+        else
+        {
+            eventHysteresis.put( eventName, hysteresis );
+        }
+    }
+
+    public long getResyncInterval()
+    {
+        return resyncInterval;
+    }
+
+    /**
+     * Sets the full resync interval. A non positive interval disables the resync.
+     *
+     * @param resyncInterval the interval in milliseconds
+     */
+    public void setResyncInterval( long resyncInterval )
+    {
+        this.resyncInterval = resyncInterval;
+    }
+
+    /**
+     * Sensor states of a component of a node.
+     */
+    private class ComponentState
+    {
+        private final Map<String, SensorState> sensors = new HashMap<String, SensorState>();
+
+        private long lastResyncTime;
+
+        private int sweep;
+
+        private ComponentState( long now )
+        {
+            lastResyncTime = now;
+        }
+
+        private synchronized void update( List<Event> events, long now, List<Event> changedEvents )
+        {
+            int previousSweep = sweep++;
+            boolean resync = resyncInterval > 0 && now - lastResyncTime >= resyncInterval;
+            if ( resync )
+            {
+                lastResyncTime = now;
+            }
+            for ( Event event : events )
+            {
+                String key = getSensorKey( event );
+                EventCatalog eventName = getEventName( event );
+                EventSeverity severity = getSeverity( event );
+                String value = getData( event, "value" );
+                SensorState state = sensors.get( key );
+                if ( state == null )
+                {
+                    sensors.put( key, new SensorState( eventName, severity, value, sweep ) );
+                    changedEvents.add( event );
+                    continue;
+                }
+                if ( state.sweep == sweep )
+                {
+                    // same sensor more than once in the sweep, emitted as is
+                    changedEvents.add( event );
+                    continue;
+                }
+                boolean absent = state.sweep != previousSweep;
+                state.sweep = sweep;
+                float eventHysteresis = getHysteresis( event );
+                if ( resync || absent )
+                {
+                    state.emit( eventName, severity, value );
+                    changedEvents.add( event );
+                }
+                else if ( state.isSame( eventName, severity, value, eventHysteresis ) )
+                {
+                    state.clearPending();
+                }
+                else if ( debounceCount <= 1 )
+                {
+                    state.emit( eventName, severity, value );
+                    changedEvents.add( event );
+                }
+                else
+                {
+                    if ( state.isPending( eventName, severity, value, eventHysteresis ) )
+                    {
+                        state.pendingCount++;
+                    }
+                    else
+                    {
+                        state.pendingEventName = eventName;
+                        state.pendingSeverity = severity;
+                        state.pendingValue = value;
+                        state.pendingCount = 1;
+                    }
+                    if ( state.pendingCount >= debounceCount )
+                    {
+                        state.emit( eventName, severity, value );
+                        changedEvents.add( event );
+                    }
+                }
+            }
+            if ( resync )
+            {
+                // forgets the sensors missing from the sweep, they are emitted again if they reappear
+                for ( Iterator<SensorState> it = sensors.values().iterator(); it.hasNext(); )
+                {
+                    if ( it.next().sweep != sweep )
+                    {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Last emitted state of a sensor, along with the changed state waiting for its debounce count.
+     */
+    private static class SensorState
+    {
+        private EventCatalog eventName;
+
+        private EventSeverity severity;
+
+        private String value;
+
+        private EventCatalog pendingEventName;
+
+        private EventSeverity pendingSeverity;
+
+        private String pendingValue;
+
+        private int pendingCount;
+
+        /** Last sweep of the component the sensor was seen in. */
+        private int sweep;
+
+        private SensorState( EventCatalog eventName, EventSeverity severity, String value, int sweep )
+        {
+            this.eventName = eventName;
+            this.severity = severity;
+            this.value = value;
+            this.sweep = sweep;
+        }
+
+        private boolean isSame( EventCatalog eventName, EventSeverity severity, String value, float hysteresis )
+        {
+            return this.eventName == eventName && this.severity == severity
+                && isSameValue( this.value, value, hysteresis );
+        }
+
+        private boolean isPending( EventCatalog eventName, EventSeverity severity, String value, float hysteresis )
+        {
+            return pendingCount > 0 && pendingEventName == eventName && pendingSeverity == severity
+                && isSameValue( pendingValue, value, hysteresis );
+        }
+
+        private void emit( EventCatalog eventName, EventSeverity severity, String value )
+        {
+            this.eventName = eventName;
+            this.severity = severity;
+            this.value = value;
+            clearPending();
+        }
+
+        private void clearPending()
+        {
+            pendingEventName = null;
+            pendingSeverity = null;
+            pendingValue = null;
+            pendingCount = 0;
+        }
+    }
+}
@@ -15,8 +15,11 @@
  * *******************************************************************************/
 package com.vmware.vrack.hms.common.monitoring;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 
@@ -35,6 +38,29 @@ public class MonitorResponseCallback
 
     private static Logger logger = Logger.getLogger( MonitorResponseCallback.class );
 
+    private final EventStateTable eventStateTable;
+
+    private final ComponentEventsJournal componentEventsJournal;
+
+    public MonitorResponseCallback()
+    {
+        this( EventStateTable.getInstance(), ComponentEventsJournal.getInstance() );
+    }
+
+    MonitorResponseCallback( EventStateTable eventStateTable, ComponentEventsJournal componentEventsJournal )
+    {
+        this.eventStateTable = eventStateTable;
+        this.componentEventsJournal = componentEventsJournal;
+    }
+
+    /**
+     * Sends the events of the sweep of the components of the node whose state changed since they were last sent, to
+     * the subscribers of the components, and the critical ones to the non maskable event subscribers. All the events
+     * of the components with changed events are published to the {@link ComponentEventsJournal}.
+     *
+     * @param node
+     * @param components
+     */
     public void callbackEventSubcribers( HmsNode node, List<ServerComponent> components )
     {
         for ( ServerComponent component : components )
@@ -43,9 +69,17 @@ public class MonitorResponseCallback
                 EventMonitoringSubscriptionHolder.getEventSubscriberList( node.getNodeID(),
                                                                           component.getEventComponent() );
             List<Event> events = EventMonitoringSubscriptionHolder.getEventList( node, component );
-            postCallBackRequest( subscribers, events );
+            List<Event> changedEvents = eventStateTable.getChangedEvents( node.getNodeID(), events );
+            if ( changedEvents == null || changedEvents.isEmpty() )
+            {
+                continue;
+            }
+            componentEventsJournal.publish( node.getNodeID(), component.getEventComponent(), events );
+            postCallBackRequest( subscribers, changedEvents );
 
-            List<Event> criticalEvents = EventMonitoringSubscriptionHolder.getEventList( node, component, true );
+            List<Event> criticalEvents =
+                getChangedEvents( EventMonitoringSubscriptionHolder.getEventList( node, component, true ),
+                                  changedEvents );
             if ( criticalEvents != null && criticalEvents.size() > 0 )
             {
                 EventsUtil.broadcastNmeEvents( criticalEvents );
@@ -62,9 +96,17 @@ public class MonitorResponseCallback
                 EventMonitoringSubscriptionHolder.getEventSubscriberList( node.getNodeID(),
                                                                           component.getEventComponent() );
             List<Event> events = EventMonitoringSubscriptionHolder.getSwitchEventList( node, component );
-            postCallBackRequest( subscribers, events );
+            List<Event> changedEvents = eventStateTable.getChangedEvents( node.getNodeID(), events );
+            if ( changedEvents == null || changedEvents.isEmpty() )
+            {
+                continue;
+            }
+            componentEventsJournal.publish( node.getNodeID(), component.getEventComponent(), events );
+            postCallBackRequest( subscribers, changedEvents );
 
-            List<Event> criticalEvents = EventMonitoringSubscriptionHolder.getSwitchEventList( node, component, true );
+            List<Event> criticalEvents =
+                getChangedEvents( EventMonitoringSubscriptionHolder.getSwitchEventList( node, component, true ),
+                                  changedEvents );
             if ( criticalEvents != null && criticalEvents.size() > 0 )
             {
                 EventsUtil.broadcastNmeEvents( criticalEvents );
@@ -83,6 +125,35 @@ public class MonitorResponseCallback
 
     }
 
+    /**
+     * Gets the events of the sensors of the changed events.
+     *
+     * @param events
+     * @param changedEvents
+     * @return
+     */
+    private static List<Event> getChangedEvents( List<Event> events, List<Event> changedEvents )
+    {
+        if ( events == null || events.isEmpty() )
+        {
+            return events;
+        }
+        Set<String> changedSensors = new HashSet<String>();
+        for ( Event event : changedEvents )
+        {
+            changedSensors.add( EventStateTable.getSensorKey( event ) );
+        }
+        List<Event> sensorEvents = new ArrayList<Event>();
+        for ( Event event : events )
+        {
+            if ( changedSensors.contains( EventStateTable.getSensorKey( event ) ) )
+            {
+                sensorEvents.add( event );
+            }
+        }
+        return sensorEvents;
+    }
+
     /**
      * Send Events to specific target if Subscriptions are done for those events monitoring
      *
@@ -90,9 +161,31 @@ public class MonitorResponseCallback
      * @param Events
      */
     public void callbackEventSubcribersUsingEvents( HmsNode node, List<Event> events )
+    {
+        callbackEventSubcribersUsingEvents( node, events, false );
+    }
+
+    /**
+     * Send Events to specific target if Subscriptions are done for those events monitoring. If the events are those of
+     * a monitoring sweep of the node, only the ones whose state changed since they were last sent are sent.
+     *
+     * @param node
+     * @param events
+     * @param monitoringSweep whether the events are all the events of a monitoring sweep of their components
+     */
+    public void callbackEventSubcribersUsingEvents( HmsNode node, List<Event> events, boolean monitoringSweep )
     {
         try
         {
+            if ( monitoringSweep && node != null )
+            {
+                events = eventStateTable.getChangedEvents( node.getNodeID(), events );
+                if ( events == null || events.isEmpty() )
+                {
+                    return;
+                }
+            }
+
             // Get Map holding URL and corresponding events to be sent there (Maskable)
             Map<BaseEventMonitoringSubscription, List<Event>> eventsToBesent =
                 EventMonitoringSubscriptionHolder.getFilteredEvents( events );
@@ -0,0 +1,226 @@
+/* ********************************************************************************
+ * MonitorTaskSchedule.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.monitoring;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>MonitorTaskSchedule</code><br>
+ * Holds the scheduling state of a {@link MonitorTaskSuite} registered with {@link MonitoringTaskRequestHandler}: the
+ * next due time of the node's poll tick, whether a poll is in progress and counters of executed and skipped ticks.
+ *
+ * @author VMware, Inc.
+ */
+public class MonitorTaskSchedule
+{
+
+    /** The monitor task suite. */
+    private final MonitorTaskSuite taskSuite;
+
+    /** Whether a monitoring cycle of the task suite is in progress. */
+    private final AtomicBoolean running = new AtomicBoolean( false );
+
+    /** The executed ticks count. */
+    private final AtomicLong executedTicks = new AtomicLong();
+
+    /** The skipped ticks count, i.e. ticks that fired while the previous cycle was still running. */
+    private final AtomicLong skippedTicks = new AtomicLong();
+
+    /** The next due time in milliseconds. */
+    private volatile long nextDueTime;
+
+    /** The duration of the last completed cycle in milliseconds. */
+    private volatile long lastCycleDuration;
+
+    /** The scheduled future of the next tick. */
+    private volatile ScheduledFuture<?> scheduledFuture;
+
+    /** Whether the task suite was stopped by a monitoring shutdown, to be resumed on restart. */
+    private volatile boolean suspended;
+
+    /**
+     * Instantiates a new monitor task schedule.
+     *
+     * @param taskSuite the task suite
+     */
+    public MonitorTaskSchedule( MonitorTaskSuite taskSuite )
+    {
+
+        this.taskSuite = taskSuite;
+    }
+
+    /**
+     * Gets the task suite.
+     *
+     * @return the task suite
+     */
+    public MonitorTaskSuite getTaskSuite()
+    {
+
+        return taskSuite;
+    }
+
+    /**
+     * Gets the node id of the monitored node.
+     *
+     * @return the node id
+     */
+    public String getNodeId()
+    {
+
+        if ( taskSuite.getResponse() == null )
+        {
+            return null;
+        }
+        return taskSuite.getResponse().getHms_node_id();
+    }
+
+    /**
+     * Marks the start of a monitoring cycle.
+     *
+     * @return true, if no cycle was in progress and the new cycle can be started
+     */
+    boolean tryStartCycle()
+    {
+
+        if ( running.compareAndSet( false, true ) )
+        {
+            executedTicks.incrementAndGet();
+            return true;
+        }
+        skippedTicks.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Marks the end of a monitoring cycle.
+     *
+     * @param duration the duration of the cycle in milliseconds
+     */
+    void endCycle( long duration )
+    {
+
+        lastCycleDuration = duration;
+        running.set( false );
+    }
+
+    /**
+     * Checks if a monitoring cycle is in progress.
+     *
+     * @return true, if is running
+     */
+    public boolean isRunning()
+    {
+
+        return running.get();
+    }
+
+    /**
+     * Gets the next due time.
+     *
+     * @return the next due time in milliseconds since epoch
+     */
+    public long getNextDueTime()
+    {
+
+        return nextDueTime;
+    }
+
+    /**
+     * Gets the duration of the last completed monitoring cycle.
+     *
+     * @return the last cycle duration in milliseconds
+     */
+    public long getLastCycleDuration()
+    {
+
+        return lastCycleDuration;
+    }
+
+    /**
+     * Gets the executed ticks count.
+     *
+     * @return the executed ticks
+     */
+    public long getExecutedTicks()
+    {
+
+        return executedTicks.get();
+    }
+
+    /**
+     * Gets the skipped ticks count.
+     *
+     * @return the skipped ticks
+     */
+    public long getSkippedTicks()
+    {
+
+        return skippedTicks.get();
+    }
+
+    /**
+     * Checks if the task suite was stopped by a monitoring shutdown, rather than for good.
+     *
+     * @return true, if is suspended
+     */
+    boolean isSuspended()
+    {
+
+        return suspended;
+    }
+
+    /**
+     * Sets whether the task suite was stopped by a monitoring shutdown.
+     *
+     * @param suspended the suspended
+     */
+    void setSuspended( boolean suspended )
+    {
+
+        this.suspended = suspended;
+    }
+
+    /**
+     * Sets the next tick.
+     *
+     * @param scheduledFuture the scheduled future of the next tick
+     * @param nextDueTime the next due time in milliseconds since epoch
+     */
+    void setNextTick( ScheduledFuture<?> scheduledFuture, long nextDueTime )
+    {
+
+        this.scheduledFuture = scheduledFuture;
+        this.nextDueTime = nextDueTime;
+    }
+
+    /**
+     * Cancels the next tick, if any.
+     */
+    void cancel()
+    {
+
+        ScheduledFuture<?> future = scheduledFuture;
+        if ( future != null )
+        {
+            future.cancel( false );
+        }
+        scheduledFuture = null;
+        nextDueTime = 0;
+    }
+}
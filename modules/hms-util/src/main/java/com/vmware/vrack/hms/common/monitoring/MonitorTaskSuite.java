@@ -15,9 +15,17 @@
  * *******************************************************************************/
 package com.vmware.vrack.hms.common.monitoring;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +39,9 @@ import com.vmware.vrack.hms.common.switchnodes.api.HMSSwitchNode;
 
 /**
  * <code>MonitorTaskSuite.</code><br>
+ * Monitors the components of a node. In each monitoring cycle only the components that are due as per their
+ * frequency in {@link ComponentMonitorConfig} are polled, concurrently and with a per component timeout, so that the
+ * cycle takes as long as the slowest component rather than the sum of all of them.
  *
  * @author VMware, Inc.
  */
@@ -41,10 +52,13 @@ public class MonitorTaskSuite
     /** The logger. */
     private static Logger logger = LoggerFactory.getLogger( MonitorTaskSuite.class );
 
+    /** The default monitor frequency. */
+    private static final long DEFAULT_MONITOR_FREQUENCY = 20000L;
+
     /**
      * The <code>monitorFrequency</code> field.<br>
      */
-    private Long monitorFrequency = 20000L;
+    private Long monitorFrequency = DEFAULT_MONITOR_FREQUENCY;
 
     /**
      * The <code>response</code> field.<br>
@@ -52,7 +66,10 @@ public class MonitorTaskSuite
     protected MonitoringTaskResponse response;
 
     /** The stop monitoring. */
-    private boolean stopMonitoring = false;
+    private volatile boolean stopMonitoring = false;
+
+    /** The time, in milliseconds, each component of the node was last polled at. */
+    private Map<Enum<?>, Long> lastPolledTimes = new ConcurrentHashMap<Enum<?>, Long>();
 
     /**
      * Gets the monitor_frequency.
@@ -103,7 +120,8 @@ public class MonitorTaskSuite
     }
 
     /**
-     * Retrieves Sensor data using specified Provide to get Sensor info for all the components in a node.
+     * Retrieves Sensor data using specified Provide to get Sensor info for all the components in a node. Runs the
+     * monitoring cycle in a loop, sleeping for the tick frequency in between, till monitoring is stopped.
      *
      * @return the monitoring task response
      * @throws HmsException the hms exception
@@ -112,102 +130,308 @@ public class MonitorTaskSuite
         throws HmsException
     {
 
-        MonitorResponseCallback updateSubscriber = new MonitorResponseCallback();
         while ( ( !Thread.currentThread().isInterrupted() ) && ( !stopMonitoring ) )
         {
 
             try
             {
 
-                Thread.sleep( monitorFrequency );
+                Thread.sleep( getTickFrequency() );
 
-                List<ServerComponent> components = response.getComponentList();
-                List<SwitchComponentEnum> switchComponents = response.getSwitchComponentList();
+            }
+            catch ( InterruptedException e )
+            {
 
-                // Monitor Server nodes
-                if ( response.getNode() instanceof ServerNode )
-                {
+                logger.error( "Error getting sensor information for node id: {}.", response.getHms_node_id(), e );
+                throw new HmsException( "Error Initiating monitoring for HMS Node: " + response.getHms_node_id(), e );
+            }
 
-                    if ( response.getNode().getAdminStatus() == NodeAdminStatus.DECOMISSION )
-                    {
-                        logger.info( "In executeTask, Server with nodeId: {} status is {}."
-                            + " Stopping Monitoring for the server.", response.getNode().getNodeID(),
-                                     NodeAdminStatus.DECOMISSION );
-                        break;
-                    }
-                    if ( !response.node.isNodeOperational() )
-                    {
-                        continue;
-                    }
+            if ( !executeMonitoringCycle() )
+            {
+                break;
+            }
+        }
+        return response;
+    }
 
-                    for ( ServerComponent component : components )
-                    {
+    /**
+     * Executes a single monitoring cycle, i.e. one sweep over all the components of the node. Used by
+     * {@link MonitoringTaskRequestHandler} to run the sweep on a scheduled tick instead of a dedicated thread.
+     *
+     * @return false, if monitoring for the node should be stopped. Otherwise, returns true.
+     * @throws HmsException the hms exception
+     */
+    public boolean executeMonitoringCycle()
+        throws HmsException
+    {
 
-                        try
-                        {
+        MonitorResponseCallback updateSubscriber = new MonitorResponseCallback();
+        try
+        {
 
-                            if ( !stopMonitoring )
-                            {
+            long now = System.currentTimeMillis();
+            long tickFrequency = getTickFrequency();
+            Long defaultFrequency = getDefaultComponentFrequency();
 
-                                logger.debug( "Monitoring node: {};  TimeStamp: {}.", response.getHms_node_id(),
-                                              new Date() );
-                                MonitorTask monitor = new MonitorTask( response, component );
-                                monitor.executeTask();
-                            }
-                        }
-                        catch ( Exception e )
-                        {
+            // Monitor Server nodes
+            if ( response.getNode() instanceof ServerNode )
+            {
 
-                            logger.error( "Error getting sensor information for node id: {}.",
-                                          response.getHms_node_id(), e );
-                        }
-                    }
+                if ( response.getNode().getAdminStatus() == NodeAdminStatus.DECOMISSION )
+                {
+                    logger.info( "In executeMonitoringCycle, Server with nodeId: {} status is {}."
+                        + " Stopping Monitoring for the server.", response.getNode().getNodeID(),
+                                 NodeAdminStatus.DECOMISSION );
+                    return false;
+                }
+                if ( !response.node.isNodeOperational() )
+                {
+                    return true;
                 }
 
-                // Monitor Switch nodes
-                if ( response.getNode() instanceof HMSSwitchNode )
+                List<ServerComponent> components = new ArrayList<ServerComponent>();
+                List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+                for ( final ServerComponent component : response.getComponentList() )
                 {
-                    for ( SwitchComponentEnum component : switchComponents )
+                    if ( isComponentDue( component, ComponentMonitorConfig.getFrequency( component, defaultFrequency ),
+                                         now, tickFrequency ) )
                     {
-
-                        try
+                        components.add( component );
+                        tasks.add( new Callable<Void>()
                         {
-
-                            if ( !stopMonitoring )
+                            @Override
+                            public Void call()
+                                throws Exception
                             {
-
-                                logger.debug( "Monitoring Switch node: {} TimeStamp : {} ", response.getHms_node_id(),
-                                              new Date() );
-                                MonitorSwitchTask monitor = new MonitorSwitchTask( response, component );
+                                logger.debug( "Monitoring node: {};  Component: {};  TimeStamp: {}.",
+                                              response.getHms_node_id(), component, new Date() );
+                                MonitorTask monitor = new MonitorTask( response, component );
                                 monitor.executeTask();
+                                return null;
                             }
-                        }
-                        catch ( Exception e )
-                        {
-                            logger.error( "Error getting sensor information for switch node id: {}",
-                                          response.getHms_node_id(), e );
-                        }
+                        } );
                     }
                 }
 
-                if ( response.getNode() instanceof ServerNode )
+                pollComponents( components, tasks, now );
+                if ( !components.isEmpty() )
                 {
                     updateSubscriber.callbackEventSubcribers( response.node, components );
                 }
+            }
+
+            // Monitor Switch nodes
+            if ( response.getNode() instanceof HMSSwitchNode )
+            {
+
+                List<SwitchComponentEnum> switchComponents = new ArrayList<SwitchComponentEnum>();
+                List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+                for ( final SwitchComponentEnum component : response.getSwitchComponentList() )
+                {
+                    if ( isComponentDue( component, ComponentMonitorConfig.getFrequency( component, defaultFrequency ),
+                                         now, tickFrequency ) )
+                    {
+                        switchComponents.add( component );
+                        tasks.add( new Callable<Void>()
+                        {
+                            @Override
+                            public Void call()
+                                throws Exception
+                            {
+                                logger.debug( "Monitoring Switch node: {} Component: {} TimeStamp : {} ",
+                                              response.getHms_node_id(), component, new Date() );
+                                MonitorSwitchTask monitor = new MonitorSwitchTask( response, component );
+                                monitor.executeTask();
+                                return null;
+                            }
+                        } );
+                    }
+                }
 
-                if ( response.getNode() instanceof HMSSwitchNode )
+                pollComponents( switchComponents, tasks, now );
+                if ( !switchComponents.isEmpty() )
                 {
                     updateSubscriber.callbackSwitchEventSubcribers( response.node, switchComponents );
                 }
+            }
+
+        }
+        catch ( Exception e )
+        {
+
+            logger.error( "Error getting sensor information for node id: {}.", response.getHms_node_id(), e );
+            throw new HmsException( "Error Initiating monitoring for HMS Node: " + response.getHms_node_id(), e );
+        }
+        return true;
+    }
+
+    /**
+     * Gets the frequency at which the monitoring cycles of the node have to run, i.e. the smallest of the monitor
+     * frequency and the frequencies of the node's components.
+     *
+     * @return the tick frequency in milliseconds
+     */
+    public long getTickFrequency()
+    {
+
+        Long defaultFrequency = getDefaultComponentFrequency();
+        long tickFrequency = defaultFrequency;
+        if ( response == null )
+        {
+            return tickFrequency;
+        }
+        if ( response.getComponentList() != null )
+        {
+            for ( ServerComponent component : response.getComponentList() )
+            {
+                tickFrequency =
+                    Math.min( tickFrequency, ComponentMonitorConfig.getFrequency( component, defaultFrequency ) );
+            }
+        }
+        if ( response.getSwitchComponentList() != null )
+        {
+            for ( SwitchComponentEnum component : response.getSwitchComponentList() )
+            {
+                tickFrequency =
+                    Math.min( tickFrequency, ComponentMonitorConfig.getFrequency( component, defaultFrequency ) );
+            }
+        }
+        return tickFrequency;
+    }
+
+    /**
+     * Gets the frequency of the components that do not have one configured, i.e. the monitor frequency.
+     *
+     * @return the default component frequency in milliseconds
+     */
+    private Long getDefaultComponentFrequency()
+    {
+
+        return ( monitorFrequency != null && monitorFrequency > 0 ) ? monitorFrequency : DEFAULT_MONITOR_FREQUENCY;
+    }
+
+    /**
+     * Checks if the component is due for polling. Half a tick is tolerated, so that the jitter applied to the
+     * monitoring ticks does not make a component miss every other tick.
+     *
+     * @param component the component
+     * @param frequency the frequency of the component
+     * @param now the current time in milliseconds
+     * @param tickFrequency the tick frequency
+     * @return true, if the component is due
+     */
+    private boolean isComponentDue( Enum<?> component, long frequency, long now, long tickFrequency )
+    {
+
+        Long lastPolled = lastPolledTimes.get( component );
+        return lastPolled == null || ( now - lastPolled ) >= ( frequency - tickFrequency / 2 );
+    }
+
+    /**
+     * Polls the given components concurrently, waiting at most the component poll timeout of
+     * {@link ComponentMonitorConfig} for them. Components that fail are logged and skipped. Components that time out
+     * are not counted as polled and are removed from the given components, so that the subscribers are not called back
+     * for them, and likewise all of them if monitoring is shut down.
+     *
+     * @param components the components, left with the ones polled
+     * @param tasks the poll tasks, one per component
+     * @param now the time of the monitoring cycle in milliseconds
+     * @throws InterruptedException the interrupted exception
+     */
+    protected void pollComponents( List<? extends Enum<?>> components, List<Callable<Void>> tasks, long now )
+        throws InterruptedException
+    {
 
+        for ( Enum<?> component : components )
+        {
+            lastPolledTimes.put( component, now );
+        }
+
+        if ( tasks.isEmpty() )
+        {
+            return;
+        }
+        if ( tasks.size() == 1 )
+        {
+            try
+            {
+                tasks.get( 0 ).call();
             }
             catch ( Exception e )
             {
+                logger.error( "Error getting sensor information for node id: {} and component: {}.",
+                              response.getHms_node_id(), components.get( 0 ), e );
+            }
+            return;
+        }
 
-                logger.error( "Error getting sensor information for node id: {}.", response.getHms_node_id(), e );
-                throw new HmsException( "Error Initiating monitoring for HMS Node: " + response.getHms_node_id(), e );
+        long timeout = ComponentMonitorConfig.getComponentPollTimeout();
+        ExecutorService executorService = getComponentExecutorService();
+        List<Future<Void>> futures = null;
+        try
+        {
+            if ( executorService != null )
+            {
+                futures = executorService.invokeAll( tasks, timeout, TimeUnit.MILLISECONDS );
+            }
+        }
+        catch ( RejectedExecutionException e )
+        {
+            futures = null;
+        }
+        if ( futures == null )
+        {
+            logger.debug( "Monitoring is shut down. Not polling node id: {}.", response.getHms_node_id() );
+            for ( Enum<?> component : components )
+            {
+                lastPolledTimes.remove( component );
+            }
+            components.clear();
+            return;
+        }
+
+        for ( int i = futures.size() - 1; i >= 0; i-- )
+        {
+            Future<Void> future = futures.get( i );
+            if ( future.isCancelled() )
+            {
+                logger.warn( "Timed out getting sensor information for node id: {} and component: {}.",
+                             response.getHms_node_id(), components.get( i ) );
+                lastPolledTimes.remove( components.get( i ) );
+                components.remove( i );
+                continue;
+            }
+            try
+            {
+                future.get();
+            }
+            catch ( ExecutionException e )
+            {
+                logger.error( "Error getting sensor information for node id: {} and component: {}.",
+                              response.getHms_node_id(), components.get( i ), e.getCause() );
             }
         }
+    }
+
+    /**
+     * Gets the executor service the components are polled on, owned by the {@link MonitoringTaskRequestHandler}.
+     *
+     * @return the component executor service, or null if monitoring is shut down
+     */
+    protected static ExecutorService getComponentExecutorService()
+    {
+
+        return MonitoringTaskRequestHandler.getInstance().getComponentExecutorService();
+    }
+
+    /**
+     * Gets the monitoring task response.
+     *
+     * @return the response
+     */
+    public MonitoringTaskResponse getResponse()
+    {
+
         return response;
     }
 
@@ -15,19 +15,32 @@
  * *******************************************************************************/
 package com.vmware.vrack.hms.common.monitoring;
 
-import java.util.ArrayList;
-import java.util.concurrent.CompletionService;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * <code>MonitoringTaskRequestHandler</code><br>
+ * Schedules the monitoring cycles of the submitted {@link MonitorTaskSuite}s. A single scheduler thread fires the poll
+ * ticks of all the nodes, and each tick runs one monitoring cycle on a bounded worker pool, so the number of monitored
+ * nodes is not limited by the number of monitoring threads. A tick is skipped if the previous cycle of the node is
+ * still running. A task suite which stops monitoring is forgotten, except when it is stopped by
+ * {@link #shutMonitoring(Long)}, in which case {@link #restartMonitoring(Long)} resumes it.
  *
  * @author VMware, Inc.
  */
@@ -40,22 +53,34 @@ public class MonitoringTaskRequestHandler
     /** The monitoring thread pool size. */
     private static int MONITORING_THREAD_POOL_SIZE = 40;
 
+    /** The monitoring scheduler thread pool size. */
+    private static final int MONITORING_SCHEDULER_THREAD_POOL_SIZE = 1;
+
+    /** The property holding the jitter, in percentage of the monitor frequency, applied to every poll tick. */
+    public static final String MONITORING_TICK_JITTER_PERCENT_PROPERTY = "MONITORING_TICK_JITTER_PERCENT";
+
+    /** The jitter, in percentage of the monitor frequency, applied to every poll tick. */
+    private static volatile int MONITORING_TICK_JITTER_PERCENT = 10;
+
     /** The instance. */
     private static volatile MonitoringTaskRequestHandler instance = new MonitoringTaskRequestHandler();
 
-    /** The server_monitor_executor. */
+    /** The worker pool executing the monitoring cycles. */
     private ExecutorService executorService = null;
 
-    /** The monitor server comp service. */
-    private CompletionService<MonitoringTaskResponse> completionService = null;
+    /** The scheduler firing the poll ticks. */
+    private ScheduledExecutorService schedulerService = null;
 
-    /** The monitoring server tasks. */
-    private ArrayList<MonitorTaskSuite> monitoringTasks = new ArrayList<MonitorTaskSuite>();
+    /** The worker pool polling the components of the nodes concurrently, see {@link MonitorTaskSuite}. */
+    private volatile ExecutorService componentExecutorService = null;
+
+    /** The monitoring task schedules. */
+    private List<MonitorTaskSchedule> monitoringTasks = new CopyOnWriteArrayList<MonitorTaskSchedule>();
 
     /**
      * Instantiates a new monitoring task request handler.
      */
-    private MonitoringTaskRequestHandler()
+    MonitoringTaskRequestHandler()
     {
 
         try
@@ -82,6 +107,53 @@ public class MonitoringTaskRequestHandler
         MONITORING_THREAD_POOL_SIZE = threadPoolSize;
     }
 
+    /**
+     * Loads the tick jitter from {@link #MONITORING_TICK_JITTER_PERCENT_PROPERTY} of the given properties. Values
+     * outside of 0 to 100 are ignored. Takes effect from the next poll tick.
+     *
+     * @param properties the properties
+     */
+    public static void loadConfig( Properties properties )
+    {
+
+        if ( properties == null )
+        {
+            return;
+        }
+        String tickJitterPercent = properties.getProperty( MONITORING_TICK_JITTER_PERCENT_PROPERTY );
+        if ( tickJitterPercent == null )
+        {
+            return;
+        }
+        int percent = -1;
+        try
+        {
+            percent = Integer.parseInt( tickJitterPercent.trim() );
+        }
+        catch ( NumberFormatException e )
+        {
+            logger.debug( "{} is not a number: {}.", MONITORING_TICK_JITTER_PERCENT_PROPERTY, tickJitterPercent );
+        }
+        if ( percent < 0 || percent > 100 )
+        {
+            logger.warn( "Invalid {}: {}. Using {}.", MONITORING_TICK_JITTER_PERCENT_PROPERTY, tickJitterPercent,
+                         MONITORING_TICK_JITTER_PERCENT );
+            return;
+        }
+        MONITORING_TICK_JITTER_PERCENT = percent;
+    }
+
+    /**
+     * Gets the jitter applied to every poll tick.
+     *
+     * @return the jitter, in percentage of the monitor frequency
+     */
+    static int getTickJitterPercent()
+    {
+
+        return MONITORING_TICK_JITTER_PERCENT;
+    }
+
     /**
      * Gets the single instance of MonitoringTaskRequestHandler.
      *
@@ -99,12 +171,79 @@ public class MonitoringTaskRequestHandler
      * @throws ExecutionException the execution exception
      * @throws InterruptedException the interrupted exception
      */
-    public void initailizeServerMonitoringThreadPool()
+    public synchronized void initailizeServerMonitoringThreadPool()
         throws ExecutionException, InterruptedException
     {
 
-        executorService = Executors.newFixedThreadPool( MONITORING_THREAD_POOL_SIZE );
-        completionService = new ExecutorCompletionService<MonitoringTaskResponse>( executorService );
+        executorService = createExecutorService();
+        schedulerService = createSchedulerService();
+    }
+
+    /**
+     * Creates the worker pool executing the monitoring cycles.
+     *
+     * @return the executor service
+     */
+    ExecutorService createExecutorService()
+    {
+
+        return Executors.newFixedThreadPool( MONITORING_THREAD_POOL_SIZE );
+    }
+
+    /**
+     * Creates the scheduler firing the poll ticks.
+     *
+     * @return the scheduled executor service
+     */
+    ScheduledExecutorService createSchedulerService()
+    {
+
+        return Executors.newScheduledThreadPool( MONITORING_SCHEDULER_THREAD_POOL_SIZE );
+    }
+
+    /**
+     * Creates the worker pool polling the components of the nodes, on daemon threads.
+     *
+     * @return the executor service
+     */
+    ExecutorService createComponentExecutorService()
+    {
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool( ComponentMonitorConfig.getComponentThreadPoolSize(), new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "monitoring-component-" + threadCount.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+    }
+
+    /**
+     * Gets the worker pool polling the components of the nodes. The pool is created on first use, as the singleton is
+     * instantiated before {@link ComponentMonitorConfig#loadConfig(java.util.Properties)} sets its size.
+     *
+     * @return the component executor service, or null if monitoring is shut down
+     */
+    public ExecutorService getComponentExecutorService()
+    {
+
+        ExecutorService components = componentExecutorService;
+        if ( components == null )
+        {
+            synchronized ( this )
+            {
+                if ( componentExecutorService == null && executorService != null )
+                {
+                    componentExecutorService = createComponentExecutorService();
+                }
+                components = componentExecutorService;
+            }
+        }
+        return components;
     }
 
     /**
@@ -117,8 +256,218 @@ public class MonitoringTaskRequestHandler
         throws Exception
     {
 
-        completionService.submit( task );
-        monitoringTasks.add( task );
+        MonitorTaskSchedule schedule = new MonitorTaskSchedule( task );
+        monitoringTasks.add( schedule );
+        scheduleNextTick( schedule );
+    }
+
+    /**
+     * Gets the next due time of the poll tick of the given node.
+     *
+     * @param nodeId the node id
+     * @return the next due time in milliseconds since epoch, or null if the node is not monitored
+     */
+    public Long getNextDueTime( String nodeId )
+    {
+
+        for ( MonitorTaskSchedule schedule : monitoringTasks )
+        {
+            if ( nodeId != null && nodeId.equals( schedule.getNodeId() ) && schedule.getNextDueTime() > 0 )
+            {
+                return schedule.getNextDueTime();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the next due times of the poll ticks of all the monitored nodes.
+     *
+     * @return the map of node id to next due time in milliseconds since epoch
+     */
+    public Map<String, Long> getNextDueTimes()
+    {
+
+        Map<String, Long> nextDueTimes = new HashMap<String, Long>();
+        for ( MonitorTaskSchedule schedule : monitoringTasks )
+        {
+            if ( schedule.getNodeId() != null && schedule.getNextDueTime() > 0 )
+            {
+                nextDueTimes.put( schedule.getNodeId(), schedule.getNextDueTime() );
+            }
+        }
+        return nextDueTimes;
+    }
+
+    /**
+     * Gets the monitoring task schedules.
+     *
+     * @return the monitoring task schedules
+     */
+    public List<MonitorTaskSchedule> getMonitorTaskSchedules()
+    {
+
+        return monitoringTasks;
+    }
+
+    /**
+     * Schedules the next poll tick of the given monitoring task, after its tick frequency plus jitter.
+     *
+     * @param schedule the schedule
+     */
+    private synchronized void scheduleNextTick( final MonitorTaskSchedule schedule )
+    {
+
+        if ( schedule.getTaskSuite().isStopMonitoring() )
+        {
+            removeSchedule( schedule );
+            return;
+        }
+        if ( schedulerService == null || schedulerService.isShutdown() )
+        {
+            schedule.cancel();
+            return;
+        }
+
+        long delay = getTickDelay( schedule.getTaskSuite().getTickFrequency() );
+        try
+        {
+
+            ScheduledFuture<?> future = schedulerService.schedule( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    onTick( schedule );
+                }
+            }, delay, TimeUnit.MILLISECONDS );
+            schedule.setNextTick( future, System.currentTimeMillis() + delay );
+
+        }
+        catch ( RejectedExecutionException e )
+        {
+
+            logger.debug( "Monitoring scheduler is shut down. Not scheduling node: {}.", schedule.getNodeId() );
+            schedule.cancel();
+        }
+    }
+
+    /**
+     * Handles a poll tick: schedules the next tick and, unless the previous cycle of the node is still running, runs a
+     * monitoring cycle on the worker pool.
+     *
+     * @param schedule the schedule
+     */
+    private void onTick( final MonitorTaskSchedule schedule )
+    {
+
+        final MonitorTaskSuite taskSuite = schedule.getTaskSuite();
+        if ( taskSuite.isStopMonitoring() )
+        {
+            removeSchedule( schedule );
+            return;
+        }
+
+        scheduleNextTick( schedule );
+
+        if ( !schedule.tryStartCycle() )
+        {
+            logger.debug( "Skipping monitoring tick for node: {}, as the previous cycle is still running.",
+                          schedule.getNodeId() );
+            return;
+        }
+
+        ExecutorService workers = executorService;
+        if ( workers == null )
+        {
+            schedule.endCycle( 0 );
+            return;
+        }
+        try
+        {
+
+            workers.execute( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    runCycle( schedule );
+                }
+            } );
+
+        }
+        catch ( RejectedExecutionException e )
+        {
+
+            logger.debug( "Monitoring worker pool is shut down. Not monitoring node: {}.", schedule.getNodeId() );
+            schedule.endCycle( 0 );
+        }
+    }
+
+    /**
+     * Runs one monitoring cycle of the given schedule.
+     *
+     * @param schedule the schedule
+     */
+    private void runCycle( MonitorTaskSchedule schedule )
+    {
+
+        long start = System.currentTimeMillis();
+        try
+        {
+
+            if ( !schedule.getTaskSuite().executeMonitoringCycle() )
+            {
+                logger.info( "Stopping monitoring for node: {}.", schedule.getNodeId() );
+                schedule.getTaskSuite().setStopMonitoring( true );
+                removeSchedule( schedule );
+            }
+
+        }
+        catch ( Exception e )
+        {
+
+            logger.error( "Error executing monitoring cycle for node: {}.", schedule.getNodeId(), e );
+        }
+        finally
+        {
+
+            schedule.endCycle( System.currentTimeMillis() - start );
+        }
+    }
+
+    /**
+     * Cancels the next tick of a stopped task suite and forgets it, unless it was stopped by a monitoring shutdown.
+     *
+     * @param schedule the schedule
+     */
+    private void removeSchedule( MonitorTaskSchedule schedule )
+    {
+
+        schedule.cancel();
+        if ( !schedule.isSuspended() )
+        {
+            monitoringTasks.remove( schedule );
+        }
+    }
+
+    /**
+     * Gets the delay of the next tick, i.e. the tick frequency with a random jitter of upto
+     * MONITORING_TICK_JITTER_PERCENT of it, so that the nodes' ticks do not all fire together.
+     *
+     * @param tickFrequency the tick frequency
+     * @return the tick delay in milliseconds
+     */
+    long getTickDelay( long tickFrequency )
+    {
+
+        long frequency = tickFrequency > 0 ? tickFrequency : 1;
+        long jitter = ( frequency * MONITORING_TICK_JITTER_PERCENT ) / 100;
+        if ( jitter <= 0 )
+        {
+            return frequency;
+        }
+        return frequency + ThreadLocalRandom.current().nextLong( -jitter, jitter + 1 );
     }
 
     /**
@@ -126,21 +475,32 @@ public class MonitoringTaskRequestHandler
      *
      * @param timeoutInMilliSeconds
      *            <p>
-     *            Timeout in milli seconds for waiting till all the monitoring threads have been terminated. Typically
+     *            Timeout in milli seconds for waiting till all the running monitoring cycles have completed. Typically
      *            this value is the monitoring frequency.
      */
-    public void shutMonitoring( Long timeoutInMilliSeconds )
+    public synchronized void shutMonitoring( Long timeoutInMilliSeconds )
     {
 
         if ( executorService != null )
         {
 
             /*
-             * For all the MonitorTaskSuite instances, set stopMonitoring to true.
+             * For all the MonitorTaskSuite instances, set stopMonitoring to true and cancel the pending ticks. The
+             * ones still monitoring are suspended, so that a restart resumes them, the others are forgotten.
              */
-            for ( MonitorTaskSuite monitoringTask : monitoringTasks )
+            for ( MonitorTaskSchedule schedule : monitoringTasks )
+            {
+                if ( !schedule.getTaskSuite().isStopMonitoring() )
+                {
+                    schedule.setSuspended( true );
+                    schedule.getTaskSuite().setStopMonitoring( true );
+                }
+                removeSchedule( schedule );
+            }
+
+            if ( schedulerService != null )
             {
-                monitoringTask.setStopMonitoring( true );
+                schedulerService.shutdownNow();
             }
 
             boolean terminated = false;
@@ -176,36 +536,57 @@ public class MonitoringTaskRequestHandler
 
                 logger.debug( "Successfully stopped all the monitoring threads." );
             }
+            if ( componentExecutorService != null )
+            {
+                componentExecutorService.shutdownNow();
+            }
             executorService = null;
-            completionService = null;
+            schedulerService = null;
+            componentExecutorService = null;
         }
     }
 
     /**
-     * Restart monitoring.
+     * Restart monitoring, resuming the task suites which were monitoring when it was shut down.
      *
      * @param timeoutInMilliSeconds the timeout in milli seconds
      * @throws ExecutionException the execution exception
      * @throws InterruptedException the interrupted exception
      */
-    public void restartMonitoring( Long timeoutInMilliSeconds )
+    public synchronized void restartMonitoring( Long timeoutInMilliSeconds )
         throws ExecutionException, InterruptedException
     {
 
         shutMonitoring( timeoutInMilliSeconds );
         initailizeServerMonitoringThreadPool();
-        for ( MonitorTaskSuite task : monitoringTasks )
+        for ( MonitorTaskSchedule schedule : monitoringTasks )
         {
-            completionService.submit( task );
+            if ( schedule.isSuspended() )
+            {
+                schedule.setSuspended( false );
+                schedule.getTaskSuite().setStopMonitoring( false );
+            }
+            scheduleNextTick( schedule );
         }
     }
 
     /**
      * Destroy.
      */
-    public void destroy()
+    public synchronized void destroy()
     {
 
-        executorService.shutdownNow();
+        if ( schedulerService != null )
+        {
+            schedulerService.shutdownNow();
+        }
+        if ( executorService != null )
+        {
+            executorService.shutdownNow();
+        }
+        if ( componentExecutorService != null )
+        {
+            componentExecutorService.shutdownNow();
+        }
     }
 }
@@ -43,6 +43,23 @@ public class CommonProperties
 
     private static Long retryThreadSleepTime = 30000L;
 
+    /**
+     * Pooled HTTP connections settings, see {@link HttpClientPool}
+     */
+    private static int httpPoolMaxTotal = 100;
+
+    private static int httpPoolMaxPerRoute = 50;
+
+    private static int httpPoolIdleTimeout = 60000;
+
+    private static int httpPoolValidateAfterInactivity = 5000;
+
+    private static int httpConnectTimeout = 20000;
+
+    private static int httpConnectionRequestTimeout = 30000;
+
+    private static int httpSocketTimeout = 300000;
+
     /**
      * Plugin Task Timeout
      */
@@ -105,6 +122,83 @@ public class CommonProperties
         return retryThreadSleepTime;
     }
 
+    public static int getHttpPoolMaxTotal()
+    {
+        return httpPoolMaxTotal;
+    }
+
+    @Value( "${hms.http.pool.max.total:100}" )
+    public void setHttpPoolMaxTotal( int httpPoolMaxTotal )
+    {
+        CommonProperties.httpPoolMaxTotal = httpPoolMaxTotal;
+    }
+
+    public static int getHttpPoolMaxPerRoute()
+    {
+        return httpPoolMaxPerRoute;
+    }
+
+    @Value( "${hms.http.pool.max.per.route:50}" )
+    public void setHttpPoolMaxPerRoute( int httpPoolMaxPerRoute )
+    {
+        CommonProperties.httpPoolMaxPerRoute = httpPoolMaxPerRoute;
+    }
+
+    public static int getHttpPoolIdleTimeout()
+    {
+        return httpPoolIdleTimeout;
+    }
+
+    @Value( "${hms.http.pool.idle.timeout:60000}" )
+    public void setHttpPoolIdleTimeout( int httpPoolIdleTimeout )
+    {
+        CommonProperties.httpPoolIdleTimeout = httpPoolIdleTimeout;
+    }
+
+    public static int getHttpPoolValidateAfterInactivity()
+    {
+        return httpPoolValidateAfterInactivity;
+    }
+
+    @Value( "${hms.http.pool.validate.after.inactivity:5000}" )
+    public void setHttpPoolValidateAfterInactivity( int httpPoolValidateAfterInactivity )
+    {
+        CommonProperties.httpPoolValidateAfterInactivity = httpPoolValidateAfterInactivity;
+    }
+
+    public static int getHttpConnectTimeout()
+    {
+        return httpConnectTimeout;
+    }
+
+    @Value( "${hms.http.connect.timeout:20000}" )
+    public void setHttpConnectTimeout( int httpConnectTimeout )
+    {
+        CommonProperties.httpConnectTimeout = httpConnectTimeout;
+    }
+
+    public static int getHttpConnectionRequestTimeout()
+    {
+        return httpConnectionRequestTimeout;
+    }
+
+    @Value( "${hms.http.connection.request.timeout:30000}" )
+    public void setHttpConnectionRequestTimeout( int httpConnectionRequestTimeout )
+    {
+        CommonProperties.httpConnectionRequestTimeout = httpConnectionRequestTimeout;
+    }
+
+    public static int getHttpSocketTimeout()
+    {
+        return httpSocketTimeout;
+    }
+
+    @Value( "${hms.http.socket.timeout:300000}" )
+    public void setHttpSocketTimeout( int httpSocketTimeout )
+    {
+        CommonProperties.httpSocketTimeout = httpSocketTimeout;
+    }
+
     /*
      * public static Integer getPluginThreadPoolCount() { return pluginThreadPoolCount; }
      * @Value("${hms.task.scheduler.thread.count}") public void setPluginThreadPoolCount(Integer pluginThreadPoolCount)
@@ -41,6 +41,10 @@ public class Constants
 
     public static final String HMS_ON_DEMAND_SWITCH_EVENTS_FETCH_URI = "/api/1.0/hms/event/switches";
 
+    public static final String HMS_BULK_EVENTS_FETCH_URI = "/api/1.0/hms/event/bulk";
+
+    public static final String HMS_EVENTS_STREAM_URI = "/api/1.0/hms/event/stream";
+
     public static final String HMS_LOCAL_MONITORED_EVENTS_URI = "/api/1.0/hms/events/monitoredevents";
 
     public static final String NIC_LINK_DOWN_SENSOR_DISCRETE_VALUE = "NIC Link Down";
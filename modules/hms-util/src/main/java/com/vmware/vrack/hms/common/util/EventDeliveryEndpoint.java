@@ -0,0 +1,346 @@
+/* ********************************************************************************
+ * EventDeliveryEndpoint.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vmware.vrack.common.event.Event;
+import com.vmware.vrack.hms.common.RequestMethod;
+
+/**
+ * Delivery state of a single subscriber endpoint of {@link EventDeliveryService}: the bounded queue of events waiting
+ * to be delivered, the batch being delivered, the circuit breaker protecting the endpoint and its delivery metrics.
+ *
+ * @author VMware, Inc.
+ */
+public class EventDeliveryEndpoint
+{
+
+    /**
+     * Circuit breaker state of the endpoint.
+     */
+    public enum CircuitState
+    {
+        /** Deliveries are attempted. */
+        CLOSED,
+        /** Deliveries are suspended till the open interval elapses. */
+        OPEN,
+        /** A single trial delivery is allowed; its outcome closes or re-opens the circuit. */
+        HALF_OPEN
+    }
+
+    /** The notification endpoint url. */
+    private final String url;
+
+    /** The request method. */
+    private final RequestMethod requestMethod;
+
+    /** The events waiting to be delivered. */
+    private final LinkedBlockingQueue<Event> queue;
+
+    /** Whether a flush of the endpoint is scheduled or running. */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean( false );
+
+    /** The batch being delivered, kept across retries. Accessed only by the flush in progress. */
+    private List<Event> batch;
+
+    /** The delivery attempts of the current batch. */
+    private int attempts;
+
+    /** The circuit state. */
+    private volatile CircuitState circuitState = CircuitState.CLOSED;
+
+    /** The consecutive delivery failures. */
+    private int consecutiveFailures;
+
+    /** The time till which the circuit stays open. */
+    private volatile long openUntil;
+
+    /** The delivered events count. */
+    private final AtomicLong deliveredEvents = new AtomicLong();
+
+    /** The dropped events count. */
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    /** The delivered batches count. */
+    private final AtomicLong deliveredBatches = new AtomicLong();
+
+    /** The failed deliveries count. */
+    private final AtomicLong failedDeliveries = new AtomicLong();
+
+    /** The total latency of the delivered batches. */
+    private final AtomicLong totalDeliveryLatency = new AtomicLong();
+
+    /** The latency of the last delivered batch. */
+    private volatile long lastDeliveryLatency;
+
+    /**
+     * Instantiates a new event delivery endpoint.
+     *
+     * @param url the url
+     * @param requestMethod the request method
+     * @param queueCapacity the queue capacity
+     */
+    public EventDeliveryEndpoint( String url, RequestMethod requestMethod, int queueCapacity )
+    {
+
+        this.url = url;
+        this.requestMethod = requestMethod;
+        this.queue = new LinkedBlockingQueue<Event>( queueCapacity );
+    }
+
+    /**
+     * Queues the events for delivery. If the queue is full, the oldest queued events are dropped to make room.
+     *
+     * @param events the events
+     */
+    void offer( List<Event> events )
+    {
+
+        for ( Event event : events )
+        {
+            while ( !queue.offer( event ) )
+            {
+                if ( queue.poll() != null )
+                {
+                    droppedEvents.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the batch to deliver, draining upto batchSize events from the queue if there is no pending batch.
+     *
+     * @param batchSize the batch size
+     * @return the batch, empty if there is nothing to deliver
+     */
+    List<Event> getBatch( int batchSize )
+    {
+
+        if ( batch == null || batch.isEmpty() )
+        {
+            batch = new ArrayList<Event>( Math.min( batchSize, Math.max( queue.size(), 1 ) ) );
+            queue.drainTo( batch, batchSize );
+            attempts = 0;
+        }
+        return batch;
+    }
+
+    /**
+     * Records the successful delivery of the current batch.
+     *
+     * @param latency the delivery latency in milliseconds
+     */
+    void onDeliverySuccess( long latency )
+    {
+
+        deliveredEvents.addAndGet( batch.size() );
+        deliveredBatches.incrementAndGet();
+        totalDeliveryLatency.addAndGet( latency );
+        lastDeliveryLatency = latency;
+        batch = null;
+        attempts = 0;
+        consecutiveFailures = 0;
+        circuitState = CircuitState.CLOSED;
+    }
+
+    /**
+     * Records the failed delivery of the current batch. The batch is dropped once maxRetries is exceeded, and the
+     * circuit is opened after failureThreshold consecutive failures, or on a failed trial delivery.
+     *
+     * @param maxRetries the max retries of a batch
+     * @param failureThreshold the failure threshold
+     * @param openInterval the interval the circuit stays open in milliseconds
+     * @return the attempts made so far for the current batch, 0 if the batch was dropped
+     */
+    int onDeliveryFailure( int maxRetries, int failureThreshold, long openInterval )
+    {
+
+        failedDeliveries.incrementAndGet();
+        consecutiveFailures++;
+        if ( circuitState == CircuitState.HALF_OPEN || consecutiveFailures >= failureThreshold )
+        {
+            circuitState = CircuitState.OPEN;
+            openUntil = System.currentTimeMillis() + openInterval;
+        }
+        attempts++;
+        if ( attempts > maxRetries )
+        {
+            droppedEvents.addAndGet( batch.size() );
+            batch = null;
+            attempts = 0;
+        }
+        return attempts;
+    }
+
+    /**
+     * Checks if a delivery can be attempted as per the circuit breaker, moving an open circuit to half open once its
+     * open interval has elapsed.
+     *
+     * @return true, if a delivery can be attempted
+     */
+    boolean allowDelivery()
+    {
+
+        if ( circuitState == CircuitState.OPEN )
+        {
+            if ( System.currentTimeMillis() < openUntil )
+            {
+                return false;
+            }
+            circuitState = CircuitState.HALF_OPEN;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the flush scheduled flag.
+     *
+     * @return the flush scheduled flag
+     */
+    AtomicBoolean getFlushScheduled()
+    {
+
+        return flushScheduled;
+    }
+
+    /**
+     * Checks if there are events waiting to be delivered.
+     *
+     * @return true, if there are pending events
+     */
+    boolean hasPendingEvents()
+    {
+
+        return !queue.isEmpty() || ( batch != null && !batch.isEmpty() );
+    }
+
+    /**
+     * Gets the url.
+     *
+     * @return the url
+     */
+    public String getUrl()
+    {
+
+        return url;
+    }
+
+    /**
+     * Gets the request method.
+     *
+     * @return the request method
+     */
+    public RequestMethod getRequestMethod()
+    {
+
+        return requestMethod;
+    }
+
+    /**
+     * Gets the number of events waiting in the queue.
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth()
+    {
+
+        return queue.size();
+    }
+
+    /**
+     * Gets the circuit state.
+     *
+     * @return the circuit state
+     */
+    public CircuitState getCircuitState()
+    {
+
+        return circuitState;
+    }
+
+    /**
+     * Gets the time till which the circuit stays open.
+     *
+     * @return the open until time in milliseconds since epoch
+     */
+    public long getOpenUntil()
+    {
+
+        return openUntil;
+    }
+
+    /**
+     * Gets the delivered events count.
+     *
+     * @return the delivered events
+     */
+    public long getDeliveredEvents()
+    {
+
+        return deliveredEvents.get();
+    }
+
+    /**
+     * Gets the dropped events count.
+     *
+     * @return the dropped events
+     */
+    public long getDroppedEvents()
+    {
+
+        return droppedEvents.get();
+    }
+
+    /**
+     * Gets the failed deliveries count.
+     *
+     * @return the failed deliveries
+     */
+    public long getFailedDeliveries()
+    {
+
+        return failedDeliveries.get();
+    }
+
+    /**
+     * Gets the latency of the last delivered batch.
+     *
+     * @return the last delivery latency in milliseconds
+     */
+    public long getLastDeliveryLatency()
+    {
+
+        return lastDeliveryLatency;
+    }
+
+    /**
+     * Gets the average latency of the delivered batches.
+     *
+     * @return the average delivery latency in milliseconds
+     */
+    public long getAverageDeliveryLatency()
+    {
+
+        long batches = deliveredBatches.get();
+        return batches == 0 ? 0 : totalDeliveryLatency.get() / batches;
+    }
+}
@@ -0,0 +1,336 @@
+/* ********************************************************************************
+ * EventDeliveryService.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.HttpResponseException;
+import org.apache.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vmware.vrack.common.event.Event;
+import com.vmware.vrack.hms.common.events.BaseEventMonitoringSubscription;
+
+/**
+ * Asynchronous delivery of event notifications to subscriber endpoints, decoupling the monitoring threads from slow or
+ * dead subscribers. Each endpoint has a bounded queue; queued events are coalesced into batches that are sent once
+ * the batch is full or the linger time has elapsed. Failed batches are retried with exponential backoff, and a per
+ * endpoint circuit breaker suspends deliveries to an endpoint that keeps failing.
+ *
+ * @author VMware, Inc.
+ */
+public class EventDeliveryService
+{
+
+    private static Logger logger = Logger.getLogger( EventDeliveryService.class );
+
+    /** The default queue capacity of an endpoint. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    /** The default max events in a batch. */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /** The default linger time of a batch in milliseconds. */
+    public static final long DEFAULT_LINGER_TIME = 200L;
+
+    /** The default max retries of a batch. */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    /** The default initial retry backoff in milliseconds. */
+    public static final long DEFAULT_RETRY_BACKOFF = 1000L;
+
+    /** The default consecutive failures that open the circuit of an endpoint. */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+    /** The default interval the circuit of an endpoint stays open in milliseconds. */
+    public static final long DEFAULT_OPEN_INTERVAL = 30000L;
+
+    /** The default delivery thread pool size. */
+    public static final int DEFAULT_THREAD_POOL_SIZE = 4;
+
+    private static volatile EventDeliveryService instance;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final ConcurrentMap<BaseEventMonitoringSubscription, EventDeliveryEndpoint> endpoints =
+        new ConcurrentHashMap<BaseEventMonitoringSubscription, EventDeliveryEndpoint>();
+
+    private final ScheduledExecutorService executorService;
+
+    private volatile int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+    private volatile long lingerTime = DEFAULT_LINGER_TIME;
+
+    private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+
+    private volatile long retryBackoff = DEFAULT_RETRY_BACKOFF;
+
+    private volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+
+    private volatile long openInterval = DEFAULT_OPEN_INTERVAL;
+
+    private EventDeliveryService( int threadPoolSize )
+    {
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executorService = Executors.newScheduledThreadPool( threadPoolSize, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "hms-event-delivery-" + threadCount.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+    }
+
+    /**
+     * Returns the single instance of EventDeliveryService
+     *
+     * @return
+     */
+    public static EventDeliveryService getInstance()
+    {
+        if ( instance == null )
+        {
+            synchronized ( EventDeliveryService.class )
+            {
+                if ( instance == null )
+                {
+                    instance = new EventDeliveryService( DEFAULT_THREAD_POOL_SIZE );
+                    final EventDeliveryService deliveryService = instance;
+                    Runtime.getRuntime().addShutdownHook( new Thread( new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            deliveryService.shutdown();
+                        }
+                    }, "hms-event-delivery-shutdown" ) );
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Queues the events for asynchronous delivery to the subscription's endpoint.
+     *
+     * @param events
+     * @param subscription
+     * @return true, if the events were queued
+     */
+    public boolean deliver( List<Event> events, BaseEventMonitoringSubscription subscription )
+    {
+        if ( events == null || events.isEmpty() || subscription == null
+            || subscription.getNotificationEndpoint() == null || subscription.getRequestMethod() == null )
+        {
+            return false;
+        }
+
+        EventDeliveryEndpoint endpoint = getEndpoint( subscription );
+        endpoint.offer( events );
+        scheduleFlush( endpoint, endpoint.getQueueDepth() >= batchSize ? 0 : lingerTime );
+        return true;
+    }
+
+    /**
+     * Gets all the endpoints events have been delivered to, along with their queue depth, drop counts, delivery
+     * latency and circuit state.
+     *
+     * @return
+     */
+    public Collection<EventDeliveryEndpoint> getEndpoints()
+    {
+        return new ArrayList<EventDeliveryEndpoint>( endpoints.values() );
+    }
+
+    /**
+     * Stops delivering events. Queued events are discarded.
+     */
+    public void shutdown()
+    {
+        executorService.shutdownNow();
+    }
+
+    private EventDeliveryEndpoint getEndpoint( BaseEventMonitoringSubscription subscription )
+    {
+        // Key only on the endpoint and request method, as subscriptions of different subscribers share an endpoint
+        BaseEventMonitoringSubscription key = new BaseEventMonitoringSubscription();
+        key.setNotificationEndpoint( subscription.getNotificationEndpoint() );
+        key.setRequestMethod( subscription.getRequestMethod() );
+
+        EventDeliveryEndpoint endpoint = endpoints.get( key );
+        if ( endpoint == null )
+        {
+            EventDeliveryEndpoint newEndpoint =
+                new EventDeliveryEndpoint( key.getNotificationEndpoint(), key.getRequestMethod(), queueCapacity );
+            endpoint = endpoints.putIfAbsent( key, newEndpoint );
+            if ( endpoint == null )
+            {
+                endpoint = newEndpoint;
+            }
+        }
+        return endpoint;
+    }
+
+    /**
+     * Schedules a flush of the endpoint, unless one is already scheduled or running.
+     */
+    private void scheduleFlush( final EventDeliveryEndpoint endpoint, long delay )
+    {
+        if ( !endpoint.getFlushScheduled().compareAndSet( false, true ) )
+        {
+            return;
+        }
+        try
+        {
+            executorService.schedule( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    flush( endpoint );
+                }
+            }, delay, TimeUnit.MILLISECONDS );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            logger.warn( "Event delivery service is shut down, not delivering events to: " + endpoint.getUrl() );
+            endpoint.getFlushScheduled().set( false );
+        }
+    }
+
+    /**
+     * Delivers one batch of the endpoint and schedules the next flush, if there are more events to deliver.
+     */
+    private void flush( EventDeliveryEndpoint endpoint )
+    {
+        long nextDelay = 0;
+        try
+        {
+            if ( !endpoint.allowDelivery() )
+            {
+                nextDelay = Math.max( endpoint.getOpenUntil() - System.currentTimeMillis(), 0 );
+                return;
+            }
+
+            List<Event> batch = endpoint.getBatch( batchSize );
+            if ( batch.isEmpty() )
+            {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            try
+            {
+                post( endpoint, batch );
+                endpoint.onDeliverySuccess( System.currentTimeMillis() - start );
+            }
+            catch ( Exception e )
+            {
+                int attempts = endpoint.onDeliveryFailure( maxRetries, failureThreshold, openInterval );
+                if ( attempts == 0 )
+                {
+                    logger.error( "Dropping " + batch.size() + " events after " + ( maxRetries + 1 )
+                        + " failed attempts to send notifications to url: " + endpoint.getUrl(), e );
+                }
+                else
+                {
+                    logger.warn( "Exception occured while sending notifications to url: " + endpoint.getUrl()
+                        + ", retrying. " + e );
+                    nextDelay = retryBackoff << Math.min( attempts - 1, 16 );
+                }
+            }
+        }
+        finally
+        {
+            endpoint.getFlushScheduled().set( false );
+            if ( endpoint.hasPendingEvents() )
+            {
+                scheduleFlush( endpoint, nextDelay );
+            }
+        }
+    }
+
+    private void post( EventDeliveryEndpoint endpoint, List<Event> batch )
+        throws Exception
+    {
+        HttpClientService.getInstance().prepareClientsIfRequired( CommonProperties.getPrmBasicAuthUser(),
+                                                                  CommonProperties.getPrmBasicAuthPass() );
+        String requestBody = mapper.writeValueAsString( batch );
+        if ( logger.isDebugEnabled() )
+        {
+            logger.debug( "Data before sending Notifications method: " + endpoint.getRequestMethod() + ":: url: "
+                + endpoint.getUrl() + ":: requestBody: " + requestBody );
+        }
+        // Notifications have always been sent as POST, whatever the subscription's request method
+        int statusCode = HttpClientService.getInstance().postJsonForStatus( endpoint.getUrl(), requestBody, false );
+        if ( statusCode < 200 || statusCode >= 300 )
+        {
+            // Counts as a failed delivery, for the retries and the circuit breaker
+            throw new HttpResponseException( statusCode, "Subscriber endpoint " + endpoint.getUrl()
+                + " responded with HTTP status " + statusCode );
+        }
+    }
+
+    public void setQueueCapacity( int queueCapacity )
+    {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setBatchSize( int batchSize )
+    {
+        this.batchSize = batchSize;
+    }
+
+    public void setLingerTime( long lingerTime )
+    {
+        this.lingerTime = lingerTime;
+    }
+
+    public void setMaxRetries( int maxRetries )
+    {
+        this.maxRetries = maxRetries;
+    }
+
+    public void setRetryBackoff( long retryBackoff )
+    {
+        this.retryBackoff = retryBackoff;
+    }
+
+    public void setFailureThreshold( int failureThreshold )
+    {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public void setOpenInterval( long openInterval )
+    {
+        this.openInterval = openInterval;
+    }
+}
@@ -15,19 +15,15 @@
  * *******************************************************************************/
 package com.vmware.vrack.hms.common.util;
 
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.vmware.vrack.common.event.Event;
 import com.vmware.vrack.common.event.Header;
 import com.vmware.vrack.common.event.enums.EventCatalog;
-import com.vmware.vrack.hms.common.RequestMethod;
 import com.vmware.vrack.hms.common.boardvendorservice.api.IComponentEventInfoProvider;
 import com.vmware.vrack.hms.common.boardvendorservice.api.IComponentSwitchEventInfoProvider;
 import com.vmware.vrack.hms.common.boardvendorservice.resource.ServiceHmsNode;
@@ -48,7 +44,8 @@ public class EventsUtil
     private static Logger logger = Logger.getLogger( EventsUtil.class );
 
     /**
-     * Broadcast events to the subscribers, can be either maskable as well as non-maskable
+     * Broadcast events to the subscribers, can be either maskable as well as non-maskable. The events are queued on the
+     * {@link EventDeliveryService}, which sends them asynchronously, so the caller is never blocked by the subscriber.
      * 
      * @param events
      * @param subscription
@@ -57,46 +54,9 @@ public class EventsUtil
     {
         if ( events != null && !events.isEmpty() && subscription != null )
         {
-            try
-            {
-                // First we need to prepare client with the username and password,
-                // otherwise it will fail during connection establishment
-                // Here we are assuming that the username and password are already populated in CommonProperties class.
-                HttpClientService.getInstance().prepareClients( CommonProperties.getPrmBasicAuthUser(),
-                                                                CommonProperties.getPrmBasicAuthPass() );
-
-                if ( subscription.getRequestMethod() != null && subscription.getNotificationEndpoint() != null )
-                {
-                    String url = subscription.getNotificationEndpoint();
-                    RequestMethod method = subscription.getRequestMethod();
-                    ObjectMapper mapper = new ObjectMapper();
-                    String requestBody;
-
-                    try
-                    {
-                        requestBody = mapper.writeValueAsString( events );
-                        logger.debug( "Data before sending Notifications method: " + method + ":: url: " + url
-                            + ":: requestBody: " + requestBody );
-                        switch ( method )
-                        {
-                            case PUT:
-                                HttpClientService.getInstance().postJson( url, requestBody, false, true );
-                                break;
-                            case POST:
-                            default:
-                                HttpClientService.getInstance().postJson( url, requestBody, false, true );
-                                break;
-                        }
-                    }
-                    catch ( Exception e )
-                    {
-                        logger.error( "Exception occured while sending notifications to url: " + url + e );
-                    }
-                }
-            }
-            catch ( KeyManagementException | NoSuchAlgorithmException | IllegalArgumentException e )
+            if ( subscription.getRequestMethod() != null && subscription.getNotificationEndpoint() != null )
             {
-                logger.error( String.format( "Error initializing prm client, error message: %s", e.getMessage() ), e );
+                EventDeliveryService.getInstance().deliver( events, subscription );
             }
             return true;
         }
@@ -0,0 +1,207 @@
+/* ********************************************************************************
+ * HttpClientPool.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared pool of keep-alive HTTP connections, used by {@link HttpUtil}, {@link HttpClientService} and the REST
+ * templates talking to the HMS OOB agent, so that the connections, and the TLS sessions, to an endpoint are reused
+ * across requests instead of being set up for every request.
+ * <p>
+ * All the clients handed out share a single {@link PoolingHttpClientConnectionManager}, sized and timed out as per
+ * {@link CommonProperties}. Idle and expired connections are evicted in the background. Responses obtained from these
+ * clients MUST be consumed or closed to release their connection back to the pool.
+ *
+ * @author VMware, Inc.
+ */
+public class HttpClientPool
+{
+
+    private static Logger logger = LoggerFactory.getLogger( HttpClientPool.class );
+
+    /** The key of the pool wide statistics. */
+    public static final String TOTAL_POOL_STATS = "total";
+
+    private static volatile PoolingHttpClientConnectionManager connectionManager;
+
+    private static volatile CloseableHttpClient httpClient;
+
+    private static volatile CloseableHttpClient passThroughHttpClient;
+
+    private static volatile RequestConfig requestConfig;
+
+    private HttpClientPool()
+    {
+    }
+
+    /**
+     * Gets the shared pooled HTTP client.
+     *
+     * @return the http client
+     */
+    public static CloseableHttpClient getHttpClient()
+    {
+        if ( httpClient == null )
+        {
+            synchronized ( HttpClientPool.class )
+            {
+                if ( httpClient == null )
+                {
+                    init();
+                }
+            }
+        }
+        return httpClient;
+    }
+
+    /**
+     * Gets a HTTP client using the given username and password for BASIC auth. The client shares the connection pool
+     * of {@link #getHttpClient()}, so it is cheap to create and need not be closed.
+     *
+     * @param userName the user name
+     * @param password the password
+     * @return the http client
+     */
+    public static CloseableHttpClient getHttpClientWithBasicAuth( final String userName, final String password )
+    {
+        CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        credentialsProvider.setCredentials( AuthScope.ANY, new UsernamePasswordCredentials( userName, password ) );
+        return getHttpClient( credentialsProvider );
+    }
+
+    /**
+     * Gets a HTTP client using the given credentials provider, sharing the connection pool of {@link #getHttpClient()}.
+     *
+     * @param credentialsProvider the credentials provider
+     * @return the http client
+     */
+    public static CloseableHttpClient getHttpClient( final CredentialsProvider credentialsProvider )
+    {
+        getHttpClient();
+        return HttpClients.custom().setConnectionManager( connectionManager ).setConnectionManagerShared( true )
+            .setDefaultRequestConfig( requestConfig ).setDefaultCredentialsProvider( credentialsProvider )
+            .disableConnectionState().build();
+    }
+
+    /**
+     * Gets a HTTP client which leaves compressed responses as they are, along with their Content-Encoding header, for
+     * the responses to be passed through as is. The client shares the connection pool of {@link #getHttpClient()}.
+     *
+     * @return the http client
+     */
+    public static CloseableHttpClient getPassThroughHttpClient()
+    {
+        if ( passThroughHttpClient == null )
+        {
+            synchronized ( HttpClientPool.class )
+            {
+                if ( passThroughHttpClient == null )
+                {
+                    getHttpClient();
+                    passThroughHttpClient = HttpClients.custom().setConnectionManager( connectionManager )
+                        .setConnectionManagerShared( true ).setDefaultRequestConfig( requestConfig )
+                        .disableContentCompression().disableConnectionState().build();
+                }
+            }
+        }
+        return passThroughHttpClient;
+    }
+
+    /**
+     * Gets the default request config of the pooled clients, to derive request specific configs from.
+     *
+     * @return the request config
+     */
+    public static RequestConfig getRequestConfig()
+    {
+        getHttpClient();
+        return requestConfig;
+    }
+
+    /**
+     * Gets the statistics of the pool per route, keyed by the route's target host, along with the pool wide
+     * statistics, keyed by {@link #TOTAL_POOL_STATS}.
+     *
+     * @return the leased, pending, available and max connections per route
+     */
+    public static Map<String, PoolStats> getPoolStats()
+    {
+        Map<String, PoolStats> poolStats = new LinkedHashMap<String, PoolStats>();
+        PoolingHttpClientConnectionManager manager = connectionManager;
+        if ( manager != null )
+        {
+            poolStats.put( TOTAL_POOL_STATS, manager.getTotalStats() );
+            for ( HttpRoute route : manager.getRoutes() )
+            {
+                poolStats.put( route.getTargetHost().toURI(), manager.getStats( route ) );
+            }
+        }
+        return poolStats;
+    }
+
+    /**
+     * Creates the connection pool and the shared client. The SSL socket factory, and hence its SSL context and TLS
+     * session cache, is shared by all the pooled connections.
+     */
+    private static void init()
+    {
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory> create()
+            .register( "http", PlainConnectionSocketFactory.getSocketFactory() )
+            .register( "https", SSLConnectionSocketFactory.getSystemSocketFactory() ).build();
+
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager( socketFactoryRegistry );
+        manager.setMaxTotal( CommonProperties.getHttpPoolMaxTotal() );
+        manager.setDefaultMaxPerRoute( CommonProperties.getHttpPoolMaxPerRoute() );
+        manager.setValidateAfterInactivity( CommonProperties.getHttpPoolValidateAfterInactivity() );
+
+        RequestConfig config =
+            RequestConfig.custom().setConnectTimeout( CommonProperties.getHttpConnectTimeout() )
+                .setConnectionRequestTimeout( CommonProperties.getHttpConnectionRequestTimeout() )
+                .setSocketTimeout( CommonProperties.getHttpSocketTimeout() ).build();
+
+        connectionManager = manager;
+        requestConfig = config;
+        // Connection state is disabled, so that connections authenticated as different users are reused alike
+        long idleTimeout = CommonProperties.getHttpPoolIdleTimeout();
+        httpClient = HttpClients.custom().setConnectionManager( manager ).setDefaultRequestConfig( config )
+            .disableConnectionState().evictExpiredConnections()
+            .evictIdleConnections( idleTimeout, TimeUnit.MILLISECONDS ).build();
+
+        logger.info( "Created pooled HttpClient, max connections: {}, max connections per route: {}.",
+                     manager.getMaxTotal(), manager.getDefaultMaxPerRoute() );
+    }
+}
@@ -22,15 +22,12 @@ import java.security.NoSuchAlgorithmException;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.Credentials;
-import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 
@@ -49,19 +46,23 @@ public class HttpClientService
 
     private final static String HTTP_METHOD[] = { "GET", "POST", "PUT" };
 
-    private DefaultHttpClient ignoreSSLWithBasicAuth;
+    private HttpClient ignoreSSLWithBasicAuth;
 
-    private DefaultHttpClient defaulClient;
+    private volatile HttpClient defaulClient;
 
     private static HttpClientService prmClientService;
 
+    private String preparedBasicAuthUser;
+
+    private String preparedBasicAuthPass;
+
     /**
      * Returns single Instance of HttpClientService, Need to call {@link #prepareClients(String, String)} first with
      * basic authentication credentials
      * 
      * @return
      */
-    public static HttpClientService getInstance()
+    public static synchronized HttpClientService getInstance()
     {
         if ( prmClientService == null )
         {
@@ -78,8 +79,8 @@ public class HttpClientService
     public void prepareClients()
         throws KeyManagementException, NoSuchAlgorithmException
     {
-        this.ignoreSSLWithBasicAuth = new DefaultHttpClient();
-        this.defaulClient = new DefaultHttpClient();
+        this.ignoreSSLWithBasicAuth = HttpClientPool.getHttpClient();
+        this.defaulClient = HttpClientPool.getHttpClient();
     }
 
     /**
@@ -92,27 +93,51 @@ public class HttpClientService
      * @throws IllegalArgumentException
      * @author Yagnesh Chawda
      */
-    public void prepareClients( String prmBasicAuthUser, String prmBasicAuthPass )
+    public synchronized void prepareClients( String prmBasicAuthUser, String prmBasicAuthPass )
         throws KeyManagementException, NoSuchAlgorithmException, IllegalArgumentException
     {
         // this.ignoreSSLWithBasicAuth = withSSLIgnore();
-        this.defaulClient = new DefaultHttpClient();
+        this.preparedBasicAuthUser = prmBasicAuthUser;
+        this.preparedBasicAuthPass = prmBasicAuthPass;
 
         if ( prmBasicAuthUser != null && !"".equals( prmBasicAuthUser.trim() ) && prmBasicAuthPass != null
             && !"".equals( prmBasicAuthPass.trim() ) )
         {
-            Credentials credentials = new UsernamePasswordCredentials( prmBasicAuthUser, prmBasicAuthPass );
-            // ignoreSSLWithBasicAuth.getCredentialsProvider().setCredentials(AuthScope.ANY, credentials);
-            defaulClient.getCredentialsProvider().setCredentials( AuthScope.ANY, credentials );
+            this.defaulClient = HttpClientPool.getHttpClientWithBasicAuth( prmBasicAuthUser, prmBasicAuthPass );
         }
         else
         {
+            this.defaulClient = HttpClientPool.getHttpClient();
             logger.warn( "Username and password is required for basic Authentication. " + "Invalid credentials: User: "
                 + prmBasicAuthUser + " pass: " + prmBasicAuthPass );
         }
 
     }
 
+    /**
+     * Prepares the clients with the given credentials, unless they are already prepared with the same credentials.
+     * 
+     * @param prmBasicAuthUser
+     * @param prmBasicAuthPass
+     * @throws KeyManagementException
+     * @throws NoSuchAlgorithmException
+     * @throws IllegalArgumentException
+     */
+    public synchronized void prepareClientsIfRequired( String prmBasicAuthUser, String prmBasicAuthPass )
+        throws KeyManagementException, NoSuchAlgorithmException, IllegalArgumentException
+    {
+        if ( defaulClient == null || !equals( preparedBasicAuthUser, prmBasicAuthUser )
+            || !equals( preparedBasicAuthPass, prmBasicAuthPass ) )
+        {
+            prepareClients( prmBasicAuthUser, prmBasicAuthPass );
+        }
+    }
+
+    private static boolean equals( String first, String second )
+    {
+        return first == null ? second == null : first.equals( second );
+    }
+
     public String get( String url, Boolean ignoreSSLCert, Boolean asyncWithIgnoreResponse )
         throws IOException, URISyntaxException
     {
@@ -196,22 +221,42 @@ public class HttpClientService
         return getResponseAsString( response );
     }
 
-    private String invokeJsonPost( String url, String json, Boolean ignoreSSLCert, Boolean asyncWithIgnoreResponse )
-        throws IOException, URISyntaxException
+    /**
+     * Posts the json to the url, discarding the body of the response.
+     *
+     * @param url
+     * @param json
+     * @param ignoreSSLCert
+     * @return HTTP status code of the response
+     * @throws IOException
+     */
+    public int postJsonForStatus( String url, String json, Boolean ignoreSSLCert )
+        throws IOException
+    {
+        logger.debug( "Sending Json POST request to : " + url );
+        HttpResponse response = executeJsonPost( url, json, ignoreSSLCert );
+        EntityUtils.consume( response.getEntity() );
+        return response.getStatusLine().getStatusCode();
+    }
+
+    private HttpResponse executeJsonPost( String url, String json, Boolean ignoreSSLCert )
+        throws IOException
     {
         HttpUriRequest httpMessage = null;
         httpMessage = new HttpPost( url );
         httpMessage.addHeader( "content-type", "application/json" );
         ( (HttpPost) httpMessage ).setEntity( new StringEntity( json ) );
-        HttpResponse response = null;
         if ( ignoreSSLCert )
         {
-            response = ignoreSSLWithBasicAuth.execute( httpMessage );
-        }
-        else
-        {
-            response = defaulClient.execute( httpMessage );
+            return ignoreSSLWithBasicAuth.execute( httpMessage );
         }
+        return defaulClient.execute( httpMessage );
+    }
+
+    private String invokeJsonPost( String url, String json, Boolean ignoreSSLCert, Boolean asyncWithIgnoreResponse )
+        throws IOException, URISyntaxException
+    {
+        HttpResponse response = executeJsonPost( url, json, ignoreSSLCert );
 
         if ( asyncWithIgnoreResponse )
         {
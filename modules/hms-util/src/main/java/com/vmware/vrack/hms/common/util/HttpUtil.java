@@ -32,9 +32,6 @@ import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpGet;
@@ -42,9 +39,6 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpCoreContext;
@@ -57,7 +51,8 @@ import com.vmware.vrack.hms.common.RequestMethod;
 import com.vmware.vrack.hms.common.StatusCode;
 
 /**
- * The Class HttpUtil.
+ * The Class HttpUtil. Requests are executed on the pooled keep-alive connections of {@link HttpClientPool}; callers of
+ * the methods returning {@link HttpResponse} MUST consume its entity to release the connection back to the pool.
  */
 public class HttpUtil
 {
@@ -773,7 +768,7 @@ public class HttpUtil
     }
 
     /**
-     * Returns HttpClient with basic auth.
+     * Returns HttpClient with basic auth, sharing the connection pool of {@link #getHttpClient()}.
      *
      * @param userName the user name
      * @param password the password
@@ -793,20 +788,18 @@ public class HttpUtil
             logger.warn( "In getHttpClientWithBasicAuth, password is either null or blank." );
             return null;
         }
-        CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-        UsernamePasswordCredentials usernamePasswordCredentials = new UsernamePasswordCredentials( userName, password );
-        credentialsProvider.setCredentials( AuthScope.ANY, usernamePasswordCredentials );
-        return HttpClientBuilder.create().setDefaultCredentialsProvider( credentialsProvider ).build();
+        return HttpClientPool.getHttpClientWithBasicAuth( userName, password );
     }
 
     /**
-     * Returns the default HttpClient object.
+     * Returns the shared pooled HttpClient object. Responses MUST be consumed to release their connection back to the
+     * pool.
      *
      * @return the http client
      */
     public static HttpClient getHttpClient()
     {
-        return HttpClients.createDefault();
+        return HttpClientPool.getHttpClient();
     }
 
     /**
@@ -15,13 +15,16 @@
  * *******************************************************************************/
 package com.vmware.vrack.hms.common.util;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.vmware.vrack.hms.common.resource.fru.SensorType;
 import com.vmware.vrack.hms.common.resource.sel.ReadingType;
 import com.vmware.vrack.hms.common.resource.sel.SelRecord;
 
 public class SelUtil
 {
-    public synchronized static SelRecord compareSelRecord( SelRecord record, SelRecord selFilter )
+    public static SelRecord compareSelRecord( SelRecord record, SelRecord selFilter )
     {
         if ( record != null )
         {
@@ -43,4 +46,33 @@ public class SelUtil
         }
         return record;
     }
+
+    /**
+     * Filters the SEL records, keeping the ones matching any of the filters. All the records are kept if there is no
+     * filter.
+     *
+     * @param records
+     * @param selFilters
+     * @return
+     */
+    public static List<SelRecord> filterSelRecords( List<SelRecord> records, List<SelRecord> selFilters )
+    {
+        if ( records == null || selFilters == null || selFilters.isEmpty() )
+        {
+            return records;
+        }
+        List<SelRecord> filteredRecords = new ArrayList<SelRecord>();
+        for ( SelRecord record : records )
+        {
+            for ( SelRecord selFilter : selFilters )
+            {
+                if ( compareSelRecord( record, selFilter ) != null )
+                {
+                    filteredRecords.add( record );
+                    break;
+                }
+            }
+        }
+        return filteredRecords;
+    }
 }
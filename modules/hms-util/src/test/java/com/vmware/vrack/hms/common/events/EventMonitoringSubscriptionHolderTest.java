@@ -15,7 +15,10 @@
  * *******************************************************************************/
 package com.vmware.vrack.hms.common.events;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -32,6 +35,7 @@ import com.vmware.vrack.common.event.enums.EventCatalog;
 import com.vmware.vrack.common.event.enums.EventComponent;
 import com.vmware.vrack.common.event.enums.EventSeverity;
 import com.vmware.vrack.hms.common.HmsNode;
+import com.vmware.vrack.hms.common.RequestMethod;
 import com.vmware.vrack.hms.common.servernodes.api.ServerComponent;
 import com.vmware.vrack.hms.common.servernodes.api.ServerNode;
 import com.vmware.vrack.hms.common.servernodes.api.SwitchComponentEnum;
@@ -213,4 +217,102 @@ public class EventMonitoringSubscriptionHolderTest
 
     }
 
+    @Test
+    public void testFilteredEventsRouting()
+        throws Exception
+    {
+        EventMonitoringSubscriptionHolder holder = EventMonitoringSubscriptionHolder.getInstance();
+
+        EventMonitoringSubscription cpuSubscription = createSubscription( "sub1", "N1", EventComponent.CPU, "http://a" );
+        EventMonitoringSubscription memorySubscription =
+            createSubscription( "sub2", "N1", EventComponent.MEMORY, "http://b" );
+        EventMonitoringSubscription otherNodeSubscription =
+            createSubscription( "sub3", "N2", EventComponent.CPU, "http://c" );
+        holder.addEventMonitoringSubscription( cpuSubscription );
+        holder.addEventMonitoringSubscription( memorySubscription );
+        holder.addEventMonitoringSubscription( otherNodeSubscription );
+
+        try
+        {
+            Map<EventComponent, String> identifier = new HashMap<EventComponent, String>();
+            identifier.put( EventComponent.SERVER, "N1" );
+            identifier.put( EventComponent.CPU, "CPU1" );
+            Header header = new Header();
+            header.setEventName( EventCatalog.CPU_POST_FAILURE );
+            header.addComponentIdentifier( identifier );
+            Event event = new Event();
+            event.setHeader( header );
+            event.setBody( new Body() );
+
+            List<Event> events = new ArrayList<Event>();
+            events.add( event );
+
+            Map<BaseEventMonitoringSubscription, List<Event>> filteredEvents =
+                EventMonitoringSubscriptionHolder.getFilteredEvents( events );
+
+            assertEquals( 1, filteredEvents.size() );
+            BaseEventMonitoringSubscription endpoint = new BaseEventMonitoringSubscription();
+            endpoint.setRequestMethod( RequestMethod.POST );
+            endpoint.setNotificationEndpoint( "http://a" );
+            assertEquals( 1, filteredEvents.get( endpoint ).size() );
+
+            assertEquals( 1, EventMonitoringSubscriptionHolder.getSubscribers( "N1", EventComponent.CPU, null ).size() );
+            assertEquals( 2, EventMonitoringSubscriptionHolder.getSubscribers( null, EventComponent.CPU, null ).size() );
+            assertEquals( 2, EventMonitoringSubscriptionHolder.getSubscribers( "N1", null, null ).size() );
+            assertEquals( 1,
+                          EventMonitoringSubscriptionHolder.getEventSubscriberList( "n1", EventComponent.MEMORY ).size() );
+
+            holder.removeEventMonitoringSubscription( cpuSubscription );
+            filteredEvents = EventMonitoringSubscriptionHolder.getFilteredEvents( events );
+            assertNull( filteredEvents.get( endpoint ) );
+        }
+        finally
+        {
+            holder.removeEventMonitoringSubscription( cpuSubscription );
+            holder.removeEventMonitoringSubscription( memorySubscription );
+            holder.removeEventMonitoringSubscription( otherNodeSubscription );
+        }
+    }
+
+    @Test
+    public void testRemoveAllMonitoringSubscriptions()
+    {
+        EventMonitoringSubscriptionHolder holder = EventMonitoringSubscriptionHolder.getInstance();
+
+        EventMonitoringSubscription cpuSubscription = createSubscription( "sub1", "N1", EventComponent.CPU, "http://a" );
+        holder.addEventMonitoringSubscription( cpuSubscription );
+        holder.addNmeMonitoringSubscription( cpuSubscription );
+        assertEquals( 1, EventMonitoringSubscriptionHolder.getSubscribers( "N1", EventComponent.CPU, null ).size() );
+
+        holder.removeAllMonitoringSubscriptions();
+
+        assertTrue( EventMonitoringSubscriptionHolder.getEventMonitoringSubscriptionMap().isEmpty() );
+        assertTrue( EventMonitoringSubscriptionHolder.getNmeMonitoringSubscriptionMap().isEmpty() );
+        assertTrue( EventMonitoringSubscriptionHolder.getSubscribers( "N1", EventComponent.CPU, null ).isEmpty() );
+        assertTrue( EventMonitoringSubscriptionHolder.getEventSubscriberList( "N1", EventComponent.CPU ).isEmpty() );
+
+        /* Subscriptions added afterwards are routed again */
+        holder.addEventMonitoringSubscription( cpuSubscription );
+        try
+        {
+            assertEquals( 1,
+                          EventMonitoringSubscriptionHolder.getSubscribers( "N1", EventComponent.CPU, null ).size() );
+        }
+        finally
+        {
+            holder.removeEventMonitoringSubscription( cpuSubscription );
+        }
+    }
+
+    private EventMonitoringSubscription createSubscription( String subscriberId, String nodeId,
+                                                            EventComponent component, String endpoint )
+    {
+        EventMonitoringSubscription subscription = new EventMonitoringSubscription();
+        subscription.setSubscriberId( subscriberId );
+        subscription.setNodeId( nodeId );
+        subscription.setComponent( component );
+        subscription.setNotificationEndpoint( endpoint );
+        subscription.setRequestMethod( RequestMethod.POST );
+        return subscription;
+    }
 }
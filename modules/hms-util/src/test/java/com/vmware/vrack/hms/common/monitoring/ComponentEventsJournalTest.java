@@ -0,0 +1,57 @@
+/* ********************************************************************************
+ * ComponentEventsJournalTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.vmware.vrack.common.event.Event;
+import com.vmware.vrack.common.event.enums.EventComponent;
+
+public class ComponentEventsJournalTest
+{
+    @Test
+    public void testUpdatesSince()
+        throws Exception
+    {
+        ComponentEventsJournal journal = new ComponentEventsJournal( 2 );
+        long sequence = journal.getSequence();
+        assertTrue( journal.getUpdatesSince( sequence, 0 ).isEmpty() );
+
+        journal.publish( "N1", EventComponent.CPU, new ArrayList<Event>() );
+        journal.publish( "N1", EventComponent.FAN, new ArrayList<Event>() );
+        List<ComponentEventsUpdate> updates = journal.getUpdatesSince( sequence, 0 );
+        assertEquals( 2, updates.size() );
+        assertEquals( sequence + 1, updates.get( 0 ).getSequence() );
+        assertEquals( EventComponent.FAN, updates.get( 1 ).getComponent() );
+        assertEquals( 1, journal.getUpdatesSince( sequence + 1, 0 ).size() );
+
+        // the first update is no longer in the journal
+        journal.publish( "N2", EventComponent.CPU, new ArrayList<Event>() );
+        assertNull( journal.getUpdatesSince( sequence, 0 ) );
+        assertEquals( 2, journal.getUpdatesSince( sequence + 1, 0 ).size() );
+
+        // sequence numbers of another journal
+        assertNull( journal.getUpdatesSince( journal.getSequence() + 1, 0 ) );
+        assertNull( journal.getUpdatesSince( 0, 0 ) );
+    }
+}
@@ -0,0 +1,76 @@
+/* ********************************************************************************
+ * ComponentMonitorConfigTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.monitoring;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.vmware.vrack.hms.common.servernodes.api.ServerComponent;
+import com.vmware.vrack.hms.common.servernodes.api.ServerNode;
+import com.vmware.vrack.hms.common.servernodes.api.SwitchComponentEnum;
+
+/**
+ * Test of {@link ComponentMonitorConfig}.
+ */
+public class ComponentMonitorConfigTest
+{
+
+    @After
+    public void tearDown()
+    {
+        ComponentMonitorConfig.setFrequency( ServerComponent.FAN, null );
+        ComponentMonitorConfig.setFrequency( ServerComponent.STORAGE, null );
+        ComponentMonitorConfig.setFrequency( SwitchComponentEnum.SWITCH_PORT, null );
+        ComponentMonitorConfig.setComponentPollTimeout( ComponentMonitorConfig.DEFAULT_COMPONENT_POLL_TIMEOUT );
+    }
+
+    @Test
+    public void testLoadConfig()
+    {
+        Properties properties = new Properties();
+        properties.setProperty( "HOST_COMPONENT_MONITOR_FREQUENCY_FAN", "10000" );
+        properties.setProperty( "HOST_COMPONENT_MONITOR_FREQUENCY_STORAGE", "invalid" );
+        properties.setProperty( "SWITCH_COMPONENT_MONITOR_FREQUENCY_SWITCH_PORT", "30000" );
+        properties.setProperty( "COMPONENT_MONITOR_TIMEOUT", "5000" );
+
+        ComponentMonitorConfig.loadConfig( properties );
+
+        assertEquals( Long.valueOf( 10000L ), ComponentMonitorConfig.getFrequency( ServerComponent.FAN, 60000L ) );
+        assertEquals( Long.valueOf( 60000L ), ComponentMonitorConfig.getFrequency( ServerComponent.STORAGE, 60000L ) );
+        assertEquals( Long.valueOf( 30000L ),
+                      ComponentMonitorConfig.getFrequency( SwitchComponentEnum.SWITCH_PORT, 60000L ) );
+        assertEquals( 5000L, ComponentMonitorConfig.getComponentPollTimeout() );
+    }
+
+    @Test
+    public void testTickFrequency()
+    {
+        MonitoringTaskResponse response =
+            new MonitoringTaskResponse( new ServerNode( "N1", null, null, null ),
+                                        Arrays.asList( ServerComponent.CPU, ServerComponent.FAN ), null );
+        MonitorTaskSuite taskSuite = new MonitorTaskSuite( response, 60000L );
+        assertEquals( 60000L, taskSuite.getTickFrequency() );
+
+        ComponentMonitorConfig.setFrequency( ServerComponent.FAN, 10000L );
+        ComponentMonitorConfig.setFrequency( ServerComponent.STORAGE, 5000L );
+        assertEquals( 10000L, taskSuite.getTickFrequency() );
+    }
+}
@@ -0,0 +1,163 @@
+/* ********************************************************************************
+ * EventStateTableTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.vmware.vrack.common.event.Body;
+import com.vmware.vrack.common.event.Event;
+import com.vmware.vrack.common.event.Header;
+import com.vmware.vrack.common.event.enums.EventCatalog;
+import com.vmware.vrack.common.event.enums.EventComponent;
+import com.vmware.vrack.common.event.enums.EventSeverity;
+
+public class EventStateTableTest
+{
+    @Test
+    public void testStateChangesOnly()
+    {
+        EventStateTable table = new EventStateTable();
+        Event fan = getEvent( "FAN_0", EventSeverity.INFORMATIONAL, "5000.0" );
+        Event temp = getEvent( "CPU_0", EventSeverity.INFORMATIONAL, "40.0" );
+        assertEquals( 2, table.getChangedEvents( "N1", Arrays.asList( fan, temp ) ).size() );
+        assertTrue( table.getChangedEvents( "N1", Arrays.asList( fan, temp ) ).isEmpty() );
+
+        // other nodes have their own states
+        assertEquals( 1, table.getChangedEvents( "N2", Collections.singletonList( fan ) ).size() );
+
+        Event hot = getEvent( "CPU_0", EventSeverity.WARNING, "90.0" );
+        List<Event> changedEvents = table.getChangedEvents( "N1", Arrays.asList( fan, hot ) );
+        assertEquals( Collections.singletonList( hot ), changedEvents );
+
+        // a sensor missing from a sweep is emitted when it reappears
+        assertTrue( table.getChangedEvents( "N1", Collections.singletonList( hot ) ).isEmpty() );
+        assertEquals( Collections.singletonList( fan ),
+                      table.getChangedEvents( "N1", Arrays.asList( fan, hot ) ) );
+    }
+
+    @Test
+    public void testDebounceAndHysteresis()
+    {
+        EventStateTable table = new EventStateTable();
+        table.setDebounceCount( 2 );
+        table.setHysteresis( 1.5f );
+        table.getChangedEvents( "N1", Collections.singletonList( getEvent( "CPU_0", EventSeverity.INFORMATIONAL,
+                                                                           "40.0" ) ) );
+
+        assertTrue( table.getChangedEvents( "N1", Collections.singletonList( getEvent( "CPU_0",
+                                                                                       EventSeverity.INFORMATIONAL,
+                                                                                       "41.0" ) ) ).isEmpty() );
+        assertTrue( table.getChangedEvents( "N1", Collections.singletonList( getEvent( "CPU_0",
+                                                                                       EventSeverity.INFORMATIONAL,
+                                                                                       "45.0" ) ) ).isEmpty() );
+        assertEquals( 1, table.getChangedEvents( "N1", Collections.singletonList( getEvent( "CPU_0",
+                                                                                            EventSeverity.INFORMATIONAL,
+                                                                                            "45.5" ) ) ).size() );
+
+        assertTrue( EventStateTable.isSameValue( "40.0", "41.4", 1.5f ) );
+        assertFalse( EventStateTable.isSameValue( "40.0", "41.5", 1.5f ) );
+        assertFalse( EventStateTable.isSameValue( "Up", "Down", 1.5f ) );
+    }
+
+    @Test
+    public void testResync()
+    {
+        EventStateTable table = new EventStateTable();
+        table.setResyncInterval( 1 );
+        Event fan = getEvent( "FAN_0", EventSeverity.INFORMATIONAL, "5000.0" );
+        table.getChangedEvents( "N1", Collections.singletonList( fan ) );
+        long deadline = System.currentTimeMillis() + 10;
+        while ( System.currentTimeMillis() < deadline )
+        {
+            Thread.yield();
+        }
+        assertEquals( 1, table.getChangedEvents( "N1", Collections.singletonList( fan ) ).size() );
+
+        table.setEnabled( false );
+        assertEquals( 1, table.getChangedEvents( "N1", Collections.singletonList( fan ) ).size() );
+    }
+
+    @Test
+    public void testAlternatingStates()
+    {
+        EventStateTable table = new EventStateTable();
+        table.setDebounceCount( 2 );
+        Event up = getEvent( EventCatalog.HDD_UP, "HDD_0", EventSeverity.INFORMATIONAL, "Up" );
+        Event down = getEvent( EventCatalog.HDD_DOWN, "HDD_0", EventSeverity.CRITICAL, "Down" );
+        assertEquals( EventStateTable.getSensorKey( up ), EventStateTable.getSensorKey( down ) );
+        assertEquals( 1, table.getChangedEvents( "N1", Collections.singletonList( up ) ).size() );
+
+        // a sensor flapping every sweep is not emitted
+        for ( int i = 0; i < 3; i++ )
+        {
+            assertTrue( table.getChangedEvents( "N1", Collections.singletonList( down ) ).isEmpty() );
+            assertTrue( table.getChangedEvents( "N1", Collections.singletonList( up ) ).isEmpty() );
+        }
+
+        // a state seen in enough consecutive sweeps is emitted once
+        assertTrue( table.getChangedEvents( "N1", Collections.singletonList( down ) ).isEmpty() );
+        assertEquals( Collections.singletonList( down ),
+                      table.getChangedEvents( "N1", Collections.singletonList( down ) ) );
+        assertTrue( table.getChangedEvents( "N1", Collections.singletonList( down ) ).isEmpty() );
+
+        // without debounce, each transition is emitted
+        table.setDebounceCount( 1 );
+        assertEquals( 1, table.getChangedEvents( "N1", Collections.singletonList( up ) ).size() );
+        assertEquals( 1, table.getChangedEvents( "N1", Collections.singletonList( down ) ).size() );
+    }
+
+    private static Event getEvent( String componentId, EventSeverity severity, String value )
+    {
+        Event event = getEvent( EventCatalog.CPU_TEMPERATURE_ABOVE_UPPER_THRESHOLD, componentId, severity, value );
+        event.getBody().getData().put( "eventId", componentId + " Temp" );
+        event.getBody().getData().put( "unit", "DEGREE_CELSIUS" );
+        return event;
+    }
+
+    private static Event getEvent( EventCatalog eventName, String componentId, EventSeverity severity, String value )
+    {
+        Header header = new Header();
+        header.setAgent( "HMS" );
+        header.setEventName( eventName );
+        header.setSeverity( severity );
+        Map<EventComponent, String> componentIdentifier = new HashMap<EventComponent, String>();
+        componentIdentifier.put( EventComponent.SERVER, "N1" );
+        componentIdentifier.put( EventComponent.CPU, componentId );
+        header.addComponentIdentifier( componentIdentifier );
+
+        Map<String, String> data = new HashMap<String, String>();
+        data.put( "eventId", componentId + " Status" );
+        data.put( "value", value );
+        data.put( "unit", "DISCRETE" );
+        Body body = new Body();
+        body.setData( data );
+
+        Event event = new Event();
+        event.setHeader( header );
+        event.setBody( body );
+        return event;
+    }
+}
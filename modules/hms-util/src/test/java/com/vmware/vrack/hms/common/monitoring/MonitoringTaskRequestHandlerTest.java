@@ -0,0 +1,428 @@
+/* ********************************************************************************
+ * MonitoringTaskRequestHandlerTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vmware.vrack.hms.common.exception.HmsException;
+import com.vmware.vrack.hms.common.servernodes.api.ServerComponent;
+import com.vmware.vrack.hms.common.servernodes.api.ServerNode;
+
+/**
+ * Test of {@link MonitoringTaskRequestHandler} scheduling. The poll ticks and the monitoring cycles are run by the
+ * test, instead of by the scheduler and the worker pool.
+ */
+public class MonitoringTaskRequestHandlerTest
+{
+
+    private TestRequestHandler handler;
+
+    /**
+     * Monitor task suite that counts the monitoring cycles.
+     */
+    private static class CountingMonitorTaskSuite
+        extends MonitorTaskSuite
+    {
+
+        private final AtomicInteger cycles = new AtomicInteger();
+
+        private final int maxCycles;
+
+        CountingMonitorTaskSuite( String nodeId, int maxCycles )
+        {
+            super( new MonitoringTaskResponse( new ServerNode( nodeId, null, null, null ), ServerComponent.CPU,
+                                               null ),
+                   1000L );
+            this.maxCycles = maxCycles;
+        }
+
+        @Override
+        public boolean executeMonitoringCycle()
+            throws HmsException
+        {
+            return cycles.incrementAndGet() < maxCycles;
+        }
+    }
+
+    /**
+     * Request handler whose ticks are fired by {@link ManualScheduler#fireTicks()} and whose cycles are run by
+     * {@link ManualExecutor#runCycles()}.
+     */
+    private static class TestRequestHandler
+        extends MonitoringTaskRequestHandler
+    {
+
+        private ManualScheduler scheduler;
+
+        private ManualExecutor workers;
+
+        @Override
+        ExecutorService createExecutorService()
+        {
+            workers = new ManualExecutor();
+            return workers;
+        }
+
+        @Override
+        ScheduledExecutorService createSchedulerService()
+        {
+            scheduler = new ManualScheduler();
+            return scheduler;
+        }
+    }
+
+    /**
+     * Scheduler keeping the scheduled ticks until they are fired.
+     */
+    private static class ManualScheduler
+        extends ScheduledThreadPoolExecutor
+    {
+
+        private final Map<ScheduledFuture<?>, Runnable> ticks = new LinkedHashMap<ScheduledFuture<?>, Runnable>();
+
+        ManualScheduler()
+        {
+            super( 1 );
+        }
+
+        @Override
+        public synchronized ScheduledFuture<?> schedule( Runnable command, long delay, TimeUnit unit )
+        {
+            ScheduledFuture<?> future = super.schedule( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                }
+            }, 1, TimeUnit.DAYS );
+            ticks.put( future, command );
+            return future;
+        }
+
+        int fireTicks()
+        {
+            List<Map.Entry<ScheduledFuture<?>, Runnable>> dueTicks;
+            synchronized ( this )
+            {
+                dueTicks = new ArrayList<Map.Entry<ScheduledFuture<?>, Runnable>>( ticks.entrySet() );
+                ticks.clear();
+            }
+            int fired = 0;
+            for ( Map.Entry<ScheduledFuture<?>, Runnable> tick : dueTicks )
+            {
+                if ( !tick.getKey().isCancelled() )
+                {
+                    tick.getValue().run();
+                    fired++;
+                }
+            }
+            return fired;
+        }
+    }
+
+    /**
+     * Worker pool keeping the submitted cycles until they are run.
+     */
+    private static class ManualExecutor
+        extends AbstractExecutorService
+    {
+
+        private final List<Runnable> cycles = new ArrayList<Runnable>();
+
+        private volatile boolean shutdown;
+
+        @Override
+        public synchronized void execute( Runnable command )
+        {
+            cycles.add( command );
+        }
+
+        int runCycles()
+        {
+            List<Runnable> pendingCycles;
+            synchronized ( this )
+            {
+                pendingCycles = new ArrayList<Runnable>( cycles );
+                cycles.clear();
+            }
+            for ( Runnable cycle : pendingCycles )
+            {
+                cycle.run();
+            }
+            return pendingCycles.size();
+        }
+
+        @Override
+        public void shutdown()
+        {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow()
+        {
+            shutdown = true;
+            return new ArrayList<Runnable>();
+        }
+
+        @Override
+        public boolean isShutdown()
+        {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated()
+        {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination( long timeout, TimeUnit unit )
+        {
+            return true;
+        }
+    }
+
+    @Before
+    public void setUp()
+    {
+        handler = new TestRequestHandler();
+    }
+
+    @After
+    public void tearDown()
+    {
+        handler.destroy();
+    }
+
+    @Test
+    public void testScheduledCyclesAndSkippedTicks()
+        throws Exception
+    {
+        CountingMonitorTaskSuite task = new CountingMonitorTaskSuite( "N_TICK", Integer.MAX_VALUE );
+        handler.executeServerMonitorTask( task );
+
+        assertNotNull( handler.getNextDueTime( "N_TICK" ) );
+        assertTrue( handler.getNextDueTimes().containsKey( "N_TICK" ) );
+
+        // the second tick fires while the cycle of the first one is still running
+        assertEquals( 1, handler.scheduler.fireTicks() );
+        assertEquals( 1, handler.scheduler.fireTicks() );
+        assertEquals( 1, handler.workers.runCycles() );
+        assertEquals( 1, handler.scheduler.fireTicks() );
+        assertEquals( 1, handler.workers.runCycles() );
+
+        assertEquals( 2, task.cycles.get() );
+        MonitorTaskSchedule schedule = handler.getMonitorTaskSchedules().get( 0 );
+        assertEquals( 2, schedule.getExecutedTicks() );
+        assertEquals( 1, schedule.getSkippedTicks() );
+        assertNotNull( handler.getNextDueTime( "N_TICK" ) );
+    }
+
+    @Test
+    public void testMonitoringStopsWhenCycleReturnsFalse()
+        throws Exception
+    {
+        CountingMonitorTaskSuite task = new CountingMonitorTaskSuite( "N_STOP", 2 );
+        handler.executeServerMonitorTask( task );
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            handler.scheduler.fireTicks();
+            handler.workers.runCycles();
+        }
+
+        assertEquals( 2, task.cycles.get() );
+        assertTrue( task.isStopMonitoring() );
+        assertNull( handler.getNextDueTime( "N_STOP" ) );
+        assertTrue( handler.getMonitorTaskSchedules().isEmpty() );
+    }
+
+    @Test
+    public void testStoppedTaskIsRemoved()
+        throws Exception
+    {
+        CountingMonitorTaskSuite task = new CountingMonitorTaskSuite( "N_STOPPED", Integer.MAX_VALUE );
+        handler.executeServerMonitorTask( task );
+
+        task.setStopMonitoring( true );
+        assertEquals( 1, handler.scheduler.fireTicks() );
+
+        assertEquals( 0, handler.workers.runCycles() );
+        assertEquals( 0, task.cycles.get() );
+        assertTrue( handler.getMonitorTaskSchedules().isEmpty() );
+    }
+
+    @Test
+    public void testRestartResumesOnlyActiveTasks()
+        throws Exception
+    {
+        CountingMonitorTaskSuite activeTask = new CountingMonitorTaskSuite( "N_ACTIVE", Integer.MAX_VALUE );
+        CountingMonitorTaskSuite stoppedTask = new CountingMonitorTaskSuite( "N_STOPPED", Integer.MAX_VALUE );
+        handler.executeServerMonitorTask( activeTask );
+        handler.executeServerMonitorTask( stoppedTask );
+        stoppedTask.setStopMonitoring( true );
+
+        ExecutorService componentExecutorService = handler.getComponentExecutorService();
+        handler.shutMonitoring( 0L );
+        assertTrue( activeTask.isStopMonitoring() );
+        assertNull( handler.getNextDueTime( "N_ACTIVE" ) );
+        assertTrue( componentExecutorService.isShutdown() );
+        assertNull( handler.getComponentExecutorService() );
+
+        handler.restartMonitoring( 0L );
+        assertNotNull( handler.getComponentExecutorService() );
+        assertFalse( activeTask.isStopMonitoring() );
+        assertTrue( stoppedTask.isStopMonitoring() );
+        assertNotNull( handler.getNextDueTime( "N_ACTIVE" ) );
+        assertNull( handler.getNextDueTime( "N_STOPPED" ) );
+        assertEquals( 1, handler.getMonitorTaskSchedules().size() );
+
+        assertEquals( 1, handler.scheduler.fireTicks() );
+        assertEquals( 1, handler.workers.runCycles() );
+        assertEquals( 1, activeTask.cycles.get() );
+        assertEquals( 0, stoppedTask.cycles.get() );
+    }
+
+    @Test
+    public void testComponentPoolUsesConfiguredSize()
+        throws Exception
+    {
+        int componentThreadPoolSize = ComponentMonitorConfig.getComponentThreadPoolSize();
+        try
+        {
+            // the configuration is loaded after the handler is instantiated
+            Properties properties = new Properties();
+            properties.setProperty( ComponentMonitorConfig.COMPONENT_THREAD_POOL_SIZE_PROPERTY, "3" );
+            ComponentMonitorConfig.loadConfig( properties );
+            ThreadPoolExecutor componentExecutorService = (ThreadPoolExecutor) handler.getComponentExecutorService();
+            assertEquals( 3, componentExecutorService.getCorePoolSize() );
+            assertEquals( 3, componentExecutorService.getMaximumPoolSize() );
+
+            // a restart picks up the new configuration
+            ComponentMonitorConfig.setComponentThreadPoolSize( 5 );
+            handler.restartMonitoring( 0L );
+            assertEquals( 5, ( (ThreadPoolExecutor) handler.getComponentExecutorService() ).getCorePoolSize() );
+        }
+        finally
+        {
+            ComponentMonitorConfig.setComponentThreadPoolSize( componentThreadPoolSize );
+        }
+    }
+
+    @Test
+    public void testTickJitterIsConfigurable()
+    {
+        int tickJitterPercent = MonitoringTaskRequestHandler.getTickJitterPercent();
+        try
+        {
+            Properties properties = new Properties();
+            properties.setProperty( MonitoringTaskRequestHandler.MONITORING_TICK_JITTER_PERCENT_PROPERTY, "0" );
+            MonitoringTaskRequestHandler.loadConfig( properties );
+            assertEquals( 1000L, handler.getTickDelay( 1000L ) );
+
+            properties.setProperty( MonitoringTaskRequestHandler.MONITORING_TICK_JITTER_PERCENT_PROPERTY, "50" );
+            MonitoringTaskRequestHandler.loadConfig( properties );
+            for ( int i = 0; i < 100; i++ )
+            {
+                long delay = handler.getTickDelay( 1000L );
+                assertTrue( delay >= 500L && delay <= 1500L );
+            }
+
+            // invalid values are ignored
+            properties.setProperty( MonitoringTaskRequestHandler.MONITORING_TICK_JITTER_PERCENT_PROPERTY, "150" );
+            MonitoringTaskRequestHandler.loadConfig( properties );
+            assertEquals( 50, MonitoringTaskRequestHandler.getTickJitterPercent() );
+            properties.setProperty( MonitoringTaskRequestHandler.MONITORING_TICK_JITTER_PERCENT_PROPERTY, "ten" );
+            MonitoringTaskRequestHandler.loadConfig( properties );
+            assertEquals( 50, MonitoringTaskRequestHandler.getTickJitterPercent() );
+        }
+        finally
+        {
+            Properties properties = new Properties();
+            properties.setProperty( MonitoringTaskRequestHandler.MONITORING_TICK_JITTER_PERCENT_PROPERTY,
+                                    String.valueOf( tickJitterPercent ) );
+            MonitoringTaskRequestHandler.loadConfig( properties );
+        }
+    }
+
+    @Test
+    public void testTimedOutComponentsAreNotPolled()
+        throws Exception
+    {
+        long componentPollTimeout = ComponentMonitorConfig.getComponentPollTimeout();
+        ComponentMonitorConfig.setComponentPollTimeout( 200L );
+        try
+        {
+            MonitorTaskSuite taskSuite =
+                new MonitorTaskSuite( new MonitoringTaskResponse( new ServerNode( "N_POLL", null, null, null ),
+                                                                  ServerComponent.CPU, null ),
+                                      1000L );
+            List<ServerComponent> components =
+                new ArrayList<ServerComponent>( Arrays.asList( ServerComponent.CPU, ServerComponent.FAN ) );
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            tasks.add( sleep( 0 ) );
+            tasks.add( sleep( 5000 ) );
+
+            taskSuite.pollComponents( components, tasks, System.currentTimeMillis() );
+
+            assertEquals( Arrays.asList( ServerComponent.CPU ), components );
+        }
+        finally
+        {
+            ComponentMonitorConfig.setComponentPollTimeout( componentPollTimeout );
+        }
+    }
+
+    private static Callable<Void> sleep( final long millis )
+    {
+        return new Callable<Void>()
+        {
+            @Override
+            public Void call()
+                throws Exception
+            {
+                Thread.sleep( millis );
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,174 @@
+/* ********************************************************************************
+ * EventDeliveryServiceTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.vmware.vrack.common.event.Body;
+import com.vmware.vrack.common.event.Event;
+import com.vmware.vrack.common.event.Header;
+import com.vmware.vrack.common.event.enums.EventCatalog;
+import com.vmware.vrack.hms.common.RequestMethod;
+import com.vmware.vrack.hms.common.events.BaseEventMonitoringSubscription;
+import com.vmware.vrack.hms.common.util.EventDeliveryEndpoint.CircuitState;
+
+public class EventDeliveryServiceTest
+{
+
+    @Test
+    public void testUnreachableEndpointOpensCircuit()
+        throws Exception
+    {
+        EventDeliveryService deliveryService = EventDeliveryService.getInstance();
+        deliveryService.setMaxRetries( 0 );
+        deliveryService.setFailureThreshold( 1 );
+        deliveryService.setLingerTime( 10 );
+
+        BaseEventMonitoringSubscription subscription = new BaseEventMonitoringSubscription();
+        subscription.setNotificationEndpoint( "http://127.0.0.1:1/events" );
+        subscription.setRequestMethod( RequestMethod.POST );
+
+        assertFalse( deliveryService.deliver( new ArrayList<Event>(), subscription ) );
+        assertTrue( deliveryService.deliver( getEvents( 3 ), subscription ) );
+
+        EventDeliveryEndpoint endpoint = null;
+        for ( int i = 0; i < 50 && ( endpoint == null || endpoint.getCircuitState() != CircuitState.OPEN ); i++ )
+        {
+            Thread.sleep( 100 );
+            endpoint = getEndpoint( deliveryService, "http://127.0.0.1:1/events" );
+        }
+
+        assertEquals( CircuitState.OPEN, endpoint.getCircuitState() );
+        assertEquals( 3, endpoint.getDroppedEvents() );
+        assertEquals( 0, endpoint.getDeliveredEvents() );
+        assertEquals( 0, endpoint.getQueueDepth() );
+
+        deliveryService.setMaxRetries( EventDeliveryService.DEFAULT_MAX_RETRIES );
+        deliveryService.setFailureThreshold( EventDeliveryService.DEFAULT_FAILURE_THRESHOLD );
+        deliveryService.setLingerTime( EventDeliveryService.DEFAULT_LINGER_TIME );
+    }
+
+    @Test
+    public void testErrorStatusCountsAsFailedDelivery()
+        throws Exception
+    {
+        final AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+        server.createContext( "/events", new HttpHandler()
+        {
+            @Override
+            public void handle( HttpExchange exchange )
+                throws IOException
+            {
+                requests.incrementAndGet();
+                InputStream is = exchange.getRequestBody();
+                while ( is.read() != -1 )
+                {
+                }
+                exchange.sendResponseHeaders( 500, -1 );
+                exchange.close();
+            }
+        } );
+        server.start();
+
+        EventDeliveryService deliveryService = EventDeliveryService.getInstance();
+        deliveryService.setMaxRetries( 1 );
+        deliveryService.setRetryBackoff( 10 );
+        deliveryService.setFailureThreshold( 2 );
+        deliveryService.setLingerTime( 10 );
+        try
+        {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/events";
+            BaseEventMonitoringSubscription subscription = new BaseEventMonitoringSubscription();
+            subscription.setNotificationEndpoint( url );
+            subscription.setRequestMethod( RequestMethod.POST );
+
+            assertTrue( deliveryService.deliver( getEvents( 2 ), subscription ) );
+
+            EventDeliveryEndpoint endpoint = null;
+            for ( int i = 0; i < 50 && ( endpoint == null || endpoint.getDroppedEvents() == 0 ); i++ )
+            {
+                Thread.sleep( 100 );
+                endpoint = getEndpoint( deliveryService, url );
+            }
+
+            assertEquals( 2, requests.get() );
+            assertEquals( 2, endpoint.getDroppedEvents() );
+            assertEquals( 0, endpoint.getDeliveredEvents() );
+            assertEquals( CircuitState.OPEN, endpoint.getCircuitState() );
+        }
+        finally
+        {
+            server.stop( 0 );
+            deliveryService.setMaxRetries( EventDeliveryService.DEFAULT_MAX_RETRIES );
+            deliveryService.setRetryBackoff( EventDeliveryService.DEFAULT_RETRY_BACKOFF );
+            deliveryService.setFailureThreshold( EventDeliveryService.DEFAULT_FAILURE_THRESHOLD );
+            deliveryService.setLingerTime( EventDeliveryService.DEFAULT_LINGER_TIME );
+        }
+    }
+
+    @Test
+    public void testQueueDropsOldestEventsWhenFull()
+    {
+        EventDeliveryEndpoint endpoint = new EventDeliveryEndpoint( "http://localhost/events", RequestMethod.POST, 2 );
+        endpoint.offer( getEvents( 5 ) );
+
+        assertEquals( 2, endpoint.getQueueDepth() );
+        assertEquals( 3, endpoint.getDroppedEvents() );
+        assertEquals( 2, endpoint.getBatch( 10 ).size() );
+    }
+
+    private EventDeliveryEndpoint getEndpoint( EventDeliveryService deliveryService, String url )
+    {
+        for ( EventDeliveryEndpoint endpoint : deliveryService.getEndpoints() )
+        {
+            if ( url.equals( endpoint.getUrl() ) )
+            {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    private List<Event> getEvents( int count )
+    {
+        List<Event> events = new ArrayList<Event>();
+        for ( int i = 0; i < count; i++ )
+        {
+            Header header = new Header();
+            header.setEventName( EventCatalog.CPU_THERMAL_TRIP );
+            Event event = new Event();
+            event.setHeader( header );
+            event.setBody( new Body() );
+            events.add( event );
+        }
+        return events;
+    }
+}
@@ -0,0 +1,57 @@
+/* ********************************************************************************
+ * HttpClientPoolTest.java
+ *
+ * Copyright © 2013 - 2016 VMware, Inc. All Rights Reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, without warranties or
+ * conditions of any kind, EITHER EXPRESS OR IMPLIED. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * *******************************************************************************/
+package com.vmware.vrack.hms.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.pool.PoolStats;
+import org.junit.Test;
+
+public class HttpClientPoolTest
+{
+
+    @Test
+    public void testSharedClient()
+    {
+        HttpClient httpClient = HttpClientPool.getHttpClient();
+        assertNotNull( httpClient );
+        assertSame( httpClient, HttpClientPool.getHttpClient() );
+        assertSame( httpClient, HttpUtil.getHttpClient() );
+
+        HttpClient basicAuthClient = HttpClientPool.getHttpClientWithBasicAuth( "userName", "password" );
+        assertNotNull( basicAuthClient );
+        assertNotSame( httpClient, basicAuthClient );
+    }
+
+    @Test
+    public void testPoolStats()
+    {
+        HttpClientPool.getHttpClient();
+        Map<String, PoolStats> poolStats = HttpClientPool.getPoolStats();
+        assertTrue( poolStats.containsKey( HttpClientPool.TOTAL_POOL_STATS ) );
+
+        PoolStats totalStats = poolStats.get( HttpClientPool.TOTAL_POOL_STATS );
+        assertEquals( 0, totalStats.getLeased() );
+        assertEquals( CommonProperties.getHttpPoolMaxTotal(), totalStats.getMax() );
+    }
+}
@@ -177,7 +177,8 @@ public class Redfish_serverPlugin
         {
             ComputerSystemResource computerSystemResource = findComputerSystemResource( uuid );
             computerSystemResources.put( uuid, computerSystemResource.getOrigin() );
-            return computerSystemResource;
+            // the crawled resource is as of the crawl that found it, read its current state
+            return fetchComputerSystemResource( computerSystemResource.getOrigin() );
         }
         catch ( HmsException | IllegalArgumentException e )
         {
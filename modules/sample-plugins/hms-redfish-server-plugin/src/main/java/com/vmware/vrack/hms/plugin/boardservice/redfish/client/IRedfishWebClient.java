@@ -17,6 +17,7 @@
 
 package com.vmware.vrack.hms.plugin.boardservice.redfish.client;
 
+import com.vmware.vrack.hms.plugin.boardservice.redfish.resources.RedfishCollection;
 import com.vmware.vrack.hms.plugin.boardservice.redfish.resources.RedfishResource;
 
 import java.net.URI;
@@ -27,6 +28,19 @@ public interface IRedfishWebClient
     RedfishResource get( URI targetUri )
         throws RedfishClientException;
 
+    /**
+     * Reads the resource unless it still matches the given ETag, optionally with the members of a collection expanded
+     * inline (see {@link RedfishCollection#getExpandedMembers()}).
+     *
+     * @param targetUri URI of the resource
+     * @param etag ETag of the resource read previously, null to read it unconditionally
+     * @param expandMembers whether to request the members of a collection inline with $expand
+     * @return RedfishResource read resource, null if it was not modified
+     * @throws RedfishClientException
+     */
+    RedfishResource get( URI targetUri, String etag, boolean expandMembers )
+        throws RedfishClientException;
+
     <T> void post( URI targetUri, T body )
         throws RedfishClientException;
 
@@ -18,7 +18,10 @@
 package com.vmware.vrack.hms.plugin.boardservice.redfish.client;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vmware.vrack.hms.plugin.boardservice.redfish.resources.OdataId;
+import com.vmware.vrack.hms.plugin.boardservice.redfish.resources.RedfishCollection;
 import com.vmware.vrack.hms.plugin.boardservice.redfish.resources.RedfishResource;
 import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
 import org.jboss.resteasy.plugins.providers.jackson.ResteasyJackson2Provider;
@@ -29,49 +32,118 @@ import javax.ws.rs.ProcessingException;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 
+import static com.vmware.vrack.hms.plugin.boardservice.redfish.client.UriHelper.toAbsoluteUri;
 import static javax.ws.rs.client.Entity.json;
 import static javax.ws.rs.core.Response.Status.Family.SUCCESSFUL;
+import static javax.ws.rs.core.Response.Status.NOT_MODIFIED;
 
 public class RedfishWebClient
     implements IRedfishWebClient
 {
     private static Logger LOGGER = LoggerFactory.getLogger( RedfishWebClient.class );
 
+    private static final String EXPAND_QUERY_PARAMETER = "$expand";
+
+    private static final String EXPAND_SUBORDINATE_RESOURCES = ".";
+
+    private static final String MEMBERS = "Members";
+
+    private static final String ODATA_ID = "@odata.id";
+
+    private static final String ODATA_TYPE = "@odata.type";
+
+    private static final String ODATA_ETAG = "@odata.etag";
+
+    private static final int MAX_CONNECTIONS = 32;
+
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 8;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+        .enable( DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL )
+        .enable( DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES )
+        .disable( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES );
+
+    /**
+     * Client shared by all RedfishWebClient instances, its connections are pooled so that resources can be read
+     * from several threads at once
+     */
+    private static final Client SHARED_CLIENT = createClient();
+
     private final Client client;
 
     public RedfishWebClient()
     {
-        ResteasyJackson2Provider jackson2Provider = new ResteasyJackson2Provider();
-
-        ObjectMapper mapper = new ObjectMapper()
-            .enable( DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL )
-            .enable( DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES )
-            .disable( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES );
+        this.client = SHARED_CLIENT;
+    }
 
-        jackson2Provider.setMapper( mapper );
+    private static Client createClient()
+    {
+        ResteasyJackson2Provider jackson2Provider = new ResteasyJackson2Provider();
+        jackson2Provider.setMapper( MAPPER );
 
-        this.client = ( (ResteasyClientBuilder) ResteasyClientBuilder.newBuilder() )
+        return ( (ResteasyClientBuilder) ResteasyClientBuilder.newBuilder() )
             .register( jackson2Provider )
             .disableTrustManager()
+            .connectionPoolSize( MAX_CONNECTIONS )
+            .maxPooledPerRoute( MAX_CONNECTIONS_PER_ROUTE )
             .build();
     }
 
     @Override
     public RedfishResource get( URI targetUri )
         throws RedfishClientException
+    {
+        return get( targetUri, null, false );
+    }
+
+    @Override
+    public RedfishResource get( URI targetUri, String etag, boolean expandMembers )
+        throws RedfishClientException
     {
         WebTarget target = client.target( targetUri );
+        if ( expandMembers )
+        {
+            target = target.queryParam( EXPAND_QUERY_PARAMETER, EXPAND_SUBORDINATE_RESOURCES );
+        }
+        Invocation.Builder request = target.request( MediaType.APPLICATION_JSON_TYPE );
+        if ( etag != null )
+        {
+            request.header( HttpHeaders.IF_NONE_MATCH, etag );
+        }
+        Response response = null;
         try
         {
-            Response response = target.request( MediaType.APPLICATION_JSON_TYPE ).buildGet().invoke();
-            RedfishResource redfishResource = response.readEntity( RedfishResource.class );
-            redfishResource.setOrigin( target.getUri() );
+            response = request.buildGet().invoke();
             LOGGER.debug( "Response code {} returned for request: GET {}", response.getStatus(), target.getUri() );
+            if ( response.getStatus() == NOT_MODIFIED.getStatusCode() )
+            {
+                return null;
+            }
+            if ( !response.getStatusInfo().getFamily().equals( SUCCESSFUL ) )
+            {
+                throw new RedfishClientException(
+                    "GET request returned non-successful status code " + response.getStatus(),
+                    targetUri,
+                    null
+                );
+            }
+            JsonNode json = response.readEntity( JsonNode.class );
+            RedfishResource redfishResource = readResource( json, targetUri );
+            redfishResource.setEtag( response.getHeaderString( HttpHeaders.ETAG ) );
+            if ( expandMembers && redfishResource instanceof RedfishCollection )
+            {
+                ( (RedfishCollection) redfishResource ).setExpandedMembers( readExpandedMembers( json, targetUri ) );
+            }
             return redfishResource;
         }
         catch ( ProcessingException e )
@@ -84,6 +156,55 @@ public class RedfishWebClient
             LOGGER.debug( "Error {} while performing request: GET {}", e.getResponse().getStatus(), target.getUri() );
             throw new RedfishClientException( "Could not perform GET request on " + targetUri, targetUri, e );
         }
+        catch ( IOException | UnsupportedOperationException e )
+        {
+            LOGGER.debug( "Could not read resource returned for request: GET {}", target.getUri() );
+            throw new RedfishClientException( "Could not read resource from GET request on " + targetUri, targetUri,
+                                              e );
+        }
+        finally
+        {
+            if ( response != null )
+            {
+                response.close();
+            }
+        }
+    }
+
+    private static RedfishResource readResource( JsonNode json, URI origin )
+        throws IOException
+    {
+        RedfishResource redfishResource = MAPPER.treeToValue( json, RedfishResource.class );
+        redfishResource.setOrigin( origin );
+        return redfishResource;
+    }
+
+    /**
+     * Reads the members of an expanded collection, skipping the ones returned as references only or of unsupported
+     * types, which are left to be read on their own
+     */
+    private static List<RedfishResource> readExpandedMembers( JsonNode collection, URI collectionUri )
+    {
+        List<RedfishResource> members = new ArrayList<>();
+        for ( JsonNode member : collection.path( MEMBERS ) )
+        {
+            if ( !member.hasNonNull( ODATA_ID ) || !member.hasNonNull( ODATA_TYPE ) )
+            {
+                continue;
+            }
+            URI memberUri = toAbsoluteUri( collectionUri, OdataId.fromString( member.get( ODATA_ID ).asText() ) );
+            try
+            {
+                RedfishResource resource = readResource( member, memberUri );
+                resource.setEtag( member.hasNonNull( ODATA_ETAG ) ? member.get( ODATA_ETAG ).asText() : null );
+                members.add( resource );
+            }
+            catch ( IOException | UnsupportedOperationException e )
+            {
+                LOGGER.debug( "Could not read expanded member {} of collection {}", memberUri, collectionUri );
+            }
+        }
+        return members;
     }
 
     @Override
@@ -96,6 +217,8 @@ public class RedfishWebClient
         Response response = target.request().post( json );
 
         LOGGER.debug( "Response code {} returned for request: POST {}", response.getStatus(), target.getUri() );
+        // releases the connection of the shared client, the response body is not used
+        response.close();
         if ( !response.getStatusInfo().getFamily().equals( SUCCESSFUL ) )
         {
             LOGGER.debug( "Error {} while performing request: POST {}", response.getStatus(), target.getUri() );
@@ -116,6 +239,8 @@ public class RedfishWebClient
         LOGGER.trace( "Sending PATCH request to {} with body: {} ", targetUri, json.getEntity() );
         Response response = target.request().method( "PATCH", json );
         LOGGER.debug( "Response code {} returned for request: PATCH {}", response.getStatus(), target.getUri() );
+        // releases the connection of the shared client, the response body is not used
+        response.close();
         if ( !response.getStatusInfo().getFamily().equals( SUCCESSFUL ) )
         {
             LOGGER.debug( "Error {} while performing request: PATCH {}", response.getStatus(), target.getUri() );
@@ -130,7 +255,7 @@ public class RedfishWebClient
     @Override
     public void close()
     {
-        client.close();
+        // the client is shared by all instances and stays open
     }
 
 }
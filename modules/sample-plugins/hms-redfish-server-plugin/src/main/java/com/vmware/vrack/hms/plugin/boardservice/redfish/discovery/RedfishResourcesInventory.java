@@ -25,11 +25,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static java.lang.String.format;
 
@@ -38,6 +38,11 @@ public class RedfishResourcesInventory
 {
     private static final Logger LOGGER = LoggerFactory.getLogger( RedfishResourcesInventory.class );
 
+    /**
+     * Crawlers of the Redfish services by their endpoints, keeping the crawled resources across inventories
+     */
+    private static final ConcurrentMap<URI, ResourcesCrawler> CRAWLERS = new ConcurrentHashMap<>();
+
     private IRedfishWebClient webClient = createRedfishClient();
 
     protected IRedfishWebClient createRedfishClient()
@@ -61,10 +66,35 @@ public class RedfishResourcesInventory
 
     private Map<String, RedfishResource> discoverService( URI serviceEndpoint )
     {
-        Map<String, RedfishResource> resourceMap = new HashMap<>();
-        ResourcesCrawler crawler = new ResourcesCrawler( webClient, serviceEndpoint );
-        resourceMap.putAll( crawler.getAllResources() );
-        return Collections.unmodifiableMap( resourceMap );
+        return getCrawler( serviceEndpoint ).getAllResources( webClient );
+    }
+
+    private static ResourcesCrawler getCrawler( URI serviceEndpoint )
+    {
+        ResourcesCrawler crawler = CRAWLERS.get( serviceEndpoint );
+        if ( crawler == null )
+        {
+            ResourcesCrawler newCrawler = new ResourcesCrawler( serviceEndpoint );
+            crawler = CRAWLERS.putIfAbsent( serviceEndpoint, newCrawler );
+            if ( crawler == null )
+            {
+                crawler = newCrawler;
+            }
+        }
+        return crawler;
+    }
+
+    private RedfishResource readResource( URI targetUri )
+        throws RedfishClientException
+    {
+        for ( ResourcesCrawler crawler : CRAWLERS.values() )
+        {
+            if ( crawler.isValidResourceUri( targetUri ) )
+            {
+                return crawler.getResource( webClient, targetUri );
+            }
+        }
+        return webClient.get( targetUri );
     }
 
     public <T extends RedfishResource> T getResourceByURI( URI targetUri )
@@ -72,7 +102,7 @@ public class RedfishResourcesInventory
     {
         try
         {
-            return (T) webClient.get( targetUri );
+            return (T) readResource( targetUri );
         }
         catch ( RedfishClientException e )
         {
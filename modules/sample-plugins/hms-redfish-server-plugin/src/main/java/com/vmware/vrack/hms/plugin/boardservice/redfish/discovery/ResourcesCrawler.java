@@ -21,91 +21,376 @@ import com.fasterxml.jackson.databind.util.ClassUtil;
 import com.vmware.vrack.hms.plugin.boardservice.redfish.client.IRedfishWebClient;
 import com.vmware.vrack.hms.plugin.boardservice.redfish.client.RedfishClientException;
 import com.vmware.vrack.hms.plugin.boardservice.redfish.resources.OdataId;
+import com.vmware.vrack.hms.plugin.boardservice.redfish.resources.RedfishCollection;
 import com.vmware.vrack.hms.plugin.boardservice.redfish.resources.RedfishResource;
+import com.vmware.vrack.hms.plugin.boardservice.redfish.resources.ServiceRootResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.core.UriBuilder;
 import java.net.URI;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.lang.String.format;
 import static java.util.Collections.newSetFromMap;
 import static java.util.Collections.unmodifiableMap;
 
+/**
+ * Crawls the resources of a Redfish service and keeps the crawled resource graph, so that the service is read in full
+ * only once. Resources are read one level of the graph at a time, in parallel on a pool shared by all services.
+ * <p>
+ * Later crawls read the resources conditionally with their ETags and follow the links of the service root and of the
+ * resources that changed only: the subtree of an unchanged resource, e.g. of a collection whose members did not change,
+ * is kept from the previous crawl. Collections are read with their members expanded inline if the service supports
+ * $expand.
+ */
 public final class ResourcesCrawler
 {
     private static final Logger LOGGER = LoggerFactory.getLogger( ResourcesCrawler.class );
 
+    private static final int MAX_CONCURRENT_REQUESTS = 8;
+
+    private static final ExecutorService CRAWLER_EXECUTOR =
+        Executors.newFixedThreadPool( MAX_CONCURRENT_REQUESTS, new ThreadFactory()
+        {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable runnable )
+            {
+                Thread thread = new Thread( runnable, "redfish-crawler-" + threadCount.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+
     private final URI serviceRootUri;
 
     private final URI baseUri;
 
-    private IRedfishWebClient webClient;
+    private final Object crawlLock = new Object();
+
+    /**
+     * Resources of the last crawl by their URIs, updated in between by {@link #getResource(IRedfishWebClient, URI)}
+     */
+    private volatile ConcurrentMap<URI, CrawledResource> resources = new ConcurrentHashMap<>();
 
-    public ResourcesCrawler( IRedfishWebClient webClient, URI serviceRootUri )
+    /**
+     * Resources of types that can not be read, not to be requested again
+     */
+    private final Set<URI> unsupportedResources = newSetFromMap( new ConcurrentHashMap<URI, Boolean>() );
+
+    private volatile long crawlsStarted;
+
+    public ResourcesCrawler( URI serviceRootUri )
     {
-        this.webClient = webClient;
         this.serviceRootUri = serviceRootUri;
         this.baseUri = UriBuilder.fromUri( serviceRootUri ).replacePath( null ).build();
     }
 
-    public Map<String, RedfishResource> getAllResources()
+    /**
+     * Crawls the service and returns all its resources. A caller that finds a crawl in progress waits for it and
+     * crawls again, so that it does not get resources read before its call.
+     * <p>
+     * Resources are as of the crawl that last found them changed, read them with
+     * {@link #getResource(IRedfishWebClient, URI)} for their current state.
+     *
+     * @param webClient client to read the resources with
+     * @return Map<String, RedfishResource> resources by their @odata.id
+     */
+    public Map<String, RedfishResource> getAllResources( IRedfishWebClient webClient )
     {
+        long crawlsStartedBefore = crawlsStarted;
+        synchronized ( crawlLock )
+        {
+            if ( crawlsStarted == crawlsStartedBefore )
+            {
+                crawlsStarted++;
+                crawl( webClient );
+            }
+        }
+
         Map<String, RedfishResource> resourcesMap = new HashMap<>();
+        for ( CrawledResource crawledResource : resources.values() )
+        {
+            // TODO @odata.id should be always available
+            resourcesMap.put( crawledResource.resource.getOdataId(), crawledResource.resource );
+        }
+        return unmodifiableMap( resourcesMap );
+    }
+
+    /**
+     * Reads a resource of the service, conditionally if it was crawled, in which case the crawled graph is updated
+     * with it
+     *
+     * @param webClient client to read the resource with
+     * @param resourceUri URI of the resource
+     * @return RedfishResource the current resource
+     * @throws RedfishClientException
+     */
+    public RedfishResource getResource( IRedfishWebClient webClient, URI resourceUri )
+        throws RedfishClientException
+    {
+        ConcurrentMap<URI, CrawledResource> crawledResources = resources;
+        CrawledResource crawledResource = crawledResources.get( resourceUri );
+        if ( crawledResource == null )
+        {
+            return webClient.get( resourceUri );
+        }
+
+        RedfishResource resource = webClient.get( resourceUri, crawledResource.resource.getEtag(), false );
+        if ( resource == null )
+        {
+            return crawledResource.resource;
+        }
+        crawledResources.replace( resourceUri, crawledResource,
+                                  new CrawledResource( resource, processLinks( resource.getRelatedResources() ) ) );
+        return resource;
+    }
+
+    public boolean isValidResourceUri( URI resourceUri )
+    {
+        if ( resourceUri == null )
+        {
+            return false;
+        }
+        return resourceUri.toString().startsWith( serviceRootUri.toString() );
+    }
 
-        Set<URI> visited = newSetFromMap( new ConcurrentHashMap<URI, Boolean>() );
-        Queue<URI> crawlQueue = new ArrayDeque<>();
-        crawlQueue.add( serviceRootUri );
+    private void crawl( final IRedfishWebClient webClient )
+    {
+        long startTime = System.currentTimeMillis();
+        final Map<URI, CrawledResource> previous = resources;
+        final boolean expand = isExpandSupported( previous.get( serviceRootUri ) );
+        ConcurrentMap<URI, CrawledResource> crawled = new ConcurrentHashMap<>();
+        Set<URI> visited = new HashSet<>();
+        visited.add( serviceRootUri );
 
-        while ( !crawlQueue.isEmpty() )
+        List<URI> level = Collections.singletonList( serviceRootUri );
+        int requests = 0;
+        while ( !level.isEmpty() )
         {
-            URI resourceUri = crawlQueue.poll();
-            if ( isValidResourceUri( resourceUri ) )
+            List<Callable<CrawledResource>> reads = new ArrayList<>( level.size() );
+            for ( final URI resourceUri : level )
             {
-                if ( !visited.contains( resourceUri ) )
+                reads.add( new Callable<CrawledResource>()
                 {
-                    try
+                    @Override
+                    public CrawledResource call()
                     {
-                        RedfishResource resource = webClient.get( resourceUri );
+                        return read( webClient, resourceUri, previous.get( resourceUri ), expand );
+                    }
+                } );
+            }
+            requests += reads.size();
 
-                        // TODO @odata.id should be always available
-                        resourcesMap.put( resource.getOdataId(), resource );
+            List<Future<CrawledResource>> results;
+            try
+            {
+                results = CRAWLER_EXECUTOR.invokeAll( reads );
+            }
+            catch ( InterruptedException e )
+            {
+                LOGGER.warn( "Crawling of {} interrupted, keeping the resources of the previous crawl",
+                             serviceRootUri );
+                Thread.currentThread().interrupt();
+                return;
+            }
 
-                        Set<URI> resourceLinks = processLinks( resource.getRelatedResources() );
-                        resourceLinks.removeAll( visited );
-                        crawlQueue.addAll( resourceLinks );
-                    }
-                    catch ( RedfishClientException e )
-                    {
-                        Throwable cause = ClassUtil.getRootCause( e );
-                        if ( cause instanceof UnsupportedOperationException )
-                        {
-                            LOGGER.warn( "Problem while reading resource at URI {}: {}", e.getTargetUri(),
-                                         cause.getMessage() );
-                        }
-                        else
-                        {
-                            // TODO consider retrying when ProcessingException is this exception's root cause
-                            LOGGER.error( "Error while reading resource at URI {}", e.getTargetUri(), e );
-                        }
-                    }
-                    visited.add( resourceUri );
+            // links of the changed resources are followed before the subtrees of the unchanged ones are kept, so
+            // that resources linked from both are read again
+            List<URI> nextLevel = new ArrayList<>();
+            List<CrawledResource> unchanged = new ArrayList<>();
+            for ( int i = 0; i < level.size(); i++ )
+            {
+                URI resourceUri = level.get( i );
+                CrawledResource previousResource = previous.get( resourceUri );
+                CrawledResource resource = getResult( resourceUri, results.get( i ), previousResource );
+                if ( resource == null )
+                {
+                    continue;
+                }
+                crawled.put( resourceUri, resource );
+                if ( resource == previousResource && !resourceUri.equals( serviceRootUri ) )
+                {
+                    unchanged.add( resource );
                 }
+                else
+                {
+                    addExpandedMembers( resource, previous, crawled, visited, nextLevel );
+                    followLinks( resource.links, visited, nextLevel );
+                }
+            }
+            for ( CrawledResource resource : unchanged )
+            {
+                keepSubtree( resource, previous, crawled, visited, nextLevel );
+            }
+            level = nextLevel;
+        }
+
+        resources = crawled;
+        LOGGER.debug( "Crawled {} resources of {} with {} requests in {} ms", crawled.size(), serviceRootUri, requests,
+                      System.currentTimeMillis() - startTime );
+    }
+
+    /**
+     * Reads a resource conditionally if it was crawled before
+     *
+     * @return CrawledResource read resource, the previous one if it was not modified or could not be read
+     */
+    private CrawledResource read( IRedfishWebClient webClient, URI resourceUri, CrawledResource previousResource,
+                                  boolean expand )
+    {
+        String etag = ( previousResource != null ) ? previousResource.resource.getEtag() : null;
+        boolean expandMembers =
+            expand && previousResource != null && previousResource.resource instanceof RedfishCollection;
+        try
+        {
+            RedfishResource resource = webClient.get( resourceUri, etag, expandMembers );
+            if ( resource == null )
+            {
+                return previousResource;
+            }
+            return new CrawledResource( resource, processLinks( resource.getRelatedResources() ) );
+        }
+        catch ( RedfishClientException e )
+        {
+            Throwable cause = ClassUtil.getRootCause( e );
+            if ( cause instanceof UnsupportedOperationException )
+            {
+                LOGGER.warn( "Problem while reading resource at URI {}: {}", e.getTargetUri(), cause.getMessage() );
+                unsupportedResources.add( resourceUri );
             }
             else
             {
-                LOGGER.debug( format( "URI %s is not within crawled Service Root's URI namespace", resourceUri ) );
+                // TODO consider retrying when ProcessingException is this exception's root cause
+                LOGGER.error( "Error while reading resource at URI {}", e.getTargetUri(), e );
             }
+            return previousResource;
         }
+    }
 
-        return unmodifiableMap( resourcesMap );
+    private CrawledResource getResult( URI resourceUri, Future<CrawledResource> result,
+                                       CrawledResource previousResource )
+    {
+        try
+        {
+            return result.get();
+        }
+        catch ( ExecutionException | InterruptedException e )
+        {
+            LOGGER.error( "Error while reading resource at URI {}", resourceUri, e );
+            return previousResource;
+        }
+    }
+
+    /**
+     * Adds the members read inline with a collection, keeping the subtrees of the ones that did not change
+     */
+    private void addExpandedMembers( CrawledResource resource, Map<URI, CrawledResource> previous,
+                                     Map<URI, CrawledResource> crawled, Set<URI> visited, List<URI> nextLevel )
+    {
+        if ( !( resource.resource instanceof RedfishCollection ) )
+        {
+            return;
+        }
+        RedfishCollection collection = (RedfishCollection) resource.resource;
+        for ( RedfishResource member : collection.getExpandedMembers() )
+        {
+            URI memberUri = member.getOrigin();
+            if ( !isValidResourceUri( memberUri ) || !visited.add( memberUri ) )
+            {
+                continue;
+            }
+            CrawledResource previousMember = previous.get( memberUri );
+            if ( previousMember != null && member.getEtag() != null
+                && Objects.equals( member.getEtag(), previousMember.resource.getEtag() ) )
+            {
+                crawled.put( memberUri, previousMember );
+                keepSubtree( previousMember, previous, crawled, visited, nextLevel );
+            }
+            else
+            {
+                CrawledResource crawledMember =
+                    new CrawledResource( member, processLinks( member.getRelatedResources() ) );
+                crawled.put( memberUri, crawledMember );
+                followLinks( crawledMember.links, visited, nextLevel );
+            }
+        }
+        // members are kept in the graph on their own
+        collection.setExpandedMembers( null );
+    }
+
+    private void followLinks( Set<URI> links, Set<URI> visited, List<URI> nextLevel )
+    {
+        for ( URI link : links )
+        {
+            if ( !isValidResourceUri( link ) )
+            {
+                LOGGER.debug( format( "URI %s is not within crawled Service Root's URI namespace", link ) );
+            }
+            else if ( !unsupportedResources.contains( link ) && visited.add( link ) )
+            {
+                nextLevel.add( link );
+            }
+        }
+    }
+
+    /**
+     * Keeps the resources below an unchanged resource from the previous crawl, links to resources that were not read
+     * by the previous crawl are to be read
+     */
+    private void keepSubtree( CrawledResource resource, Map<URI, CrawledResource> previous,
+                              Map<URI, CrawledResource> crawled, Set<URI> visited, List<URI> nextLevel )
+    {
+        Queue<URI> pending = new ArrayDeque<>( resource.links );
+        while ( !pending.isEmpty() )
+        {
+            URI link = pending.poll();
+            if ( !isCrawlable( link ) || !visited.add( link ) )
+            {
+                continue;
+            }
+            CrawledResource keptResource = previous.get( link );
+            if ( keptResource == null )
+            {
+                nextLevel.add( link );
+            }
+            else
+            {
+                crawled.put( link, keptResource );
+                pending.addAll( keptResource.links );
+            }
+        }
+    }
+
+    private boolean isCrawlable( URI resourceUri )
+    {
+        return isValidResourceUri( resourceUri ) && !unsupportedResources.contains( resourceUri );
+    }
+
+    private static boolean isExpandSupported( CrawledResource serviceRoot )
+    {
+        return serviceRoot != null && serviceRoot.resource instanceof ServiceRootResource
+            && ( (ServiceRootResource) serviceRoot.resource ).isExpandSupported();
     }
 
     private Set<URI> processLinks( Set<OdataId> relatedResources )
@@ -131,12 +416,19 @@ public final class ResourcesCrawler
         return links;
     }
 
-    private boolean isValidResourceUri( URI resourceUri )
+    /**
+     * Crawled resource and the URIs of its related resources
+     */
+    private static final class CrawledResource
     {
-        if ( resourceUri == null )
+        private final RedfishResource resource;
+
+        private final Set<URI> links;
+
+        private CrawledResource( RedfishResource resource, Set<URI> links )
         {
-            return false;
+            this.resource = resource;
+            this.links = links;
         }
-        return resourceUri.toString().startsWith( serviceRootUri.toString() );
     }
 }
@@ -17,6 +17,7 @@
 
 package com.vmware.vrack.hms.plugin.boardservice.redfish.resources;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -35,6 +36,9 @@ public final class RedfishCollection
     @JsonProperty( "Members" )
     private List<OdataId> members;
 
+    @JsonIgnore
+    private List<RedfishResource> expandedMembers;
+
     public long getMembersOdataCount()
     {
         return membersOdataCount;
@@ -45,6 +49,21 @@ public final class RedfishCollection
         return ( members == null ) ? Collections.<OdataId>emptyList() : members;
     }
 
+    /**
+     * Returns members read inline with the collection, when it was requested with $expand
+     *
+     * @return List<RedfishResource> expanded members, empty if the collection was not expanded
+     */
+    public List<RedfishResource> getExpandedMembers()
+    {
+        return ( expandedMembers == null ) ? Collections.<RedfishResource>emptyList() : expandedMembers;
+    }
+
+    public void setExpandedMembers( List<RedfishResource> expandedMembers )
+    {
+        this.expandedMembers = expandedMembers;
+    }
+
     @Override
     public Set<OdataId> getRelatedResources()
     {
@@ -40,6 +40,9 @@ public abstract class RedfishResource
     @JsonIgnore
     private URI origin;
 
+    @JsonIgnore
+    private String etag;
+
     @JsonProperty( "@odata.context" )
     private String odataContext;
 
@@ -68,6 +71,21 @@ public abstract class RedfishResource
         this.origin = origin;
     }
 
+    /**
+     * Returns the ETag of the resource as returned by the service, used for conditional requests
+     *
+     * @return String ETag, null if the service did not return one
+     */
+    public String getEtag()
+    {
+        return etag;
+    }
+
+    public void setEtag( String etag )
+    {
+        this.etag = etag;
+    }
+
     public String getOdataContext()
     {
         return odataContext;
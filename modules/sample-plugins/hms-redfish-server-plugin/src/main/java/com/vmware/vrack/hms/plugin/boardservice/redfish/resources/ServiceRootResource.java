@@ -52,6 +52,9 @@ public final class ServiceRootResource
     @JsonProperty( "Links" )
     private Object links;
 
+    @JsonProperty( "ProtocolFeaturesSupported" )
+    private ProtocolFeaturesSupported protocolFeaturesSupported = new ProtocolFeaturesSupported();
+
     public String getRedfishVersion()
     {
         return redfishVersion;
@@ -62,6 +65,17 @@ public final class ServiceRootResource
         return uuid;
     }
 
+    /**
+     * Returns whether the service expands the members of collections inline with $expand=.
+     *
+     * @return boolean true if $expand is supported
+     */
+    public boolean isExpandSupported()
+    {
+        return protocolFeaturesSupported != null && protocolFeaturesSupported.expandQuery != null
+            && protocolFeaturesSupported.expandQuery.noLinks;
+    }
+
     @Override
     public Set<OdataId> getRelatedResources()
     {
@@ -72,4 +86,18 @@ public final class ServiceRootResource
         relatedResources.add( eventService );
         return relatedResources;
     }
+
+    @JsonIgnoreProperties( ignoreUnknown = true )
+    private static final class ProtocolFeaturesSupported
+    {
+        @JsonProperty( "ExpandQuery" )
+        private ExpandQuery expandQuery = new ExpandQuery();
+    }
+
+    @JsonIgnoreProperties( ignoreUnknown = true )
+    private static final class ExpandQuery
+    {
+        @JsonProperty( "NoLinks" )
+        private boolean noLinks;
+    }
 }
@@ -85,6 +85,13 @@ public class MockRedfishClient
         }
     }
 
+    @Override
+    public RedfishResource get( URI targetUri, String etag, boolean expandMembers )
+        throws RedfishClientException
+    {
+        return get( targetUri );
+    }
+
     @Override
     public <T> void post( URI targetUri, T body )
         throws RedfishClientException
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.vmware.vrack.hms.plugin.boardservice;
+
+import com.vmware.vrack.hms.plugin.boardservice.redfish.client.RedfishClientException;
+import com.vmware.vrack.hms.plugin.boardservice.redfish.discovery.ResourcesCrawler;
+import com.vmware.vrack.hms.plugin.boardservice.redfish.resources.RedfishResource;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResourcesCrawlerTest
+{
+    private static final URI SERVICE_ENDPOINT = URI.create( "/redfish/v1" );
+
+    @Test
+    public void testConditionalCrawl()
+        throws RedfishClientException
+    {
+        ConditionalRedfishClient client = new ConditionalRedfishClient();
+        ResourcesCrawler crawler = new ResourcesCrawler( SERVICE_ENDPOINT );
+
+        Map<String, RedfishResource> resources = crawler.getAllResources( client );
+        assertTrue( resources.containsKey( "/redfish/v1/Systems/1" ) );
+        assertTrue( resources.containsKey( "/redfish/v1/Systems/1/Processors" ) );
+
+        // nothing changed, only the service root and the collections it links to are read again
+        int reads = client.reads.get();
+        assertEquals( resources.keySet(), crawler.getAllResources( client ).keySet() );
+        int unchangedReads = client.reads.get() - reads;
+        assertTrue( "Unexpected number of reads: " + unchangedReads, unchangedReads <= 5 );
+
+        // members of a changed collection are read again, but not their subtrees
+        client.modified.add( "/redfish/v1/Systems" );
+        reads = client.reads.get();
+        assertEquals( resources.keySet(), crawler.getAllResources( client ).keySet() );
+        assertEquals( unchangedReads + 3, client.reads.get() - reads );
+
+        RedfishResource system = resources.get( "/redfish/v1/Systems/1" );
+        assertSame( system, crawler.getResource( client, URI.create( "/redfish/v1/Systems/1" ) ) );
+    }
+
+    private static class ConditionalRedfishClient
+        extends MockRedfishClient
+    {
+        private final Set<String> modified = Collections.synchronizedSet( new HashSet<String>() );
+
+        private final AtomicInteger reads = new AtomicInteger();
+
+        ConditionalRedfishClient()
+        {
+            super( ResourcesCrawlerTest.class.getResourceAsStream( "/mock.json" ) );
+        }
+
+        @Override
+        public RedfishResource get( URI targetUri, String etag, boolean expandMembers )
+            throws RedfishClientException
+        {
+            int read = reads.incrementAndGet();
+            if ( etag != null && !modified.remove( targetUri.toString() ) )
+            {
+                return null;
+            }
+            RedfishResource resource = get( targetUri );
+            resource.setEtag( "\"" + read + "\"" );
+            return resource;
+        }
+    }
+}